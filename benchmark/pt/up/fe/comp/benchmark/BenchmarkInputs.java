@@ -0,0 +1,66 @@
+package pt.up.fe.comp.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import pt.up.fe.comp.Launcher;
+import pt.up.fe.comp.generator.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+/*
+ * Programs the benchmarks run over:
+ *  - "corpus": every file of test/fixtures/public that compiles, in a fixed order
+ *  - "synthetic-N": one class with N methods made by the given ProgramGenerator, to see how the stages scale
+ */
+public class BenchmarkInputs {
+    private static final String FIXTURES = "test/fixtures/public";
+
+    public static List<String> load(String input, ProgramGenerator generator) {
+        if (input.equals("corpus")) {
+            return corpus();
+        }
+        if (input.startsWith("synthetic-")) {
+            int methods = Integer.parseInt(input.substring("synthetic-".length()));
+            return List.of(generator.setMethods(methods).generate());
+        }
+        throw new RuntimeException("load: Unknown benchmark input '" + input + "'");
+    }
+
+    // The stages print the AST and the generated code, that's not what's being measured
+    public static void silenceOutput() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    private static List<String> corpus() {
+        List<Path> paths;
+        try (Stream<Path> files = Files.walk(Paths.get(FIXTURES))) {
+            paths = files.filter(path -> path.toString().endsWith(".jmm")).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("corpus: Could not read " + FIXTURES + ", run from the project folder", e);
+        }
+
+        // Fixtures with errors on purpose stop halfway, they're left out
+        List<String> codes = new ArrayList<>();
+        for (Path path : paths) {
+            String code = SpecsIo.read(new File(path.toString()));
+            try {
+                if (Launcher.compile(code, Map.of(), new PrintStream(OutputStream.nullOutputStream())) != null) {
+                    codes.add(code);
+                }
+            } catch (RuntimeException e) {
+                // Doesn't compile
+            }
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,188 @@
+package pt.up.fe.comp.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.specs.comp.ollir.ClassUnit;
+
+import pt.up.fe.comp.SimpleParser;
+import pt.up.fe.comp.analysis.JmmAnalyser;
+import pt.up.fe.comp.generator.ProgramGenerator;
+import pt.up.fe.comp.jasmin.JasminGenerator;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.ollir.JmmOptimizer;
+
+/*
+ * One benchmark per compiler stage, each operation runs the stage over every program of the input.
+ * The input of a stage is prepared beforehand by the previous ones, stages that change their input
+ * (the optimizations) get a fresh copy before every operation.
+ *
+ * Run with: gradle jmh, add -PjmhArgs="-prof gc" for the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CompilerBenchmark {
+
+    @Param({"corpus", "synthetic-10", "synthetic-100"})
+    public String input;
+
+    // Size of the synthetic methods, e.g. -p statements=10,100,1000 to plot a stage against the method size
+    @Param({"20"})
+    public int statements;
+
+    @Param({"2"})
+    public int loopDepth;
+
+    @Param({"8"})
+    public int variables;
+
+    @Param({"2"})
+    public int imports;
+
+    @Param({"42"})
+    public long seed;
+
+    List<String> codes;
+    List<JmmParserResult> parserResults;
+    List<JmmSemanticsResult> semanticsResults;
+    List<ClassUnit> classUnits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkInputs.silenceOutput();
+        ProgramGenerator generator = new ProgramGenerator(seed)
+                .setStatements(statements)
+                .setLoopDepth(loopDepth)
+                .setVariables(variables)
+                .setImports(imports);
+        this.codes = BenchmarkInputs.load(input, generator);
+        this.parserResults = parse(codes);
+        this.semanticsResults = analyse(parserResults);
+        this.classUnits = new ArrayList<>();
+        for (JmmSemanticsResult semanticsResult : semanticsResults) {
+            ClassUnit classUnit = new JmmOptimizer().toOllir(semanticsResult).getOllirClass();
+            classUnit.buildCFGs();
+            classUnits.add(classUnit);
+        }
+    }
+
+    static Map<String, String> config(String... options) {
+        Map<String, String> config = new HashMap<>();
+        for (int i = 0; i + 1 < options.length; i += 2) {
+            config.put(options[i], options[i + 1]);
+        }
+        return config;
+    }
+
+    static List<JmmParserResult> parse(List<String> codes) {
+        List<JmmParserResult> results = new ArrayList<>();
+        for (String code : codes) {
+            results.add(new SimpleParser().parse(code, config()));
+        }
+        return results;
+    }
+
+    static List<JmmSemanticsResult> analyse(List<JmmParserResult> parserResults) {
+        List<JmmSemanticsResult> results = new ArrayList<>();
+        for (JmmParserResult parserResult : parserResults) {
+            results.add(new JmmAnalyser().semanticAnalysis(parserResult));
+        }
+        return results;
+    }
+
+    // AST optimizations change the tree, each operation gets trees that weren't optimized yet
+    @State(Scope.Thread)
+    public static class FreshAst {
+        List<JmmSemanticsResult> semanticsResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CompilerBenchmark benchmark) {
+            this.semanticsResults = new ArrayList<>();
+            for (String code : benchmark.codes) {
+                var parserResult = new SimpleParser().parse(code, config("optimizeAll", "true"));
+                semanticsResults.add(new JmmAnalyser().semanticAnalysis(parserResult));
+            }
+        }
+    }
+
+    // Register allocation changes the OLLIR methods, each operation gets classes that weren't allocated yet
+    @State(Scope.Thread)
+    public static class FreshOllir {
+        List<OllirResult> ollirResults;
+
+        @Setup(Level.Invocation)
+        public void setup(CompilerBenchmark benchmark) {
+            this.ollirResults = new ArrayList<>();
+            for (String code : benchmark.codes) {
+                var parserResult = new SimpleParser().parse(code, config("registerAllocation", "0"));
+                var semanticsResult = new JmmAnalyser().semanticAnalysis(parserResult);
+                ollirResults.add(new JmmOptimizer().toOllir(semanticsResult));
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String code : codes) {
+            blackhole.consume(new SimpleParser().parse(code, config()));
+        }
+    }
+
+    @Benchmark
+    public void semanticAnalysis(Blackhole blackhole) {
+        for (JmmParserResult parserResult : parserResults) {
+            blackhole.consume(new JmmAnalyser().semanticAnalysis(parserResult));
+        }
+    }
+
+    @Benchmark
+    public void optimizeAst(FreshAst fresh, Blackhole blackhole) {
+        for (JmmSemanticsResult semanticsResult : fresh.semanticsResults) {
+            blackhole.consume(new JmmOptimizer().optimize(semanticsResult));
+        }
+    }
+
+    @Benchmark
+    public void toOllir(Blackhole blackhole) {
+        for (JmmSemanticsResult semanticsResult : semanticsResults) {
+            blackhole.consume(new JmmOptimizer().toOllir(semanticsResult));
+        }
+    }
+
+    @Benchmark
+    public void optimizeOllir(FreshOllir fresh, Blackhole blackhole) {
+        for (OllirResult ollirResult : fresh.ollirResults) {
+            blackhole.consume(new JmmOptimizer().optimize(ollirResult));
+        }
+    }
+
+    @Benchmark
+    public void jasmin(Blackhole blackhole) {
+        for (ClassUnit classUnit : classUnits) {
+            blackhole.consume(new JasminGenerator(classUnit).convert());
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.Properties;
 
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.cache.CompilationCache;
 import pt.up.fe.comp.jmm.ast2jasmin.AstToJasmin;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
@@ -248,9 +249,27 @@ public class TestUtils {
      * @return
      */
     public static OllirResult optimize(String jmmCode, Map<String, String> config) {
+        // With a cache in the config, starts from the cached OLLIR code if there is one
+        var cache = CompilationCache.of(config);
+        String key = null;
+        if (cache != null) {
+            key = cache.key(jmmCode, config, getStageClasses());
+            var ollirResult = cache.getOllirResult(key, config);
+            if (ollirResult != null) {
+                return getJmmOptimization().optimize(ollirResult);
+            }
+        }
+
         var semanticsResult = analyse(jmmCode, config);
         noErrors(semanticsResult.getReports());
-        return optimize(semanticsResult);
+        if (cache == null) {
+            return optimize(semanticsResult);
+        }
+
+        JmmOptimization optimization = getJmmOptimization();
+        var ollirResult = optimization.toOllir(optimization.optimize(semanticsResult));
+        cache.putOllirResult(key, ollirResult);
+        return optimization.optimize(ollirResult);
     }
 
     /**
@@ -323,9 +342,42 @@ public class TestUtils {
         }
 
         // Otherwise, run OLLIR path
+        var cache = CompilationCache.of(config);
+        String key = null;
+        if (cache != null) {
+            key = cache.key(code, config, getStageClasses());
+            var jasminResult = cache.getJasminResult(key, config);
+            if (jasminResult != null) {
+                return jasminResult;
+            }
+        }
+
         var ollirResult = optimize(code, config);
         noErrors(ollirResult.getReports());
-        return backend(ollirResult);
+        var jasminResult = backend(ollirResult);
+        if (cache != null) {
+            cache.putJasminResult(key, jasminResult);
+        }
+        return jasminResult;
+    }
+
+    /**
+     * 
+     * @return the classes of the parser, analysis, optimization and backend stages in 'config.properties', which are
+     *         part of the keys of the {@link CompilationCache}
+     */
+    private static Class<?>[] getStageClasses() {
+        String[] properties = { "ParserClass", "AnalysisClass", "OptimizationClass", "BackendClass" };
+        Class<?>[] stages = new Class<?>[properties.length];
+        for (int i = 0; i < properties.length; ++i) {
+            String className = getClassFromConfig(properties[i]);
+            try {
+                stages[i] = Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException("Could not find class '" + className + "'", e);
+            }
+        }
+        return stages;
     }
 
     /**
@@ -8,6 +8,7 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportsProvider;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
 import pt.up.fe.specs.util.SpecsCollections;
 
 /**
@@ -19,18 +20,25 @@ public class JmmSemanticsResult implements ReportsProvider {
     private final SymbolTable symbolTable;
     private final List<Report> reports;
     private final Map<String, String> config;
+    private final CompilationStats stats;
 
     public JmmSemanticsResult(JmmNode rootNode, SymbolTable symbolTable, List<Report> reports,
             Map<String, String> config) {
+        this(rootNode, symbolTable, reports, config, new CompilationStats());
+    }
+
+    public JmmSemanticsResult(JmmNode rootNode, SymbolTable symbolTable, List<Report> reports,
+            Map<String, String> config, CompilationStats stats) {
         this.rootNode = rootNode;
         this.symbolTable = symbolTable;
         this.reports = reports;
         this.config = config;
+        this.stats = stats;
     }
 
     public JmmSemanticsResult(JmmParserResult parserResult, SymbolTable symbolTable, List<Report> reports) {
         this(parserResult.getRootNode(), symbolTable, SpecsCollections.concat(parserResult.getReports(), reports),
-                parserResult.getConfig());
+                parserResult.getConfig(), parserResult.getStats());
     }
 
     public JmmNode getRootNode() {
@@ -48,4 +56,8 @@ public class JmmSemanticsResult implements ReportsProvider {
     public Map<String, String> getConfig() {
         return config;
     }
+
+    public CompilationStats getStats() {
+        return stats;
+    }
 }
@@ -22,9 +22,13 @@ import pt.up.fe.specs.util.SpecsCheck;
 
 public abstract class AJmmNode implements JmmNode {
 
-    private final Map<String, String> attributes = new HashMap<>();
+    // Created on the first use, subclasses that keep their attributes elsewhere never allocate it
+    private Map<String, String> attributes;
 
     protected Map<String, String> getAttributesMap() {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
         return attributes;
     }
 
@@ -35,17 +39,17 @@ public abstract class AJmmNode implements JmmNode {
 
     @Override
     public List<String> getAttributes() {
-        return new ArrayList<>(attributes.keySet());
+        return new ArrayList<>(getAttributesMap().keySet());
     }
 
     @Override
     public void put(String attribute, String value) {
-        attributes.put(attribute, value);
+        getAttributesMap().put(attribute, value);
     }
 
     @Override
     public String get(String attribute) {
-        var value = this.attributes.get(attribute);
+        var value = getAttributesMap().get(attribute);
 
         SpecsCheck.checkNotNull(value, () -> "Node " + toString() + " does not contain attribute '" + attribute + "'");
 
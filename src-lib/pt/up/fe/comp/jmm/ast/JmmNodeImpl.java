@@ -15,8 +15,12 @@ public class JmmNodeImpl extends AJmmNode {
     private JmmNode parent;
 
     public JmmNodeImpl(String kind) {
+        this(kind, new ArrayList<>());
+    }
+
+    protected JmmNodeImpl(String kind, List<JmmNode> children) {
         this.kind = kind;
-        this.children = new ArrayList<>();
+        this.children = children;
     }
 
     @Override
@@ -166,7 +170,7 @@ public class JmmNodeImpl extends AJmmNode {
             newNode.removeParent();
         }
 
-        children.set(index, newNode);
+        setChildAt(index, newNode);
         newNode.setParent(this);
 
         // Remove parent from current child
@@ -174,11 +178,16 @@ public class JmmNodeImpl extends AJmmNode {
 
         // If new node had a parent, set this node at the old position of the new node
         if (newNodeParent != null) {
-            ((JmmNodeImpl) newNodeParent).children.set(newNodeCurrentIndex, currentChild);
+            ((JmmNodeImpl) newNodeParent).setChildAt(newNodeCurrentIndex, currentChild);
             currentChild.setParent(newNodeParent);
         }
     }
 
+    // Only puts the node in the list, the parents are updated by the callers
+    protected void setChildAt(int index, JmmNode node) {
+        children.set(index, node);
+    }
+
     @Override
     public void removeParent() {
         this.parent = null;
@@ -0,0 +1,107 @@
+package pt.up.fe.comp.jmm.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/**
+ * A copy of a symbol table that can be written to and read from JSON.
+ */
+public class CachedSymbolTable implements SymbolTable {
+
+    private static final Gson GSON = new Gson();
+
+    private final List<String> imports;
+    private final String className;
+    private final String superName;
+    private final List<Symbol> fields;
+    private final Map<String, CachedMethod> methods;
+
+    private CachedSymbolTable(List<String> imports, String className, String superName, List<Symbol> fields,
+            Map<String, CachedMethod> methods) {
+        this.imports = imports;
+        this.className = className;
+        this.superName = superName;
+        this.fields = fields;
+        this.methods = methods;
+    }
+
+    public static CachedSymbolTable copyOf(SymbolTable symbolTable) {
+        Map<String, CachedMethod> methods = new LinkedHashMap<>();
+        for (String method : symbolTable.getMethods()) {
+            methods.put(method, new CachedMethod(symbolTable.getReturnType(method),
+                    new ArrayList<>(symbolTable.getParameters(method)),
+                    new ArrayList<>(symbolTable.getLocalVariables(method))));
+        }
+
+        return new CachedSymbolTable(new ArrayList<>(symbolTable.getImports()), symbolTable.getClassName(),
+                symbolTable.getSuper(), new ArrayList<>(symbolTable.getFields()), methods);
+    }
+
+    public static CachedSymbolTable fromJson(String json) {
+        return GSON.fromJson(json, CachedSymbolTable.class);
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+
+    @Override
+    public List<String> getImports() {
+        return imports;
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String getSuper() {
+        return superName;
+    }
+
+    @Override
+    public List<Symbol> getFields() {
+        return fields;
+    }
+
+    @Override
+    public List<String> getMethods() {
+        return new ArrayList<>(methods.keySet());
+    }
+
+    @Override
+    public Type getReturnType(String methodSignature) {
+        return methods.get(methodSignature).returnType;
+    }
+
+    @Override
+    public List<Symbol> getParameters(String methodSignature) {
+        return methods.get(methodSignature).parameters;
+    }
+
+    @Override
+    public List<Symbol> getLocalVariables(String methodSignature) {
+        return methods.get(methodSignature).localVariables;
+    }
+
+    private static class CachedMethod {
+        private final Type returnType;
+        private final List<Symbol> parameters;
+        private final List<Symbol> localVariables;
+
+        private CachedMethod(Type returnType, List<Symbol> parameters, List<Symbol> localVariables) {
+            this.returnType = returnType;
+            this.parameters = parameters;
+            this.localVariables = localVariables;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package pt.up.fe.comp.jmm.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+/**
+ * An on-disk cache of the results of the compiler stages, so a compilation of code that didn't change can start from
+ * the deepest stage that is cached instead of from the source.
+ *
+ * <p>
+ * Entries are addressed by a hash of the source, of the config entries that change the output, of the classes that
+ * implement the stages and of the version of the compiler (see {@link #key(byte[], Map, Class...)}). Each stage is a
+ * file of its own, named after the key: the OLLIR code, together with the symbol table, as it comes out of the AST,
+ * and the output of the backend (Jasmin code or the class file).
+ *
+ * <p>
+ * The OLLIR entry is taken before the OLLIR optimizations: with "optimize" they are SSA with constant propagation, dead
+ * code elimination, loop-invariant code motion and strength reduction, besides the register allocation. A hit on that
+ * entry runs them again, which gives the same code as the compilation that wrote it: they only read the OLLIR code
+ * and the config, and every config entry that changes the output is part of the key, as is the code of the
+ * optimizer. The entry is never the output of the optimizations, so they never run twice on the same code.
+ *
+ * <p>
+ * Several processes can share the same folder without locks: entries are written to a temporary file and renamed
+ * atomically, so readers see either the whole entry or no entry, and the same key always has the same contents. A hit
+ * updates the modification time of the entry, and when the folder is larger than the size limit the least recently
+ * used entries are deleted.
+ */
+public class CompilationCache {
+
+    public static final String CACHE_DIR = "cacheDir";
+    public static final String CACHE_SIZE = "cacheSize";
+
+    private static final long DEFAULT_SIZE_MB = 256;
+    private static final int MAGIC = 0x4A4D4D43; // JMMC
+    private static final int VERSION = 1;
+    private static final String OLLIR = ".ollir";
+    private static final String BACKEND = ".backend";
+    private static final String TEMP = ".tmp";
+    // Temporary files this old were left by a process that didn't finish writing them
+    private static final long TEMP_MAX_AGE_MS = 60 * 60 * 1000;
+    // The size of the folder is checked every this many entries written
+    private static final int EVICTION_INTERVAL = 32;
+
+    // Config entries that don't change the output of the compiler
+    private static final Set<String> IGNORED_CONFIG = new HashSet<>(
+            Arrays.asList("inputFile", "debug", "stats", "printTree", "parallelAnalysis", CACHE_DIR, CACHE_SIZE));
+
+    private static final Map<Path, CompilationCache> CACHES = new ConcurrentHashMap<>();
+    private static final Map<String, String> CODE_STAMPS = new ConcurrentHashMap<>();
+
+    private final Path dir;
+    private final long maxBytes;
+    private final AtomicInteger writes;
+
+    public CompilationCache(File dir, long maxBytes) {
+        this.dir = dir.toPath().toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+        this.writes = new AtomicInteger();
+    }
+
+    /**
+     *
+     * @param config
+     * @return the cache in the folder given by "cacheDir" in the config, limited to "cacheSize" MB, or null if the
+     *         config has no cache folder
+     */
+    public static CompilationCache of(Map<String, String> config) {
+        String dirName = config.get(CACHE_DIR);
+        if (dirName == null || dirName.isBlank()) {
+            return null;
+        }
+
+        long maxBytes = Long.parseLong(config.getOrDefault(CACHE_SIZE, Long.toString(DEFAULT_SIZE_MB))) * 1024 * 1024;
+        Path dir = Paths.get(dirName).toAbsolutePath().normalize();
+        return CACHES.computeIfAbsent(dir, key -> new CompilationCache(key.toFile(), maxBytes));
+    }
+
+    public String key(String source, Map<String, String> config, Class<?>... stages) {
+        return key(source.getBytes(StandardCharsets.UTF_8), config, stages);
+    }
+
+    /**
+     *
+     * @param source
+     *            the code being compiled
+     * @param config
+     * @param stages
+     *            the classes that implement the stages, their code is part of the key
+     * @return the key of the entries of the given code
+     */
+    public String key(byte[] source, Map<String, String> config, Class<?>... stages) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("key: " + e.getMessage(), e);
+        }
+
+        StringBuilder header = new StringBuilder();
+        header.append(VERSION).append('\n');
+        for (Class<?> stage : stages) {
+            header.append(stage.getName()).append(' ').append(codeStamp(stage)).append('\n');
+        }
+        // Sorted, so the order in which the config was built doesn't matter
+        new TreeMap<>(config).forEach((name, value) -> {
+            if (!IGNORED_CONFIG.contains(name)) {
+                header.append(name).append('=').append(value).append('\n');
+            }
+        });
+        digest.update(header.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(source);
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     *
+     * @param key
+     * @param config
+     * @return the OLLIR result stored with the given key, before the OLLIR optimizations, or null if there's none
+     */
+    public OllirResult getOllirResult(String key, Map<String, String> config) {
+        return read(key + OLLIR, in -> {
+            String symbolTableJson = readString(in);
+            String ollirCode = readString(in);
+
+            SymbolTable symbolTable = symbolTableJson.isEmpty() ? null : CachedSymbolTable.fromJson(symbolTableJson);
+            var semanticsResult = new JmmSemanticsResult((JmmNode) null, symbolTable, new ArrayList<>(), config);
+            return new OllirResult(semanticsResult, ollirCode, new ArrayList<>());
+        });
+    }
+
+    /**
+     * Stores the given OLLIR result, unless it has reports, as they aren't stored.
+     *
+     * @param key
+     * @param ollirResult
+     */
+    public void putOllirResult(String key, OllirResult ollirResult) {
+        if (!ollirResult.getReports().isEmpty()) {
+            return;
+        }
+
+        SymbolTable symbolTable = ollirResult.getSymbolTable();
+        String symbolTableJson = symbolTable == null ? "" : CachedSymbolTable.copyOf(symbolTable).toJson();
+        String ollirCode = ollirResult.getOllirCode();
+        write(key + OLLIR, out -> {
+            writeString(out, symbolTableJson);
+            writeString(out, ollirCode);
+        });
+    }
+
+    /**
+     *
+     * @param key
+     * @param config
+     * @return the result of the backend stored with the given key, or null if there's none
+     */
+    public JasminResult getJasminResult(String key, Map<String, String> config) {
+        return read(key + BACKEND, in -> {
+            String className = readString(in);
+            boolean isClassFile = in.readBoolean();
+            if (isClassFile) {
+                return JasminResult.fromClassBytes(className, readBytes(in), config);
+            }
+            return new JasminResult(className, readString(in), new ArrayList<>(), config);
+        });
+    }
+
+    /**
+     * Stores the given result of the backend, unless it has reports, as they aren't stored.
+     *
+     * @param key
+     * @param jasminResult
+     */
+    public void putJasminResult(String key, JasminResult jasminResult) {
+        if (!jasminResult.getReports().isEmpty()) {
+            return;
+        }
+
+        write(key + BACKEND, out -> {
+            writeString(out, jasminResult.getClassName());
+            byte[] classBytes = jasminResult.getClassBytes();
+            out.writeBoolean(classBytes != null);
+            if (classBytes != null) {
+                writeBytes(out, classBytes);
+            } else {
+                writeString(out, jasminResult.getJasminCode());
+            }
+        });
+    }
+
+    /**
+     * Deletes the least recently used entries until the folder is within the size limit.
+     */
+    public void evict() {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(dir)) {
+            entries = files.collect(Collectors.toList());
+        } catch (IOException e) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<Entry> sized = new ArrayList<>();
+        long total = 0;
+        for (Path entry : entries) {
+            try {
+                long modified = Files.getLastModifiedTime(entry).toMillis();
+                if (entry.getFileName().toString().endsWith(TEMP)) {
+                    if (now - modified > TEMP_MAX_AGE_MS) {
+                        Files.deleteIfExists(entry);
+                    }
+                    continue;
+                }
+                long size = Files.size(entry);
+                sized.add(new Entry(entry, modified, size));
+                total += size;
+            } catch (IOException e) {
+                // Deleted by another process in the meantime
+            }
+        }
+
+        sized.sort(Comparator.comparingLong(entry -> entry.modified));
+        for (Entry entry : sized) {
+            if (total <= maxBytes) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.path);
+            } catch (IOException e) {
+                // An entry in use can't be deleted on some systems, it's deleted in a later eviction
+            }
+            total -= entry.size;
+        }
+    }
+
+    private <T> T read(String name, EntryReader<T> reader) {
+        Path entry = dir.resolve(name);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+
+        T result;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            result = reader.read(in);
+        } catch (IOException e) {
+            // Evicted while it was being opened, or not an entry
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only the eviction order changes
+        }
+        return result;
+    }
+
+    // Writing is best effort, a compilation doesn't fail because its results couldn't be cached
+    private void write(String name, EntryWriter writer) {
+        Path temp = null;
+        try {
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, name, TEMP);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writer.write(out);
+            }
+            Files.move(temp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            temp = null;
+        } catch (IOException e) {
+            // Nothing was stored
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Deleted by the eviction of stale temporary files
+                }
+            }
+        }
+
+        if (writes.getAndIncrement() % EVICTION_INTERVAL == 0) {
+            evict();
+        }
+    }
+
+    // Last modification of the code of the given class, so entries of an older compiler aren't used
+    private static String codeStamp(Class<?> stage) {
+        CodeSource source = stage.getProtectionDomain().getCodeSource();
+        if (source == null || source.getLocation() == null) {
+            return "";
+        }
+
+        return CODE_STAMPS.computeIfAbsent(source.getLocation().toString(), location -> {
+            Path path;
+            try {
+                path = Paths.get(source.getLocation().toURI());
+            } catch (Exception e) {
+                return location;
+            }
+
+            // A folder of classes changes when any file in it changes
+            try (Stream<Path> files = Files.walk(path)) {
+                long newest = 0;
+                long count = 0;
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    newest = Math.max(newest, Files.getLastModifiedTime(file).toMillis());
+                    count++;
+                }
+                return newest + ":" + count;
+            } catch (IOException e) {
+                return location;
+            }
+        });
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private interface EntryReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final long modified;
+        private final long size;
+
+        private Entry(Path path, long modified, long size) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+}
@@ -2,9 +2,11 @@ package pt.up.fe.comp.jmm.jasmin;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -17,6 +19,7 @@ import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportsProvider;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
 import pt.up.fe.specs.util.SpecsCollections;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
@@ -37,12 +40,21 @@ public class JasminResult implements ReportsProvider {
     private final String jasminCode;
     private final List<Report> reports;
     private final Map<String, String> config;
+    private final byte[] classBytes;
+    private final CompilationStats stats;
 
     public JasminResult(String className, String jasminCode, List<Report> reports, Map<String, String> config) {
+        this(className, jasminCode, null, reports, config, new CompilationStats());
+    }
+
+    private JasminResult(String className, String jasminCode, byte[] classBytes, List<Report> reports,
+            Map<String, String> config, CompilationStats stats) {
         this.className = className;
         this.jasminCode = jasminCode;
+        this.classBytes = classBytes;
         this.reports = reports;
         this.config = config;
+        this.stats = stats;
     }
 
     public JasminResult(String className, String jasminCode, List<Report> reports) {
@@ -50,8 +62,9 @@ public class JasminResult implements ReportsProvider {
     }
 
     public JasminResult(OllirResult ollirResult, String jasminCode, List<Report> reports) {
-        this(ollirResult.getOllirClass().getClassName(), jasminCode,
-                SpecsCollections.concat(ollirResult.getReports(), reports), ollirResult.getConfig());
+        this(ollirResult.getOllirClass().getClassName(), jasminCode, null,
+                SpecsCollections.concat(ollirResult.getReports(), reports), ollirResult.getConfig(),
+                ollirResult.getStats());
     }
 
     public JasminResult(String jasminCode, Map<String, String> config) {
@@ -62,6 +75,22 @@ public class JasminResult implements ReportsProvider {
         this(jasminCode, new HashMap<>());
     }
 
+    /**
+     * Result of a backend that writes the class file directly, instead of generating Jasmin code.
+     */
+    public static JasminResult fromClassBytes(OllirResult ollirResult, byte[] classBytes, List<Report> reports) {
+        return new JasminResult(ollirResult.getOllirClass().getClassName(), null, classBytes,
+                SpecsCollections.concat(ollirResult.getReports(), reports), ollirResult.getConfig(),
+                ollirResult.getStats());
+    }
+
+    /**
+     * Result with a class file that was already generated, e.g. read from a cache.
+     */
+    public static JasminResult fromClassBytes(String className, byte[] classBytes, Map<String, String> config) {
+        return new JasminResult(className, null, classBytes, new ArrayList<>(), config, new CompilationStats());
+    }
+
     public static JasminResult newError(String className, Report errorReport) {
         return new JasminResult(className, null, new ArrayList<>(Arrays.asList(errorReport)));
     }
@@ -74,6 +103,14 @@ public class JasminResult implements ReportsProvider {
         return this.jasminCode;
     }
 
+    /**
+     * 
+     * @return the contents of the class file, or null if this result holds Jasmin code
+     */
+    public byte[] getClassBytes() {
+        return this.classBytes;
+    }
+
     @Override
     public List<Report> getReports() {
         return this.reports;
@@ -83,6 +120,14 @@ public class JasminResult implements ReportsProvider {
         return config;
     }
 
+    /**
+     * 
+     * @return the measurements of every stage that produced this result
+     */
+    public CompilationStats getStats() {
+        return stats;
+    }
+
     /**
      * Compiles the generated Jasmin code using the Jasmin tool.
      * 
@@ -91,6 +136,17 @@ public class JasminResult implements ReportsProvider {
      * @return a reference to the .class file
      */
     public File compile(File outputDir) {
+        // The class file was already generated, there's nothing to assemble
+        if (classBytes != null) {
+            File classFile = new File(SpecsIo.mkdir(outputDir), getClassName() + ".class");
+            try {
+                Files.write(classFile.toPath(), classBytes);
+            } catch (IOException e) {
+                throw new RuntimeException("Class could not be created: " + e.getMessage(), e);
+            }
+            return classFile;
+        }
+
         File jasminFile = new File(SpecsIo.getTempFolder("jasmin"), getClassName() + ".j");
         SpecsIo.write(jasminFile, getJasminCode());
         return JasminUtils.assemble(jasminFile, outputDir);
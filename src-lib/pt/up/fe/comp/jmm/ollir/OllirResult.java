@@ -3,6 +3,7 @@ package pt.up.fe.comp.jmm.ollir;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 import org.specs.comp.ollir.ClassUnit;
 
@@ -10,6 +11,7 @@ import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportsProvider;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
 import pt.up.fe.specs.util.SpecsCollections;
 
 /**
@@ -18,27 +20,33 @@ import pt.up.fe.specs.util.SpecsCollections;
 public class OllirResult implements ReportsProvider {
 
     private final String ollirCode;
+    private final Supplier<String> ollirCodeSupplier;
     private final ClassUnit ollirClass;
     private final SymbolTable symbolTable;
     private final List<Report> reports;
     private final Map<String, String> config;
+    private final CompilationStats stats;
 
     private OllirResult(String ollirCode, ClassUnit ollirClass, SymbolTable symbolTable, List<Report> reports,
-            Map<String, String> config) {
+            Map<String, String> config, CompilationStats stats) {
 
         this.ollirCode = ollirCode;
+        this.ollirCodeSupplier = null;
         this.ollirClass = ollirClass;
         this.symbolTable = symbolTable;
         this.reports = reports;
         this.config = config;
+        this.stats = stats;
     }
 
     public OllirResult(String ollirCode, Map<String, String> config) {
         this.ollirCode = ollirCode;
+        this.ollirCodeSupplier = null;
         this.ollirClass = OllirUtils.parse(ollirCode);
         this.symbolTable = null;
         this.reports = new ArrayList<>();
         this.config = config;
+        this.stats = new CompilationStats();
     }
 
     /**
@@ -50,10 +58,38 @@ public class OllirResult implements ReportsProvider {
      */
     public OllirResult(JmmSemanticsResult semanticsResult, String ollirCode, List<Report> reports) {
         this(ollirCode, OllirUtils.parse(ollirCode), semanticsResult.getSymbolTable(),
-                SpecsCollections.concat(semanticsResult.getReports(), reports), semanticsResult.getConfig());
+                SpecsCollections.concat(semanticsResult.getReports(), reports), semanticsResult.getConfig(),
+                semanticsResult.getStats());
+    }
+
+    /**
+     * Creates a new instance from the analysis stage results and an already built ClassUnit.
+     * 
+     * <p>
+     * The OLLIR code is printed by ollirCode every time {@link #getOllirCode()} is called, so it shows the class as
+     * it is at that moment, after any changes made to it by the optimizations.
+     * 
+     * @param semanticsResult
+     * @param ollirClass
+     * @param ollirCode
+     * @param reports
+     */
+    public OllirResult(JmmSemanticsResult semanticsResult, ClassUnit ollirClass, Supplier<String> ollirCode,
+            List<Report> reports) {
+
+        this.ollirCode = null;
+        this.ollirCodeSupplier = ollirCode;
+        this.ollirClass = ollirClass;
+        this.symbolTable = semanticsResult.getSymbolTable();
+        this.reports = SpecsCollections.concat(semanticsResult.getReports(), reports);
+        this.config = semanticsResult.getConfig();
+        this.stats = semanticsResult.getStats();
     }
 
     public String getOllirCode() {
+        if (ollirCodeSupplier != null) {
+            return ollirCodeSupplier.get();
+        }
         return ollirCode;
     }
 
@@ -73,4 +109,8 @@ public class OllirResult implements ReportsProvider {
     public Map<String, String> getConfig() {
         return config;
     }
+
+    public CompilationStats getStats() {
+        return stats;
+    }
 }
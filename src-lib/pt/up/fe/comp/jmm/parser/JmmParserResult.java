@@ -10,20 +10,38 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 import pt.up.fe.comp.jmm.ast.JmmSerializer;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportsProvider;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
 
 public class JmmParserResult implements ReportsProvider {
 
     private final JmmNode rootNode;
     private final List<Report> reports;
     private final Map<String, String> config;
+    private final transient CompilationStats stats;
 
     public JmmParserResult(JmmNode rootNode, List<Report> reports, Map<String, String> config) {
-        this.rootNode = rootNode != null ? rootNode.sanitize() : null;
+        this(rootNode, reports, config, new CompilationStats());
+    }
+
+    /**
+     * 
+     * @param rootNode
+     * @param reports
+     * @param config
+     * @param stats
+     *            measurements of this compilation so far, shared with the results of the next stages
+     */
+    public JmmParserResult(JmmNode rootNode, List<Report> reports, Map<String, String> config,
+            CompilationStats stats) {
+        // A tree that is already made of JmmNodeImpl is kept as is, incremental parsing relies on its identity
+        this.rootNode = rootNode == null || rootNode instanceof JmmNodeImpl ? rootNode : rootNode.sanitize();
         this.reports = reports;
         this.config = config;
+        this.stats = stats;
     }
 
     /**
@@ -52,6 +70,10 @@ public class JmmParserResult implements ReportsProvider {
         return config;
     }
 
+    public CompilationStats getStats() {
+        return stats;
+    }
+
     public String toJson() {
         Gson gson = new GsonBuilder()
                 .setPrettyPrinting()
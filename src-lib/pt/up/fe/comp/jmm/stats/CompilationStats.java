@@ -0,0 +1,71 @@
+package pt.up.fe.comp.jmm.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Wall time, CPU time and allocated bytes of every stage of a compilation, and of every method inside a stage.
+ * 
+ * <p>
+ * The same instance is shared by the results of every stage (parser, semantic analysis, OLLIR and Jasmin results),
+ * each stage adds its own measurement with {@link #measure(String)}.
+ */
+public class CompilationStats {
+
+    public static final String PARSE = "parse";
+    public static final String ANALYSIS = "analysis";
+    public static final String AST_OPTIMIZATION = "astOptimization";
+    public static final String OLLIR_GENERATION = "ollirGeneration";
+    public static final String OLLIR_OPTIMIZATION = "ollirOptimization";
+    public static final String BACKEND = "backend";
+
+    private final List<StageStats> stages;
+
+    public CompilationStats() {
+        this.stages = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /**
+     * Starts measuring a stage in the current thread, the measurement is recorded when the timer is stopped.
+     * 
+     * @param stage
+     * @return
+     */
+    public StageTimer measure(String stage) {
+        StageStats stageStats = new StageStats(stage, null);
+        stages.add(stageStats);
+        return new StageTimer(stageStats);
+    }
+
+    public List<StageStats> getStages() {
+        synchronized (stages) {
+            return new ArrayList<>(stages);
+        }
+    }
+
+    /**
+     * 
+     * @param stage
+     * @return the last measurement of the given stage, or null if it didn't run
+     */
+    public StageStats getStage(String stage) {
+        StageStats result = null;
+        for (StageStats stageStats : getStages()) {
+            if (stageStats.getStage().equals(stage)) {
+                result = stageStats;
+            }
+        }
+        return result;
+    }
+
+    public String toJson() {
+        Gson gson = new GsonBuilder()
+                .setPrettyPrinting()
+                .create();
+        return gson.toJson(this);
+    }
+}
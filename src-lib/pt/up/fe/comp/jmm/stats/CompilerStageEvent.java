@@ -0,0 +1,33 @@
+package pt.up.fe.comp.jmm.stats;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event of a compiler stage, or of a method inside it. The duration of the event is the wall time.
+ */
+@Name("pt.up.fe.comp.CompilerStage")
+@Label("Compiler Stage")
+@Category("Jmm Compiler")
+@Description("A stage of the compilation, or a method inside it")
+class CompilerStageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Method")
+    String method;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,67 @@
+package pt.up.fe.comp.jmm.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measurement of a stage, or of a method inside a stage. Values are -1 if the JVM can't measure them.
+ */
+public class StageStats {
+
+    private final String stage;
+    private final String method;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private final List<StageStats> methods;
+
+    StageStats(String stage, String method) {
+        this.stage = stage;
+        this.method = method;
+        this.wallNanos = -1;
+        this.cpuNanos = -1;
+        this.allocatedBytes = -1;
+        this.methods = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    void set(long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    void addMethod(StageStats method) {
+        this.methods.add(method);
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * 
+     * @return the name of the method, or null if these are the values of the whole stage
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public List<StageStats> getMethods() {
+        synchronized (methods) {
+            return new ArrayList<>(methods);
+        }
+    }
+}
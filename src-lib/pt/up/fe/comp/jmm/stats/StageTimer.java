@@ -0,0 +1,98 @@
+package pt.up.fe.comp.jmm.stats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures a stage (or a method) in the current thread, from its creation until it's stopped. Callers stop it in a
+ * finally block, so a stage that throws is still measured.
+ * 
+ * <p>
+ * CPU time and allocated bytes come from the ThreadMXBean counters of the current thread, so work done by other
+ * threads is only counted by the timers opened in those threads. Each measurement is also emitted as a JFR event
+ * ({@link CompilerStageEvent}) when a recording is running.
+ */
+public class StageTimer {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final StageStats stats;
+    private final CompilerStageEvent event;
+    private final long startWall;
+    private final long startCpu;
+    private final long startAllocated;
+
+    StageTimer(StageStats stats) {
+        this.stats = stats;
+        this.event = stats == null ? null : new CompilerStageEvent();
+        if (event != null) {
+            event.begin();
+        }
+        this.startWall = System.nanoTime();
+        this.startCpu = cpuTime();
+        this.startAllocated = allocatedBytes();
+    }
+
+    /**
+     * 
+     * @return a timer that records nothing, for stages that aren't measured
+     */
+    public static StageTimer disabled() {
+        return new StageTimer(null);
+    }
+
+    /**
+     * Starts measuring a method of this stage in the current thread.
+     * 
+     * @param method
+     * @return
+     */
+    public StageTimer method(String method) {
+        if (stats == null) {
+            return this;
+        }
+        StageStats methodStats = new StageStats(stats.getStage(), method);
+        stats.addMethod(methodStats);
+        return new StageTimer(methodStats);
+    }
+
+    /**
+     * Records the measurement, from the creation of the timer.
+     */
+    public void stop() {
+        if (stats == null) {
+            return;
+        }
+        long wall = System.nanoTime() - startWall;
+        long cpu = startCpu == -1 ? -1 : cpuTime() - startCpu;
+        long allocated = startAllocated == -1 ? -1 : allocatedBytes() - startAllocated;
+        stats.set(wall, cpu, allocated);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stats.getStage();
+            event.method = stats.getMethod();
+            event.cpuTime = cpu;
+            event.allocatedBytes = allocated;
+            event.commit();
+        }
+    }
+
+    private static long cpuTime() {
+        if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    private static long allocatedBytes() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        var threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,201 @@
+package pt.up.fe.comp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+/*
+ * Compiles many independent classes concurrently.
+ * Every file runs through its own parser, analyser, optimizer and backend instances on a bounded ForkJoinPool.
+ * Results are reported in input order, so the output and the exit code don't depend on scheduling.
+ * Inputs that declare the same class would write the same files, so they all fail and none of them is written.
+ */
+public class BatchCompiler {
+    private final List<File> inputFiles;
+    private final List<String> flags;
+    private final File outputDir;
+    private final int parallelism;
+    private final Map<String, File> declaredClasses;    // The input that got to write each class
+
+    public BatchCompiler(List<File> inputFiles, List<String> flags, File outputDir, int parallelism) {
+        this.inputFiles = inputFiles;
+        this.flags = flags;
+        this.outputDir = outputDir;
+        this.parallelism = parallelism;
+        this.declaredClasses = new ConcurrentHashMap<>();
+    }
+
+    // Builds a batch from the arguments that follow -batch: directories, .jmm files and compiler flags
+    public static BatchCompiler fromArgs(String[] args, int start) {
+        List<File> inputFiles = new ArrayList<>();
+        List<String> flags = new ArrayList<>();
+        File outputDir = SpecsIo.getTempFolder("jasmin");
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        for (int i = start; i < args.length; ++i) {
+            switch (args[i]) {
+                case "-d":
+                    outputDir = new File(args[++i]);
+                    break;
+                case "-j":
+                    parallelism = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    // Compiler flags are passed on to Launcher.createConfig with their values
+                    Integer values = Launcher.COMPILER_FLAGS.get(args[i]);
+                    if (values == null) {
+                        collectInputFiles(new File(args[i]), inputFiles);
+                        break;
+                    }
+                    flags.add(args[i]);
+                    for (int k = 0; k < values && i + 1 < args.length; ++k) {
+                        flags.add(args[++i]);
+                    }
+            }
+        }
+
+        // Directory listings have no guaranteed order
+        inputFiles.sort((a, b) -> a.getPath().compareTo(b.getPath()));
+
+        return new BatchCompiler(inputFiles, flags, outputDir, Math.max(1, parallelism));
+    }
+
+    private static void collectInputFiles(File file, List<File> inputFiles) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                if (child.isDirectory() || child.getName().endsWith(".jmm")) {
+                    collectInputFiles(child, inputFiles);
+                }
+            }
+        } else if (file.isFile()) {
+            inputFiles.add(file);
+        } else {
+            throw new RuntimeException("Expected a path to an existing input file or folder, got '" + file + "'.");
+        }
+    }
+
+    // Compiles every input file and prints one summary per file, in input order
+    // Returns the process exit code: 0 if every file compiled, 1 otherwise
+    public int run(PrintStream out) {
+        List<ForkJoinTask<FileResult>> tasks = new ArrayList<>();
+        declaredClasses.clear();
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (File inputFile : inputFiles) {
+                tasks.add(pool.submit(() -> compile(inputFile)));
+            }
+
+            // Wait for every file before printing, the stages still log to System.out while running
+            List<FileResult> results = new ArrayList<>();
+            for (var task : tasks) {
+                results.add(task.join());
+            }
+
+            Map<String, List<File>> inputsByClass = new HashMap<>();
+            for (FileResult result : results) {
+                if (result.className != null) {
+                    inputsByClass.computeIfAbsent(result.className, name -> new ArrayList<>()).add(result.inputFile);
+                }
+            }
+            for (int i = 0; i < results.size(); ++i) {
+                FileResult result = results.get(i);
+                if (result.className != null && inputsByClass.get(result.className).size() > 1) {
+                    results.set(i, result.duplicate(inputsByClass.get(result.className)));
+                }
+            }
+
+            int failed = 0;
+            for (FileResult result : results) {
+                if (!result.success) {
+                    failed++;
+                }
+                result.print(out);
+            }
+
+            out.println("Compiled " + (inputFiles.size() - failed) + " of " + inputFiles.size() + " files.");
+            return failed == 0 ? 0 : 1;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private FileResult compile(File inputFile) {
+        // Stage messages are buffered per file so concurrent compilations don't interleave
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream log = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+
+        List<String> args = new ArrayList<>();
+        args.add(inputFile.getPath());
+        args.addAll(flags);
+        Map<String, String> config = Launcher.createConfig(args.toArray(new String[0]));
+
+        try {
+            JasminResult result = Launcher.compile(inputFile.toPath(), config, log);
+            if (result == null) {
+                return new FileResult(inputFile, false, null, null, buffer.toString(StandardCharsets.UTF_8), List.of());
+            }
+            // Only the first input to declare the class writes it, run() then fails all of them
+            String className = result.getClassName();
+            if (declaredClasses.putIfAbsent(className, inputFile) != null) {
+                return new FileResult(inputFile, false, className, null, "", result.getReports());
+            }
+            File classFile = result.compile(outputDir);
+            return new FileResult(inputFile, true, className, classFile, "", result.getReports());
+        } catch (RuntimeException e) {
+            log.println("Exception during compilation: " + e.getMessage());
+            return new FileResult(inputFile, false, null, null, buffer.toString(StandardCharsets.UTF_8), List.of());
+        }
+    }
+
+    private static class FileResult {
+        final File inputFile;
+        final boolean success;
+        final String className;
+        final File classFile;
+        final String log;
+        final List<Report> reports;
+
+        FileResult(File inputFile, boolean success, String className, File classFile, String log, List<Report> reports) {
+            this.inputFile = inputFile;
+            this.success = success;
+            this.className = className;
+            this.classFile = classFile;
+            this.log = log;
+            this.reports = reports;
+        }
+
+        // The class is declared by the given inputs too, whichever of them wrote it fails like the others
+        FileResult duplicate(List<File> inputs) {
+            if (classFile != null) {
+                classFile.delete();
+            }
+            String message = "Class '" + className + "' is declared by more than one input: " + inputs + "\n";
+            return new FileResult(inputFile, false, className, null, message, reports);
+        }
+
+        void print(PrintStream out) {
+            if (success) {
+                out.println("[OK] " + inputFile.getPath() + " -> " + classFile.getPath());
+            } else {
+                out.println("[FAILED] " + inputFile.getPath());
+                out.print(log);
+            }
+            for (Report report : reports) {
+                out.println("  " + report);
+            }
+        }
+    }
+}
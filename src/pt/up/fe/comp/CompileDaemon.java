@@ -0,0 +1,125 @@
+package pt.up.fe.comp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+
+/*
+ * Long-lived compiler process listening on a Unix-domain socket.
+ * Keeps the JVM, the parser and the OLLIR/Jasmin libraries warm between compilations.
+ *
+ * Each connection carries a single request line, using the same arguments as the Launcher:
+ *      <inputFile> [-o] [-a] [-c] [-v] [-r N] [-l] [-stats] [-tree] [-d outputDir]
+ * The daemon answers with the compiler messages and reports, followed by
+ *      class <path to the generated .class file>   (only on success)
+ *      status ok | status error
+ * and closes the connection. The request "shutdown" stops the daemon.
+ */
+public class CompileDaemon {
+    private final File socketFile;
+
+    public CompileDaemon(File socketFile) {
+        this.socketFile = socketFile;
+    }
+
+    public void serve() {
+        var address = UnixDomainSocketAddress.of(socketFile.toPath());
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            Files.deleteIfExists(socketFile.toPath());
+            server.bind(address);
+            System.out.println("Compile daemon listening on " + socketFile.getAbsolutePath());
+
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    running = handle(client);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Compile daemon: dropped request (" + e.getMessage() + ")");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start compile daemon on '" + socketFile + "'", e);
+        } finally {
+            socketFile.delete();
+        }
+    }
+
+    // Returns false if the daemon was asked to shut down
+    private boolean handle(SocketChannel client) throws IOException {
+        var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+        var out = new PrintStream(Channels.newOutputStream(client), true, StandardCharsets.UTF_8);
+
+        String request = reader.readLine();
+        if (request == null || request.isBlank()) {
+            out.println("status error");
+            return true;
+        }
+        if (request.trim().equals("shutdown")) {
+            out.println("status ok");
+            return false;
+        }
+
+        boolean success = compile(request.trim().split("\\s+"), out);
+        out.println(success ? "status ok" : "status error");
+        return true;
+    }
+
+    private boolean compile(String[] args, PrintStream out) {
+        File outputDir = null;
+        List<String> compilerArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; ++i) {
+            if (args[i].equals("-d") && i + 1 < args.length) {
+                outputDir = new File(args[++i]);
+            } else {
+                compilerArgs.add(args[i]);
+            }
+        }
+
+        if (compilerArgs.isEmpty() || compilerArgs.get(0).startsWith("-")) {
+            out.println("Expected a path to an existing input file as the first argument.");
+            return false;
+        }
+        File inputFile = new File(compilerArgs.get(0));
+        if (!inputFile.isFile()) {
+            out.println("Expected a path to an existing input file, got '" + compilerArgs.get(0) + "'.");
+            return false;
+        }
+
+        try {
+            Map<String, String> config = Launcher.createConfig(compilerArgs.toArray(new String[0]));
+            JasminResult result = Launcher.compile(inputFile.toPath(), config, out);
+            if (result == null) {
+                return false;
+            }
+            for (Report report : result.getReports()) {
+                out.println(report);
+            }
+
+            File classFile = outputDir == null ? result.compile() : result.compile(outputDir);
+            out.println("class " + classFile.getAbsolutePath());
+            return true;
+        } catch (RuntimeException e) {
+            out.println("Exception during compilation: " + e.getMessage());
+            return false;
+        } catch (StackOverflowError e) {
+            // Deeply nested code, the daemon keeps serving the other requests
+            out.println("Exception during compilation: the program is nested too deeply");
+            return false;
+        }
+    }
+}
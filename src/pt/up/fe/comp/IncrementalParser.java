@@ -0,0 +1,256 @@
+package pt.up.fe.comp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import pt.up.fe.comp.JmmGrammarConstants.LexicalState;
+import pt.up.fe.comp.JmmGrammarConstants.TokenType;
+import pt.up.fe.comp.ast.AstNode;
+import pt.up.fe.comp.ast.CompactJmmNode;
+import pt.up.fe.comp.ast.LineColAnnotator;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageTimer;
+
+/*
+ * Keeps the tree of a class up to date with the edits made to its code.
+ * An edit inside a single method only re-parses that method: its new subtree replaces the old one in the tree
+ * of the previous result, every other node stays the same object.
+ * Edits outside the methods, across methods, or that leave the method unparseable on its own, fall back to a full parse.
+ */
+public class IncrementalParser {
+    private final Map<String, String> config;
+    private final String inputSource;
+
+    private String code;
+    private JmmParserResult lastResult;
+    // Offsets of the first and past the last character of every method, in the order of the class.
+    // Null when the last parse can't be reused (syntax errors, or positions that don't match the code)
+    private List<int[]> methodSpans;
+    private boolean lastIncremental;
+
+    public IncrementalParser(Map<String, String> config) {
+        this(config, "input");
+    }
+
+    // inputSource is the name of the input in the parser errors
+    public IncrementalParser(Map<String, String> config, String inputSource) {
+        this.config = config;
+        this.inputSource = inputSource;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    // If the last result came from re-parsing a single method
+    public boolean wasIncremental() {
+        return lastIncremental;
+    }
+
+    public JmmParserResult parse(String code) {
+        this.code = code;
+        this.methodSpans = null;
+        this.lastIncremental = false;
+
+        CompilationStats stats = new CompilationStats();
+        StageTimer timer = stats.measure(CompilationStats.PARSE);
+        try {
+            JmmGrammarParser parser = new JmmGrammarParser(inputSource, code);
+            parser.Start();
+
+            if (parser.getSyntaxErrors().isEmpty()) {
+                this.methodSpans = findMethodSpans(parser.rootNode());
+            }
+            lastResult = SimpleParser.getJmmParserResult(config, parser, stats);
+        } catch (ParseException e) {
+            lastResult = JmmParserResult.newError(SimpleParser.syntaxError(e));
+        } catch (Exception e) {
+            lastResult = JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
+        } finally {
+            timer.stop();
+        }
+        return lastResult;
+    }
+
+    /**
+     * Applies the edit to the code of the previous result and returns the result for the new code.
+     * When only one method is re-parsed, the tree of the previous result is updated in place and shared by both.
+     *
+     * @param previous
+     *            the last result returned by this parser
+     * @param edit
+     */
+    public JmmParserResult reparse(JmmParserResult previous, TextEdit edit) {
+        if (previous != lastResult) {
+            throw new RuntimeException("reparse: the previous result wasn't the last one returned by this parser");
+        }
+
+        String newCode = edit.apply(code);
+        int method = methodSpans != null ? editedMethod(edit) : -1;
+        if (method == -1) {
+            return parse(newCode);
+        }
+
+        CompilationStats stats = new CompilationStats();
+        StageTimer timer = stats.measure(CompilationStats.PARSE);
+        try {
+            if (!reparseMethod(method, edit, newCode)) {
+                return parse(newCode);
+            }
+        } finally {
+            timer.stop();
+        }
+
+        this.code = newCode;
+        this.lastIncremental = true;
+        this.lastResult = new JmmParserResult(previous.getRootNode(), new ArrayList<>(), config, stats);
+        return lastResult;
+    }
+
+    // The method that strictly contains the edit, its first and last characters ('public' and '}') must not change
+    private int editedMethod(TextEdit edit) {
+        int start = edit.getOffset();
+        int end = start + edit.getLength();
+        for (int i = 0; i < methodSpans.size(); ++i) {
+            int[] span = methodSpans.get(i);
+            if (start > span[0] && end < span[1]) {
+                return i;
+            }
+            if (start < span[1]) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private boolean reparseMethod(int method, TextEdit edit, String newCode) {
+        int[] span = methodSpans.get(method);
+        int begin = span[0];
+        int newEnd = span[1] + edit.getDelta();
+
+        JmmNode oldNode = methodNodes(lastResult.getRootNode()).get(method);
+        int line = Integer.parseInt(oldNode.get("line"));
+        int col = Integer.parseInt(oldNode.get("col"));
+
+        JmmGrammarLexer lexer = new JmmGrammarLexer(inputSource, newCode.substring(begin, newEnd), LexicalState.DEFAULT, line, col);
+        JmmGrammarParser parser = new JmmGrammarParser(lexer);
+        try {
+            parser.MethodDeclaration();
+        } catch (ParseException e) {
+            return false;
+        }
+
+        // The method must be the whole text of the span, up to its '}', and nothing else
+        Node parsed = parser.rootNode();
+        int[] oldLast = lastPosition(code, begin, span[1], line, col);
+        int[] newLast = lastPosition(newCode, begin, newEnd, line, col);
+        if (!parser.getSyntaxErrors().isEmpty() || parsed == null || parser.getToken(1).getType() != TokenType.EOF
+                || parsed.getEndLine() != newLast[0] || parsed.getEndColumn() != newLast[1]) {
+            return false;
+        }
+
+        new LineColAnnotator().visit((JmmNode) parsed);
+        oldNode.replace(CompactJmmNode.copyOf((JmmNode) parsed));
+
+        span[1] = newEnd;
+        for (int i = method + 1; i < methodSpans.size(); ++i) {
+            methodSpans.get(i)[0] += edit.getDelta();
+            methodSpans.get(i)[1] += edit.getDelta();
+        }
+        shiftFollowingMethods(method, oldLast, newLast);
+        return true;
+    }
+
+    // Nodes after the method move down by the lines it gained, the ones on the line where it ended also move sideways
+    private void shiftFollowingMethods(int method, int[] oldLast, int[] newLast) {
+        int lineDelta = newLast[0] - oldLast[0];
+        int colDelta = newLast[1] - oldLast[1];
+        if (lineDelta == 0 && colDelta == 0) {
+            return;
+        }
+
+        List<JmmNode> methods = methodNodes(lastResult.getRootNode());
+        for (int i = method + 1; i < methods.size(); ++i) {
+            if (lineDelta == 0 && Integer.parseInt(methods.get(i).get("line")) > oldLast[0]) {
+                break;
+            }
+            shift(methods.get(i), oldLast[0], lineDelta, colDelta);
+        }
+    }
+
+    private static void shift(JmmNode node, int endLine, int lineDelta, int colDelta) {
+        int line = Integer.parseInt(node.get("line"));
+        if (line == endLine) {
+            node.put("col", Integer.toString(Integer.parseInt(node.get("col")) + colDelta));
+        }
+        node.put("line", Integer.toString(line + lineDelta));
+        for (JmmNode child : node.getChildren()) {
+            shift(child, endLine, lineDelta, colDelta);
+        }
+    }
+
+    // Line and column of the last character of code[begin, end), code[begin] being at line:col
+    private static int[] lastPosition(String code, int begin, int end, int line, int col) {
+        for (int i = begin; i < end - 1; ++i) {
+            char c = code.charAt(i);
+            if (c == '\n' || (c == '\r' && code.charAt(i + 1) != '\n')) {
+                line++;
+                col = 1;
+            } else if (c != '\r') {
+                col++;
+            }
+        }
+        return new int[] { line, col };
+    }
+
+    private List<int[]> findMethodSpans(Node root) {
+        List<Integer> lineStarts = lineStarts(code);
+        List<int[]> spans = new ArrayList<>();
+        for (JmmNode method : methodNodes((JmmNode) root)) {
+            Node node = (Node) method;
+            int begin = lineStarts.get(node.getBeginLine() - 1) + node.getBeginColumn() - 1;
+            int end = lineStarts.get(node.getEndLine() - 1) + node.getEndColumn();
+
+            // Columns count code points, the offsets are only right when the code has no surrogate pairs before them
+            if (end > code.length() || !code.startsWith("public", begin) || code.charAt(end - 1) != '}') {
+                return null;
+            }
+            spans.add(new int[] { begin, end });
+        }
+        return spans;
+    }
+
+    // Line terminators are "\n", "\r\n" or "\r", like in the lexer
+    private static List<Integer> lineStarts(String code) {
+        List<Integer> lineStarts = new ArrayList<>();
+        lineStarts.add(0);
+        for (int i = 0; i < code.length(); ++i) {
+            char c = code.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == code.length() || code.charAt(i + 1) != '\n'))) {
+                lineStarts.add(i + 1);
+            }
+        }
+        return lineStarts;
+    }
+
+    private static List<JmmNode> methodNodes(JmmNode root) {
+        List<JmmNode> methods = new ArrayList<>();
+        for (JmmNode child : root.getChildren()) {
+            if (!child.getKind().equals(AstNode.CLASS_DECLARATION.toString())) {
+                continue;
+            }
+            for (JmmNode member : child.getChildren()) {
+                if (member.getKind().equals(AstNode.MAIN_METHOD_DECLARATION.toString())
+                        || member.getKind().equals(AstNode.INSTANCE_METHOD_DECLARATION.toString())) {
+                    methods.add(member);
+                }
+            }
+        }
+        return methods;
+    }
+}
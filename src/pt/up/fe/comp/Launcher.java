@@ -1,13 +1,21 @@
 package pt.up.fe.comp;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import pt.up.fe.comp.analysis.JmmAnalyser;
+import pt.up.fe.comp.jasmin.OllirToClassFile;
 import pt.up.fe.comp.jasmin.OllirToJasmin;
+import pt.up.fe.comp.jmm.cache.CompilationCache;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
@@ -16,7 +24,6 @@ import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.ollir.JmmOptimizer;
-import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsLogs;
 import pt.up.fe.specs.util.SpecsSystem;
 
@@ -31,58 +38,159 @@ public class Launcher {
         if (args.length < 1) {
             throw new RuntimeException("Expected at least one argument, a path to an existing input file.");
         }
+
+        // Daemon mode: keep a warm JVM listening for compile requests
+        if (args[0].equals("-daemon")) {
+            if (args.length < 2) {
+                throw new RuntimeException("Expected a socket path after -daemon.");
+            }
+            new CompileDaemon(new File(args[1])).serve();
+            return;
+        }
+
+        // Batch mode: compile every given file / folder concurrently
+        if (args[0].equals("-batch")) {
+            int exitCode = BatchCompiler.fromArgs(args, 1).run(System.out);
+            System.exit(exitCode);
+        }
+
         File inputFile = new File(args[0]);
         if (!inputFile.isFile()) {
             throw new RuntimeException("Expected a path to an existing input file, got '" + args[0] + "'.");
         }
-        String input = SpecsIo.read(inputFile);
+        Map<String, String> config = createConfig(args);
+
+        JasminResult result = compile(inputFile.toPath(), config, System.out);
+        if (result == null) {
+            return;
+        }
+
+        result.compile();
+        result.run();
+    }
+
+    // The flags createConfig reads, with the number of values that follow each one. BatchCompiler passes these on to
+    // every file and takes the other arguments as inputs
+    public static final Map<String, Integer> COMPILER_FLAGS = Map.of("-o", 0, "-a", 0, "-c", 0, "-v", 0, "-l", 0,
+            "-stats", 0, "-tree", 0, "-parallel", 0, "-r", 1, "-cache", 1);
 
-        
-        // Create config
+    // Builds the compiler config from the command line arguments, args[0] being the input file
+    public static Map<String, String> createConfig(String[] args) {
         Map<String, String> config = new HashMap<>();
         config.put("inputFile", args[0]);
         config.put("optimize", "false");
         config.put("optimizeAll", "false");
         config.put("registerAllocation", "-1");
+        config.put("registerAllocator", "coloring");
         config.put("debug", "false");
+        config.put("classFile", "false");
+        config.put("stats", "false");
+        config.put("printTree", "false");
+        config.put("parallelAnalysis", "false");
 
-        for(int i = 1; i < args.length; ++i){
+        // Each flag is followed by the number of values COMPILER_FLAGS gives it
+        for(int i = 1; i < args.length; i += 1 + COMPILER_FLAGS.getOrDefault(args[i], 0)){
             if(args[i].equals("-o")){
                 config.put("optimize", "true");
             }
             if(args[i].equals("-a")){
                 config.put("optimizeAll", "true");
             }
+            if(args[i].equals("-c")){
+                config.put("classFile", "true");
+            }
+            if(args[i].equals("-stats")){
+                config.put("stats", "true");
+            }
+            if(args[i].equals("-tree")){
+                config.put("printTree", "true");
+            }
+            if(args[i].equals("-parallel")){
+                config.put("parallelAnalysis", "true");
+            }
+            if(args[i].equals("-v")){
+                config.put("debug", "true");
+            }
+            if(args[i].equals("-l")){
+                config.put("registerAllocator", "linear");
+            }
             if(args[i].equals("-r")){
-                i++;
-                config.put("registerAllocation", args[i]);
+                config.put("registerAllocation", args[i + 1]);
+            }
+            if(args[i].equals("-cache")){
+                config.put(CompilationCache.CACHE_DIR, args[i + 1]);
             }
         }
+        return config;
+    }
 
-        // Instantiate JmmParser
-        SimpleParser parser = new SimpleParser();
+    // Runs every stage of the compiler over the given code
+    // Returns null if the program could not be compiled, the reason is printed to out
+    public static JasminResult compile(String input, Map<String, String> config, PrintStream out) {
+        CompilationCache cache = CompilationCache.of(config);
+        String key = cache == null ? null : cache.key(input, config, stages(config));
+        return compile(() -> new SimpleParser().parse(input, config), config, out, cache, key);
+    }
 
-        // Parse stage
-        JmmParserResult parserResult = parser.parse(input,  config);
+    // Same as compile(String, ...), the file is parsed without being read into a String first
+    public static JasminResult compile(Path inputFile, Map<String, String> config, PrintStream out) {
+        CompilationCache cache = CompilationCache.of(config);
+        String key = null;
+        if (cache != null) {
+            try {
+                key = cache.key(Files.readAllBytes(inputFile), config, stages(config));
+            } catch (IOException e) {
+                // The parser reports it
+                cache = null;
+            }
+        }
+        return compile(() -> new SimpleParser().parse(inputFile, config), config, out, cache, key);
+    }
 
-        // Check if there are parsing errors
-        parserResult.getReports().stream()
-            .filter(report -> report.getType() == ReportType.ERROR)
-            .findFirst()
-            .ifPresent(report -> {
-                if (report.getException().isPresent()) {
-                    System.out.println(report.getMessage());
-                }
-            });
+    // The classes that implement the stages, for the key of the cache
+    private static Class<?>[] stages(Map<String, String> config) {
+        return new Class<?>[] { SimpleParser.class, JmmAnalyser.class, JmmOptimizer.class, backend(config).getClass() };
+    }
+
+    private static JasminBackend backend(Map<String, String> config) {
+        return Boolean.parseBoolean(config.get("classFile")) ? new OllirToClassFile() : new OllirToJasmin();
+    }
+
+    private static JasminResult compile(Supplier<JmmParserResult> parser, Map<String, String> config, PrintStream out,
+            CompilationCache cache, String key) {
+        // Starts from the deepest stage that is cached, the tree is only there if the code is parsed
+        if (cache != null && !Boolean.parseBoolean(config.get("printTree"))) {
+            JasminResult jasminResult = cache.getJasminResult(key, config);
+            if (jasminResult != null) {
+                return printStats(jasminResult, config, out);
+            }
+
+            OllirResult ollirResult = cache.getOllirResult(key, config);
+            if (ollirResult != null) {
+                return backend(ollirResult, config, out, cache, key);
+            }
+        }
+
+        JmmParserResult parserResult = parser.get();
+
+        // Check if there are parsing errors, every one of them is reported
+        var parserErrors = parserResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR).collect(Collectors.toList());
+        for (var report : parserErrors) {
+            if (report.getException().isPresent()) {
+                out.println(report.getMessage());
+            }
+        }
 
         JmmNode rootNode = parserResult.getRootNode();
-        if (rootNode != null) {
-            System.out.println(rootNode.toTree());
-        } else {
-            System.out.println("Program finished due to parser error.");
-            return;
+        if (rootNode == null || !parserErrors.isEmpty()) {
+            out.println("Program finished due to parser error.");
+            return null;
+        }
+        if (Boolean.parseBoolean(config.get("printTree"))) {
+            out.println(rootNode.toTree());
         }
-        
+
         // Analysis Stage
         JmmAnalyser analyser = new JmmAnalyser();
         JmmSemanticsResult analysisResult = analyser.semanticAnalysis(parserResult);
@@ -93,13 +201,13 @@ public class Launcher {
         if(analysisErrors.size() > 0){
             analysisErrors.stream().findFirst().ifPresent(report -> {
                 if (!report.getMessage().isEmpty()) {
-                    System.out.println("Error during semantic analysis at line " + report.getLine()
+                    out.println("Error during semantic analysis at line " + report.getLine()
                             + " and column " + report.getColumn() + ".");
-                    System.out.println(report.getMessage());
+                    out.println(report.getMessage());
                 }
             });
-            System.out.println("Program finished due to semantic error.");
-            return;
+            out.println("Program finished due to semantic error.");
+            return null;
         }
 
         // Optimizer
@@ -111,26 +219,44 @@ public class Launcher {
         // AST to OLLIR
         OllirResult ollirResult = optimizer.toOllir(analysisResult);
         if(ollirResult == null){
-            System.out.println("Program finished due to error in conversion to ollir.");
-            return;
+            out.println("Program finished due to error in conversion to ollir.");
+            return null;
+        }
+
+        if (cache != null) {
+            cache.putOllirResult(key, ollirResult);
         }
 
-        // OLLIR optimization
+        return backend(ollirResult, config, out, cache, key);
+    }
+
+    // OLLIR optimization and the backend
+    private static JasminResult backend(OllirResult ollirResult, Map<String, String> config, PrintStream out,
+            CompilationCache cache, String key) {
+        JmmOptimization optimizer = new JmmOptimizer();
         ollirResult = optimizer.optimize(ollirResult);
         if(!ollirResult.getReports().isEmpty()){
-            System.out.println("Program finished due to error ollir optimization.");
-            System.out.println(ollirResult.getReports().get(0).getMessage());
-            return;
+            out.println("Program finished due to error ollir optimization.");
+            out.println(ollirResult.getReports().get(0).getMessage());
+            return null;
         }
-    
+
         TestUtils.noErrors(ollirResult);
         ollirResult.getOllirClass().buildCFGs();
 
-        // OLLIR to Jasmin
-        OllirToJasmin converter = new OllirToJasmin();
-        JasminResult result = converter.toJasmin(ollirResult);
+        // OLLIR to Jasmin, or straight to the class file
+        JasminResult jasminResult = backend(config).toJasmin(ollirResult);
+        if (cache != null) {
+            cache.putJasminResult(key, jasminResult);
+        }
 
-        result.compile();
-        result.run();
+        return printStats(jasminResult, config, out);
+    }
+
+    private static JasminResult printStats(JasminResult jasminResult, Map<String, String> config, PrintStream out) {
+        if (Boolean.parseBoolean(config.get("stats"))) {
+            out.println(jasminResult.getStats().toJson());
+        }
+        return jasminResult;
     }
 }
@@ -1,9 +1,16 @@
 package pt.up.fe.comp;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import pt.up.fe.comp.ParseException;
+import pt.up.fe.comp.ast.CompactJmmNode;
 import pt.up.fe.comp.ast.LineColAnnotator;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParser;
@@ -11,7 +18,8 @@ import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
-import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageTimer;
 import pt.up.fe.specs.util.SpecsSystem;
 
 
@@ -29,42 +37,91 @@ import pt.up.fe.specs.util.SpecsSystem;
  */
 
 public class SimpleParser implements JmmParser {
+    private static final int READ_BUFFER_SIZE = 8192;
 
     @Override
     public JmmParserResult parse(String jmmCode, Map<String, String> config) {
+        return parseCode(jmmCode, "input", config);
+    }
 
+    // The lexer copies its input into a String of its own, so the file is read in one go and decoded once, with bad
+    // UTF-8 replaced instead of failing
+    public JmmParserResult parse(Path path, Map<String, String> config) {
+        String jmmCode;
         try {
+            jmmCode = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Could not read " + path, e));
+        }
+        return parseCode(jmmCode, path.toString(), config);
+    }
 
-            JmmGrammarParser parser = new JmmGrammarParser(SpecsIo.toInputStream(jmmCode));
+    public JmmParserResult parse(Reader reader, Map<String, String> config) {
+        StringBuilder jmmCode = new StringBuilder();
+        char[] buffer = new char[READ_BUFFER_SIZE];
+        try {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                jmmCode.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Could not read the input", e));
+        }
+        return parseCode(jmmCode, "input", config);
+    }
+
+    // inputSource is the name of the input in the parser errors
+    private JmmParserResult parseCode(CharSequence jmmCode, String inputSource, Map<String, String> config) {
+        CompilationStats stats = new CompilationStats();
+
+        StageTimer timer = stats.measure(CompilationStats.PARSE);
+        try {
+
+            JmmGrammarParser parser = new JmmGrammarParser(inputSource, jmmCode);
             parser.Start();
 
-            return getJmmParserResult(config, parser);
+            return getJmmParserResult(config, parser, stats);
 
         } catch (ParseException e) {
-            Token token = e.getToken();
-            String msg = "Exception during parsing: " + token + " at line " + token.getBeginLine() + " and column " + token.getBeginColumn();
-            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, token.getBeginLine(), token.getBeginColumn(), msg, e));
+            return JmmParserResult.newError(syntaxError(e));
         } catch (Exception e) {
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
+        } finally {
+            timer.stop();
         }
     }
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        CompilationStats stats = new CompilationStats();
+
+        StageTimer timer = stats.measure(CompilationStats.PARSE);
         try {
-            JmmGrammarParser parser = new JmmGrammarParser(SpecsIo.toInputStream(jmmCode));
+            JmmGrammarParser parser = new JmmGrammarParser(jmmCode);
             SpecsSystem.invoke(parser, startingRule);
 
-            return getJmmParserResult(config, parser);
+            return getJmmParserResult(config, parser, stats);
 
         } catch (Exception e) {
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
+        } finally {
+            timer.stop();
         }
     }
 
-    private JmmParserResult getJmmParserResult(Map<String, String> config, JmmGrammarParser parser) {
+    static JmmParserResult getJmmParserResult(Map<String, String> config, JmmGrammarParser parser, CompilationStats stats) {
+        // The parser recovers from errors inside methods, the tree is returned without the parts that failed
+        List<Report> reports = new ArrayList<>();
+        for (ParseException e : parser.getSyntaxErrors()) {
+            reports.add(syntaxError(e));
+        }
+
         Node root = parser.rootNode();
-        root.dump("");
+
+        // Nothing is left when the starting rule itself failed
+        if (root == null && !reports.isEmpty()) {
+            return new JmmParserResult(null, reports, config, stats);
+        }
 
         if (!(root instanceof JmmNode)) {
             return JmmParserResult.newError(new Report(ReportType.WARNING, Stage.SYNTATIC, -1,
@@ -74,6 +131,13 @@ public class SimpleParser implements JmmParser {
         LineColAnnotator annotator = new LineColAnnotator();
         annotator.visit((JmmNode) root);
 
-        return new JmmParserResult((JmmNode) root, Collections.emptyList(), config);
+        // The generated nodes keep the tokens and the whole input alive, the result has a compact copy
+        return new JmmParserResult(CompactJmmNode.copyOf((JmmNode) root), reports, config, stats);
+    }
+
+    static Report syntaxError(ParseException e) {
+        Token token = e.getToken();
+        String msg = "Exception during parsing: " + token + " at line " + token.getBeginLine() + " and column " + token.getBeginColumn();
+        return Report.newError(Stage.SYNTATIC, token.getBeginLine(), token.getBeginColumn(), msg, e);
     }
 }
@@ -0,0 +1,57 @@
+package pt.up.fe.comp;
+
+/*
+ * Replaces length characters of the code, starting at offset, with the replacement.
+ * Offsets count characters of the code as it was given, line terminators included.
+ */
+public class TextEdit {
+    private final int offset;
+    private final int length;
+    private final String replacement;
+
+    public TextEdit(int offset, int length, String replacement) {
+        if (offset < 0 || length < 0) {
+            throw new RuntimeException("TextEdit: negative offset or length");
+        }
+        this.offset = offset;
+        this.length = length;
+        this.replacement = replacement;
+    }
+
+    public static TextEdit insert(int offset, String text) {
+        return new TextEdit(offset, 0, text);
+    }
+
+    public static TextEdit delete(int offset, int length) {
+        return new TextEdit(offset, length, "");
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String getReplacement() {
+        return replacement;
+    }
+
+    // How much the code after the edit moves
+    public int getDelta() {
+        return replacement.length() - length;
+    }
+
+    public String apply(String code) {
+        if (offset + length > code.length()) {
+            throw new RuntimeException("apply: edit ends at " + (offset + length) + ", past the end of the code (" + code.length() + ")");
+        }
+        return code.substring(0, offset) + replacement + code.substring(offset + length);
+    }
+
+    @Override
+    public String toString() {
+        return "TextEdit(" + offset + ", " + length + ", \"" + replacement + "\")";
+    }
+}
@@ -2,31 +2,53 @@ package pt.up.fe.comp.analysis;
 
 import pt.up.fe.comp.analysis.stages.ImportCheckVisitor;
 import pt.up.fe.comp.analysis.stages.TypeCheckVisitor;
+import pt.up.fe.comp.analysis.table.ImmutableSymbolTable;
 import pt.up.fe.comp.analysis.table.SymbolTableBuilder;
 import pt.up.fe.comp.analysis.table.SymbolTableCollector;
+import pt.up.fe.comp.ast.FusedJmmVisitor;
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.parser.JmmParserResult; 
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageTimer;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
  
 public class JmmAnalyser implements JmmAnalysis { 
     @Override 
     public JmmSemanticsResult semanticAnalysis(JmmParserResult parserResult) {         
-        SymbolTableBuilder symbolTable = new SymbolTableBuilder();
-        SymbolTableCollector collector = new SymbolTableCollector();
-        collector.visit(parserResult.getRootNode(), symbolTable);
+        StageTimer timer = parserResult.getStats().measure(CompilationStats.ANALYSIS);
+        try {
+            SymbolTableBuilder builder = new SymbolTableBuilder();
+            SymbolTableCollector collector = new SymbolTableCollector();
+            collector.visit(parserResult.getRootNode(), builder);
 
-        List<Report> reports = collector.getReports();
+            List<Report> reports = collector.getReports();
 
-        TypeCheckVisitor analysisVisitor = new TypeCheckVisitor(symbolTable);
-        analysisVisitor.visit(parserResult.getRootNode(), reports);
+            // From here on the table is only read, possibly by several threads
+            SymbolTable symbolTable = ImmutableSymbolTable.copyOf(builder);
+            Map<String, String> config = parserResult.getConfig();
+            boolean parallel = config != null && Boolean.parseBoolean(config.getOrDefault("parallelAnalysis", "false"));
+            MethodChecks checks = new MethodChecks(parallel);
 
-        ImportCheckVisitor importVisitor = new ImportCheckVisitor(symbolTable);
-        importVisitor.visit(parserResult.getRootNode(), reports);
+            // Both checks only read the tree, they share one walk. Their reports are kept apart to keep the order
+            List<Report> typeReports = new ArrayList<>();
+            List<Report> importReports = new ArrayList<>();
+            new FusedJmmVisitor()
+                    .addPass(new TypeCheckVisitor(symbolTable, timer, checks), typeReports)
+                    .addPass(new ImportCheckVisitor(symbolTable, checks), importReports)
+                    .visit(parserResult.getRootNode());
+            checks.join();
+            reports.addAll(typeReports);
+            reports.addAll(importReports);
 
-        return new JmmSemanticsResult(parserResult, symbolTable, reports); 
+            return new JmmSemanticsResult(parserResult, symbolTable, reports); 
+        } finally {
+            timer.stop();
+        }
     } 
 }
\ No newline at end of file
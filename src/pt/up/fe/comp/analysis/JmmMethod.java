@@ -2,6 +2,8 @@ package pt.up.fe.comp.analysis;
 
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
@@ -12,12 +14,14 @@ public class JmmMethod {
     Type returnType;
     List<Symbol> parameters;
     Map<Symbol, Boolean> localVariables;
+    Set<String> names; // Of the parameters and local variables
 
     public JmmMethod(String signature, Type returnType){
         this.signature = signature;
         this.returnType = returnType;
         this.parameters = new ArrayList<>();
         this.localVariables = new HashMap<>();
+        this.names = new HashSet<>();
     }
 
     public String getSignature(){
@@ -30,10 +34,17 @@ public class JmmMethod {
 
     public void addLocalVariable(Symbol symbol){
         this.localVariables.put(symbol, false);
+        this.names.add(symbol.getName());
     }
     
     public void addParameter(Symbol symbol){
         this.parameters.add(symbol);
+        this.names.add(symbol.getName());
+    }
+
+    // If there's a parameter or a local variable with the given name
+    public boolean isDeclared(String name){
+        return this.names.contains(name);
     }
 
     public List<Symbol> getLocalVariables(){
@@ -0,0 +1,83 @@
+package pt.up.fe.comp.analysis;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+/*
+ * Runs the checks of the methods of a class, either right away or as tasks in a ForkJoinPool (the pool of the current
+ * task, or the common pool).
+ * A task writes to a list of its own, and join() puts it back in the list of reports of the pass, where the check was
+ * started. The reports are in the same order whether the methods are checked in parallel or not.
+ * The checks can only read the symbol table and the tree, and each check must only use its own method subtree.
+ */
+public class MethodChecks {
+    private final boolean parallel;
+    private final List<PendingCheck> pending;
+
+    public MethodChecks(boolean parallel) {
+        this.parallel = parallel;
+        this.pending = new ArrayList<>();
+    }
+
+    public static MethodChecks sequential() {
+        return new MethodChecks(false);
+    }
+
+    public void check(List<Report> reports, Consumer<List<Report>> check) {
+        if (!parallel) {
+            check.accept(reports);
+            return;
+        }
+
+        ForkJoinTask<List<Report>> task = ForkJoinTask.adapt(() -> {
+            List<Report> methodReports = new ArrayList<>();
+            check.accept(methodReports);
+            return methodReports;
+        });
+        task.fork();
+        pending.add(new PendingCheck(reports, reports.size(), task));
+    }
+
+    // Waits for the checks that were started and puts their reports in place
+    public void join() {
+        // The checks of each list were started in order, at increasing positions
+        Map<List<Report>, List<PendingCheck>> checksByList = new IdentityHashMap<>();
+        for (PendingCheck check : pending) {
+            checksByList.computeIfAbsent(check.reports, reports -> new ArrayList<>()).add(check);
+        }
+        pending.clear();
+
+        for (var entry : checksByList.entrySet()) {
+            List<Report> reports = entry.getKey();
+            List<Report> merged = new ArrayList<>();
+            int next = 0;
+            for (PendingCheck check : entry.getValue()) {
+                merged.addAll(reports.subList(next, check.position));
+                merged.addAll(check.task.join());
+                next = check.position;
+            }
+            merged.addAll(reports.subList(next, reports.size()));
+
+            reports.clear();
+            reports.addAll(merged);
+        }
+    }
+
+    private static class PendingCheck {
+        private final List<Report> reports;
+        private final int position;
+        private final ForkJoinTask<List<Report>> task;
+
+        private PendingCheck(List<Report> reports, int position, ForkJoinTask<List<Report>> task) {
+            this.reports = reports;
+            this.position = position;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp.analysis;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+
+/*
+ * The names a method can see (locals, parameters and fields) hashed by name, built once per method instead of
+ * scanning the lists of the symbol table on every identifier.
+ * When two symbols of the same kind have the same name, the first one in the symbol table is the one found, as with a
+ * scan. Locals also have a slot, used to track which ones have been initialized.
+ */
+public class MethodScope {
+    private final Map<String, Integer> localSlots;
+    private final Symbol[] locals;
+    private final Map<String, Integer> parameterIndexes;
+    private final Symbol[] parameters;
+    private final Map<String, Symbol> fields;
+    private final BitSet initialized;
+
+    public MethodScope(SymbolTable symbolTable, String methodSignature) {
+        List<Symbol> localList = symbolTable.getLocalVariables(methodSignature);
+        this.localSlots = new HashMap<>();
+        this.locals = new Symbol[localList.size()];
+        for (Symbol local : localList) {
+            if (!localSlots.containsKey(local.getName())) {
+                int slot = localSlots.size();
+                localSlots.put(local.getName(), slot);
+                locals[slot] = local;
+            }
+        }
+
+        List<Symbol> parameterList = symbolTable.getParameters(methodSignature);
+        this.parameterIndexes = new HashMap<>();
+        this.parameters = parameterList.toArray(new Symbol[0]);
+        for (int i = 0; i < parameters.length; ++i) {
+            parameterIndexes.putIfAbsent(parameters[i].getName(), i);
+        }
+
+        this.fields = new HashMap<>();
+        for (Symbol field : symbolTable.getFields()) {
+            fields.putIfAbsent(field.getName(), field);
+        }
+
+        this.initialized = new BitSet(localSlots.size());
+    }
+
+    public Symbol getLocal(String name) {
+        Integer slot = localSlots.get(name);
+        return slot == null ? null : locals[slot];
+    }
+
+    public Symbol getParameter(String name) {
+        Integer index = parameterIndexes.get(name);
+        return index == null ? null : parameters[index];
+    }
+
+    // Position of the parameter in the signature, -1 if there's no parameter with the name
+    public int getParameterIndex(String name) {
+        return parameterIndexes.getOrDefault(name, -1);
+    }
+
+    public Symbol getField(String name) {
+        return fields.get(name);
+    }
+
+    // Local, parameter or field, in this order
+    public Symbol getSymbol(String name) {
+        Symbol symbol = getLocalOrParameter(name);
+        return symbol != null ? symbol : getField(name);
+    }
+
+    public Symbol getLocalOrParameter(String name) {
+        Symbol symbol = getLocal(name);
+        return symbol != null ? symbol : getParameter(name);
+    }
+
+    // False for names that aren't locals, only locals are tracked
+    public boolean isInitialized(String name) {
+        Integer slot = localSlots.get(name);
+        return slot != null && initialized.get(slot);
+    }
+
+    // Does nothing for names that aren't locals
+    public void setInitialized(String name) {
+        Integer slot = localSlots.get(name);
+        if (slot != null) {
+            initialized.set(slot);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package pt.up.fe.comp.analysis.stages;
+import pt.up.fe.comp.analysis.MethodChecks;
 import pt.up.fe.comp.ast.AstNode;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
+import pt.up.fe.comp.ast.FusedJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
@@ -10,12 +12,19 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Optional;
 
-public class ImportCheckVisitor extends AJmmVisitor<List<Report>, Boolean> {
+public class ImportCheckVisitor extends ArrayJmmVisitor<List<Report>, Boolean> {
     SymbolTable symbolTable;
     List<String> imports; // List of imported classes names (not fully qualified name)
+    MethodChecks checks;
 
-    public ImportCheckVisitor(SymbolTable symbolTable) { 
+    public ImportCheckVisitor(SymbolTable symbolTable) {
+        this(symbolTable, MethodChecks.sequential());
+    }
+
+    // The methods are checked by the given checks, the reports are only complete after checks.join()
+    public ImportCheckVisitor(SymbolTable symbolTable, MethodChecks checks) {
         this.symbolTable = symbolTable;
+        this.checks = checks;
         this.imports = new ArrayList<>();
         for(String name : symbolTable.getImports()){
             String[] splitImport = name.split("\\.");
@@ -30,10 +39,15 @@ public class ImportCheckVisitor extends AJmmVisitor<List<Report>, Boolean> {
         setDefaultVisit(this::defaultVisit);
     }
 
+    // Used on its own, the visitor walks the tree as the only pass of a FusedJmmVisitor
+    @Override
+    public Boolean visit(JmmNode node, List<Report> reports){
+        new FusedJmmVisitor().addPass(this, reports).visit(node);
+        return true;
+    }
+
+    // Goes into the children, the walk is done by the FusedJmmVisitor this visitor is a pass of
     private Boolean defaultVisit(JmmNode node, List<Report> reports){
-        for(var child : node.getChildren()){
-            visit(child, reports);
-        }
         return true;
     }
 
@@ -46,7 +60,7 @@ public class ImportCheckVisitor extends AJmmVisitor<List<Report>, Boolean> {
                 "Super class " + name + " has not been imported."));
             }
         });
-        return defaultVisit(node, reports);
+        return true;
     }
 
     private Boolean visitVarDeclaration(JmmNode node, List<Report> reports){
@@ -67,15 +81,19 @@ public class ImportCheckVisitor extends AJmmVisitor<List<Report>, Boolean> {
     }
 
     private Boolean visitMainMethodDeclaration(JmmNode node, List<Report> reports){
-        MethodImportCheckVisitor visitor = new MethodImportCheckVisitor(symbolTable, "main", imports);
-        visitor.visit(node, reports);
-        return true;
+        checkMethod(node, "main", reports);
+        return false;
     }
 
     private Boolean visitInstanceMethodDeclaration(JmmNode node, List<Report> reports){
-        String methodSignature = node.get("name");
-        MethodImportCheckVisitor visitor = new MethodImportCheckVisitor(symbolTable, methodSignature, imports);
-        visitor.visit(node, reports);
-        return true;
+        checkMethod(node, node.get("name"), reports);
+        return false;
+    }
+
+    private void checkMethod(JmmNode node, String methodSignature, List<Report> reports){
+        checks.check(reports, methodReports -> {
+            MethodImportCheckVisitor visitor = new MethodImportCheckVisitor(symbolTable, methodSignature, imports);
+            visitor.visit(node, methodReports);
+        });
     }
 }
@@ -1,23 +1,25 @@
 package pt.up.fe.comp.analysis.stages;
+import pt.up.fe.comp.analysis.MethodScope;
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 import java.util.List;
 
-public class MethodImportCheckVisitor extends AJmmVisitor<List<Report>, Boolean> {
+public class MethodImportCheckVisitor extends ArrayJmmVisitor<List<Report>, Boolean> {
     String methodSignature;
     SymbolTable symbolTable;
     List<String> imports;
+    MethodScope scope;
 
     public MethodImportCheckVisitor(SymbolTable symbolTable, String methodSignature, List<String> imports) {
         this.symbolTable = symbolTable;
         this.methodSignature = methodSignature;
         this.imports = imports;
+        this.scope = new MethodScope(symbolTable, methodSignature);
         addVisit(AstNode.PARAMETER, this::visitDeclaration);
         addVisit(AstNode.VAR_DECLARATION, this::visitDeclaration);
         addVisit(AstNode.CLASS_METHOD, this::visitClassMethod);
@@ -37,20 +39,8 @@ public class MethodImportCheckVisitor extends AJmmVisitor<List<Report>, Boolean>
         if(!(imports.contains(name) || name.equals("this")
                 || name.equals(symbolTable.getClassName()) || name.equals(symbolTable.getSuper()))){
             // Not static call, name refers to a variable
-            for(Symbol s : symbolTable.getLocalVariables(methodSignature)){
-                if(s.getName().equals(name)){
-                    return true;
-                }
-            }
-            for(Symbol s : symbolTable.getParameters(methodSignature)){
-                if(s.getName().equals(name)){
-                    return true;
-                }
-            }
-            for(Symbol s : symbolTable.getFields()){
-                if(s.getName().equals(name)){
-                    return true;
-                }
+            if(scope.getSymbol(name) != null){
+                return true;
             }
             reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC,
                 Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")),
@@ -1,38 +1,29 @@
 package pt.up.fe.comp.analysis.stages;
 import pt.up.fe.comp.analysis.AnalysisUtils;
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.analysis.JmmType;
+import pt.up.fe.comp.analysis.MethodScope;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 
-public class MethodTypeCheckVisitor extends AJmmVisitor<List<Report>, JmmType> {
+public class MethodTypeCheckVisitor extends ArrayJmmVisitor<List<Report>, JmmType> {
     String methodSignature;
     SymbolTable symbolTable;
-    Map<Symbol, Boolean> localVariables; // Boolean denotes if the variable has been initialized or not
-    List<Symbol> parametersAndFields; // Field initialization check is not implemented because it depends on the method call order
+    MethodScope scope; // Also tracks which locals have been initialized. Field initialization check is not implemented because it depends on the method call order
 
     public MethodTypeCheckVisitor(SymbolTable symbolTable, String methodSignature) {
         this.symbolTable = symbolTable;
         this.methodSignature = methodSignature;
-
-        localVariables = new HashMap<>();
-        for(var symbol : symbolTable.getLocalVariables(methodSignature)){
-            localVariables.put(symbol, false);
-        }
-        parametersAndFields = new ArrayList<>();
-        parametersAndFields.addAll(symbolTable.getParameters(methodSignature));
-        parametersAndFields.addAll(symbolTable.getFields());
+        this.scope = new MethodScope(symbolTable, methodSignature);
 
         addVisit(AstNode.INT_LITERAL, this::visitIntLiteral);
         addVisit(AstNode.ID, this::visitId);
@@ -65,41 +56,30 @@ public class MethodTypeCheckVisitor extends AJmmVisitor<List<Report>, JmmType> {
     }
 
     private Symbol getSymbolByName(String name){
-        for(Symbol s : this.localVariables.keySet()){
-            if(name.equals(s.getName())){
-                return s;
-            }
+        Symbol symbol = scope.getLocal(name);
+        if(symbol != null){
+            return symbol;
         }
         return getParameterOrField(name);
     }
 
     private Symbol getParameterOrField(String name) {
-        if(methodSignature.equals("main")){
+        Symbol symbol = scope.getParameter(name);
+        if(symbol == null && !methodSignature.equals("main")){
             // Can't use fields in static context
-            for(Symbol s : symbolTable.getParameters("main")){
-                if(name.equals(s.getName())){
-                    return s;
-                }
-            }
-        } else {
-            for(Symbol s : this.parametersAndFields){
-                if(name.equals(s.getName())){
-                    return s;
-                }
-            }
+            symbol = scope.getField(name);
         }
-        return null;
+        return symbol;
     }
 
     // Same as getSymbolByName(String) but adds error reports if variable was not initialized
     private Symbol getSymbolByName(String name, JmmNode node, List<Report> reports){
-        for(Symbol s : this.localVariables.keySet()){
-            if(name.equals(s.getName())){
-                if(this.localVariables.get(s) == false){ // Not initialized
-                    reports.add(createSemanticError(node, "Variable " + name + " is not initialized"));
-                }
-                return s;
+        Symbol symbol = scope.getLocal(name);
+        if(symbol != null){
+            if(!scope.isInitialized(name)){
+                reports.add(createSemanticError(node, "Variable " + name + " is not initialized"));
             }
+            return symbol;
         }
 
         return getParameterOrField(name);
@@ -257,7 +237,7 @@ public class MethodTypeCheckVisitor extends AJmmVisitor<List<Report>, JmmType> {
             reports.add(createSemanticError(node, "Invalid assignment type for symbol " + symbol.getName()));
         }
 
-        this.localVariables.computeIfPresent(symbol, (k, v) -> true); // Set variable as initialized in hashmap
+        scope.setInitialized(symbol.getName()); // Only locals are tracked
         return new JmmType(null, false);
     }
 
@@ -281,7 +261,7 @@ public class MethodTypeCheckVisitor extends AJmmVisitor<List<Report>, JmmType> {
         if(!assignType.equals(new JmmType(symbol.getType().getName(), false))){
             reports.add(createSemanticError(node, "Invalid type for array assignment"));
         }
-        this.localVariables.computeIfPresent(symbol, (k, v) -> true);
+        scope.setInitialized(symbol.getName());
         return new JmmType(null, false);
     }
 
@@ -1,38 +1,70 @@
 package pt.up.fe.comp.analysis.stages;
+import pt.up.fe.comp.analysis.MethodChecks;
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
+import pt.up.fe.comp.ast.FusedJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.stats.StageTimer;
 import java.util.List;
 
-public class TypeCheckVisitor extends AJmmVisitor<List<Report>, Boolean> {
+public class TypeCheckVisitor extends ArrayJmmVisitor<List<Report>, Boolean> {
     SymbolTable symbolTable;
+    StageTimer timer;
+    MethodChecks checks;
 
     public TypeCheckVisitor(SymbolTable symbolTable) {
+        this(symbolTable, StageTimer.disabled());
+    }
+
+    // Every method is measured inside the given stage
+    public TypeCheckVisitor(SymbolTable symbolTable, StageTimer timer) {
+        this(symbolTable, timer, MethodChecks.sequential());
+    }
+
+    // The methods are checked by the given checks, the reports are only complete after checks.join()
+    public TypeCheckVisitor(SymbolTable symbolTable, StageTimer timer, MethodChecks checks) {
         this.symbolTable = symbolTable;
+        this.timer = timer;
+        this.checks = checks;
         addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMainMethodDeclaration);
         addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitInstanceMethodDeclaration);
         setDefaultVisit(this::defaultVisit);
     }
 
+    // Used on its own, the visitor walks the tree as the only pass of a FusedJmmVisitor
+    @Override
+    public Boolean visit(JmmNode node, List<Report> reports){
+        new FusedJmmVisitor().addPass(this, reports).visit(node);
+        return true;
+    }
+
+    // Goes into the children, the walk is done by the FusedJmmVisitor this visitor is a pass of
     private Boolean defaultVisit(JmmNode node, List<Report> reports){
-        for(var child : node.getChildren()){
-            visit(child, reports);
-        }
         return true;
     }
 
     private Boolean visitMainMethodDeclaration(JmmNode node, List<Report> reports){
-        MethodTypeCheckVisitor visitor = new MethodTypeCheckVisitor(symbolTable, "main");
-        visitor.visit(node, reports);
-        return true;
+        checkMethod(node, "main", reports);
+        return false;
     }
 
     private Boolean visitInstanceMethodDeclaration(JmmNode node, List<Report> reports){
-        String methodSignature = node.get("name");
-        MethodTypeCheckVisitor visitor = new MethodTypeCheckVisitor(symbolTable, methodSignature);
-        visitor.visit(node, reports);
-        return true;
+        checkMethod(node, node.get("name"), reports);
+        return false;
+    }
+
+    private void checkMethod(JmmNode node, String methodSignature, List<Report> reports){
+        checks.check(reports, methodReports -> {
+            // Opened where the check runs, so the CPU time is the one of that thread
+            StageTimer methodTimer = timer.method(methodSignature);
+            try {
+                MethodTypeCheckVisitor visitor = new MethodTypeCheckVisitor(symbolTable, methodSignature);
+                visitor.visit(node, methodReports);
+            } finally {
+                methodTimer.stop();
+            }
+        });
     }
 }
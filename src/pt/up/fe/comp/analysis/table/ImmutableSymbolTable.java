@@ -0,0 +1,117 @@
+package pt.up.fe.comp.analysis.table;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+/*
+ * A copy of a symbol table that can't change, so it can be read by several threads at once.
+ * The lists are built once and returned as they are instead of being copied on every call, and the list of methods
+ * answers contains() with a hash lookup. The order of every list is the one of the copied table.
+ */
+public class ImmutableSymbolTable implements SymbolTable {
+    private final List<String> imports;
+    private final String className;
+    private final String superName;
+    private final List<Symbol> fields;
+    private final List<String> methods;
+    private final Map<String, Type> returnTypes;
+    private final Map<String, List<Symbol>> parameters;
+    private final Map<String, List<Symbol>> localVariables;
+
+    private ImmutableSymbolTable(SymbolTable symbolTable) {
+        this.imports = List.copyOf(symbolTable.getImports());
+        this.className = symbolTable.getClassName();
+        this.superName = symbolTable.getSuper();
+        this.fields = List.copyOf(symbolTable.getFields());
+        this.methods = new MethodList(symbolTable.getMethods());
+        this.returnTypes = new HashMap<>();
+        this.parameters = new HashMap<>();
+        this.localVariables = new HashMap<>();
+        for (String method : methods) {
+            returnTypes.put(method, symbolTable.getReturnType(method));
+            parameters.put(method, Collections.unmodifiableList(symbolTable.getParameters(method)));
+            localVariables.put(method, Collections.unmodifiableList(symbolTable.getLocalVariables(method)));
+        }
+    }
+
+    public static ImmutableSymbolTable copyOf(SymbolTable symbolTable) {
+        if (symbolTable instanceof ImmutableSymbolTable) {
+            return (ImmutableSymbolTable) symbolTable;
+        }
+        return new ImmutableSymbolTable(symbolTable);
+    }
+
+    @Override
+    public List<String> getImports() {
+        return imports;
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String getSuper() {
+        return superName;
+    }
+
+    @Override
+    public List<Symbol> getFields() {
+        return fields;
+    }
+
+    @Override
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    @Override
+    public Type getReturnType(String methodSignature) {
+        return returnTypes.get(methodSignature);
+    }
+
+    @Override
+    public List<Symbol> getParameters(String methodSignature) {
+        return parameters.get(methodSignature);
+    }
+
+    @Override
+    public List<Symbol> getLocalVariables(String methodSignature) {
+        return localVariables.get(methodSignature);
+    }
+
+    private static class MethodList extends AbstractList<String> {
+        private final String[] names;
+        private final Set<String> nameSet;
+
+        private MethodList(List<String> names) {
+            this.names = names.toArray(new String[0]);
+            this.nameSet = new HashSet<>(names);
+        }
+
+        @Override
+        public String get(int index) {
+            return names[index];
+        }
+
+        @Override
+        public int size() {
+            return names.length;
+        }
+
+        @Override
+        public boolean contains(Object name) {
+            return nameSet.contains(name);
+        }
+    }
+}
@@ -4,7 +4,7 @@ import java.util.List;
 
 import pt.up.fe.comp.analysis.JmmMethod;
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
@@ -12,7 +12,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 
-public class MethodCollector extends AJmmVisitor<Boolean, Boolean> {
+public class MethodCollector extends ArrayJmmVisitor<Boolean, Boolean> {
     public List<Report> reports;
     private JmmMethod method;
 
@@ -84,17 +84,9 @@ public class MethodCollector extends AJmmVisitor<Boolean, Boolean> {
     }
 
     private boolean alreadyDeclared(JmmNode node, String name){
-        for(var s : this.method.getLocalVariables()){
-            if(s.getName().equals(name)){
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Variable " + name + " has already been declared"));
-                return true;
-            }
-        }
-        for(var s : this.method.getParameters()){
-            if(s.getName().equals(name)){
-                reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Variable " + name + " has already been declared"));
-                return true;
-            }
+        if(this.method.isDeclared(name)){
+            reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, Integer.parseInt(node.get("line")), Integer.parseInt(node.get("col")), "Variable " + name + " has already been declared"));
+            return true;
         }
         return false;
     }
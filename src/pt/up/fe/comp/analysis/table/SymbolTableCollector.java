@@ -1,6 +1,6 @@
 package pt.up.fe.comp.analysis.table;
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
@@ -10,7 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-public class SymbolTableCollector extends AJmmVisitor<SymbolTableBuilder, Boolean> {
+public class SymbolTableCollector extends ArrayJmmVisitor<SymbolTableBuilder, Boolean> {
     List<Report> reports;
 
     public SymbolTableCollector() {
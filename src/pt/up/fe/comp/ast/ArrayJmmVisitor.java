@@ -0,0 +1,63 @@
+package pt.up.fe.comp.ast;
+
+import java.util.Arrays;
+import java.util.function.BiFunction;
+
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+/*
+ * An AJmmVisitor that finds the visit of a node in an array indexed by the id of its kind (see CompactJmmNode),
+ * instead of hashing the kind on every node. The kinds are turned into ids once, when the visits are added.
+ * Nodes that aren't CompactJmmNode still work, their kind is looked up to find its id.
+ */
+public abstract class ArrayJmmVisitor<D, R> extends AJmmVisitor<D, R> {
+    // Both are set by the constructor of AJmmVisitor, they can't have initializers
+    private BiFunction<JmmNode, D, R>[] visits;
+    private BiFunction<JmmNode, D, R> defaultVisit;
+
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
+        super.addVisit(kind, method);
+
+        int kindId = CompactJmmNode.kindId(kind);
+        if (visits == null || kindId >= visits.length) {
+            visits = Arrays.copyOf(visits == null ? newVisits() : visits, Math.max(kindId + 1, CompactJmmNode.numberOfKinds()));
+        }
+        visits[kindId] = method;
+    }
+
+    @Override
+    public void setDefaultVisit(BiFunction<JmmNode, D, R> defaultVisit) {
+        super.setDefaultVisit(defaultVisit);
+        this.defaultVisit = defaultVisit;
+    }
+
+    @Override
+    public R visit(JmmNode jmmNode, D data) {
+        SpecsCheck.checkNotNull(jmmNode, () -> "Node should not be null");
+
+        return getVisit(jmmNode).apply(jmmNode, data);
+    }
+
+    protected BiFunction<JmmNode, D, R> getVisit(JmmNode node) {
+        int kindId = node instanceof CompactJmmNode ? ((CompactJmmNode) node).getKindId() : CompactJmmNode.kindId(node.getKind());
+        BiFunction<JmmNode, D, R> visit = visits != null && kindId < visits.length ? visits[kindId] : null;
+
+        if (visit == null) {
+            SpecsCheck.checkNotNull(defaultVisit,
+                    () -> "No default visitor is set, could not visit node of kind " + node.getKind());
+
+            visit = defaultVisit;
+        }
+
+        return visit;
+    }
+
+    // Java has no generic array creation, the array only ever holds visits added with these types
+    @SuppressWarnings("unchecked")
+    private BiFunction<JmmNode, D, R>[] newVisits() {
+        return (BiFunction<JmmNode, D, R>[]) new BiFunction<?, ?, ?>[CompactJmmNode.numberOfKinds()];
+    }
+}
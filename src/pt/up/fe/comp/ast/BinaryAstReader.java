@@ -0,0 +1,200 @@
+package pt.up.fe.comp.ast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+/*
+ * Reads trees written by BinaryAstWriter straight from a buffer, which can be a file mapped in memory.
+ * Nodes are numbered in preorder, the root is node 0. Single nodes can be read without building the tree,
+ * and any subtree can be built on its own, e.g. a single method.
+ * Only the string table is decoded when the reader is created, the nodes are read from the buffer when they're asked for.
+ */
+public class BinaryAstReader {
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int positionTable;
+    private final String[] strings;
+    private final int[] kindIds;    // Id in CompactJmmNode of every kind in the string table, -1 if it isn't a kind
+
+    public BinaryAstReader(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        for (int i = 0; i < BinaryAstWriter.MAGIC.length; ++i) {
+            if (this.buffer.get(i) != BinaryAstWriter.MAGIC[i]) {
+                throw new RuntimeException("BinaryAstReader: not a binary AST");
+            }
+        }
+        int version = this.buffer.get(BinaryAstWriter.MAGIC.length);
+        if (version != BinaryAstWriter.VERSION) {
+            throw new RuntimeException("BinaryAstReader: version " + version + " isn't supported");
+        }
+
+        int header = BinaryAstWriter.MAGIC.length + 1;
+        this.nodeCount = this.buffer.getInt(header);
+        int stringTable = this.buffer.getInt(header + Integer.BYTES);
+        this.positionTable = this.buffer.getInt(header + 2 * Integer.BYTES);
+        this.strings = readStrings(stringTable);
+        this.kindIds = new int[strings.length];
+        Arrays.fill(kindIds, -1);
+    }
+
+    public static BinaryAstReader of(byte[] bytes) {
+        return new BinaryAstReader(ByteBuffer.wrap(bytes));
+    }
+
+    // The mapping stays valid after the channel is closed
+    public static BinaryAstReader map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new BinaryAstReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public String getKind(int node) {
+        return strings[readVarint(position(node))];
+    }
+
+    public int getNumChildren(int node) {
+        int position = skipAttributes(position(node));
+        return readVarint(position);
+    }
+
+    // Number of nodes in the subtree of the node, the node included
+    public int getSubtreeSize(int node) {
+        return buffer.getInt(positionTable + (2 * node + 1) * Integer.BYTES);
+    }
+
+    public int getChild(int node, int index) {
+        int child = node + 1;
+        for (int i = 0; i < index; ++i) {
+            child += getSubtreeSize(child);
+        }
+        return child;
+    }
+
+    // Null when the node doesn't have the attribute
+    public String getAttribute(int node, String attribute) {
+        int position = nextVarint(position(node));
+        int attributes = readVarint(position);
+        position = nextVarint(position);
+        for (int i = 0; i < attributes; ++i) {
+            String name = strings[readVarint(position)];
+            position = nextVarint(position);
+            if (name.equals(attribute)) {
+                return value(readVarint(position));
+            }
+            position = nextVarint(position);
+        }
+        return null;
+    }
+
+    public CompactJmmNode readTree() {
+        return readTree(0);
+    }
+
+    public CompactJmmNode readTree(int node) {
+        int[] next = { node };
+        return readNode(next);
+    }
+
+    // next has the index of the node, it's moved past the subtree
+    private CompactJmmNode readNode(int[] next) {
+        int position = position(next[0]++);
+
+        int kind = readVarint(position);
+        position = nextVarint(position);
+        CompactJmmNode node = new CompactJmmNode(kindId(kind));
+
+        int attributes = readVarint(position);
+        position = nextVarint(position);
+        for (int i = 0; i < attributes; ++i) {
+            String name = strings[readVarint(position)];
+            position = nextVarint(position);
+            node.put(name, value(readVarint(position)));
+            position = nextVarint(position);
+        }
+
+        int numChildren = readVarint(position);
+        if (numChildren > 0) {
+            JmmNode[] children = new JmmNode[numChildren];
+            for (int i = 0; i < numChildren; ++i) {
+                children[i] = readNode(next);
+            }
+            node.setChildren(children);
+        }
+        return node;
+    }
+
+    private int kindId(int kind) {
+        if (kindIds[kind] == -1) {
+            kindIds[kind] = CompactJmmNode.kindId(strings[kind]);
+        }
+        return kindIds[kind];
+    }
+
+    private String value(int value) {
+        return (value & 1) == 1 ? Integer.toString(value >>> 1) : strings[value >>> 1];
+    }
+
+    private int position(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new RuntimeException("BinaryAstReader: there is no node " + node + ", the tree has " + nodeCount);
+        }
+        return buffer.getInt(positionTable + 2 * node * Integer.BYTES);
+    }
+
+    private int skipAttributes(int position) {
+        position = nextVarint(position);
+        int attributes = readVarint(position);
+        position = nextVarint(position);
+        for (int i = 0; i < 2 * attributes; ++i) {
+            position = nextVarint(position);
+        }
+        return position;
+    }
+
+    private String[] readStrings(int position) {
+        int count = readVarint(position);
+        position = nextVarint(position);
+        String[] strings = new String[count];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < count; ++i) {
+            int length = readVarint(position);
+            position = nextVarint(position);
+            if (length > bytes.length) {
+                bytes = new byte[Math.max(length, 2 * bytes.length)];
+            }
+            buffer.get(position, bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+        return strings;
+    }
+
+    private int readVarint(int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private int nextVarint(int position) {
+        while (buffer.get(position++) < 0) {
+        }
+        return position;
+    }
+}
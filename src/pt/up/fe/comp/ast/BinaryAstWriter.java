@@ -0,0 +1,190 @@
+package pt.up.fe.comp.ast;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+/*
+ * Writes a tree in the binary format read by BinaryAstReader
+ *
+ * header: "JMMB", version byte, node count, string table offset, position table offset (ints, big endian)
+ * nodes, in preorder: kind, number of attributes, (name, value) per attribute, number of children
+ * string table: number of strings, then the length and the UTF-8 bytes of each one
+ * position table: offset of every node and size of its subtree, as ints. The next sibling of node i is i + size
+ *
+ * Every number in the nodes and in the string table is a varint. Kinds, attribute names and values are indexes in the
+ * string table, except values that are small non negative numbers (line, col, ...), which are written in place:
+ * a value is written as (index << 1) or (number << 1 | 1)
+ */
+public class BinaryAstWriter {
+    static final byte[] MAGIC = { 'J', 'M', 'M', 'B' };
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1 + 3 * Integer.BYTES;
+
+    // Larger numbers take more space as a varint than in the string table
+    private static final int MAX_INLINE_NUMBER = 1 << 20;
+
+    private final Map<String, Integer> stringIds;
+    private final List<String> strings;
+    private byte[] nodes;
+    private int size;
+    private int[] positions;    // offset, subtree size
+    private int nodeCount;
+
+    public BinaryAstWriter() {
+        this.stringIds = new HashMap<>();
+        this.strings = new ArrayList<>();
+    }
+
+    public static byte[] toBytes(JmmNode root) {
+        return new BinaryAstWriter().write(root);
+    }
+
+    public static void write(JmmNode root, Path path) throws IOException {
+        Files.write(path, toBytes(root));
+    }
+
+    public static void write(JmmNode root, OutputStream out) throws IOException {
+        out.write(toBytes(root));
+    }
+
+    public byte[] write(JmmNode root) {
+        stringIds.clear();
+        strings.clear();
+        nodes = new byte[4096];
+        size = 0;
+        positions = new int[512];
+        nodeCount = 0;
+
+        writeNode(root);
+
+        int nodesEnd = HEADER_SIZE + size;
+        byte[] stringTable = stringTable();
+        ByteBuffer buffer = ByteBuffer.allocate(nodesEnd + stringTable.length + 2 * nodeCount * Integer.BYTES);
+        buffer.put(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.putInt(nodeCount);
+        buffer.putInt(nodesEnd);
+        buffer.putInt(nodesEnd + stringTable.length);
+        buffer.put(nodes, 0, size);
+        buffer.put(stringTable);
+        for (int i = 0; i < nodeCount; ++i) {
+            buffer.putInt(HEADER_SIZE + positions[2 * i]);
+            buffer.putInt(positions[2 * i + 1]);
+        }
+        return buffer.array();
+    }
+
+    // Returns the size of the subtree
+    private int writeNode(JmmNode node) {
+        int index = nodeCount++;
+        if (2 * index == positions.length) {
+            positions = Arrays.copyOf(positions, positions.length * 2);
+        }
+        positions[2 * index] = size;
+
+        writeVarint(stringId(node.getKind()));
+        List<String> attributes = node.getAttributes();
+        writeVarint(attributes.size());
+        for (String attribute : attributes) {
+            writeVarint(stringId(attribute));
+            writeValue(node.get(attribute));
+        }
+
+        List<JmmNode> children = node.getChildren();
+        writeVarint(children.size());
+        int subtreeSize = 1;
+        for (JmmNode child : children) {
+            subtreeSize += writeNode(child);
+        }
+        positions[2 * index + 1] = subtreeSize;
+        return subtreeSize;
+    }
+
+    private void writeValue(String value) {
+        int number = inlineNumber(value);
+        if (number >= 0) {
+            writeVarint(number << 1 | 1);
+        } else {
+            writeVarint(stringId(value) << 1);
+        }
+    }
+
+    // -1 when the value isn't written as a number, only the way Integer.toString writes them so it reads back the same
+    private static int inlineNumber(String value) {
+        int length = value.length();
+        if (length == 0 || length > 7 || (length > 1 && value.charAt(0) == '0')) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number < MAX_INLINE_NUMBER ? number : -1;
+    }
+
+    private int stringId(String string) {
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            strings.add(string);
+            stringIds.put(string, id);
+        }
+        return id;
+    }
+
+    private byte[] stringTable() {
+        byte[] nodeBytes = nodes;
+        int nodeSize = size;
+        nodes = new byte[1024];
+        size = 0;
+
+        writeVarint(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, nodes, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] table = Arrays.copyOf(nodes, size);
+        nodes = nodeBytes;
+        size = nodeSize;
+        return table;
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        size = putVarint(nodes, size, value);
+    }
+
+    private static int putVarint(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, size + extra));
+        }
+    }
+}
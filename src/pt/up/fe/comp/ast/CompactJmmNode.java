@@ -0,0 +1,340 @@
+package pt.up.fe.comp.ast;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.specs.util.SpecsCheck;
+
+/*
+ * A JmmNode that takes less memory and doesn't allocate when it's read
+ * - The kind is interned and has a dense id, the ids of the AstNode constants are their ordinals
+ * - name, type, op and value have their own fields, line and col are kept as ints
+ * - The other attributes are kept in an array of keys and values
+ * - The children are an immutable list, replaced when they change. getChildren() returns it without a copy,
+ *   a list that was returned keeps the children it had, like the copies of JmmNodeImpl
+ */
+public class CompactJmmNode extends JmmNodeImpl {
+    // line and col of a node without them
+    public static final int NONE = Integer.MIN_VALUE;
+    private static final String[] NO_ATTRIBUTES = new String[0];
+    private static final ChildList NO_CHILDREN = new ChildList(new JmmNode[0]);
+
+    private static final Map<String, Integer> kindIds = new ConcurrentHashMap<>();
+    private static volatile String[] kinds = new String[0];
+
+    static {
+        for (AstNode node : AstNode.values()) {
+            kindId(node.toString());
+        }
+    }
+
+    private final int kindId;
+    private String name;
+    private String type;
+    private String op;
+    private String value;
+    private int line = NONE;
+    private int col = NONE;
+    private String[] otherAttributes = NO_ATTRIBUTES;    // key, value, key, value...
+
+    public CompactJmmNode(String kind) {
+        this(kindId(kind));
+    }
+
+    public CompactJmmNode(int kindId) {
+        super(kindName(kindId), NO_CHILDREN);
+        this.kindId = kindId;
+    }
+
+    public static int kindId(String kind) {
+        Integer id = kindIds.get(kind);
+        return id != null ? id : newKind(kind);
+    }
+
+    // The name is published before the id, any id that can be found has its name
+    private static synchronized int newKind(String kind) {
+        Integer id = kindIds.get(kind);
+        if (id != null) {
+            return id;
+        }
+
+        id = kinds.length;
+        String[] newKinds = Arrays.copyOf(kinds, id + 1);
+        newKinds[id] = kind;
+        kinds = newKinds;
+        kindIds.put(kind, id);
+        return id;
+    }
+
+    public static String kindName(int kindId) {
+        return kinds[kindId];
+    }
+
+    // Ids are never reused, every kind seen so far has an id below this one
+    public static int numberOfKinds() {
+        return kinds.length;
+    }
+
+    // A compact copy of the tree, the attributes and children of the given nodes are only read
+    public static CompactJmmNode copyOf(JmmNode node) {
+        CompactJmmNode copy = new CompactJmmNode(node.getKind());
+        for (String attribute : node.getAttributes()) {
+            copy.put(attribute, node.get(attribute));
+        }
+
+        List<JmmNode> nodeChildren = node.getChildren();
+        if (!nodeChildren.isEmpty()) {
+            JmmNode[] children = new JmmNode[nodeChildren.size()];
+            for (int i = 0; i < children.length; ++i) {
+                children[i] = copyOf(nodeChildren.get(i));
+            }
+            copy.setChildren(children);
+        }
+        return copy;
+    }
+
+    // Takes the array, for trees built all at once
+    void setChildren(JmmNode[] children) {
+        for (JmmNode child : children) {
+            child.setParent(this);
+        }
+        this.children = new ChildList(children);
+    }
+
+    public int getKindId() {
+        return kindId;
+    }
+
+    // NONE when the node has no line or it isn't a number
+    public int getLine() {
+        return line;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    @Override
+    public void put(String attribute, String value) {
+        switch (attribute) {
+            case "name":
+                this.name = value;
+                return;
+            case "type":
+                this.type = value;
+                return;
+            case "op":
+                this.op = value;
+                return;
+            case "value":
+                this.value = value;
+                return;
+            case "line":
+                this.line = toInt(value);
+                break;
+            case "col":
+                this.col = toInt(value);
+                break;
+        }
+
+        // line and col that aren't numbers are kept with the other attributes
+        if ((attribute.equals("line") && this.line != NONE) || (attribute.equals("col") && this.col != NONE)) {
+            removeAttribute(attribute);
+        } else {
+            putAttribute(attribute, value);
+        }
+    }
+
+    @Override
+    public String get(String attribute) {
+        String value = find(attribute);
+
+        SpecsCheck.checkNotNull(value, () -> "Node " + toString() + " does not contain attribute '" + attribute + "'");
+
+        return value;
+    }
+
+    @Override
+    public Optional<String> getOptional(String attribute) {
+        return Optional.ofNullable(find(attribute));
+    }
+
+    // In the order of a HashMap with the same attributes, trees print the same as the ones of JmmNodeImpl
+    @Override
+    public List<String> getAttributes() {
+        List<String> names = new ArrayList<>();
+        if (name != null) {
+            names.add("name");
+        }
+        if (type != null) {
+            names.add("type");
+        }
+        if (op != null) {
+            names.add("op");
+        }
+        if (value != null) {
+            names.add("value");
+        }
+        if (line != NONE) {
+            names.add("line");
+        }
+        if (col != NONE) {
+            names.add("col");
+        }
+        for (int i = 0; i < otherAttributes.length; i += 2) {
+            names.add(otherAttributes[i]);
+        }
+        return names.size() > 1 ? new ArrayList<>(new HashSet<>(names)) : names;
+    }
+
+    private String find(String attribute) {
+        switch (attribute) {
+            case "name":
+                return name;
+            case "type":
+                return type;
+            case "op":
+                return op;
+            case "value":
+                return value;
+            case "line":
+                if (line != NONE) {
+                    return Integer.toString(line);
+                }
+                break;
+            case "col":
+                if (col != NONE) {
+                    return Integer.toString(col);
+                }
+                break;
+        }
+
+        for (int i = 0; i < otherAttributes.length; i += 2) {
+            if (otherAttributes[i].equals(attribute)) {
+                return otherAttributes[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private void putAttribute(String attribute, String value) {
+        for (int i = 0; i < otherAttributes.length; i += 2) {
+            if (otherAttributes[i].equals(attribute)) {
+                otherAttributes[i + 1] = value;
+                return;
+            }
+        }
+        otherAttributes = Arrays.copyOf(otherAttributes, otherAttributes.length + 2);
+        otherAttributes[otherAttributes.length - 2] = attribute;
+        otherAttributes[otherAttributes.length - 1] = value;
+    }
+
+    private void removeAttribute(String attribute) {
+        for (int i = 0; i < otherAttributes.length; i += 2) {
+            if (otherAttributes[i].equals(attribute)) {
+                String[] newAttributes = new String[otherAttributes.length - 2];
+                System.arraycopy(otherAttributes, 0, newAttributes, 0, i);
+                System.arraycopy(otherAttributes, i + 2, newAttributes, i, otherAttributes.length - i - 2);
+                otherAttributes = newAttributes;
+                return;
+            }
+        }
+    }
+
+    // Only the way Integer.toString writes them, any other text is kept as it is
+    private static int toInt(String value) {
+        if (value == null || value.isEmpty() || value.length() > 10) {
+            return NONE;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            return Integer.toString(result).equals(value) && result != NONE ? result : NONE;
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        return children;
+    }
+
+    @Override
+    public int getNumChildren() {
+        return children.size();
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public void add(JmmNodeImpl child) {
+        add(child, children.size());
+    }
+
+    @Override
+    public void add(JmmNodeImpl child, int index) {
+        JmmNode[] nodes = ((ChildList) children).nodes;
+        JmmNode[] newNodes = new JmmNode[nodes.length + 1];
+        System.arraycopy(nodes, 0, newNodes, 0, index);
+        newNodes[index] = child;
+        System.arraycopy(nodes, index, newNodes, index + 1, nodes.length - index);
+        children = new ChildList(newNodes);
+        child.setParent(this);
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        JmmNode[] nodes = ((ChildList) children).nodes;
+        if (index >= nodes.length) {
+            System.out.println(
+                    "[WARNING] Tried to remove child at index " + index + ", but node only has " + nodes.length
+                            + " children");
+            return null;
+        }
+
+        JmmNode removedChild = nodes[index];
+        JmmNode[] newNodes = new JmmNode[nodes.length - 1];
+        System.arraycopy(nodes, 0, newNodes, 0, index);
+        System.arraycopy(nodes, index + 1, newNodes, index, nodes.length - index - 1);
+        children = newNodes.length == 0 ? NO_CHILDREN : new ChildList(newNodes);
+        removedChild.removeParent();
+        return removedChild;
+    }
+
+    @Override
+    protected void setChildAt(int index, JmmNode node) {
+        JmmNode[] newNodes = ((ChildList) children).nodes.clone();
+        newNodes[index] = node;
+        children = new ChildList(newNodes);
+    }
+
+    private static final class ChildList extends AbstractList<JmmNode> implements RandomAccess {
+        private final JmmNode[] nodes;
+
+        ChildList(JmmNode[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public JmmNode get(int index) {
+            return nodes[index];
+        }
+
+        @Override
+        public int size() {
+            return nodes.length;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package pt.up.fe.comp.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+/*
+ * Runs independent passes in a single preorder walk of the tree.
+ * The visits of a pass only look at their node and return if the pass goes into its children,
+ * the default visit of a pass should just return true. A pass that stops at a node doesn't see its subtree, the
+ * other passes still do. Each pass has its own data, the passes must not depend on what the others do to the tree.
+ */
+public class FusedJmmVisitor {
+    private final List<ArrayJmmVisitor<Object, Boolean>> passes;
+    private final List<Object> passData;
+
+    public FusedJmmVisitor() {
+        this.passes = new ArrayList<>();
+        this.passData = new ArrayList<>();
+    }
+
+    // The passes that are still walking a subtree are kept in the bits of a long
+    @SuppressWarnings("unchecked")
+    public <D> FusedJmmVisitor addPass(ArrayJmmVisitor<D, Boolean> pass, D data) {
+        if (passes.size() == Long.SIZE) {
+            throw new RuntimeException("addPass: at most " + Long.SIZE + " passes can be fused");
+        }
+        passes.add((ArrayJmmVisitor<Object, Boolean>) (ArrayJmmVisitor<?, Boolean>) pass);
+        passData.add(data);
+        return this;
+    }
+
+    public void visit(JmmNode root) {
+        long allPasses = passes.size() == Long.SIZE ? -1L : (1L << passes.size()) - 1;
+        visit(root, allPasses);
+    }
+
+    private void visit(JmmNode node, long active) {
+        long childrenActive = active;
+        for (long left = active; left != 0; left &= left - 1) {
+            int pass = Long.numberOfTrailingZeros(left);
+            if (!passes.get(pass).getVisit(node).apply(node, passData.get(pass))) {
+                childrenActive &= ~(1L << pass);
+            }
+        }
+
+        if (childrenActive == 0) {
+            return;
+        }
+        for (JmmNode child : node.getChildren()) {
+            visit(child, childrenActive);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package pt.up.fe.comp.generator;
+
+import java.util.Random;
+
+/*
+ * Generates valid Java-- programs of any size, for scaling tests and benchmarks.
+ * The same seed and sizes always give the same program.
+ *
+ * Every method has the same shape:
+ *  - parameters p0, p1 and the locals v0..vN (int), flag (boolean), array (int[]) and i0..iD (loop counters)
+ *  - every local is initialized first, so the analysis never reports uninitialized variables
+ *  - then the statements: assignments, array stores, if/else, while loops (nested up to the loop depth),
+ *    calls to the previous methods (outside loops) and to the imported classes
+ * Loops always terminate and array indexes are always in bounds, so the programs can be run when there are no imports.
+ */
+public class ProgramGenerator {
+    private static final int ARRAY_SIZE = 16;
+    private static final int MAX_EXPRESSION_DEPTH = 3;
+
+    private final long seed;
+    private int methods;
+    private int statements;
+    private int loopDepth;
+    private int variables;
+    private int imports;
+
+    private Random random;
+    private StringBuilder code;
+    private int currentMethod;
+    private int indent;
+
+    public ProgramGenerator(long seed) {
+        this.seed = seed;
+        this.methods = 10;
+        this.statements = 20;
+        this.loopDepth = 2;
+        this.variables = 8;
+        this.imports = 2;
+    }
+
+    // Methods of the class, besides main
+    public ProgramGenerator setMethods(int methods) {
+        this.methods = Math.max(methods, 1);
+        return this;
+    }
+
+    // Statements of each method, the ones inside loops and ifs included
+    public ProgramGenerator setStatements(int statements) {
+        this.statements = Math.max(statements, 1);
+        return this;
+    }
+
+    public ProgramGenerator setLoopDepth(int loopDepth) {
+        this.loopDepth = Math.max(loopDepth, 0);
+        return this;
+    }
+
+    // int locals of each method
+    public ProgramGenerator setVariables(int variables) {
+        this.variables = Math.max(variables, 1);
+        return this;
+    }
+
+    // Imported classes called from the methods, ioPlus not included
+    public ProgramGenerator setImports(int imports) {
+        this.imports = Math.max(imports, 0);
+        return this;
+    }
+
+    public String generate() {
+        this.random = new Random(seed);
+        this.code = new StringBuilder();
+        this.indent = 0;
+
+        line("import ioPlus;");
+        for (int i = 0; i < imports; ++i) {
+            line("import synthetic.Library" + i + ";");
+        }
+        line("");
+        line("class Synthetic {");
+        indent++;
+        line("int counter;");
+        line("");
+        for (currentMethod = 0; currentMethod < methods; ++currentMethod) {
+            method();
+            line("");
+        }
+        mainMethod();
+        indent--;
+        line("}");
+        return code.toString();
+    }
+
+    private void method() {
+        line("public int method" + currentMethod + "(int p0, int p1) {");
+        indent++;
+        for (int i = 0; i < variables; ++i) {
+            line("int v" + i + ";");
+        }
+        line("boolean flag;");
+        line("int[] array;");
+        for (int i = 0; i < loopDepth; ++i) {
+            line("int i" + i + ";");
+        }
+
+        for (int i = 0; i < variables; ++i) {
+            line("v" + i + " = " + random.nextInt(100) + ";");
+        }
+        line("flag = " + random.nextBoolean() + ";");
+        line("array = new int[" + ARRAY_SIZE + "];");
+        for (int i = 0; i < loopDepth; ++i) {
+            line("i" + i + " = 0;");
+        }
+
+        block(statements, 0);
+
+        line("return " + variable() + " + " + variable() + ";");
+        indent--;
+        line("}");
+    }
+
+    private void mainMethod() {
+        line("public static void main(String[] args) {");
+        indent++;
+        line("Synthetic synthetic;");
+        line("synthetic = new Synthetic();");
+        line("ioPlus.printResult(synthetic.method" + (methods - 1) + "(1, 2));");
+        indent--;
+        line("}");
+    }
+
+    // Generates exactly `budget` statements, loopLevel is the number of enclosing loops
+    private void block(int budget, int loopLevel) {
+        while (budget > 0) {
+            int choice = random.nextInt(10);
+            if (choice < 2 && loopLevel < loopDepth && budget >= 3) {
+                int body = 1 + random.nextInt(budget - 2);
+                whileLoop(body, loopLevel);
+                budget -= body + 2;
+            } else if (choice < 4 && budget >= 3) {
+                int thenBody = 1 + random.nextInt(budget - 2);
+                int elseBody = budget - 1 - thenBody > 0 ? 1 + random.nextInt(budget - 1 - thenBody) : 0;
+                ifElse(thenBody, elseBody, loopLevel);
+                budget -= thenBody + elseBody + 1;
+            } else {
+                simpleStatement(loopLevel);
+                budget--;
+            }
+        }
+    }
+
+    private void whileLoop(int body, int loopLevel) {
+        String counter = "i" + loopLevel;
+        line(counter + " = 0;");
+        line("while (" + counter + " < " + (1 + random.nextInt(ARRAY_SIZE)) + ") {");
+        indent++;
+        block(body, loopLevel + 1);
+        line(counter + " = " + counter + " + 1;");
+        indent--;
+        line("}");
+    }
+
+    private void ifElse(int thenBody, int elseBody, int loopLevel) {
+        line("if (" + condition() + ") {");
+        indent++;
+        block(thenBody, loopLevel);
+        indent--;
+        line("} else {");
+        indent++;
+        block(elseBody, loopLevel);
+        indent--;
+        line("}");
+    }
+
+    private void simpleStatement(int loopLevel) {
+        int choice = random.nextInt(10);
+        if (choice < 5) {
+            line(variable() + " = " + expression(0) + ";");
+        } else if (choice < 6) {
+            line("flag = " + condition() + ";");
+        } else if (choice < 7) {
+            line("array[" + index(loopLevel) + "] = " + expression(0) + ";");
+        } else if (choice < 8 && currentMethod > 0 && loopLevel == 0) {
+            // Calls inside loops would multiply the running time of every method down the call chain
+            line(variable() + " = this.method" + random.nextInt(currentMethod) + "(" + expression(1) + ", " + expression(1) + ");");
+        } else if (choice < 9 && imports > 0) {
+            line("Library" + random.nextInt(imports) + ".use(" + expression(1) + ");");
+        } else {
+            line("counter = counter + " + variable() + ";");
+        }
+    }
+
+    private String expression(int depth) {
+        if (depth >= MAX_EXPRESSION_DEPTH || random.nextInt(3) == 0) {
+            return operand();
+        }
+        switch (random.nextInt(5)) {
+            case 0:
+                return expression(depth + 1) + " + " + expression(depth + 1);
+            case 1:
+                return expression(depth + 1) + " - " + expression(depth + 1);
+            case 2:
+                return expression(depth + 1) + " * " + operand();
+            case 3:
+                // Never divides by zero
+                return "(" + expression(depth + 1) + ") / " + (1 + random.nextInt(9));
+            default:
+                return "(" + expression(depth + 1) + ")";
+        }
+    }
+
+    private String operand() {
+        switch (random.nextInt(6)) {
+            case 0:
+                return Integer.toString(random.nextInt(100));
+            case 1:
+                return "p" + random.nextInt(2);
+            case 2:
+                return "array[" + random.nextInt(ARRAY_SIZE) + "]";
+            case 3:
+                return "array.length";
+            default:
+                return variable();
+        }
+    }
+
+    private String condition() {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "flag";
+            case 1:
+                return "!flag && " + variable() + " < " + operand();
+            default:
+                return expression(1) + " < " + expression(1);
+        }
+    }
+
+    // Loop counters are always below the array size
+    private String index(int loopLevel) {
+        if (loopLevel > 0 && random.nextBoolean()) {
+            return "i" + random.nextInt(loopLevel);
+        }
+        return Integer.toString(random.nextInt(ARRAY_SIZE));
+    }
+
+    private String variable() {
+        return "v" + random.nextInt(variables);
+    }
+
+    private void line(String text) {
+        if (!text.isEmpty()) {
+            code.append("\t".repeat(indent)).append(text);
+        }
+        code.append("\n");
+    }
+}
@@ -0,0 +1,304 @@
+package pt.up.fe.comp.jasmin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Growable buffer holding the bytecode of a single method.
+ * Branches may target labels that weren't placed yet, their offsets are patched in toByteArray().
+ * A branch whose offset doesn't fit in 16 bits is widened there: a goto becomes a goto_w, and a conditional branch
+ * jumps over a goto_w to its target when its condition doesn't hold.
+ */
+public class BytecodeWriter {
+    public static final int ICONST_0 = 3;
+    public static final int BIPUSH = 16;
+    public static final int SIPUSH = 17;
+    public static final int LDC = 18;
+    public static final int LDC_W = 19;
+    public static final int ILOAD = 21;
+    public static final int ALOAD = 25;
+    public static final int ILOAD_0 = 26;
+    public static final int ALOAD_0 = 42;
+    public static final int IALOAD = 46;
+    public static final int ISTORE = 54;
+    public static final int ASTORE = 58;
+    public static final int ISTORE_0 = 59;
+    public static final int ASTORE_0 = 75;
+    public static final int IASTORE = 79;
+    public static final int IADD = 96;
+    public static final int ISUB = 100;
+    public static final int IMUL = 104;
+    public static final int IDIV = 108;
+    public static final int IAND = 126;
+    public static final int IXOR = 130;
+    public static final int IINC = 132;
+    public static final int IFEQ = 153;
+    public static final int IFLT = 155;
+    public static final int IFGE = 156;
+    public static final int IFGT = 157;
+    public static final int IFLE = 158;
+    public static final int IF_ICMPLT = 161;
+    public static final int IF_ICMPGE = 162;
+    public static final int IF_ICMPGT = 163;
+    public static final int IF_ICMPLE = 164;
+    public static final int IF_ACMPNE = 166;
+    public static final int GOTO = 167;
+    public static final int IRETURN = 172;
+    public static final int ARETURN = 176;
+    public static final int RETURN = 177;
+    public static final int GETFIELD = 180;
+    public static final int PUTFIELD = 181;
+    public static final int INVOKEVIRTUAL = 182;
+    public static final int INVOKESPECIAL = 183;
+    public static final int INVOKESTATIC = 184;
+    public static final int INVOKEINTERFACE = 185;
+    public static final int NEW = 187;
+    public static final int NEWARRAY = 188;
+    public static final int ARRAYLENGTH = 190;
+    public static final int WIDE = 196;
+    public static final int IFNULL = 198;
+    public static final int GOTO_W = 200;
+
+    public static final int T_INT = 10;     // newarray operand
+
+    public static class Label {
+        private int position = -1;
+    }
+
+    // A branch whose 16-bit offset still has to be filled in
+    private static class Fixup {
+        final int opcodePosition;
+        final Label target;
+        boolean wide;
+
+        Fixup(int opcodePosition, Label target) {
+            this.opcodePosition = opcodePosition;
+            this.target = target;
+        }
+
+        // Bytes the branch takes once it's widened, beyond its 3
+        int growth(byte[] code) {
+            return !this.wide ? 0 : (code[this.opcodePosition] & 0xFF) == GOTO ? 2 : 5;
+        }
+    }
+
+    private byte[] code;
+    private int length;
+    private final List<Fixup> fixups;
+
+    public BytecodeWriter() {
+        this.code = new byte[64];
+        this.length = 0;
+        this.fixups = new ArrayList<>();
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public void mark(Label label) {
+        if (label.position != -1) {
+            throw new RuntimeException("mark: Label was already placed at " + label.position);
+        }
+        label.position = this.length;
+    }
+
+    public void op(int opcode) {
+        this.u1(opcode);
+    }
+
+    public void opU1(int opcode, int operand) {
+        this.u1(opcode);
+        this.u1(operand);
+    }
+
+    public void opU2(int opcode, int operand) {
+        this.u1(opcode);
+        this.u2(operand);
+    }
+
+    public void branch(int opcode, Label target) {
+        this.fixups.add(new Fixup(this.length, target));
+        this.u1(opcode);
+        this.u2(0);
+    }
+
+    // iload, aload, istore or astore, using the short forms for registers 0 to 3
+    public void local(int opcode, int shortOpcode, int register) {
+        if (register <= 3) {
+            this.u1(shortOpcode + register);
+        } else if (register <= 0xFF) {
+            this.opU1(opcode, register);
+        } else {
+            this.u1(WIDE);
+            this.opU2(opcode, register);
+        }
+    }
+
+    public void iinc(int register, int increment) {
+        if (register <= 0xFF && -128 <= increment && increment <= 127) {
+            this.opU1(IINC, register);
+            this.u1(increment);
+        } else {
+            this.u1(WIDE);
+            this.opU2(IINC, register);
+            this.u2(increment);
+        }
+    }
+
+    // Pushes an int constant, the same way the Jasmin backend does
+    public void pushInt(int value, ConstantPool constantPool) {
+        if (0 <= value && value <= 5) {
+            this.op(ICONST_0 + value);
+        } else if (-128 <= value && value <= 127) {
+            this.opU1(BIPUSH, value);
+        } else if (-32768 <= value && value <= 32767) {
+            this.opU2(SIPUSH, value);
+        } else {
+            int index = constantPool.integer(value);
+            if (index <= 0xFF) {
+                this.opU1(LDC, index);
+            } else {
+                this.opU2(LDC_W, index);
+            }
+        }
+    }
+
+    public byte[] toByteArray() {
+        for (Fixup fixup : this.fixups) {
+            if (fixup.target.position == -1) {
+                throw new RuntimeException("toByteArray: Branch at " + fixup.opcodePosition + " targets a label that was never placed");
+            }
+        }
+        if (this.widenBranches()) {
+            this.relocate();
+        }
+
+        for (Fixup fixup : this.fixups) {
+            int offset = fixup.target.position - fixup.opcodePosition;
+            if (!fixup.wide) {
+                this.code[fixup.opcodePosition + 1] = (byte) (offset >> 8);
+                this.code[fixup.opcodePosition + 2] = (byte) offset;
+            } else if ((this.code[fixup.opcodePosition] & 0xFF) == GOTO_W) {
+                this.putInt(fixup.opcodePosition + 1, offset);
+            } else {
+                // The inverted branch skips itself and the goto_w
+                this.code[fixup.opcodePosition + 1] = 0;
+                this.code[fixup.opcodePosition + 2] = 8;
+                this.code[fixup.opcodePosition + 3] = (byte) GOTO_W;
+                this.putInt(fixup.opcodePosition + 4, offset - 3);
+            }
+        }
+        this.fixups.clear();
+
+        if (this.length > 0xFFFF) {
+            throw new RuntimeException("toByteArray: Method code is too large (" + this.length + " bytes)");
+        }
+        return Arrays.copyOf(this.code, this.length);
+    }
+
+    // Marks the branches whose offset doesn't fit in 16 bits, once the ones before are widened too.
+    // Widening only moves code further apart, so it's repeated until no other branch needs it
+    private boolean widenBranches() {
+        boolean widened = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Fixup fixup : this.fixups) {
+                if (!fixup.wide) {
+                    // Nothing moves until a branch is widened
+                    int offset = !widened ? fixup.target.position - fixup.opcodePosition
+                            : this.newPosition(fixup.target.position) - this.newPosition(fixup.opcodePosition);
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        fixup.wide = true;
+                        changed = true;
+                        widened = true;
+                    }
+                }
+            }
+        }
+        return widened;
+    }
+
+    // Position of the code at the given position once the wide branches before it take their space
+    private int newPosition(int position) {
+        int newPosition = position;
+        for (Fixup fixup : this.fixups) {
+            if (fixup.opcodePosition < position) {
+                newPosition += fixup.growth(this.code);
+            }
+        }
+        return newPosition;
+    }
+
+    // Moves the code after each wide branch, along with the labels and the branches themselves
+    private void relocate() {
+        Set<Label> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Fixup> relocated = new ArrayList<>();
+        int newLength = this.newPosition(this.length);
+        byte[] newCode = new byte[Math.max(newLength, this.code.length)];
+
+        int from = 0;
+        int to = 0;
+        for (Fixup fixup : this.fixups) {
+            int growth = fixup.growth(this.code);
+            int end = fixup.opcodePosition + 3;
+            System.arraycopy(this.code, from, newCode, to, end - from);
+            int opcode = this.code[fixup.opcodePosition] & 0xFF;
+            int newOpcodePosition = to + fixup.opcodePosition - from;
+            if (fixup.wide) {
+                newCode[newOpcodePosition] = (byte) (opcode == GOTO ? GOTO_W : invert(opcode));
+            }
+            to += end - from + growth;
+            from = end;
+
+            Fixup moved = new Fixup(newOpcodePosition, fixup.target);
+            moved.wide = fixup.wide;
+            relocated.add(moved);
+            targets.add(fixup.target);
+        }
+        System.arraycopy(this.code, from, newCode, to, this.length - from);
+
+        for (Label target : targets) {
+            target.position = this.newPosition(target.position);
+        }
+        this.code = newCode;
+        this.length = newLength;
+        this.fixups.clear();
+        this.fixups.addAll(relocated);
+    }
+
+    // The conditional branch that jumps when the given one doesn't, their opcodes come in pairs
+    private static int invert(int opcode) {
+        if (opcode == IFNULL || opcode == IFNULL + 1) {
+            return opcode ^ 1;
+        }
+        if (opcode < IFEQ || opcode > IF_ACMPNE) {
+            throw new RuntimeException("invert: Opcode " + opcode + " isn't a conditional branch");
+        }
+        return IFEQ + ((opcode - IFEQ) ^ 1);
+    }
+
+    private void putInt(int position, int value) {
+        this.code[position] = (byte) (value >> 24);
+        this.code[position + 1] = (byte) (value >> 16);
+        this.code[position + 2] = (byte) (value >> 8);
+        this.code[position + 3] = (byte) value;
+    }
+
+    private void u1(int value) {
+        if (this.length == this.code.length) {
+            this.code = Arrays.copyOf(this.code, this.code.length * 2);
+        }
+        this.code[this.length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        this.u1(value >> 8);
+        this.u1(value);
+    }
+}
@@ -0,0 +1,685 @@
+package pt.up.fe.comp.jasmin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.specs.comp.ollir.*;
+
+import pt.up.fe.comp.jmm.stats.StageTimer;
+import pt.up.fe.comp.ollir.OllirUtils;
+
+/*
+ * Writes the .class file of an OLLIR ClassUnit directly, without going through Jasmin text.
+ * Instruction selection follows JasminGenerator, so both backends produce the same bytecode.
+ */
+public class ClassFileGenerator {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;    // Java 5, the verifier doesn't require StackMapTable frames
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private final ClassUnit classUnit;
+    private final ConstantPool constantPool;
+    private String superClass;
+    private StackLimits stackLimits;
+    private final StageTimer timer;
+
+    // State of the method being generated
+    private BytecodeWriter code;
+    private HashMap<String, BytecodeWriter.Label> labels;
+
+    public ClassFileGenerator(ClassUnit classUnit) {
+        this(classUnit, StageTimer.disabled());
+    }
+
+    // Every method is measured inside the given stage
+    public ClassFileGenerator(ClassUnit classUnit, StageTimer timer) {
+        this.classUnit = classUnit;
+        this.constantPool = new ConstantPool();
+        this.superClass = null;
+        this.stackLimits = new StackLimits();
+        this.timer = timer;
+    }
+
+    public byte[] convert() {
+        // Fields and methods go first, the constant pool is only complete once they're generated
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        try {
+            DataOutputStream out = new DataOutputStream(body);
+            this.convertFields(out);
+            this.convertMethods(out);
+            out.writeShort(0);  // class attributes
+
+            int thisClass = this.constantPool.classRef(this.classUnit.getClassName());
+            int superClass = this.constantPool.classRef(this.getSuperClassName());
+
+            DataOutputStream header = new DataOutputStream(result);
+            header.writeInt(MAGIC);
+            header.writeShort(0);
+            header.writeShort(MAJOR_VERSION);
+            this.constantPool.write(header);
+            header.writeShort(ACC_PUBLIC | ACC_SUPER);
+            header.writeShort(thisClass);
+            header.writeShort(superClass);
+            header.writeShort(0);   // interfaces
+            body.writeTo(header);
+        } catch (IOException e) {
+            throw new RuntimeException("convert: Could not write class " + this.classUnit.getClassName(), e);
+        }
+
+        return result.toByteArray();
+    }
+
+    private String getSuperClassName() {
+        if (this.superClass == null) {
+            this.superClass = classUnit.getSuperClass();
+            if (this.superClass != null) {
+                this.superClass = this.getFullyQualifiedName(superClass);
+            } else {
+                this.superClass = "java/lang/Object";
+            }
+        }
+        return this.superClass;
+    }
+
+    private void convertFields(DataOutputStream out) throws IOException {
+        out.writeShort(this.classUnit.getFields().size());
+        for (Field field : this.classUnit.getFields()) {
+            int flags = this.getAccessFlags(field.getFieldAccessModifier());
+            if (field.isStaticField()) {
+                flags |= ACC_STATIC;
+            }
+            if (field.isFinalField()) {
+                flags |= ACC_FINAL;
+            }
+            out.writeShort(flags);
+            out.writeShort(this.constantPool.utf8(field.getFieldName()));
+            out.writeShort(this.constantPool.utf8(this.getDescriptor(field.getFieldType())));
+            out.writeShort(0);  // attributes
+        }
+    }
+
+    private int getAccessFlags(AccessModifiers modifier) {
+        switch (modifier) {
+            case PUBLIC:
+                return ACC_PUBLIC;
+            case PROTECTED:
+                return ACC_PROTECTED;
+            default:    // default fields are private, as in the Jasmin backend
+                return ACC_PRIVATE;
+        }
+    }
+
+    private void convertMethods(DataOutputStream out) throws IOException {
+        // The default constructor is always generated, OLLIR constructors are skipped as in the Jasmin backend
+        int methodsCount = 1;
+        for (Method method : this.classUnit.getMethods()) {
+            if (!method.isConstructMethod()) {
+                methodsCount++;
+            }
+        }
+        out.writeShort(methodsCount);
+
+        this.convertConstructor(out);
+        for (Method method : this.classUnit.getMethods()) {
+            if (!method.isConstructMethod()) {
+                StageTimer methodTimer = this.timer.method(method.getMethodName());
+                try {
+                    this.convertMethod(out, method);
+                } finally {
+                    methodTimer.stop();
+                }
+            }
+        }
+    }
+
+    private void convertConstructor(DataOutputStream out) throws IOException {
+        this.code = new BytecodeWriter();
+        this.code.local(BytecodeWriter.ALOAD, BytecodeWriter.ALOAD_0, 0);
+        this.code.opU2(BytecodeWriter.INVOKESPECIAL, this.constantPool.methodRef(this.getSuperClassName(), "<init>", "()V"));
+        this.code.op(BytecodeWriter.RETURN);
+
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(this.constantPool.utf8("<init>"));
+        out.writeShort(this.constantPool.utf8("()V"));
+        this.writeCodeAttribute(out, 1, 1);
+    }
+
+    private void convertMethod(DataOutputStream out, Method method) throws IOException {
+        int flags = ACC_PUBLIC;
+        if (method.isFinalMethod()) {
+            flags |= ACC_FINAL;
+        }
+        if (method.isStaticMethod()) {
+            flags |= ACC_STATIC;
+        }
+
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Element param : method.getParams()) {
+            descriptor.append(this.getDescriptor(param.getType()));
+        }
+        descriptor.append(")").append(this.getDescriptor(method.getReturnType()));
+
+        // method instructions
+        this.code = new BytecodeWriter();
+        this.labels = new HashMap<>();
+        this.stackLimits.reset();
+        this.convertMethodInstructions(method);
+        if (!this.stackLimits.isEmpty()) {
+            throw new RuntimeException("convertMethod: Stack isn't empty at the end of method declaration");
+        }
+
+        out.writeShort(flags);
+        out.writeShort(this.constantPool.utf8(method.getMethodName()));
+        out.writeShort(this.constantPool.utf8(descriptor.toString()));
+        this.writeCodeAttribute(out, this.stackLimits.getMaxStackSize(), this.getLocalsLimit(method));
+    }
+
+    private void writeCodeAttribute(DataOutputStream out, int maxStack, int maxLocals) throws IOException {
+        byte[] bytecode = this.code.toByteArray();
+
+        out.writeShort(1);  // method attributes
+        out.writeShort(this.constantPool.utf8("Code"));
+        out.writeInt(12 + bytecode.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(0);  // exception table
+        out.writeShort(0);  // code attributes
+    }
+
+    // Registers may be sparse after register allocation, so the limit comes from the highest one
+    private int getLocalsLimit(Method method) {
+        int localsLimit = method.isStaticMethod() ? 0 : 1;
+        for (Descriptor descriptor : method.getVarTable().values()) {
+            localsLimit = Math.max(localsLimit, descriptor.getVirtualReg() + 1);
+        }
+        return localsLimit;
+    }
+
+    private void convertMethodInstructions(Method method) {
+        method.buildVarTable();
+        Instruction lastInstruction = null;
+        for (Instruction instruction : method.getInstructions()) {
+            List<String> instructionLabels = method.getLabels(instruction);
+            if (instructionLabels != null) {
+                for (String label : instructionLabels) {
+                    this.code.mark(this.getLabel(label));
+                }
+            }
+            this.convert(instruction, method.getVarTable());
+            lastInstruction = instruction;
+        }
+
+        // append return if method return type is void
+        if (lastInstruction == null || (lastInstruction.getInstType() != InstructionType.RETURN && method.getReturnType().getTypeOfElement() == ElementType.VOID)) {
+            this.code.op(BytecodeWriter.RETURN);
+        }
+    }
+
+    private BytecodeWriter.Label getLabel(String name) {
+        return this.labels.computeIfAbsent(name, key -> new BytecodeWriter.Label());
+    }
+
+    public String getFullyQualifiedName(String className) {
+
+        if (className.equals(this.classUnit.getClassName())) {
+            return this.classUnit.getClassName();
+        }
+
+        for (String importString : this.classUnit.getImports()) {
+            if (importString.endsWith(className)) {
+                return importString.replace('.', '/');
+            }
+        }
+
+        throw new RuntimeException("getFullyQualifiedName: Could not find import for class " + className);
+    }
+
+    private String getDescriptor(Type type) {
+
+        StringBuilder result = new StringBuilder();
+
+        ElementType elementType = type.getTypeOfElement();
+        if (elementType == ElementType.ARRAYREF) {
+            result.append("[".repeat(((ArrayType) type).getNumDimensions()));
+            elementType = ((ArrayType) type).getArrayType();
+        }
+
+        switch (elementType) {
+            case STRING:
+                result.append("Ljava/lang/String;");
+                break;
+            case VOID:
+                result.append("V");
+                break;
+            case INT32:
+                result.append("I");
+                break;
+            case BOOLEAN:
+                result.append("Z");
+                break;
+            case OBJECTREF:
+                result.append("L").append(this.getFullyQualifiedName(((ClassType) type).getName())).append(";");
+                break;
+            case ARRAYREF:
+            case CLASS:
+            case THIS:
+                throw new RuntimeException("getDescriptor: Unrecognized " + elementType + " element type");
+        }
+
+        return result.toString();
+    }
+
+    private String getElementClass(Element element) {
+
+        ElementType type = element.getType().getTypeOfElement();
+
+        switch (type) {
+            case THIS:
+                return this.classUnit.getClassName();
+            case OBJECTREF:
+                return this.getFullyQualifiedName(((ClassType) element.getType()).getName());
+            case CLASS:
+                return ((Operand) element).getName();
+            default:
+                throw new RuntimeException("getElementClass: Unrecognized " + type + " element type");
+        }
+    }
+
+    private void convert(Instruction instruction, HashMap<String, Descriptor> varTable) {
+        switch (instruction.getInstType()) {
+            case ASSIGN:
+                this.convert((AssignInstruction) instruction, varTable);
+                break;
+            case CALL:
+                this.convert((CallInstruction) instruction, varTable);
+                break;
+            case GOTO:
+                this.code.branch(BytecodeWriter.GOTO, this.getLabel(((GotoInstruction) instruction).getLabel()));
+                break;
+            case BRANCH:
+                this.convert((CondBranchInstruction) instruction, varTable);
+                break;
+            case RETURN:
+                this.convert((ReturnInstruction) instruction, varTable);
+                break;
+            case GETFIELD:
+                this.convert((GetFieldInstruction) instruction, varTable);
+                break;
+            case PUTFIELD:
+                this.convert((PutFieldInstruction) instruction, varTable);
+                break;
+            case UNARYOPER:
+                this.convert((UnaryOpInstruction) instruction, varTable);
+                break;
+            case BINARYOPER:
+                this.convert((BinaryOpInstruction) instruction, varTable);
+                break;
+            case NOPER:
+                this.loadElement(((SingleOpInstruction) instruction).getSingleOperand(), varTable);
+                break;
+        }
+    }
+
+    private void convert(AssignInstruction instruction, HashMap<String, Descriptor> varTable) {
+
+        Operand operand = (Operand) instruction.getDest();
+        if (operand instanceof ArrayOperand) {
+            this.code.local(BytecodeWriter.ALOAD, BytecodeWriter.ALOAD_0, this.getVirtualReg(operand.getName(), varTable));
+            this.stackLimits.update(1);
+            this.loadElement(((ArrayOperand) operand).getIndexOperands().get(0), varTable);
+        }
+
+        Instruction rhs = instruction.getRhs();
+
+        // iinc
+        Integer increment = OllirUtils.getIncrement(instruction);
+        if (increment != null) {
+            this.code.iinc(this.getVirtualReg(operand.getName(), varTable), increment);
+            return;
+        }
+
+        // deal with value of right hand side of instruction first
+        this.convert(rhs, varTable);
+
+        // store the value
+        this.storeElement(operand, varTable);
+    }
+
+    private void convert(CallInstruction method, HashMap<String, Descriptor> varTable) {
+        switch (method.getInvocationType()) {
+            case invokevirtual:
+            case invokeinterface:
+            case invokestatic:
+            case invokespecial:
+                this.convertInvoke(method, varTable);
+                break;
+            case NEW:
+                this.convertNew(method, varTable);
+                break;
+            case arraylength:
+                this.loadElement(method.getFirstArg(), varTable);
+                this.code.op(BytecodeWriter.ARRAYLENGTH);
+                break;
+            case ldc:
+                this.loadElement(method.getFirstArg(), varTable);
+                break;
+        }
+    }
+
+    private void convert(CondBranchInstruction instruction, HashMap<String, Descriptor> varTable) {
+
+        Instruction condition = instruction.getCondition();
+        BytecodeWriter.Label target = this.getLabel(instruction.getLabel());
+
+        // Same selection as JasminGenerator: the branch is taken when the condition is false, except on do-while loops
+        int opcode = -1;
+        if (condition instanceof BinaryOpInstruction) {
+
+            BinaryOpInstruction binaryInst = (BinaryOpInstruction) condition;
+            OperationType opType = binaryInst.getOperation().getOpType();
+
+            if (opType == OperationType.GTE || opType == OperationType.GTH || opType == OperationType.LTE || opType == OperationType.LTH) {
+
+                Element left = binaryInst.getLeftOperand();
+                Element right = binaryInst.getRightOperand();
+
+                if (left.isLiteral() && ((LiteralElement) left).getLiteral().equals("0") && !right.isLiteral()) {
+                    this.loadElement(right, varTable);
+                    switch (opType) {
+                        case GTE: opcode = BytecodeWriter.IFGT; break;
+                        case GTH: opcode = BytecodeWriter.IFGE; break;
+                        case LTE: opcode = BytecodeWriter.IFLT; break;
+                        case LTH: opcode = BytecodeWriter.IFLE; break;
+                    }
+                }
+
+                if (opcode == -1 && !left.isLiteral() && right.isLiteral() && ((LiteralElement) right).getLiteral().equals("0")) {
+                    this.loadElement(left, varTable);
+                    switch (opType) {
+                        case GTE: opcode = BytecodeWriter.IFLT; break;
+                        case GTH: opcode = BytecodeWriter.IFLE; break;
+                        case LTE: opcode = BytecodeWriter.IFGT; break;
+                        case LTH: opcode = BytecodeWriter.IFGE; break;
+                    }
+                }
+
+                if (opcode == -1) {
+                    this.loadElement(left, varTable);
+                    this.loadElement(right, varTable);
+
+                    // Jumps when the condition is false
+                    switch (OllirUtils.negate(opType)) {
+                        case LTH: opcode = BytecodeWriter.IF_ICMPLT; break;
+                        case LTE: opcode = BytecodeWriter.IF_ICMPLE; break;
+                        case GTH: opcode = BytecodeWriter.IF_ICMPGT; break;
+                        case GTE: opcode = BytecodeWriter.IF_ICMPGE; break;
+                    }
+                    this.stackLimits.update(-1);
+                }
+            }
+        }
+
+        if (opcode == -1) {
+            this.convert(condition, varTable);
+            opcode = BytecodeWriter.IFEQ;
+        }
+
+        this.code.branch(opcode, target);
+        this.stackLimits.update(-1);
+    }
+
+    private void convert(ReturnInstruction instruction, HashMap<String, Descriptor> varTable) {
+
+        if (!instruction.hasReturnValue()) {
+            this.code.op(BytecodeWriter.RETURN);
+            return;
+        }
+
+        ElementType type = instruction.getOperand().getType().getTypeOfElement();
+
+        switch (type) {
+            case VOID:
+                this.code.op(BytecodeWriter.RETURN);
+                break;
+            case INT32:
+            case BOOLEAN:
+                this.loadElement(instruction.getOperand(), varTable);
+                this.code.op(BytecodeWriter.IRETURN);
+                this.stackLimits.update(-1);
+                break;
+            case ARRAYREF:
+            case OBJECTREF:
+                this.loadElement(instruction.getOperand(), varTable);
+                this.code.op(BytecodeWriter.ARETURN);
+                this.stackLimits.update(-1);
+                break;
+            default:
+                throw new RuntimeException("convert: Unrecognized return instruction for " + type + " element type");
+        }
+    }
+
+    private void convert(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
+        this.loadElement(instruction.getFirstOperand(), varTable);
+        this.code.opU2(BytecodeWriter.GETFIELD, this.getFieldRef(instruction.getFirstOperand(), (Operand) instruction.getSecondOperand()));
+    }
+
+    private void convert(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
+        this.loadElement(instruction.getFirstOperand(), varTable);
+        this.loadElement(instruction.getThirdOperand(), varTable);
+        this.code.opU2(BytecodeWriter.PUTFIELD, this.getFieldRef(instruction.getFirstOperand(), (Operand) instruction.getSecondOperand()));
+        this.stackLimits.update(-2);
+    }
+
+    private int getFieldRef(Element object, Operand field) {
+        return this.constantPool.fieldRef(this.getElementClass(object), field.getName(), this.getDescriptor(field.getType()));
+    }
+
+    private void convert(UnaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
+        this.loadElement(instruction.getOperand(), varTable);
+        this.code.op(BytecodeWriter.ICONST_0 + 1);
+        this.stackLimits.update(1);
+        this.code.op(BytecodeWriter.IXOR);
+        this.stackLimits.update(-1);
+    }
+
+    private void convert(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
+
+        this.loadElement(instruction.getLeftOperand(), varTable);
+        this.loadElement(instruction.getRightOperand(), varTable);
+
+        OperationType opType = instruction.getOperation().getOpType();
+
+        switch (opType) {
+            case ADD:
+                this.code.op(BytecodeWriter.IADD);
+                this.stackLimits.update(-1);
+                break;
+            case SUB:
+                this.code.op(BytecodeWriter.ISUB);
+                this.stackLimits.update(-1);
+                break;
+            case MUL:
+                this.code.op(BytecodeWriter.IMUL);
+                this.stackLimits.update(-1);
+                break;
+            case DIV:
+                this.code.op(BytecodeWriter.IDIV);
+                this.stackLimits.update(-1);
+                break;
+            case LTH:
+                BytecodeWriter.Label trueLabel = new BytecodeWriter.Label();
+                BytecodeWriter.Label falseLabel = new BytecodeWriter.Label();
+
+                this.code.branch(BytecodeWriter.IF_ICMPLT, trueLabel);
+                this.stackLimits.update(-2);
+
+                this.code.op(BytecodeWriter.ICONST_0);  // Does not update stack limits since we'll either push 0 or 1
+                this.code.branch(BytecodeWriter.GOTO, falseLabel);
+
+                this.code.mark(trueLabel);
+                this.code.op(BytecodeWriter.ICONST_0 + 1);
+                this.stackLimits.update(1);
+
+                this.code.mark(falseLabel);
+                break;
+            case ANDB:
+                this.code.op(BytecodeWriter.IAND);
+                this.stackLimits.update(-1);
+                break;
+            case NOTB:
+                break;
+            default:
+                throw new RuntimeException("convert: Unrecognized binary operation for " + opType + " operation type");
+        }
+    }
+
+    private void storeElement(Operand operand, HashMap<String, Descriptor> varTable) {
+
+        if (operand instanceof ArrayOperand) {
+            this.code.op(BytecodeWriter.IASTORE);
+            this.stackLimits.update(-3);
+            return;
+        }
+
+        switch (operand.getType().getTypeOfElement()) {
+            case INT32:
+            case BOOLEAN:
+                this.code.local(BytecodeWriter.ISTORE, BytecodeWriter.ISTORE_0, this.getVirtualReg(operand.getName(), varTable));
+                this.stackLimits.update(-1);
+                break;
+            case OBJECTREF:
+            case STRING:
+            case ARRAYREF:
+                this.code.local(BytecodeWriter.ASTORE, BytecodeWriter.ASTORE_0, this.getVirtualReg(operand.getName(), varTable));
+                this.stackLimits.update(-1);
+                break;
+            default:
+                throw new RuntimeException("storeElement: Unrecognized operand type " + operand.getType());
+        }
+    }
+
+    private void loadElement(Element element, HashMap<String, Descriptor> varTable) {
+
+        if (element instanceof LiteralElement) {
+            this.code.pushInt(Integer.parseInt(((LiteralElement) element).getLiteral()), this.constantPool);
+            this.stackLimits.update(1);
+        } else if (element instanceof ArrayOperand) {
+            ArrayOperand arrayOperand = (ArrayOperand) element;
+            this.code.local(BytecodeWriter.ALOAD, BytecodeWriter.ALOAD_0, this.getVirtualReg(arrayOperand.getName(), varTable));
+            this.stackLimits.update(1);
+
+            this.loadElement(arrayOperand.getIndexOperands().get(0), varTable);
+
+            this.code.op(BytecodeWriter.IALOAD);
+            this.stackLimits.update(-1);
+        } else if (element instanceof Operand) {
+            Operand operand = (Operand) element;
+            ElementType type = operand.getType().getTypeOfElement();
+            switch (type) {
+                case THIS:
+                    this.code.local(BytecodeWriter.ALOAD, BytecodeWriter.ALOAD_0, 0);
+                    this.stackLimits.update(1);
+                    break;
+                case INT32:
+                case BOOLEAN:
+                    this.code.local(BytecodeWriter.ILOAD, BytecodeWriter.ILOAD_0, this.getVirtualReg(operand.getName(), varTable));
+                    this.stackLimits.update(1);
+                    break;
+                case OBJECTREF:
+                case ARRAYREF:
+                case STRING:
+                    this.code.local(BytecodeWriter.ALOAD, BytecodeWriter.ALOAD_0, this.getVirtualReg(operand.getName(), varTable));
+                    this.stackLimits.update(1);
+                    break;
+                case CLASS:     // this happens in invokestatic
+                    break;
+                case VOID:
+                    throw new RuntimeException("loadElement: Unrecognized load instruction for " + type + " element type");
+            }
+        }
+    }
+
+    private void convertInvoke(CallInstruction method, HashMap<String, Descriptor> varTable) {
+
+        // load object
+        this.loadElement(method.getFirstArg(), varTable);
+
+        // load arguments
+        List<Element> operands = method.getListOfOperands() == null ? new ArrayList<>() : method.getListOfOperands();
+        for (Element param : operands) {
+            this.loadElement(param, varTable);
+        }
+
+        String methodClass = this.getElementClass(method.getFirstArg());
+
+        String methodName = ((LiteralElement) method.getSecondArg()).getLiteral();
+        methodName = methodName.substring(1, methodName.length() - 1);
+
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Element param : operands) {
+            descriptor.append(this.getDescriptor(param.getType()));
+        }
+        descriptor.append(")").append(this.getDescriptor(method.getReturnType()));
+
+        switch (method.getInvocationType()) {
+            case invokevirtual:
+                this.code.opU2(BytecodeWriter.INVOKEVIRTUAL, this.constantPool.methodRef(methodClass, methodName, descriptor.toString()));
+                break;
+            case invokespecial:
+                this.code.opU2(BytecodeWriter.INVOKESPECIAL, this.constantPool.methodRef(methodClass, methodName, descriptor.toString()));
+                break;
+            case invokestatic:
+                this.code.opU2(BytecodeWriter.INVOKESTATIC, this.constantPool.methodRef(methodClass, methodName, descriptor.toString()));
+                break;
+            case invokeinterface:
+                // Jasmin-- only has int, boolean and references, so every argument takes one slot
+                this.code.opU2(BytecodeWriter.INVOKEINTERFACE, this.constantPool.interfaceMethodRef(methodClass, methodName, descriptor.toString()));
+                this.code.opU1(operands.size() + 1, 0);
+                break;
+        }
+
+        if (method.getInvocationType() != CallType.invokestatic) {
+            this.stackLimits.update(-1);
+        }
+        this.stackLimits.update(- operands.size());    // Update stack limits to consume objectref and arguments
+        if (method.getReturnType().getTypeOfElement() != ElementType.VOID) {
+            this.stackLimits.update(1);
+        }
+    }
+
+    private void convertNew(CallInstruction instruction, HashMap<String, Descriptor> varTable) {
+
+        ElementType type = instruction.getFirstArg().getType().getTypeOfElement();
+
+        switch (type) {
+            case ARRAYREF:
+                this.loadElement(instruction.getListOfOperands().get(0), varTable);
+                this.code.opU1(BytecodeWriter.NEWARRAY, BytecodeWriter.T_INT);     // Does not update stack limits since it'll consume size and return array reference
+                break;
+            case OBJECTREF:
+                this.code.opU2(BytecodeWriter.NEW, this.constantPool.classRef(((Operand) instruction.getFirstArg()).getName()));
+                this.stackLimits.update(1);
+                break;
+            default:
+                throw new RuntimeException("convertNew: Unrecognized new instruction for " + type + " element type");
+        }
+    }
+
+    private int getVirtualReg(String name, HashMap<String, Descriptor> varTable) {
+        return varTable.get(name).getVirtualReg();
+    }
+}
@@ -0,0 +1,128 @@
+package pt.up.fe.comp.jasmin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Constant pool of a class file being built.
+ * Entries are deduplicated, asking twice for the same constant returns the same index.
+ */
+public class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final Map<String, Integer> indexes;
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream entries;
+    private int count;
+
+    public ConstantPool() {
+        this.indexes = new HashMap<>();
+        this.bytes = new ByteArrayOutputStream();
+        this.entries = new DataOutputStream(bytes);
+        this.count = 1; // index 0 is reserved
+    }
+
+    public int utf8(String value) {
+        String key = UTF8 + ":" + value;
+        Integer index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            entries.writeByte(UTF8);
+            entries.writeUTF(value);    // modified UTF-8, as required by the class file format
+        } catch (IOException e) {
+            throw new RuntimeException("ConstantPool: could not write '" + value + "'", e);
+        }
+        return register(key);
+    }
+
+    public int integer(int value) {
+        String key = INTEGER + ":" + value;
+        Integer index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            entries.writeByte(INTEGER);
+            entries.writeInt(value);
+        } catch (IOException e) {
+            throw new RuntimeException("ConstantPool: could not write " + value, e);
+        }
+        return register(key);
+    }
+
+    public int string(String value) {
+        return reference(STRING, utf8(value));
+    }
+
+    // Class names use the internal form, e.g. java/lang/Object
+    public int classRef(String className) {
+        return reference(CLASS, utf8(className));
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        return reference(NAME_AND_TYPE, utf8(name), utf8(descriptor));
+    }
+
+    public int fieldRef(String className, String name, String descriptor) {
+        return reference(FIELDREF, classRef(className), nameAndType(name, descriptor));
+    }
+
+    public int methodRef(String className, String name, String descriptor) {
+        return reference(METHODREF, classRef(className), nameAndType(name, descriptor));
+    }
+
+    public int interfaceMethodRef(String className, String name, String descriptor) {
+        return reference(INTERFACE_METHODREF, classRef(className), nameAndType(name, descriptor));
+    }
+
+    // Number of slots, as written in the constant_pool_count field
+    public int getCount() {
+        return this.count;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+
+    private int reference(int tag, int... operands) {
+        StringBuilder key = new StringBuilder().append(tag);
+        for (int operand : operands) {
+            key.append(":").append(operand);
+        }
+        Integer index = indexes.get(key.toString());
+        if (index != null) {
+            return index;
+        }
+        try {
+            entries.writeByte(tag);
+            for (int operand : operands) {
+                entries.writeShort(operand);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("ConstantPool: could not write entry " + key, e);
+        }
+        return register(key.toString());
+    }
+
+    private int register(String key) {
+        if (count > 0xFFFF) {
+            throw new RuntimeException("ConstantPool: too many constants");
+        }
+        int index = count++;
+        indexes.put(key, index);
+        return index;
+    }
+}
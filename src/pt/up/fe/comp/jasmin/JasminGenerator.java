@@ -1,6 +1,8 @@
 package pt.up.fe.comp.jasmin;
 
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.stats.StageTimer;
+import pt.up.fe.comp.ollir.OllirUtils;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,12 +16,19 @@ public class JasminGenerator {
     private String superClass;
     private int numberCond;
     private StackLimits stackLimits;
+    private final StageTimer timer;
 
     public JasminGenerator(ClassUnit classUnit) {
+        this(classUnit, StageTimer.disabled());
+    }
+
+    // Every method is measured inside the given stage
+    public JasminGenerator(ClassUnit classUnit, StageTimer timer) {
         this.classUnit = classUnit;
         this.superClass = null;
         this.numberCond = 0;
         this.stackLimits = new StackLimits();
+        this.timer = timer;
     }
 
     public JasminResult convert() {
@@ -122,7 +131,12 @@ public class JasminGenerator {
         StringBuilder result = new StringBuilder();
 
         for (Method method : this.classUnit.getMethods()) {
-            result.append(this.convertMethod(method));
+            StageTimer methodTimer = this.timer.method(method.getMethodName());
+            try {
+                result.append(this.convertMethod(method));
+            } finally {
+                methodTimer.stop();
+            }
         }
 
         return result.toString();
@@ -343,24 +357,11 @@ public class JasminGenerator {
         Instruction rhs = instruction.getRhs();
         
         // iinc
-        if (rhs.getInstType() == InstructionType.BINARYOPER &&
-            ((BinaryOpInstruction) rhs).getOperation().getOpType() == OperationType.ADD) {
-            
-            BinaryOpInstruction iincInst = (BinaryOpInstruction) rhs;
-            Element leftOperand = iincInst.getLeftOperand();
-            Element rightOperand = iincInst.getRightOperand();
-            
-            if (leftOperand.isLiteral() && !rightOperand.isLiteral() && ((Operand) rightOperand).getName().equals(operand.getName())) {
-                result.append("\tiinc ").append(varTable.get(((Operand) rightOperand).getName()).getVirtualReg()).append(" ");
-                result.append(((LiteralElement) leftOperand).getLiteral()).append("\n");
-                return result.toString();
-            }
-
-            if (rightOperand.isLiteral() && !leftOperand.isLiteral() && ((Operand) leftOperand).getName().equals(operand.getName())) {
-                result.append("\tiinc ").append(varTable.get(((Operand) leftOperand).getName()).getVirtualReg()).append(" ");
-                result.append(((LiteralElement) rightOperand).getLiteral()).append("\n");
-                return result.toString();
-            }
+        Integer increment = OllirUtils.getIncrement(instruction);
+        if (increment != null) {
+            result.append("\tiinc ").append(varTable.get(operand.getName()).getVirtualReg()).append(" ");
+            result.append(increment).append("\n");
+            return result.toString();
         }
 
         // deal with value of right hand side of instruction first
@@ -459,28 +460,16 @@ public class JasminGenerator {
                     result.append(this.loadElement(left, varTable));
                     result.append(this.loadElement(right, varTable));
 
-                    if(instruction.getLabel().startsWith("doWhileLoop")){
-                        switch (binaryInst.getOperation().getOpType()) {
-                            case LTH:
-                                result.append("\tif_icmplt "); break;
-                            case LTE:
-                                result.append("\tif_icmple "); break;
-                            case GTH:
-                                result.append("\tif_icmpgt "); break;
-                            case GTE:
-                                result.append("\tif_icmpge "); break;
-                        }
-                    } else {
-                        switch (binaryInst.getOperation().getOpType()) {
-                            case GTE:
-                                result.append("\tif_icmplt "); break;
-                            case GTH:
-                                result.append("\tif_icmple "); break;
-                            case LTE:
-                                result.append("\tif_icmpgt "); break;
-                            case LTH:
-                                result.append("\tif_icmpge "); break;
-                        }
+                    // Jumps when the condition is false
+                    switch (OllirUtils.negate(binaryInst.getOperation().getOpType())) {
+                        case LTH:
+                            result.append("\tif_icmplt "); break;
+                        case LTE:
+                            result.append("\tif_icmple "); break;
+                        case GTH:
+                            result.append("\tif_icmpgt "); break;
+                        case GTE:
+                            result.append("\tif_icmpge "); break;
                     }
 
                     optimization = true;
@@ -0,0 +1,26 @@
+package pt.up.fe.comp.jasmin;
+
+import java.util.ArrayList;
+
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageTimer;
+
+/*
+ * Alternative backend that skips Jasmin: the class file is built in memory and written as is by JasminResult.compile.
+ * Select it with the -c flag, or by setting BackendClass in config.properties.
+ */
+public class OllirToClassFile implements JasminBackend {
+    @Override
+    public JasminResult toJasmin(OllirResult ollirResult) {
+        StageTimer timer = ollirResult.getStats().measure(CompilationStats.BACKEND);
+        try {
+            ClassFileGenerator generator = new ClassFileGenerator(ollirResult.getOllirClass(), timer);
+            return JasminResult.fromClassBytes(ollirResult, generator.convert(), new ArrayList<>());
+        } finally {
+            timer.stop();
+        }
+    }
+}
@@ -3,11 +3,21 @@ package pt.up.fe.comp.jasmin;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageTimer;
 
 public class OllirToJasmin implements JasminBackend {
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
-        JasminGenerator generator = new JasminGenerator(ollirResult.getOllirClass());
-        return generator.convert();
+        StageTimer timer = ollirResult.getStats().measure(CompilationStats.BACKEND);
+        try {
+            JasminGenerator generator = new JasminGenerator(ollirResult.getOllirClass(), timer);
+            JasminResult result = generator.convert();
+
+            // Keep class name, reports, config and stats of the previous stages
+            return new JasminResult(ollirResult, result.getJasminCode(), result.getReports());
+        } finally {
+            timer.stop();
+        }
     }
-}
\ No newline at end of file
+}
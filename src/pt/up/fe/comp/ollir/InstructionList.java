@@ -0,0 +1,53 @@
+package pt.up.fe.comp.ollir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+// Instructions and labels in program order, the object counterpart of the code in OllirStatement
+public class InstructionList {
+    // Each entry is either an Instruction or the name of a label
+    private final List<Object> entries;
+
+    public InstructionList(){
+        this.entries = new ArrayList<>();
+    }
+
+    public void add(Instruction instruction){
+        entries.add(instruction);
+    }
+
+    public void addLabel(String label){
+        entries.add(label);
+    }
+
+    public void addAll(InstructionList other){
+        entries.addAll(other.entries);
+    }
+
+    public boolean isEmpty(){
+        return entries.isEmpty();
+    }
+
+    // Appends the instructions to the method, labels are attached to the instruction that follows them
+    public void addTo(Method method){
+        List<String> labels = new ArrayList<>();
+        for(Object entry : entries){
+            if(entry instanceof String){
+                labels.add((String) entry);
+                continue;
+            }
+            Instruction instruction = (Instruction) entry;
+            for(String label : labels){
+                method.addLabel(label, instruction);
+            }
+            labels.clear();
+            method.addInstr(instruction);
+        }
+        if(!labels.isEmpty()){
+            throw new RuntimeException("Labels " + labels + " are not followed by an instruction");
+        }
+    }
+}
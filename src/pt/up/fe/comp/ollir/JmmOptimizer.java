@@ -8,46 +8,68 @@ import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
-import pt.up.fe.comp.ollir.optimizations.constant_folding.ConstantFoldingMethodVisitor;
-import pt.up.fe.comp.ollir.optimizations.constant_folding.ConstantFoldingVisitor;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageTimer;
+import pt.up.fe.comp.ollir.optimizations.AstWorklistOptimizer;
 import pt.up.fe.comp.ollir.optimizations.constant_propagation.ConstantPropagationVisitor;
-import pt.up.fe.comp.ollir.optimizations.if_while_removal.IfWhileRemoverVisitor;
-import pt.up.fe.comp.ollir.optimizations.register_allocation.GraphColoringSolver;
-import pt.up.fe.comp.ollir.optimizations.register_allocation.InterferenceGraphCreator;
-import pt.up.fe.comp.ollir.optimizations.register_allocation.LivenessAnalyser;
-import pt.up.fe.comp.ollir.optimizations.register_allocation.VariableSplitter;
-import pt.up.fe.comp.ollir.optimizations.register_allocation.Web;
+import pt.up.fe.comp.ollir.optimizations.dead_code_elimination.DeadCodeEliminator;
+import pt.up.fe.comp.ollir.optimizations.loop_optimization.FieldWriteAnalyser;
+import pt.up.fe.comp.ollir.optimizations.loop_optimization.LoopInvariantCodeMotion;
+import pt.up.fe.comp.ollir.optimizations.loop_optimization.StrengthReduction;
+import pt.up.fe.comp.ollir.optimizations.register_allocation.RegisterAllocator;
+import pt.up.fe.comp.ollir.optimizations.ssa.ConstantPropagator;
 import pt.up.fe.comp.ollir.optimizations.unused_assignment_removing.UnusedAssignmentRemoverVisitor;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
+import org.specs.comp.ollir.ClassUnit;
 import org.specs.comp.ollir.Method;
-import org.specs.comp.ollir.Node;
-import org.specs.comp.ollir.OllirErrorException;
 
 public class JmmOptimizer implements JmmOptimization {
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
-        OllirGenerator ollirGenerator = new OllirGenerator(semanticsResult.getSymbolTable());
+        StageTimer timer = semanticsResult.getStats().measure(CompilationStats.OLLIR_GENERATION);
         try {
+            return generateOllir(semanticsResult);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private OllirResult generateOllir(JmmSemanticsResult semanticsResult) {
+        Map<String, String> config = semanticsResult.getConfig();
+        boolean debug = config.getOrDefault("debug", "false").equals("true");
+
+        // Fallback: generate OLLIR code and parse it
+        if(config.getOrDefault("ollirText", "false").equals("true")){
+            OllirGenerator ollirGenerator = new OllirGenerator(semanticsResult.getSymbolTable());
             ollirGenerator.visit(semanticsResult.getRootNode());
-        } catch(Exception e){
-            // Might occur due to unsupported features like method overloading
-            List<Report> reports = new ArrayList<>();
-            reports.add(new Report(ReportType.ERROR, Stage.LLIR, -1, "OLLIR parse exception occurred."));
-            throw(e);
+            String ollirCode = ollirGenerator.getCode();
+
+            if(debug){
+                System.out.println("OLLIR code:\n");
+                printOllirCode(ollirCode);
+            }
 
+            return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
         }
-        String ollirCode = ollirGenerator.getCode();
 
-        System.out.println("OLLIR code:\n");
-        printOllirCode(ollirCode);
+        OllirClassUnitGenerator classUnitGenerator = new OllirClassUnitGenerator(semanticsResult.getSymbolTable());
+        classUnitGenerator.visit(semanticsResult.getRootNode());
+        ClassUnit classUnit = classUnitGenerator.getClassUnit();
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        // The OLLIR code is only needed to show it
+        OllirResult ollirResult = new OllirResult(semanticsResult, classUnit, () -> OllirPrinter.print(classUnit),
+                Collections.emptyList());
+        if(debug){
+            System.out.println("OLLIR code:\n");
+            printOllirCode(ollirResult.getOllirCode());
+        }
+
+        return ollirResult;
     }
 
     // Prints ollircode with indentation
@@ -79,41 +101,29 @@ public class JmmOptimizer implements JmmOptimization {
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
         Map<String, String> config = semanticsResult.getConfig();
         
-        if(config.getOrDefault("optimizeAll", "false").equals("true")){
-            astOptimizeAll(semanticsResult);
-        } else if(config.getOrDefault("optimize", "false").equals("true")){
-            astOptimizeBasic(semanticsResult);
-        } 
+        StageTimer timer = semanticsResult.getStats().measure(CompilationStats.AST_OPTIMIZATION);
+        try {
+            if(config.getOrDefault("optimizeAll", "false").equals("true")){
+                astOptimizeAll(semanticsResult);
+            } else if(config.getOrDefault("optimize", "false").equals("true")){
+                astOptimizeBasic(semanticsResult);
+            } 
+        } finally {
+            timer.stop();
+        }
 
         return semanticsResult;
     }
 
     private void astOptimizeAll(JmmSemanticsResult semanticsResult){
         JmmNode rootNode = semanticsResult.getRootNode();
+        int maxRounds = Integer.parseInt(semanticsResult.getConfig().getOrDefault("optimizationRounds",
+                Integer.toString(AstWorklistOptimizer.DEFAULT_ROUNDS)));
 
-        boolean updated;
-        int i = 1;
-        do {
-            updated = false;
+        boolean debug = semanticsResult.getConfig().getOrDefault("debug", "false").equals("true");
 
-            System.out.println("\nOptimization round " + i);
-            ConstantPropagationVisitor constantPropagationVisitor = new ConstantPropagationVisitor(semanticsResult.getSymbolTable());
-            boolean result = constantPropagationVisitor.visit(rootNode);
-            updated |= result;
-            System.out.println("Constant propagation - " + result);
-            
-            ConstantFoldingVisitor constantFoldingVisitor = new ConstantFoldingVisitor();
-            result = constantFoldingVisitor.visit(rootNode);
-            updated |= result;
-            System.out.println("Constant folding - " + result);
-
-            IfWhileRemoverVisitor ifWhileRemoverVisitor = new IfWhileRemoverVisitor();
-            result = ifWhileRemoverVisitor.visit(rootNode);
-            updated |= result;
-            System.out.println("If/While removal - " + result);
-
-            i++;
-        } while(updated);
+        AstWorklistOptimizer optimizer = new AstWorklistOptimizer(semanticsResult.getSymbolTable(), maxRounds, debug);
+        optimizer.optimize(rootNode);
     
         UnusedAssignmentRemoverVisitor unusedAssignmentRemoverVisitor = new UnusedAssignmentRemoverVisitor(semanticsResult.getSymbolTable());
         unusedAssignmentRemoverVisitor.visit(rootNode);
@@ -129,6 +139,36 @@ public class JmmOptimizer implements JmmOptimization {
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
+        StageTimer timer = ollirResult.getStats().measure(CompilationStats.OLLIR_OPTIMIZATION);
+        try {
+            optimizeMethods(ollirResult);
+            return allocateRegisters(ollirResult, timer);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    // With -o or -a, the constants the AST optimizations can't see (through loops and branches) are found in SSA form,
+    // then the code left dead is removed, the invariant code of the loops is moved out of them and their multiplications
+    // by induction variables become additions
+    private void optimizeMethods(OllirResult ollirResult) {
+        Map<String, String> config = ollirResult.getConfig();
+        if(!config.getOrDefault("optimize", "false").equals("true")
+                && !config.getOrDefault("optimizeAll", "false").equals("true")){
+            return;
+        }
+        FieldWriteAnalyser fieldWrites = new FieldWriteAnalyser(ollirResult.getOllirClass());
+        for (Method method : ollirResult.getOllirClass().getMethods()) {
+            new ConstantPropagator(method).optimize();
+            new DeadCodeEliminator(method).optimize();
+            new LoopInvariantCodeMotion(method, fieldWrites).optimize();
+            if(new StrengthReduction(method).optimize()){
+                new DeadCodeEliminator(method).optimize();  // Induction variables only used to step themselves
+            }
+        }
+    }
+
+    private OllirResult allocateRegisters(OllirResult ollirResult, StageTimer timer) {
         if(!ollirResult.getConfig().containsKey("registerAllocation")){
             return ollirResult;
         }
@@ -141,38 +181,20 @@ public class JmmOptimizer implements JmmOptimization {
             return ollirResult;
         }
         numberOfRegisters = numberOfRegisters == 0 ? 99 : numberOfRegisters; // If -r = 0 we'll try to minimize the number of registers
+        boolean linearScan = ollirResult.getConfig().getOrDefault("registerAllocator", "coloring").equals("linear");
 
         for (Method method : ollirResult.getOllirClass().getMethods()) {
-            method.buildCFG();
-            Node node = method.getBeginNode();
-            
-            LivenessAnalyser livenessAnalyser = new LivenessAnalyser(node, method.getParams());
-            Set<Web> webs = livenessAnalyser.getWebs();
-            
-            VariableSplitter variableSplitter = new VariableSplitter(webs);
-            variableSplitter.split(method);
-
-            InterferenceGraphCreator interferenceGraphCreator = new InterferenceGraphCreator(webs);
-            GraphColoringSolver graphColoringSolver = new GraphColoringSolver(interferenceGraphCreator.createGraph(), numberOfRegisters);
-            boolean canColor = graphColoringSolver.solve();
-            if(!canColor){
+            boolean allocated;
+            StageTimer methodTimer = timer.method(method.getMethodName());
+            try {
+                allocated = new RegisterAllocator(method, numberOfRegisters, linearScan).allocate();
+            } finally {
+                methodTimer.stop();
+            }
+            if(!allocated){
                 ollirResult.getReports().add(new Report(ReportType.ERROR, Stage.OPTIMIZATION, -1, "Insufficient registers"));
                 return ollirResult;
             }
-            Map<String, Integer> registerMap = graphColoringSolver.getVariableColorMap();
-
-            int offset = method.isStaticMethod() ? 0 : 1;
-    
-            method.buildVarTable();
-            
-            for(var entry : method.getVarTable().entrySet()){
-                String varName = entry.getKey();
-                if(registerMap.containsKey(varName)){
-                    entry.getValue().setVirtualReg(registerMap.get(varName) + offset);
-                } else {
-                    entry.getValue().setVirtualReg(offset);
-                }
-            }
         }
 
         return ollirResult;
@@ -0,0 +1,153 @@
+package pt.up.fe.comp.ollir;
+
+import pt.up.fe.comp.ast.AstNode;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import org.specs.comp.ollir.AccessModifiers;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Object counterpart of OllirGenerator.
+ * Builds the ClassUnit straight from the annotated AST, the result is the same as parsing the code OllirGenerator produces.
+ */
+public class OllirClassUnitGenerator extends ArrayJmmVisitor<Boolean, Integer> {
+    private final ClassUnit classUnit;
+    private final SymbolTable symbolTable;
+
+    public OllirClassUnitGenerator(SymbolTable symbolTable){
+        this.classUnit = new ClassUnit();
+        this.symbolTable = symbolTable;
+
+        addVisit(AstNode.PROGRAM, this::visitProgram);
+        addVisit(AstNode.CLASS_DECLARATION, this::visitClassDecl);
+        addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMainMethodDecl);
+        addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitInstanceMethodDecl);
+    }
+
+    public ClassUnit getClassUnit(){
+        classUnit.buildVarTables();
+        return classUnit;
+    }
+
+    private Integer visitProgram(JmmNode node, Boolean dummy){
+        for(String importString : symbolTable.getImports()){
+            classUnit.addImport(importString);
+        }
+
+        for(var child : node.getChildren()){
+            visit(child);
+        }
+        return 0;
+    }
+
+    private Integer visitClassDecl(JmmNode node, Boolean dummy){
+        classUnit.setClassAccessModifier(AccessModifiers.PUBLIC);
+        classUnit.setClassName(symbolTable.getClassName());
+        var superClass = symbolTable.getSuper();
+        if(superClass != null){
+            classUnit.setSuperClass(superClass);
+        }
+
+        for(Symbol s : symbolTable.getFields()){
+            Field field = new Field();
+            field.setFieldAccessModifier(AccessModifiers.PRIVATE);
+            field.setFieldName(s.getName());
+            field.setFieldType(OllirUtils.toOllirType(OllirUtils.getCode(s.getType())));
+            classUnit.addField(field);
+        }
+
+        Method constructor = new Method(classUnit);
+        constructor.setConstructMethod();
+        constructor.addInstr(new CallInstruction(CallType.invokespecial,
+                new Operand("this", new ClassType(ElementType.THIS, symbolTable.getClassName())),
+                new LiteralElement("\"<init>\"", new Type(ElementType.STRING)),
+                new ArrayList<>(), new Type(ElementType.VOID)));
+        constructor.setReturnType(new Type(ElementType.VOID));
+        constructor.setMethodName(symbolTable.getClassName());
+        classUnit.addMethod(constructor);
+
+        for(var child : node.getChildren()){
+            visit(child);
+        }
+
+        return 0;
+    }
+
+    private Integer visitMainMethodDecl(JmmNode node, Boolean dummy){
+        Method method = new Method(classUnit);
+        method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+        method.setStaticMethod();
+
+        Operand args = new Operand("args", OllirUtils.toOllirType("array.String"));
+        args.setParamId(0);
+        method.addParam(args);
+
+        InstructionList code = generateMethodStatements(node, "main");
+        ReturnInstruction returnInstruction = new ReturnInstruction();
+        returnInstruction.setReturnType(new Type(ElementType.VOID));
+        code.add(returnInstruction);
+        code.addTo(method);
+
+        method.setReturnType(new Type(ElementType.VOID));
+        method.setMethodName("main");
+        classUnit.addMethod(method);
+        return 0;
+    }
+
+    private Integer visitInstanceMethodDecl(JmmNode node, Boolean dummy){
+        String methodSignature = node.get("name");
+        Method method = new Method(classUnit);
+        method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+
+        List<Symbol> params = symbolTable.getParameters(methodSignature);
+        for(int i = 0; i < params.size(); ++i){
+            Symbol s = params.get(i);
+            Operand param = new Operand(s.getName(), OllirUtils.toOllirType(OllirUtils.getCode(s.getType())));
+            param.setParamId(i + 1);
+            method.addParam(param);
+        }
+
+        generateMethodStatements(node, methodSignature).addTo(method);
+
+        method.setReturnType(OllirUtils.toOllirType(OllirUtils.getCode(symbolTable.getReturnType(methodSignature))));
+        method.setMethodName(methodSignature);
+        classUnit.addMethod(method);
+        return 0;
+    }
+
+    private InstructionList generateMethodStatements(JmmNode node, String methodSignature) {
+        int lastParamIndex = -1;
+        for(int i = 0; i < node.getNumChildren(); ++i){
+            if(node.getJmmChild(i).getKind().equals("Parameter")) {
+                lastParamIndex = i;
+            }
+        }
+
+        String ollirReturnType = OllirUtils.getCode(symbolTable.getReturnType(methodSignature));
+        var stmts = node.getChildren().subList(lastParamIndex+1, node.getNumChildren());
+
+        InstructionList code = new InstructionList();
+        OllirInstructionGenerator instructionGenerator = new OllirInstructionGenerator(symbolTable, methodSignature);
+        for(var stmt : stmts){
+            OllirExpression expr = instructionGenerator.visit(stmt, new OllirGeneratorHint(methodSignature, ollirReturnType, false));
+            code.addAll(expr.getCodeBefore());
+        }
+        return code;
+    }
+}
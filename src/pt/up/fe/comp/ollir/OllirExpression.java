@@ -0,0 +1,56 @@
+package pt.up.fe.comp.ollir;
+
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+
+// Object counterpart of OllirStatement: the instructions computing a value, and the value itself
+// The value is either a simple element (variable, literal, array access) or an instruction that still has to be assigned
+public class OllirExpression {
+    InstructionList codeBefore;
+    Element element;
+    Instruction rhs;
+
+    public OllirExpression(InstructionList codeBefore, Element element){
+        this.codeBefore = codeBefore;
+        this.element = element;
+        this.rhs = null;
+    }
+
+    public OllirExpression(InstructionList codeBefore, Instruction rhs){
+        this.codeBefore = codeBefore;
+        this.element = null;
+        this.rhs = rhs;
+    }
+
+    public static OllirExpression empty(InstructionList codeBefore){
+        return new OllirExpression(codeBefore, (Element) null);
+    }
+
+    public InstructionList getCodeBefore() {
+        return codeBefore;
+    }
+
+    public boolean isEmpty() {
+        return element == null && rhs == null;
+    }
+
+    public boolean isElement() {
+        return element != null;
+    }
+
+    public Element getElement() {
+        return element;
+    }
+
+    // The value as the right hand side of an assignment
+    public Instruction getRhs() {
+        if(rhs != null){
+            return rhs;
+        }
+        if(element == null){
+            throw new RuntimeException("Expression has no value");
+        }
+        return new SingleOpInstruction(element);
+    }
+}
@@ -3,13 +3,13 @@ package pt.up.fe.comp.ollir;
 import pt.up.fe.comp.ast.AstNode;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class OllirGenerator extends AJmmVisitor<Boolean, Integer> {
+public class OllirGenerator extends ArrayJmmVisitor<Boolean, Integer> {
     private final StringBuilder code;
     private final SymbolTable symbolTable;
 
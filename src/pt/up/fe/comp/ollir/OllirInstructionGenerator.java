@@ -0,0 +1,697 @@
+package pt.up.fe.comp.ollir;
+
+import pt.up.fe.comp.analysis.MethodScope;
+import pt.up.fe.comp.ast.AstNode;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.OpCondInstruction;
+import org.specs.comp.ollir.OpInstruction;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpCondInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.ArrayList;
+
+/*
+ * Object counterpart of OllirStatementGenerator.
+ * Builds the OLLIR instructions of a method directly, without going through the textual representation.
+ * Temporaries, labels and instruction order are the same as in the text, so both paths produce the same ClassUnit.
+ */
+public class OllirInstructionGenerator extends ArrayJmmVisitor<OllirGeneratorHint, OllirExpression> {
+    SymbolTable symbolTable;
+    String methodSignature;
+    MethodScope scope;
+    Integer temporaryVariableCounter = 0;
+    Integer labelCounter = 0;
+
+    public OllirInstructionGenerator(SymbolTable symbolTable, String methodSignature){
+        this.symbolTable = symbolTable;
+        this.methodSignature = methodSignature;
+        this.scope = new MethodScope(symbolTable, methodSignature);
+        setDefaultVisit(this::defaultVisit);
+        addVisit(AstNode.ASSIGNMENT, this::visitAssignment);
+        addVisit(AstNode.INT_LITERAL, this::visitIntLiteral);
+        addVisit(AstNode.UNARY_OP, this::visitUnaryOp);
+        addVisit(AstNode.BINARY_OP, this::visitBinaryOp);
+        addVisit(AstNode.ID, this::visitId);
+        addVisit(AstNode.BOOL, this::visitBool);
+        addVisit(AstNode.RETURN_EXPRESSION, this::visitReturnExpression);
+        addVisit(AstNode.CLASS_METHOD, this::visitClassMethod);
+        addVisit(AstNode.ARGUMENT, this::visitArgument);
+        addVisit(AstNode.STATEMENT_EXPRESSION, this::visitStatementExpression);
+        addVisit(AstNode.CLASS_INITIALIZATION, this::visitClassInitialization);
+        addVisit(AstNode.EXPRESSION_IN_PARENTHESES, this::visitExpressionInParentheses);
+        addVisit(AstNode.IF_STATEMENT, this::visitIfStatement);
+        addVisit(AstNode.CONDITION, this::visitCondition);
+        addVisit(AstNode.STATEMENT_SCOPE, this::visitStatementScope);
+        addVisit(AstNode.WHILE_STATEMENT, this::visitWhileStatement);
+        addVisit(AstNode.LENGTH_OP, this::visitLengthOp);
+        addVisit(AstNode.ARRAY_ACCESS, this::visitArrayAccess);
+        addVisit(AstNode.ARRAY_INITIALIZATION, this::visitArrayInitialization);
+        addVisit(AstNode.ARRAY_ASSIGNMENT, this::visitArrayAssignment);
+    }
+
+    private OllirExpression defaultVisit(JmmNode node, OllirGeneratorHint hint){
+        for(var child : node.getChildren()){
+            visit(child, hint);
+        }
+        return OllirExpression.empty(new InstructionList());
+    }
+
+    private OllirExpression visitAssignment(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        String name = node.get("name");
+
+        Operand local = findLocal(name);
+        if(local != null){
+            String type = OllirUtils.getCode(local.getType());
+            OllirGeneratorHint hintForChild = new OllirGeneratorHint(hint.getMethodSignature(), type, false);
+            OllirExpression expr = visit(node.getJmmChild(0), hintForChild);
+            code.addAll(expr.getCodeBefore());
+            code.add(new AssignInstruction(local, OllirUtils.toOllirType(type), expr.getRhs()));
+        } else {
+            Symbol symbol = findField(name);
+            if(symbol == null){
+                throw new RuntimeException("visitAssignment: Unknown variable " + name);
+            }
+            String type = OllirUtils.getCode(symbol.getType());
+            JmmNode child = node.getJmmChild(0);
+            boolean isArrayInitialization = child.getKind().equals("ArrayInitialization");
+            OllirGeneratorHint hintForChild = new OllirGeneratorHint(type, hint.getMethodSignature(), isArrayInitialization);
+
+            OllirExpression expr = visit(child, hintForChild);
+            code.addAll(expr.getCodeBefore());
+            Element value = toElement(expr, type, code);
+            if(value instanceof ArrayOperand){
+                // putfield(this, a.i32, b[i.i32].i32) isn't valid OLLIR
+                value = assignTemporary(type, new SingleOpInstruction(value), code);
+            }
+            code.add(new PutFieldInstruction(thisOperand(), fieldOperand(symbol), value,
+                    new org.specs.comp.ollir.Type(ElementType.VOID)));
+        }
+
+        return OllirExpression.empty(code);
+    }
+
+    private OllirExpression visitIntLiteral(JmmNode node, OllirGeneratorHint hint){
+        String type = node.get("type");
+        String stringValue = node.get("value");
+        int value = 0;
+        switch(type){
+            case "decimal": value = Integer.parseInt(stringValue);
+                break;
+            case "binary": value = Integer.parseInt(stringValue, 2);
+                break;
+            case "octal": value = Integer.parseInt(stringValue, 8);
+                break;
+            case "hexadecimal": value = Integer.parseInt(stringValue, 16);
+                break;
+        }
+        return new OllirExpression(new InstructionList(),
+                new LiteralElement(String.valueOf(value), new org.specs.comp.ollir.Type(ElementType.INT32)));
+    }
+
+    private OllirExpression visitBool(JmmNode node, OllirGeneratorHint hint){
+        String value = node.get("value").equals("true") ? "1" : "0";
+        return new OllirExpression(new InstructionList(),
+                new LiteralElement(value, new org.specs.comp.ollir.Type(ElementType.BOOLEAN)));
+    }
+
+    private OllirExpression visitBinaryOp(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+
+        String op = node.get("op");
+
+        OperationType operationType;
+        String returnType;
+        String operandType;
+        switch(op){
+            case "AND":
+                operationType = OperationType.ANDB; returnType = "bool"; operandType = "bool";
+                break;
+            case "LOW":
+                operationType = OperationType.LTH; returnType = "bool"; operandType = "i32";
+                break;
+            case "ADD":
+                operationType = OperationType.ADD; returnType = "i32"; operandType = "i32";
+                break;
+            case "SUB":
+                operationType = OperationType.SUB; returnType = "i32"; operandType = "i32";
+                break;
+            case "MUL":
+                operationType = OperationType.MUL; returnType = "i32"; operandType = "i32";
+                break;
+            case "DIV":
+                operationType = OperationType.DIV; returnType = "i32"; operandType = "i32";
+                break;
+            default:
+                throw new RuntimeException("visitBinaryOp: Unsupported operator " + op);
+        }
+
+        OllirGeneratorHint hintForChild = new OllirGeneratorHint(hint.getMethodSignature(), operandType, true);
+        OllirExpression expr1 = visit(node.getJmmChild(0), hintForChild);
+        OllirExpression expr2 = visit(node.getJmmChild(1), hintForChild);
+        code.addAll(expr1.getCodeBefore());
+        Element left = toElement(expr1, operandType, code);
+        code.addAll(expr2.getCodeBefore());
+        Element right = toElement(expr2, operandType, code);
+
+        Instruction rhs = new BinaryOpInstruction(left,
+                new Operation(operationType, OllirUtils.toOllirType(returnType)), right);
+        if(hint.needsTemporaryVar()) {
+            Operand temporaryVariable = assignTemporary(returnType, rhs, code);
+            return new OllirExpression(code, temporaryVariable);
+        }
+        return new OllirExpression(code, rhs);
+    }
+
+    private OllirExpression visitUnaryOp(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+
+        String op = node.get("op");
+        if(!op.equals("NEG")){
+            return OllirExpression.empty(code);
+        }
+
+        OllirGeneratorHint childHint = new OllirGeneratorHint(hint.getMethodSignature(), "bool", true);
+        OllirExpression childExpr = visit(node.getJmmChild(0), childHint);
+        code.addAll(childExpr.getCodeBefore());
+
+        Instruction rhs = new UnaryOpInstruction(new Operation(OperationType.NOTB, OllirUtils.toOllirType("bool")),
+                toElement(childExpr, "bool", code));
+        if(hint.needsTemporaryVar()){
+            Operand temporary = assignTemporary("bool", rhs, code);
+            return new OllirExpression(code, temporary);
+        }
+        return new OllirExpression(code, rhs);
+    }
+
+    private OllirExpression visitId(JmmNode node, OllirGeneratorHint hint){
+        String name = node.get("name");
+        Operand local = findLocal(name);
+        if(local != null){
+            return new OllirExpression(new InstructionList(), local);
+        }
+        Symbol symbol = findField(name);
+        if(symbol != null){
+            InstructionList code = new InstructionList();
+            String type = OllirUtils.getCode(symbol.getType());
+            Instruction getField = new GetFieldInstruction(thisOperand(), fieldOperand(symbol), OllirUtils.toOllirType(type));
+            return new OllirExpression(code, assignTemporary(type, getField, code));
+        }
+        return OllirExpression.empty(new InstructionList());
+    }
+
+    private OllirExpression visitReturnExpression(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        OllirExpression expr = visit(node.getJmmChild(0),
+                new OllirGeneratorHint(hint.getMethodSignature(), hint.getExpectedType(), true));
+        code.addAll(expr.getCodeBefore());
+
+        Element value = toElement(expr, hint.getExpectedType(), code);
+        ReturnInstruction returnInstruction = new ReturnInstruction(value);
+        returnInstruction.setReturnType(OllirUtils.toOllirType(getElementTypeCode(value)));
+        code.add(returnInstruction);
+        return OllirExpression.empty(code);
+    }
+
+    private OllirExpression visitClassMethod(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        String methodName = node.get("name");
+
+        // ID Node
+        JmmNode idNode = node.getJmmChild(0);
+        OllirExpression idExpr = visit(idNode, hint);
+        String idName = idNode.get("name");
+
+        // Arguments Node
+        ArrayList<Element> arguments = generateArguments(node.getJmmChild(1), methodName, idName, code);
+
+        // Choose correct invoke
+        CallType callType;
+        Element firstArg;
+        if(idName.equals("this")){
+            callType = CallType.invokevirtual;
+            firstArg = thisOperand();
+        }
+        else if(idExpr.isEmpty()){
+            callType = CallType.invokestatic;
+            firstArg = new Operand(idName, new ClassType(ElementType.CLASS, symbolTable.getClassName()));
+        } else {
+            callType = CallType.invokevirtual;
+
+            InstructionList idCode = idExpr.getCodeBefore();
+            Element receiver = toElement(idExpr, "", idCode);
+            if(receiver instanceof Operand && ((Operand) receiver).isParameter()){
+                // Parameters can't be the first argument of a call, they're copied to a temporary first
+                firstArg = assignTemporary(getElementTypeCode(receiver), new SingleOpInstruction(receiver), code);
+            } else {
+                firstArg = receiver;
+            }
+            code.addAll(idCode);
+        }
+        Element methodNameElement = new LiteralElement("\"" + methodName + "\"",
+                new org.specs.comp.ollir.Type(ElementType.STRING));
+
+        // Return
+        String returnTypeString = hint.getExpectedType();
+        boolean returnTypeIsKnown = false;
+        if(idName.equals("this") || idName.equals(symbolTable.getClassName()) || idName.equals(symbolTable.getSuper())) {
+            returnTypeIsKnown = true;
+        }
+        else {
+            Symbol s = findSymbol(idName);
+            if(s != null){
+                String symbolTypeName = s.getType().getName();
+                if(!s.getType().isArray()
+                    && (symbolTypeName.equals(symbolTable.getClassName()) || symbolTypeName.equals(symbolTable.getSuper())
+                )){
+                    returnTypeIsKnown = true;
+                }
+            }
+        }
+
+        if(returnTypeIsKnown){
+            if(symbolTable.getMethods().contains(methodName)){
+                Type returnType = symbolTable.getReturnType(methodName);
+                returnTypeString = OllirUtils.getCode(returnType);
+            }
+        }
+
+        Instruction methodCall = new CallInstruction(callType, firstArg, methodNameElement, arguments,
+                OllirUtils.toOllirType(returnTypeString));
+
+        if(returnTypeString.equals("V")){
+            code.add(methodCall);
+            return OllirExpression.empty(code);
+        } else {
+            if(hint.needsTemporaryVar()){
+                Operand temporaryVariable = assignTemporary(returnTypeString, methodCall, code);
+                return new OllirExpression(code, temporaryVariable);
+            } else {
+                return new OllirExpression(code, methodCall);
+            }
+        }
+    }
+
+    // Appends the code computing the arguments and returns the argument list
+    // Receives methodName to search for parameter types
+    private ArrayList<Element> generateArguments(JmmNode node, String methodName, String idName, InstructionList code){
+        ArrayList<Element> arguments = new ArrayList<>();
+
+        boolean parametersAreAvailable = false;
+        List<Symbol> parameters = new ArrayList<>();
+
+        if(symbolTable.getMethods().contains(methodName) && idName.equals("this")){
+            parameters = symbolTable.getParameters(methodName);
+            parametersAreAvailable = true;
+        } else {
+            Symbol s = findSymbol(idName); // Caller can use methodsignature parameters as variable name
+            if(s != null && s.getType().equals(new Type(symbolTable.getClassName(), false))
+                    && symbolTable.getMethods().contains(methodName)){
+                parametersAreAvailable = true;
+                parameters = symbolTable.getParameters(methodName);
+            }
+        }
+
+        for(int i = 0; i < node.getNumChildren(); ++i){
+            String expectedType = parametersAreAvailable ? OllirUtils.getCode(parameters.get(i).getType()) : "";
+            OllirExpression childExpr = visit(node.getJmmChild(i), new OllirGeneratorHint(methodName, expectedType, true));
+            code.addAll(childExpr.getCodeBefore());
+            arguments.add(toElement(childExpr, expectedType, code));
+        }
+        return arguments;
+    }
+
+    private OllirExpression visitArgument(JmmNode node, OllirGeneratorHint hint){
+        return visit(node.getJmmChild(0), hint);
+    }
+
+    private OllirExpression visitStatementExpression(JmmNode node, OllirGeneratorHint hint){
+        OllirExpression expr = visit(node.getJmmChild(0), new OllirGeneratorHint(hint.getMethodSignature(), "V", true));
+        return OllirExpression.empty(expr.getCodeBefore());
+    }
+
+    private OllirExpression visitClassInitialization(JmmNode node, OllirGeneratorHint hint) {
+        InstructionList code = new InstructionList();
+        String className = node.get("name");
+
+        Instruction newObject = new CallInstruction(CallType.NEW,
+                new Operand(className, new ClassType(ElementType.OBJECTREF, className)),
+                new ArrayList<>(), OllirUtils.toOllirType(className));
+        Operand temporaryVar = assignTemporary(className, newObject, code);
+
+        code.add(new CallInstruction(CallType.invokespecial, temporaryVar,
+                new LiteralElement("\"<init>\"", new org.specs.comp.ollir.Type(ElementType.STRING)),
+                new ArrayList<>(), new org.specs.comp.ollir.Type(ElementType.VOID)));
+        return new OllirExpression(code, copyOperand(temporaryVar));
+    }
+
+    private OllirExpression visitExpressionInParentheses(JmmNode node, OllirGeneratorHint hint) {
+        JmmNode child = node.getJmmChild(0);
+        return visit(child, hint);
+    }
+
+    private OllirExpression visitIfStatement(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+
+        JmmNode conditionNode = node.getJmmChild(0);
+        JmmNode ifNode = node.getJmmChild(1);
+        JmmNode elseNode = node.getJmmChild(2);
+
+        OllirExpression conditionExpr = visit(conditionNode, new OllirGeneratorHint(hint.getMethodSignature(), "bool", false));
+        OllirExpression ifExpr = visit(ifNode, hint);
+        OllirExpression elseExpr = visit(elseNode, hint);
+
+        code.addAll(conditionExpr.getCodeBefore());
+        code.add(conditionalBranch(conditionExpr, "else" + labelCounter, code));
+        code.addAll(ifExpr.getCodeBefore());
+        code.add(new GotoInstruction("endif" + labelCounter));
+        code.addLabel("else" + labelCounter);
+        code.addAll(elseExpr.getCodeBefore());
+        code.addLabel("endif" + labelCounter);
+        labelCounter++;
+
+        return OllirExpression.empty(code);
+    }
+
+    private OllirExpression visitCondition(JmmNode node, OllirGeneratorHint hint){
+        return visit(node.getJmmChild(0), new OllirGeneratorHint(methodSignature, "bool", hint.needsTemporaryVar()));
+    }
+
+    private OllirExpression visitStatementScope(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        for(JmmNode child : node.getChildren()){
+            OllirExpression expr = visit(child, hint);
+            code.addAll(expr.getCodeBefore());
+        }
+        return OllirExpression.empty(code);
+    }
+
+    private OllirExpression visitWhileStatement(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+
+        JmmNode conditionNode = node.getJmmChild(0);
+
+        Optional<String> doWhileAnnotation = node.getOptional("doWhile");
+        Boolean doWhile = doWhileAnnotation.isPresent() && doWhileAnnotation.get().equals("true");
+        JmmNode bodyNode = node.getJmmChild(1);
+
+        OllirExpression conditionExpr = visit(conditionNode, new OllirGeneratorHint(hint.getMethodSignature(), "bool", false));
+        OllirExpression bodyExpr = visit(bodyNode, hint);
+
+        if(doWhile){
+            code.addLabel("doWhileLoop" + labelCounter);
+            code.addAll(bodyExpr.getCodeBefore());
+            code.addAll(conditionExpr.getCodeBefore());
+            code.add(conditionalBranch(negate(conditionExpr, code), "doWhileLoop" + labelCounter, code));
+        } else {
+            code.addLabel("loop" + labelCounter);
+            code.addAll(conditionExpr.getCodeBefore());
+            code.add(conditionalBranch(conditionExpr, "endLoop" + labelCounter, code));
+            code.addAll(bodyExpr.getCodeBefore());
+            code.add(new GotoInstruction("loop" + labelCounter));
+            code.addLabel("endLoop" + labelCounter);
+        }
+
+        labelCounter++;
+
+        return OllirExpression.empty(code);
+    }
+
+    private OllirExpression visitLengthOp(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        OllirGeneratorHint childHint = new OllirGeneratorHint(hint.getMethodSignature(), ".i32", false);
+        OllirExpression expr = visit(node.getJmmChild(0), childHint);
+
+        code.addAll(expr.getCodeBefore());
+        Instruction rhs = new CallInstruction(CallType.arraylength, toElement(expr, "array.i32", code),
+                OllirUtils.toOllirType("i32"));
+
+        String parentKind = node.getJmmParent().getKind();
+        if(parentKind.equals("Assignment") || parentKind.equals("ArrayAssignment") ){
+            return new OllirExpression(code, rhs);
+        }
+
+        Operand temporary = assignTemporary("i32", rhs, code);
+        return new OllirExpression(code, temporary);
+    }
+
+    private OllirExpression visitArrayAccess(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        OllirExpression arrayExpr = visit(node.getJmmChild(0), hint);
+        OllirExpression indexExpr = visit(node.getJmmChild(1), new OllirGeneratorHint(hint.getMethodSignature(), "i32", true));
+
+        code.addAll(arrayExpr.getCodeBefore());
+        Element array = toElement(arrayExpr, "array.i32", code);
+        code.addAll(indexExpr.getCodeBefore());
+        Element index = arrayIndex(node.getJmmChild(1), indexExpr, code);
+
+        if(!(array instanceof Operand)){
+            throw new RuntimeException("visitArrayAccess: Expected an array variable");
+        }
+        Operand arrayOperand = (Operand) array;
+        ArrayOperand element = new ArrayOperand(arrayOperand.getName(),
+                OllirUtils.toOllirType(getElementTypeCode(array)), listOf(index));
+        if(arrayOperand.isParameter()){
+            element.setParamId(arrayOperand.getParamId());
+        }
+
+        if(hint.needsTemporaryVar()){
+            Operand temporary = assignTemporary("i32", new SingleOpInstruction(element), code);
+            return new OllirExpression(code, temporary);
+        } else {
+            return new OllirExpression(code, element);
+        }
+    }
+
+    private OllirExpression visitArrayInitialization(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        OllirExpression sizeExpr = visit(node.getJmmChild(0), new OllirGeneratorHint(hint.getMethodSignature(), ".i32", true));
+        code.addAll(sizeExpr.getCodeBefore());
+
+        Instruction rhs = new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()),
+                listOf(toElement(sizeExpr, "i32", code)), OllirUtils.toOllirType("array.i32"));
+        if(hint.needsTemporaryVar()){
+            Operand temporary = assignTemporary("array.i32", rhs, code);
+            return new OllirExpression(code, temporary);
+        }
+        return new OllirExpression(code, rhs);
+    }
+
+    private OllirExpression visitArrayAssignment(JmmNode node, OllirGeneratorHint hint){
+        InstructionList code = new InstructionList();
+        String arrayName = node.get("name");
+
+        OllirExpression indexExpr = visit(node.getJmmChild(0), new OllirGeneratorHint(hint.getMethodSignature(), "i32", true));
+        code.addAll(indexExpr.getCodeBefore());
+
+        // Get index variable
+        Element index = arrayIndex(node.getJmmChild(0), indexExpr, code);
+
+        Symbol symbol = findLocalSymbol(arrayName);
+        if(symbol != null){
+            String elementType = OllirUtils.getCode(new Type(symbol.getType().getName(), false));
+            OllirGeneratorHint hintForChild = new OllirGeneratorHint(elementType, hint.getMethodSignature(), false);
+            OllirExpression expr = visit(node.getJmmChild(1), hintForChild);
+            code.addAll(expr.getCodeBefore());
+
+            ArrayOperand lhs = new ArrayOperand(arrayName, OllirUtils.toOllirType(elementType), listOf(index));
+            code.add(new AssignInstruction(lhs, OllirUtils.toOllirType(elementType), expr.getRhs()));
+        } else {
+            symbol = findField(arrayName);
+            if(symbol == null){
+                throw new RuntimeException("visitArrayAssignment: Unknown variable " + arrayName);
+            }
+            String elementType = OllirUtils.getCode(new Type(symbol.getType().getName(), false));
+            String arrayType = "array." + elementType;
+
+            OllirGeneratorHint hintForChild = new OllirGeneratorHint(elementType, hint.getMethodSignature(), false);
+            OllirExpression expr = visit(node.getJmmChild(1), hintForChild);
+
+            Instruction getField = new GetFieldInstruction(thisOperand(), fieldOperand(symbol), OllirUtils.toOllirType(arrayType));
+            Operand temporaryArrayVar = assignTemporary(arrayType, getField, code);
+
+            code.addAll(expr.getCodeBefore());
+
+            ArrayOperand lhs = new ArrayOperand(temporaryArrayVar.getName(), OllirUtils.toOllirType(elementType), listOf(index));
+            code.add(new AssignInstruction(lhs, OllirUtils.toOllirType(elementType), expr.getRhs()));
+
+            code.add(new PutFieldInstruction(thisOperand(), fieldOperand(symbol), copyOperand(temporaryArrayVar),
+                    new org.specs.comp.ollir.Type(ElementType.VOID)));
+        }
+
+        return OllirExpression.empty(code);
+    }
+
+    // Array indexes must be variables, int[] a; ...; a[0.i32].i32 isn't valid but a[t0.i32].i32
+    private Element arrayIndex(JmmNode indexNode, OllirExpression indexExpr, InstructionList code){
+        if(indexNode.getKind().equals("IntLiteral")){
+            return assignTemporary("i32", indexExpr.getRhs(), code);
+        }
+        return toElement(indexExpr, "i32", code);
+    }
+
+    // Branches jump when their condition is false, so the one back to the start of a do-while loop is on the negation
+    // of the loop's condition
+    private OllirExpression negate(OllirExpression condition, InstructionList code){
+        Instruction instruction = condition.getRhs();
+        if(instruction instanceof BinaryOpInstruction){
+            BinaryOpInstruction comparison = (BinaryOpInstruction) instruction;
+            OperationType negated = OllirUtils.negate(comparison.getOperation().getOpType());
+            if(negated != null){
+                return new OllirExpression(code, new BinaryOpInstruction(comparison.getLeftOperand(),
+                        new Operation(negated, OllirUtils.toOllirType("bool")), comparison.getRightOperand()));
+            }
+        }
+        if(instruction instanceof UnaryOpInstruction
+                && ((UnaryOpInstruction) instruction).getOperation().getOpType() == OperationType.NOTB){
+            return new OllirExpression(code, ((UnaryOpInstruction) instruction).getOperand());
+        }
+        if(condition.isElement() && condition.getElement().isLiteral()){
+            String value = ((LiteralElement) condition.getElement()).getLiteral().equals("0") ? "1" : "0";
+            return new OllirExpression(code, new LiteralElement(value, OllirUtils.toOllirType("bool")));
+        }
+        return new OllirExpression(code, new UnaryOpInstruction(new Operation(OperationType.NOTB,
+                OllirUtils.toOllirType("bool")), toElement(condition, "bool", code)));
+    }
+
+    private Instruction conditionalBranch(OllirExpression condition, String label, InstructionList code){
+        Instruction instruction = condition.getRhs();
+        CondBranchInstruction branch = null;
+        if(instruction instanceof SingleOpInstruction
+            && ((SingleOpInstruction) instruction).getSingleOperand().getType().getTypeOfElement() == ElementType.BOOLEAN){
+            branch = new SingleOpCondInstruction((SingleOpInstruction) instruction);
+        } else if(instruction instanceof OpInstruction
+            && ((OpInstruction) instruction).getOperation().getTypeInfo().getTypeOfElement() == ElementType.BOOLEAN){
+            branch = new OpCondInstruction((OpInstruction) instruction);
+        } else {
+            // Calls and other instructions can't be used as a condition directly
+            Operand temporary = assignTemporary("bool", instruction, code);
+            branch = new SingleOpCondInstruction(new SingleOpInstruction(temporary));
+        }
+        branch.setLabel(label);
+        return branch;
+    }
+
+    // Returns the expression as an element, assigning it to a temporary when it is an instruction
+    private Element toElement(OllirExpression expr, String type, InstructionList code){
+        if(expr.isElement()){
+            return expr.getElement();
+        }
+        if(type.isEmpty() || type.startsWith(".")){
+            type = type.isEmpty() ? getInstructionTypeCode(expr.getRhs()) : type.substring(1);
+        }
+        return assignTemporary(type, expr.getRhs(), code);
+    }
+
+    // Appends a new temporary assignment to the code and returns the variable
+    private Operand assignTemporary(String type, Instruction rhs, InstructionList code){
+        String temporary = "t" + temporaryVariableCounter++;
+        code.add(new AssignInstruction(new Operand(temporary, OllirUtils.toOllirType(type)), OllirUtils.toOllirType(type), rhs));
+        return new Operand(temporary, OllirUtils.toOllirType(type));
+    }
+
+    // Innermost OLLIR type of an element, e.g. i32 for a.array.i32
+    private String getElementTypeCode(Element element){
+        org.specs.comp.ollir.Type type = element.getType();
+        if(type.getTypeOfElement() == ElementType.ARRAYREF){
+            return OllirUtils.getCode(type).substring(("array.").length() * ((ArrayType) type).getNumDimensions());
+        }
+        return OllirUtils.getCode(type);
+    }
+
+    private String getInstructionTypeCode(Instruction instruction){
+        if(instruction instanceof CallInstruction){
+            return OllirUtils.getCode(((CallInstruction) instruction).getReturnType());
+        }
+        if(instruction instanceof OpInstruction){
+            return OllirUtils.getCode(((OpInstruction) instruction).getOperation().getTypeInfo());
+        }
+        if(instruction instanceof SingleOpInstruction){
+            return OllirUtils.getCode(((SingleOpInstruction) instruction).getSingleOperand().getType());
+        }
+        throw new RuntimeException("getInstructionTypeCode: Unexpected instruction " + instruction.getInstType());
+    }
+
+    private ArrayList<Element> listOf(Element element){
+        ArrayList<Element> list = new ArrayList<>();
+        list.add(element);
+        return list;
+    }
+
+    // Every use of a variable gets its own operand, as if it were parsed
+    private Operand copyOperand(Operand operand){
+        Operand copy = new Operand(operand.getName(), operand.getType());
+        if(operand.isParameter()){
+            copy.setParamId(operand.getParamId());
+        }
+        return copy;
+    }
+
+    private Operand thisOperand(){
+        return new Operand("this", new ClassType(ElementType.THIS, symbolTable.getClassName()));
+    }
+
+    private Operand fieldOperand(Symbol field){
+        return new Operand(field.getName(), OllirUtils.toOllirType(OllirUtils.getCode(field.getType())));
+    }
+
+    private Symbol findSymbol(String name){
+        Symbol s = findLocalSymbol(name);
+        if(s == null){
+            return findField(name);
+        }
+        return s;
+    }
+
+    private Symbol findField(String name){
+        return scope.getField(name);
+    }
+
+    private Symbol findLocalSymbol(String name){
+        return scope.getLocalOrParameter(name);
+    }
+
+    // Find local variable or parameter and return a new operand for it
+    private Operand findLocal(String name){
+        Symbol s = scope.getLocal(name);
+        if(s != null){
+            return new Operand(s.getName(), OllirUtils.toOllirType(OllirUtils.getCode(s.getType())));
+        }
+
+        int i = scope.getParameterIndex(name);
+        if(i != -1){
+            s = scope.getParameter(name);
+            Operand operand = new Operand(s.getName(), OllirUtils.toOllirType(OllirUtils.getCode(s.getType())));
+            operand.setParamId(methodSignature.equals("main") ? i : i + 1); // Static
+            return operand;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,238 @@
+package pt.up.fe.comp.ollir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+/*
+ * Writes a ClassUnit back as OLLIR code, in the same layout OllirGenerator uses.
+ * Only used to show the code, the compiler itself works on the object model.
+ */
+public class OllirPrinter {
+    private final StringBuilder code;
+
+    public OllirPrinter(){
+        this.code = new StringBuilder();
+    }
+
+    public static String print(ClassUnit classUnit){
+        OllirPrinter printer = new OllirPrinter();
+        printer.printClass(classUnit);
+        return printer.code.toString();
+    }
+
+    private void printClass(ClassUnit classUnit){
+        for(String importString : classUnit.getImports()){
+            code.append("import ").append(importString).append(";\n");
+        }
+
+        code.append("public ").append(classUnit.getClassName());
+        if(classUnit.getSuperClass() != null){
+            code.append(" extends ").append(classUnit.getSuperClass());
+        }
+        code.append(" {\n");
+
+        for(Field field : classUnit.getFields()){
+            code.append(".field private ").append(field.getFieldName())
+                .append(".").append(OllirUtils.getCode(field.getFieldType())).append(";\n");
+        }
+
+        for(Method method : classUnit.getMethods()){
+            printMethod(method);
+        }
+
+        code.append("}\n");
+    }
+
+    private void printMethod(Method method){
+        if(method.isConstructMethod()){
+            code.append(".construct ");
+        } else {
+            code.append(".method public ");
+            if(method.isStaticMethod()){
+                code.append("static ");
+            }
+        }
+
+        String params = method.getParams().stream()
+                .map(param -> ((Operand) param).getName() + "." + OllirUtils.getCode(param.getType()))
+                .collect(Collectors.joining(", "));
+        code.append(method.getMethodName()).append("(").append(params).append(").")
+            .append(OllirUtils.getCode(method.getReturnType())).append("{\n");
+
+        // Method.getLabels(instruction) caches the labels, the register allocator may still move them
+        Map<Instruction, List<String>> labels = new HashMap<>();
+        for(var entry : method.getLabels().entrySet()){
+            labels.computeIfAbsent(entry.getValue(), instruction -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        for(Instruction instruction : method.getInstructions()){
+            for(String label : labels.getOrDefault(instruction, List.of())){
+                code.append(label).append(":\n");
+            }
+            printInstruction(instruction);
+            code.append(";\n");
+        }
+
+        code.append("}\n\n");
+    }
+
+    private void printInstruction(Instruction instruction){
+        switch(instruction.getInstType()){
+            case ASSIGN:
+                AssignInstruction assign = (AssignInstruction) instruction;
+                code.append(element(assign.getDest())).append(" :=.")
+                    .append(OllirUtils.getCode(assign.getTypeOfAssign())).append(" ");
+                printInstruction(assign.getRhs());
+                break;
+            case CALL:
+                printCall((CallInstruction) instruction);
+                break;
+            case GOTO:
+                code.append("goto ").append(((GotoInstruction) instruction).getLabel());
+                break;
+            case BRANCH:
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                code.append("if(");
+                printInstruction(branch.getCondition());
+                code.append(") goto ").append(branch.getLabel());
+                break;
+            case RETURN:
+                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
+                code.append("ret.").append(OllirUtils.getCode(returnInstruction.getReturnType()));
+                if(returnInstruction.hasReturnValue()){
+                    code.append(" ").append(element(returnInstruction.getOperand()));
+                }
+                break;
+            case GETFIELD:
+                GetFieldInstruction getField = (GetFieldInstruction) instruction;
+                code.append("getfield(").append(element(getField.getFirstOperand())).append(", ")
+                    .append(element(getField.getSecondOperand())).append(").")
+                    .append(OllirUtils.getCode(getField.getFieldType()));
+                break;
+            case PUTFIELD:
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                code.append("putfield(").append(element(putField.getFirstOperand())).append(", ")
+                    .append(element(putField.getSecondOperand())).append(", ")
+                    .append(element(putField.getThirdOperand())).append(").V");
+                break;
+            case UNARYOPER:
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) instruction;
+                code.append(operation(unaryOp.getOperation())).append(" ").append(element(unaryOp.getOperand()));
+                break;
+            case BINARYOPER:
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                code.append(element(binaryOp.getLeftOperand())).append(" ")
+                    .append(operation(binaryOp.getOperation())).append(" ")
+                    .append(element(binaryOp.getRightOperand()));
+                break;
+            case NOPER:
+                code.append(element(((SingleOpInstruction) instruction).getSingleOperand()));
+                break;
+            default:
+                throw new RuntimeException("printInstruction: Unsupported instruction " + instruction.getInstType());
+        }
+    }
+
+    private void printCall(CallInstruction call){
+        switch(call.getInvocationType()){
+            case arraylength:
+                code.append("arraylength(").append(element(call.getFirstArg())).append(")");
+                break;
+            case NEW:
+                // new(Class) or new(array, size)
+                code.append("new(").append(((Operand) call.getFirstArg()).getName());
+                printArguments(call.getListOfOperands());
+                code.append(")");
+                break;
+            default:
+                code.append(call.getInvocationType()).append("(");
+                Element firstArg = call.getFirstArg();
+                if(firstArg.getType().getTypeOfElement() == ElementType.CLASS){
+                    code.append(((Operand) firstArg).getName());
+                } else {
+                    code.append(element(firstArg));
+                }
+                code.append(", ").append(((LiteralElement) call.getSecondArg()).getLiteral());
+                printArguments(call.getListOfOperands());
+                code.append(")");
+        }
+        code.append(".").append(OllirUtils.getCode(call.getReturnType()));
+    }
+
+    private void printArguments(List<Element> arguments){
+        for(Element argument : arguments){
+            code.append(", ").append(element(argument));
+        }
+    }
+
+    private String element(Element element){
+        if(element.isLiteral()){
+            return ((LiteralElement) element).getLiteral() + "." + OllirUtils.getCode(element.getType());
+        }
+        Operand operand = (Operand) element;
+        if(operand.getType().getTypeOfElement() == ElementType.THIS){
+            return "this";
+        }
+
+        StringBuilder result = new StringBuilder();
+        if(operand.isParameter()){
+            result.append("$").append(operand.getParamId()).append(".");
+        }
+        result.append(operand.getName());
+        if(operand instanceof ArrayOperand){
+            for(Element index : ((ArrayOperand) operand).getIndexOperands()){
+                result.append("[").append(element(index)).append("]");
+            }
+        }
+        return result.append(".").append(OllirUtils.getCode(operand.getType())).toString();
+    }
+
+    private String operation(Operation operation){
+        String symbol;
+        switch(operation.getOpType()){
+            case ADD: symbol = "+"; break;
+            case SUB: symbol = "-"; break;
+            case MUL: symbol = "*"; break;
+            case DIV: symbol = "/"; break;
+            case AND: symbol = "&"; break;
+            case OR: symbol = "|"; break;
+            case XOR: symbol = "^"; break;
+            case ANDB: symbol = "&&"; break;
+            case ORB: symbol = "||"; break;
+            case NOTB: symbol = "!"; break;
+            case LTH: symbol = "<"; break;
+            case GTH: symbol = ">"; break;
+            case LTE: symbol = "<="; break;
+            case GTE: symbol = ">="; break;
+            case EQ: symbol = "=="; break;
+            case NEQ: symbol = "!="; break;
+            default:
+                throw new RuntimeException("operation: Unsupported operation " + operation.getOpType());
+        }
+        return symbol + "." + OllirUtils.getCode(operation.getTypeInfo());
+    }
+}
@@ -1,8 +1,9 @@
 package pt.up.fe.comp.ollir;
 
+import pt.up.fe.comp.analysis.MethodScope;
 import pt.up.fe.comp.ast.AstNode;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
@@ -11,15 +12,17 @@ import java.util.List;
 import java.util.Optional;
 import java.util.ArrayList;
 
-public class OllirStatementGenerator extends AJmmVisitor<OllirGeneratorHint, OllirStatement> {
+public class OllirStatementGenerator extends ArrayJmmVisitor<OllirGeneratorHint, OllirStatement> {
     SymbolTable symbolTable;
     String methodSignature;
+    MethodScope scope;
     Integer temporaryVariableCounter = 0;
     Integer labelCounter = 0;
 
     public OllirStatementGenerator(SymbolTable symbolTable, String methodSignature){
         this.symbolTable = symbolTable;
         this.methodSignature = methodSignature;
+        this.scope = new MethodScope(symbolTable, methodSignature);
         setDefaultVisit(this::defaultVisit);
         addVisit(AstNode.ASSIGNMENT, this::visitAssignment);
         addVisit(AstNode.INT_LITERAL, this::visitIntLiteral);
@@ -397,8 +400,9 @@ public class OllirStatementGenerator extends AJmmVisitor<OllirGeneratorHint, Oll
         if(doWhile){
             code.append("doWhileLoop").append(labelCounter).append(": \n");
             code.append(bodyStatement.getCodeBefore());
-            code.append(conditionStatement.getCodeBefore())
-                .append(String.format("if(%s) goto doWhileLoop%d;\n", conditionStatement.getResultVariable(), labelCounter));
+            code.append(conditionStatement.getCodeBefore());
+            String condition = negate(conditionStatement.getResultVariable(), code);
+            code.append(String.format("if(%s) goto doWhileLoop%d;\n", condition, labelCounter));
         } else {
             code.append("loop").append(labelCounter).append(": \n");
             code.append(conditionStatement.getCodeBefore())
@@ -538,6 +542,25 @@ public class OllirStatementGenerator extends AJmmVisitor<OllirGeneratorHint, Oll
         return new OllirStatement(code.toString(), symbol.getName());
     }
  
+    // Branches jump when their condition is false, so the one back to the start of a do-while loop is on the negation
+    // of the loop's condition
+    private String negate(String condition, StringBuilder code){
+        String[] parts = condition.split(" ");
+        if(parts.length == 3 && parts[1].equals("<.bool")){
+            return parts[0] + " >=.bool " + parts[2];
+        }
+        if(parts.length == 2 && parts[0].equals("!.bool")){
+            return parts[1];
+        }
+        if(condition.equals("0.bool") || condition.equals("1.bool")){
+            return condition.equals("0.bool") ? "1.bool" : "0.bool";
+        }
+        if(parts.length == 1){
+            return "!.bool " + condition;
+        }
+        return "!.bool " + assignTemporary("bool", condition, code);
+    }
+
     // Appends a new temporary assignment to the code StringBuilder and returns the variable name
     private String assignTemporary(String type, String rhs, StringBuilder code){
         String temporary = "t" + temporaryVariableCounter++ + "." + type;
@@ -556,32 +579,28 @@ public class OllirStatementGenerator extends AJmmVisitor<OllirGeneratorHint, Oll
     // Return symbol for a given field
     // The symbol name is already an valid OLLIR code
     private Symbol findField(String name){
-        for(Symbol s:symbolTable.getFields()){
-            if(s.getName().equals(name)){
-                return new Symbol(s.getType(), OllirUtils.getCode(s));
-            }
+        Symbol s = scope.getField(name);
+        if(s == null){
+            return null;
         }
-        return null;
+        return new Symbol(s.getType(), OllirUtils.getCode(s));
     }
 
     // Find local variable or parameter and return corresponding symbol
     // The symbol name is already an valid OLLIR code
     private Symbol findLocal(String name){
-        for(Symbol s : symbolTable.getLocalVariables(methodSignature)){
-            if(s.getName().equals(name)){
-                return new Symbol(s.getType(), OllirUtils.getCode(s));
-            }
+        Symbol s = scope.getLocal(name);
+        if(s != null){
+            return new Symbol(s.getType(), OllirUtils.getCode(s));
         }
 
-        List<Symbol> parameters = symbolTable.getParameters(methodSignature);
-        for(int i = 0; i < parameters.size(); ++i){
-            Symbol s = parameters.get(i);
-            if(s.getName().equals(name)){
-                if(methodSignature.equals("main")) { // Static
-                    return new Symbol(s.getType(), "$" + String.valueOf(i) + "." + OllirUtils.getCode(s));
-                } else {
-                    return new Symbol(s.getType(), "$" + String.valueOf(i+1) + "." + OllirUtils.getCode(s));
-                }
+        int i = scope.getParameterIndex(name);
+        if(i != -1){
+            s = scope.getParameter(name);
+            if(methodSignature.equals("main")) { // Static
+                return new Symbol(s.getType(), "$" + String.valueOf(i) + "." + OllirUtils.getCode(s));
+            } else {
+                return new Symbol(s.getType(), "$" + String.valueOf(i+1) + "." + OllirUtils.getCode(s));
             }
         }
         return null;
@@ -1,5 +1,31 @@
 package pt.up.fe.comp.ollir;
 
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 
@@ -28,4 +54,246 @@ public class OllirUtils {
         }
         return jmmType;
     }
+
+    // Builds the OLLIR type of a type code (i32, bool, array.i32, ...), as the OLLIR parser would
+    public static org.specs.comp.ollir.Type toOllirType(String code){
+        if(code.startsWith(".")){
+            code = code.substring(1);
+        }
+
+        int dimensions = 0;
+        while(code.startsWith("array.")){
+            dimensions++;
+            code = code.substring("array.".length());
+        }
+
+        ElementType elementType;
+        switch(code) {
+            case "i32": elementType = ElementType.INT32; break;
+            case "bool": elementType = ElementType.BOOLEAN; break;
+            case "String": elementType = ElementType.STRING; break;
+            case "V": elementType = ElementType.VOID; break;
+            case "": throw new RuntimeException("toOllirType: Missing OLLIR type");
+            default: elementType = ElementType.OBJECTREF;
+        }
+
+        if(dimensions > 0){
+            ArrayType arrayType = new ArrayType();
+            arrayType.setNumDimensions(dimensions);
+            arrayType.setTypeOfElements(elementType);
+            if(elementType == ElementType.OBJECTREF || elementType == ElementType.STRING){
+                arrayType.setElementClass(code);
+            }
+            return arrayType;
+        }
+        if(elementType == ElementType.OBJECTREF){
+            return new ClassType(elementType, code);
+        }
+        return new org.specs.comp.ollir.Type(elementType);
+    }
+
+    // Inverse of toOllirType
+    public static String getCode(org.specs.comp.ollir.Type type){
+        switch(type.getTypeOfElement()) {
+            case ARRAYREF:
+                ArrayType arrayType = (ArrayType) type;
+                String elementCode;
+                switch(arrayType.getArrayType()) {
+                    case INT32: elementCode = "i32"; break;
+                    case BOOLEAN: elementCode = "bool"; break;
+                    case STRING: elementCode = "String"; break;
+                    default: elementCode = arrayType.getElementClass();
+                }
+                return "array.".repeat(arrayType.getNumDimensions()) + elementCode;
+            case INT32: return "i32";
+            case BOOLEAN: return "bool";
+            case STRING: return "String";
+            case VOID: return "V";
+            default: return ((ClassType) type).getName();
+        }
+    }
+
+    // Method.buildCFG only adds edges, they must be removed before building the CFG again
+    public static void clearCFG(Method method){
+        for(Node node : List.of(method.getBeginNode(), method.getEndNode())){
+            node.getSuccessors().clear();
+            node.getPredecessors().clear();
+        }
+        for(Instruction instruction : method.getInstructions()){
+            instruction.getSuccessors().clear();
+            instruction.getPredecessors().clear();
+        }
+    }
+
+    // Variables an instruction reads, with the indexes of array accesses and the array an element is stored in
+    public static List<Operand> getUsedOperands(Instruction instruction){
+        List<Operand> operands = new ArrayList<>();
+        collectOperands(instruction, operands);
+        return operands;
+    }
+
+    // The variable an assignment writes, null for other instructions and array elements
+    public static Operand getDefinedVariable(Instruction instruction){
+        if(instruction == null || instruction.getInstType() != InstructionType.ASSIGN){
+            return null;
+        }
+        Element dest = ((AssignInstruction) instruction).getDest();
+        return dest instanceof ArrayOperand ? null : (Operand) dest;
+    }
+
+    private static void collectOperands(Instruction instruction, List<Operand> operands){
+        switch (instruction.getInstType()) {
+            case ASSIGN:
+                AssignInstruction assignInstruction = (AssignInstruction) instruction;
+                if(assignInstruction.getDest() instanceof ArrayOperand){
+                    addOperand(assignInstruction.getDest(), operands);
+                }
+                collectOperands(assignInstruction.getRhs(), operands);
+                break;
+            case BINARYOPER:
+                BinaryOpInstruction binOp = (BinaryOpInstruction) instruction;
+                addOperand(binOp.getLeftOperand(), operands);
+                addOperand(binOp.getRightOperand(), operands);
+                break;
+            case BRANCH:
+                collectOperands(((CondBranchInstruction) instruction).getCondition(), operands);
+                break;
+            case CALL:
+                CallInstruction callInstruction = (CallInstruction) instruction;
+                if(callInstruction.getInvocationType() != CallType.invokestatic && callInstruction.getInvocationType() != CallType.NEW){
+                    addOperand(callInstruction.getFirstArg(), operands);
+                }
+                if(callInstruction.getListOfOperands() != null){
+                    for(var operand : callInstruction.getListOfOperands()){
+                        addOperand(operand, operands);
+                    }
+                }
+                break;
+            case GETFIELD:
+                addOperand(((GetFieldInstruction) instruction).getFirstOperand(), operands);
+                break;
+            case NOPER:
+                addOperand(((SingleOpInstruction) instruction).getSingleOperand(), operands);
+                break;
+            case PUTFIELD:
+                PutFieldInstruction putFieldInstruction = (PutFieldInstruction) instruction;
+                addOperand(putFieldInstruction.getFirstOperand(), operands);
+                addOperand(putFieldInstruction.getThirdOperand(), operands);
+                break;
+            case RETURN:
+                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
+                if (returnInstruction.hasReturnValue()) {
+                    addOperand(returnInstruction.getOperand(), operands);
+                }
+                break;
+            case UNARYOPER:
+                addOperand(((UnaryOpInstruction) instruction).getOperand(), operands);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void addOperand(Element element, List<Operand> operands){
+        if(element.isLiteral() || element.getType().getTypeOfElement() == ElementType.THIS){
+            return;
+        }
+        Operand operand = (Operand) element;
+        operands.add(operand);
+        if(operand instanceof ArrayOperand){
+            for(Element index : ((ArrayOperand) operand).getIndexOperands()){
+                addOperand(index, operands);
+            }
+        }
+    }
+
+    // Whether computing the value can do anything but give the value
+    public static boolean hasSideEffects(Instruction rhs){
+        switch(rhs.getInstType()){
+            case CALL:
+                CallInstruction call = (CallInstruction) rhs;
+                CallType invocationType = call.getInvocationType();
+                if(invocationType == CallType.ldc){
+                    return false;
+                }
+                if(invocationType != CallType.NEW){
+                    return true;    // Method calls, and arraylength can throw
+                }
+                if(call.getReturnType().getTypeOfElement() != ElementType.ARRAYREF){
+                    return false;   // The constructor is called apart, and reads the object
+                }
+                // A negative size throws
+                Element length = call.getListOfOperands().get(0);
+                return !length.isLiteral() || Integer.parseInt(((LiteralElement) length).getLiteral()) < 0;
+            case BINARYOPER:
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                Element right = binaryOp.getRightOperand();
+                if(binaryOp.getOperation().getOpType() == OperationType.DIV
+                        && (!right.isLiteral() || ((LiteralElement) right).getLiteral().equals("0"))){
+                    return true;
+                }
+                return isArrayAccess(binaryOp.getLeftOperand()) || isArrayAccess(right);
+            case UNARYOPER:
+                return isArrayAccess(((UnaryOpInstruction) rhs).getOperand());
+            case NOPER:
+                return isArrayAccess(((SingleOpInstruction) rhs).getSingleOperand());
+            case GETFIELD:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    // A conditional branch jumps when its condition is false: if(i.i32 <.bool n.i32) goto end; leaves a loop once
+    // i >= n. The backends emit every branch this way, and do-while loops negate their condition to jump back
+    public static boolean jumps(int condition){
+        return condition == 0;
+    }
+
+    // The comparison that holds when the given one doesn't, null for other operations
+    public static OperationType negate(OperationType comparison){
+        switch(comparison){
+            case LTH: return OperationType.GTE;
+            case LTE: return OperationType.GTH;
+            case GTH: return OperationType.LTE;
+            case GTE: return OperationType.LTH;
+            default: return null;
+        }
+    }
+
+    // The literal an assignment like i = i + 1 (or i = 1 + i, or i = i - 1) adds to its variable, null for other
+    // instructions and for values an iinc can't hold
+    public static Integer getIncrement(AssignInstruction instruction){
+        Element dest = instruction.getDest();
+        Instruction rhs = instruction.getRhs();
+        if(dest instanceof ArrayOperand || rhs.getInstType() != InstructionType.BINARYOPER){
+            return null;
+        }
+        String name = ((Operand) dest).getName();
+        BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+        OperationType operation = binaryOp.getOperation().getOpType();
+        Element left = binaryOp.getLeftOperand();
+        Element right = binaryOp.getRightOperand();
+        long increment;
+        if(operation == OperationType.ADD && left.isLiteral() && isVariable(right, name)){
+            increment = Long.parseLong(((LiteralElement) left).getLiteral());
+        } else if((operation == OperationType.ADD || operation == OperationType.SUB) && right.isLiteral()
+                && isVariable(left, name)){
+            increment = Long.parseLong(((LiteralElement) right).getLiteral());
+            increment = operation == OperationType.ADD ? increment : -increment;
+        } else {
+            return null;
+        }
+        // A wide iinc takes 16 bits
+        return increment < Short.MIN_VALUE || increment > Short.MAX_VALUE ? null : (int) increment;
+    }
+
+    private static boolean isVariable(Element element, String name){
+        return !element.isLiteral() && !(element instanceof ArrayOperand) && ((Operand) element).getName().equals(name);
+    }
+
+    // Reading an array element can throw
+    private static boolean isArrayAccess(Element element){
+        return element instanceof ArrayOperand;
+    }
 }
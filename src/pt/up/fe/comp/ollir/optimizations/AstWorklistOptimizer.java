@@ -0,0 +1,118 @@
+package pt.up.fe.comp.ollir.optimizations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.up.fe.comp.ast.AstNode;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.ollir.optimizations.constant_folding.ConstantFoldingMethodVisitor;
+import pt.up.fe.comp.ollir.optimizations.constant_propagation.ConstantPropagationMethodVisitor;
+import pt.up.fe.comp.ollir.optimizations.if_while_removal.IfWhileRemoverMethodVisitor;
+
+/*
+ * Applies constant propagation, constant folding and if/while removal until there's nothing left to optimize, one
+ * method at a time.
+ * The passes only look inside the method they're given, so a method that wasn't changed in a round can't be changed in
+ * the next one: only the methods some pass changed go on to the next round. Each method keeps its visitors across the
+ * rounds. After the given number of rounds the methods left are kept as they are, the code is correct after any round.
+ */
+public class AstWorklistOptimizer extends ArrayJmmVisitor<List<AstWorklistOptimizer.MethodPasses>, Boolean> {
+    public static final int DEFAULT_ROUNDS = 100;
+
+    private final SymbolTable symbolTable;
+    private final int maxRounds;
+    private final boolean debug;
+
+    public AstWorklistOptimizer(SymbolTable symbolTable, int maxRounds){
+        this(symbolTable, maxRounds, false);
+    }
+
+    // With debug, the passes that changed something in each round are printed
+    public AstWorklistOptimizer(SymbolTable symbolTable, int maxRounds, boolean debug){
+        this.symbolTable = symbolTable;
+        this.maxRounds = maxRounds;
+        this.debug = debug;
+        addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMainMethodDeclaration);
+        addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitInstanceMethodDeclaration);
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    // Returns the number of rounds done
+    public int optimize(JmmNode rootNode){
+        List<MethodPasses> worklist = new ArrayList<>();
+        visit(rootNode, worklist);
+
+        int round = 1;
+        while(!worklist.isEmpty()){
+            if(round > maxRounds){
+                if(debug){
+                    System.out.println("\nOptimization stopped after " + maxRounds + " rounds, " + worklist.size()
+                            + " methods could still be optimized");
+                }
+                break;
+            }
+
+            if(debug){
+                System.out.println("\nOptimization round " + round + " (" + worklist.size() + " methods)");
+            }
+            boolean propagated = false;
+            boolean folded = false;
+            boolean removed = false;
+            List<MethodPasses> next = new ArrayList<>();
+            for(MethodPasses method : worklist){
+                boolean methodPropagated = method.propagation.visit(method.node, true);
+                method.folding.visit(method.node, true);
+                boolean methodFolded = method.folding.wasUpdated();
+                boolean methodRemoved = method.removal.visit(method.node, true);
+                if(methodPropagated || methodFolded || methodRemoved){
+                    next.add(method);
+                }
+                propagated |= methodPropagated;
+                folded |= methodFolded;
+                removed |= methodRemoved;
+            }
+            if(debug){
+                System.out.println("Constant propagation - " + propagated);
+                System.out.println("Constant folding - " + folded);
+                System.out.println("If/While removal - " + removed);
+            }
+
+            worklist = next;
+            round++;
+        }
+        return round - 1;
+    }
+
+    private Boolean defaultVisit(JmmNode node, List<MethodPasses> methods){
+        for(var child : node.getChildren()){
+            visit(child, methods);
+        }
+        return true;
+    }
+
+    private Boolean visitMainMethodDeclaration(JmmNode node, List<MethodPasses> methods){
+        methods.add(new MethodPasses(node, new ConstantPropagationMethodVisitor(symbolTable, "main")));
+        return true;
+    }
+
+    private Boolean visitInstanceMethodDeclaration(JmmNode node, List<MethodPasses> methods){
+        methods.add(new MethodPasses(node, new ConstantPropagationMethodVisitor(symbolTable, node.get("name"))));
+        return true;
+    }
+
+    static class MethodPasses {
+        private final JmmNode node;
+        private final ConstantPropagationMethodVisitor propagation;
+        private final ConstantFoldingMethodVisitor folding;
+        private final IfWhileRemoverMethodVisitor removal;
+
+        private MethodPasses(JmmNode node, ConstantPropagationMethodVisitor propagation){
+            this.node = node;
+            this.propagation = propagation;
+            this.folding = new ConstantFoldingMethodVisitor();
+            this.removal = new IfWhileRemoverMethodVisitor();
+        }
+    }
+}
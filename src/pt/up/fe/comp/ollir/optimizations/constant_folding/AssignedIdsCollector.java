@@ -3,10 +3,10 @@ package pt.up.fe.comp.ollir.optimizations.constant_folding;
 import java.util.List;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class AssignedIdsCollector extends AJmmVisitor<List<String>, Boolean> {
+public class AssignedIdsCollector extends ArrayJmmVisitor<List<String>, Boolean> {
     public AssignedIdsCollector(){
         this.setDefaultVisit(this::defaultVisit);
         this.addVisit(AstNode.ASSIGNMENT, this::visitAssignment);
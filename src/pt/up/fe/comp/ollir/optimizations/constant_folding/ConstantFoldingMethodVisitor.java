@@ -4,16 +4,18 @@ import java.lang.StackWalker.Option;
 import java.util.Optional;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 
-public class ConstantFoldingMethodVisitor extends AJmmVisitor<Boolean, Optional<Integer>> {
+public class ConstantFoldingMethodVisitor extends ArrayJmmVisitor<Boolean, Optional<Integer>> {
     Boolean updated;
 
     public ConstantFoldingMethodVisitor(){
         this.updated = false;
         
+        addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMethodDeclaration);
+        addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitMethodDeclaration);
         addVisit(AstNode.INT_LITERAL, this::visitIntLiteral);
         addVisit(AstNode.BOOL, this::visitBool);
         addVisit(AstNode.UNARY_OP, this::visitUnaryOp);
@@ -29,6 +31,19 @@ public class ConstantFoldingMethodVisitor extends AJmmVisitor<Boolean, Optional<
         return Optional.empty();
     }
 
+    // The visitor can be used again on the same method, wasUpdated() is about the last visit
+    private Optional<Integer> visitMethodDeclaration(JmmNode node, Boolean dummy){
+        updated = false;
+        return defaultVisit(node, dummy);
+    }
+
+    // Folds the given expression, returns true if it changed
+    public boolean fold(JmmNode expression){
+        updated = false;
+        visit(expression, true);
+        return updated;
+    }
+
     private Optional<Integer> visitIntLiteral(JmmNode node, Boolean dummy){
         String type = node.get("type");
         String stringValue = node.get("value");
@@ -122,9 +137,9 @@ public class ConstantFoldingMethodVisitor extends AJmmVisitor<Boolean, Optional<
     }
 
     private Optional<Integer> visitExpressionInParentheses(JmmNode node, Boolean dummy){
-        JmmNode child = node.getJmmChild(0);
-        Optional<Integer> result = visit(child);
-        node.replace(child);
+        Optional<Integer> result = visit(node.getJmmChild(0));
+        // The child may have replaced itself while visited (nested parentheses), get it again
+        node.replace(node.getJmmChild(0));
         updated = true;
         return result;
     }
@@ -163,7 +178,7 @@ public class ConstantFoldingMethodVisitor extends AJmmVisitor<Boolean, Optional<
                 break;
             case "SUB":
                 if(value == 0 && !isFirstChild){ // x - 0 can be simplified, 0 - x cannot
-                    node.replace(node.getJmmChild(1));
+                    node.replace(node.getJmmChild(0));
                     updated = true;
                 }
                 break;
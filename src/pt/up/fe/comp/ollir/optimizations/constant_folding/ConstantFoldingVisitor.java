@@ -3,10 +3,10 @@ package pt.up.fe.comp.ollir.optimizations.constant_folding;
 import java.util.Optional;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class ConstantFoldingVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class ConstantFoldingVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     public ConstantFoldingVisitor(){
         addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMethodDeclaration);
         addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitMethodDeclaration);
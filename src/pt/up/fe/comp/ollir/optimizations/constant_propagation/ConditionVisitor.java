@@ -4,10 +4,10 @@ import java.util.Map;
 import java.util.Optional;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class ConditionVisitor extends AJmmVisitor<Boolean, Optional<Integer>> {
+public class ConditionVisitor extends ArrayJmmVisitor<Boolean, Optional<Integer>> {
     Map<String, JmmNode> constantMap;
 
     public ConditionVisitor(Map<String, JmmNode> constantMap){
@@ -9,22 +9,27 @@ import java.util.Map.Entry;
 
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.ollir.optimizations.constant_folding.AssignedIdsCollector;
+import pt.up.fe.comp.ollir.optimizations.constant_folding.ConstantFoldingMethodVisitor;
 
-public class ConstantPropagationMethodVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class ConstantPropagationMethodVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     Map<String, JmmNode> constantMap;
     SymbolTable symbolTable;
     String methodSignature;
+    ConstantFoldingMethodVisitor folder;
 
     public ConstantPropagationMethodVisitor(SymbolTable symbolTable, String methodSignature){
         this.constantMap = new HashMap<>();
         this.symbolTable = symbolTable;
         this.methodSignature = methodSignature;
+        this.folder = new ConstantFoldingMethodVisitor();
 
+        addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMethodDeclaration);
+        addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitMethodDeclaration);
         addVisit(AstNode.ID, this::visitId);
         addVisit(AstNode.ASSIGNMENT, this::visitAssignment);
         addVisit(AstNode.CLASS_METHOD, this::visitClassMethod);
@@ -41,10 +46,20 @@ public class ConstantPropagationMethodVisitor extends AJmmVisitor<Boolean, Boole
         return updated;
     }
 
+    // The visitor can be used again on the same method, nothing is known at its start
+    private boolean visitMethodDeclaration(JmmNode node, Boolean dummy){
+        constantMap.clear();
+        return defaultVisit(node, dummy);
+    }
+
     private boolean visitAssignment(JmmNode node, Boolean dummy){
         String name = node.get("name");
         JmmNode childNode = node.getJmmChild(0);
         boolean childUpdated = visit(childNode);
+        if(childUpdated){
+            // Folded right away, so a chain of constants is propagated in a single pass instead of one per round
+            childUpdated |= folder.fold(node.getJmmChild(0));
+        }
         childNode = node.getJmmChild(0);
         String childNodeKind = childNode.getKind();
         if(childNodeKind.equals("IntLiteral") || childNodeKind.equals("Bool")){
@@ -111,10 +126,14 @@ public class ConstantPropagationMethodVisitor extends AJmmVisitor<Boolean, Boole
         JmmNode conditionValueChild = conditionChild.getJmmChild(0);
         JmmNode statements = node.getJmmChild(1);
 
+        AssignedIdsCollector usedAssignmentsCollector = new AssignedIdsCollector();
+        List<String> assignments = new ArrayList<>();
+        usedAssignmentsCollector.visit(statements, assignments);
+
         if(conditionValueChild.getKind().equals("Id")){
             String name = conditionValueChild.get("name");
             if(this.constantMap.containsKey(name)){
-                if(!containsVariableUsage(statements, name)){ // Variable is not altered inside the while
+                if(!assignments.contains(name)){ // Variable is not altered inside the while
                     visit(conditionChild); // This will swap the node with a const
                     return true;
                 }  
@@ -129,9 +148,6 @@ public class ConstantPropagationMethodVisitor extends AJmmVisitor<Boolean, Boole
             }
         });
 
-        AssignedIdsCollector usedAssignmentsCollector = new AssignedIdsCollector();
-        List<String> assignments = new ArrayList<>();
-        usedAssignmentsCollector.visit(statements, assignments);
         for(String id : assignments){
             this.constantMap.remove(id);
         }
@@ -153,10 +169,13 @@ public class ConstantPropagationMethodVisitor extends AJmmVisitor<Boolean, Boole
         ifConstantMap.putAll(this.constantMap);
         elseConstantMap.putAll(this.constantMap);
 
+        // Statements inside the branches (whiles, ifs) can replace the map, so it's taken back after each one
         this.constantMap = ifConstantMap;
         updated |= visit(node.getJmmChild(1));
+        ifConstantMap = this.constantMap;
         this.constantMap = elseConstantMap;
         updated |= visit(node.getJmmChild(2));
+        elseConstantMap = this.constantMap;
 
         this.constantMap = new HashMap<>();
         for(Entry<String, JmmNode> entry : ifConstantMap.entrySet()){ // Keep only the constants that exist and have same value across the two if branches
@@ -171,16 +190,4 @@ public class ConstantPropagationMethodVisitor extends AJmmVisitor<Boolean, Boole
 
         return updated;
     }
-
-    private boolean containsVariableUsage(JmmNode node, String variableName){
-        if(node.getKind().equals("Id")){
-            return node.get("name").equals(variableName);
-        }
-        for(JmmNode child : node.getChildren()){
-            if(containsVariableUsage(child, variableName)){
-                return true;
-            }
-        }
-        return false;
-    }
 }
@@ -3,10 +3,10 @@ package pt.up.fe.comp.ollir.optimizations.constant_propagation;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class ConstantPropagationVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class ConstantPropagationVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     SymbolTable symbolTable;
 
     public ConstantPropagationVisitor(SymbolTable symbolTable){
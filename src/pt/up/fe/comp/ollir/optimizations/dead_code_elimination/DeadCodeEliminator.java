@@ -0,0 +1,133 @@
+package pt.up.fe.comp.ollir.optimizations.dead_code_elimination;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+
+import pt.up.fe.comp.ollir.optimizations.ssa.ControlFlowGraph;
+import pt.up.fe.comp.ollir.optimizations.ssa.Liveness;
+
+/*
+ * Mark-and-sweep dead code elimination over the OLLIR code of a method.
+ * The instructions with side effects are live: calls to methods, stores, fields, jumps, returns and anything that can
+ * throw. An assignment is live when its variable is live after it, counting only the reads of live instructions, so
+ * assignments that only feed each other (like a counter nobody reads) are removed too.
+ * Instructions that can't be reached are removed, gotos to the next instruction are removed and jumps to a goto go
+ * straight to its target, which leaves the blocks with only a goto unreachable.
+ */
+public class DeadCodeEliminator {
+    private final Method method;
+
+    public DeadCodeEliminator(Method method){
+        this.method = method;
+    }
+
+    // Returns true if the code changed
+    public boolean optimize(){
+        boolean changed = false;
+        boolean updated = true;
+        while(updated){
+            ControlFlowGraph cfg = new ControlFlowGraph(method);
+            // The mark: liveness with faint variables
+            updated = this.sweep(cfg, new Liveness(cfg, true));
+            updated |= this.simplifyJumps();
+            changed |= updated;
+        }
+        return changed;
+    }
+
+    private boolean sweep(ControlFlowGraph cfg, Liveness liveness){
+        Set<Instruction> removed = new HashSet<>();
+        for(int node = 1; node < cfg.getEnd(); ++node){
+            if(cfg.getOrder(node) == -1 || !liveness.isLive(node)){
+                removed.add(cfg.getInstruction(node));
+            }
+        }
+        if(removed.isEmpty()){
+            return false;
+        }
+
+        // The labels of a reached instruction go to the next one kept, unreached ones aren't jumped to
+        for(var entry : method.getLabels().entrySet()){
+            int node = entry.getValue().getId();
+            if(!removed.contains(entry.getValue()) || cfg.getOrder(node) == -1){
+                continue;
+            }
+            int next = node + 1;
+            while(next < cfg.getEnd() && removed.contains(cfg.getInstruction(next))){
+                next++;
+            }
+            if(next < cfg.getEnd()){
+                entry.setValue(cfg.getInstruction(next));
+            } else {
+                removed.remove(entry.getValue());   // Nothing after it to take the label
+            }
+        }
+        method.getLabels().values().removeIf(removed::contains);
+        method.getInstructions().removeIf(removed::contains);
+        return true;
+    }
+
+    private boolean simplifyJumps(){
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Instruction> labels = method.getLabels();
+        boolean changed = false;
+
+        for(Instruction instruction : instructions){
+            if(instruction.getInstType() == InstructionType.GOTO){
+                GotoInstruction jump = (GotoInstruction) instruction;
+                String label = this.finalLabel(jump.getLabel());
+                changed |= !label.equals(jump.getLabel());
+                jump.setLabel(label);
+            } else if(instruction.getInstType() == InstructionType.BRANCH){
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                String label = this.finalLabel(branch.getLabel());
+                changed |= !label.equals(branch.getLabel());
+                branch.setLabel(label);
+            }
+        }
+
+        List<Instruction> kept = new ArrayList<>();
+        for(int i = 0; i < instructions.size(); ++i){
+            Instruction instruction = instructions.get(i);
+            if(instruction.getInstType() == InstructionType.GOTO && i + 1 < instructions.size()
+                    && labels.get(((GotoInstruction) instruction).getLabel()) == instructions.get(i + 1)){
+                for(var entry : labels.entrySet()){
+                    if(entry.getValue() == instruction){
+                        entry.setValue(instructions.get(i + 1));
+                    }
+                }
+                changed = true;
+            } else {
+                kept.add(instruction);
+            }
+        }
+        instructions.clear();
+        instructions.addAll(kept);
+        return changed;
+    }
+
+    // Follows the gotos at the label, stopping at cycles
+    private String finalLabel(String label){
+        Set<String> visited = new HashSet<>();
+        visited.add(label);
+        Instruction target = method.getLabels().get(label);
+        while(target.getInstType() == InstructionType.GOTO){
+            String next = ((GotoInstruction) target).getLabel();
+            if(!visited.add(next)){
+                break;
+            }
+            label = next;
+            target = method.getLabels().get(label);
+        }
+        return label;
+    }
+}
@@ -1,10 +1,10 @@
 package pt.up.fe.comp.ollir.optimizations.if_while_removal;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class IfWhileRemoverMethodVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class IfWhileRemoverMethodVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     public IfWhileRemoverMethodVisitor(){
         this.setDefaultVisit(this::defaultVisit);
         this.addVisit(AstNode.WHILE_STATEMENT, this::visitWhileStatement);
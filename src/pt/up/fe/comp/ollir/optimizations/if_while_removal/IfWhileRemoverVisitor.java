@@ -1,10 +1,10 @@
 package pt.up.fe.comp.ollir.optimizations.if_while_removal;
 
 import pt.up.fe.comp.ast.AstNode;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class IfWhileRemoverVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class IfWhileRemoverVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     public IfWhileRemoverVisitor(){
         addVisit(AstNode.MAIN_METHOD_DECLARATION, this::visitMethodDeclaration);
         addVisit(AstNode.INSTANCE_METHOD_DECLARATION, this::visitMethodDeclaration);
@@ -0,0 +1,167 @@
+package pt.up.fe.comp.ollir.optimizations.loop_optimization;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.Type;
+
+/*
+ * The fields of the class each of its methods may write, directly or through the methods of the class it calls.
+ * Fields are only written through this, so calls to methods of other classes can only write them if an object of the
+ * class was ever passed to one. A call to a method the class doesn't declare (an inherited one) may write any field.
+ * Objects of the superclass may be this, so passing one counts as passing this, and a call on one may run a method of
+ * the class and write any field.
+ */
+public class FieldWriteAnalyser {
+    private final String className;
+    private final String superClass;
+    private final Map<String, Set<String>> writtenFields;
+    private final Set<String> writesAnyField;
+    private boolean escapes;
+
+    public FieldWriteAnalyser(ClassUnit classUnit){
+        this.className = classUnit.getClassName();
+        this.superClass = classUnit.getSuperClass();
+        this.writtenFields = new HashMap<>();
+        this.writesAnyField = new HashSet<>();
+        this.escapes = false;
+
+        Map<String, Set<String>> callees = new HashMap<>();
+        Set<String> callsOtherClasses = new HashSet<>();
+        for(Method method : classUnit.getMethods()){
+            if(method.isConstructMethod()){
+                continue;   // Constructors only run on new objects
+            }
+            String name = method.getMethodName();
+            Set<String> fields = writtenFields.computeIfAbsent(name, key -> new HashSet<>());
+            Set<String> called = callees.computeIfAbsent(name, key -> new HashSet<>());
+            for(Instruction instruction : method.getInstructions()){
+                if(instruction.getInstType() == InstructionType.PUTFIELD){
+                    fields.add(((Operand) ((PutFieldInstruction) instruction).getSecondOperand()).getName());
+                }
+                CallInstruction call = getCall(instruction);
+                if(call == null || isPure(call)){
+                    continue;
+                }
+                if(this.isOwnCall(call)){
+                    called.add(getMethodName(call));
+                    continue;
+                }
+                callsOtherClasses.add(name);
+                if(this.isSuperclassCall(call)){
+                    writesAnyField.add(name);
+                }
+                if(call.getListOfOperands() != null){
+                    for(Element argument : call.getListOfOperands()){
+                        escapes |= this.mayBeOwnObject(argument);
+                    }
+                }
+            }
+        }
+
+        for(String name : writtenFields.keySet()){
+            if(escapes && callsOtherClasses.contains(name)){
+                writesAnyField.add(name);
+            }
+            for(String callee : callees.get(name)){
+                if(!callee.equals("<init>") && !writtenFields.containsKey(callee)){
+                    writesAnyField.add(name);
+                }
+            }
+        }
+
+        // Callers write what their callees write, until nothing changes
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(var entry : callees.entrySet()){
+                String name = entry.getKey();
+                for(String callee : entry.getValue()){
+                    if(writesAnyField.contains(callee)){
+                        changed |= writesAnyField.add(name);
+                    } else if(writtenFields.containsKey(callee)){
+                        changed |= writtenFields.get(name).addAll(writtenFields.get(callee));
+                    }
+                }
+            }
+        }
+    }
+
+    // The fields of the class the call may write, null if it may write any of them
+    public Set<String> getWrittenFields(CallInstruction call){
+        if(isPure(call)){
+            return Set.of();
+        }
+        if(!this.isOwnCall(call)){
+            return escapes || this.isSuperclassCall(call) ? null : Set.of();
+        }
+        String name = getMethodName(call);
+        if(name.equals("<init>")){
+            return Set.of();
+        }
+        if(writesAnyField.contains(name) || !writtenFields.containsKey(name)){
+            return null;
+        }
+        return writtenFields.get(name);
+    }
+
+    // The call an instruction makes, on its own or as the value of an assignment
+    public static CallInstruction getCall(Instruction instruction){
+        if(instruction.getInstType() == InstructionType.ASSIGN){
+            instruction = ((AssignInstruction) instruction).getRhs();
+        }
+        return instruction.getInstType() == InstructionType.CALL ? (CallInstruction) instruction : null;
+    }
+
+    private static boolean isPure(CallInstruction call){
+        CallType invocationType = call.getInvocationType();
+        return invocationType == CallType.NEW || invocationType == CallType.ldc
+                || invocationType == CallType.arraylength;
+    }
+
+    private static String getMethodName(CallInstruction call){
+        String name = ((LiteralElement) call.getSecondArg()).getLiteral();
+        return name.substring(1, name.length() - 1);
+    }
+
+    private boolean isOwnCall(CallInstruction call){
+        Element first = call.getFirstArg();
+        if(call.getInvocationType() == CallType.invokestatic){
+            return ((Operand) first).getName().equals(className);
+        }
+        return this.isOwnObject(first);
+    }
+
+    private boolean isOwnObject(Element element){
+        Type type = element.getType();
+        return type.getTypeOfElement() == ElementType.THIS || (type.getTypeOfElement() == ElementType.OBJECTREF
+                && ((ClassType) type).getName().equals(className));
+    }
+
+    // this can only be held by variables of the class or of its superclass, the analysis doesn't allow any other type
+    private boolean mayBeOwnObject(Element element){
+        Type type = element.getType();
+        return this.isOwnObject(element) || (superClass != null && type.getTypeOfElement() == ElementType.OBJECTREF
+                && ((ClassType) type).getName().equals(superClass));
+    }
+
+    // A method called on an object of the superclass may be one the class overrides
+    private boolean isSuperclassCall(CallInstruction call){
+        return call.getInvocationType() == CallType.invokevirtual && this.mayBeOwnObject(call.getFirstArg());
+    }
+}
@@ -0,0 +1,227 @@
+package pt.up.fe.comp.ollir.optimizations.loop_optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+import pt.up.fe.comp.ollir.OllirUtils;
+import pt.up.fe.comp.ollir.optimizations.ssa.ControlFlowGraph;
+import pt.up.fe.comp.ollir.optimizations.ssa.DominatorTree;
+import pt.up.fe.comp.ollir.optimizations.ssa.Liveness;
+
+/*
+ * Loop-invariant code motion: the assignments of a loop whose value is the same on every iteration are moved before
+ * the loop (its preheader, right before the header), so they run once.
+ * An assignment is invariant if its operands aren't assigned in the loop (or only by assignments already moved) and
+ * its value is arithmetic, a copy, the length of an array or a field no call or putfield in the loop may write.
+ * It's moved if it's the only assignment of its variable in the loop, the variable isn't read in the loop before it
+ * and, unless it runs on every iteration that leaves the loop, the variable isn't read after the loop.
+ * What can throw (the length of an array, a division) is only moved when it's among the first instructions of the
+ * loop, so it still throws before anything else happens.
+ * Loops inside others are done first, moving the code out one loop at a time.
+ */
+public class LoopInvariantCodeMotion extends LoopOptimization {
+    private final FieldWriteAnalyser fieldWrites;
+    private Liveness liveness;
+
+    public LoopInvariantCodeMotion(Method method, FieldWriteAnalyser fieldWrites){
+        super(method);
+        this.fieldWrites = fieldWrites;
+    }
+
+    @Override
+    protected void startRound(ControlFlowGraph cfg){
+        this.liveness = new Liveness(cfg);
+    }
+
+    // The invariant assignments of the loop, in the order they are moved
+    @Override
+    protected List<Instruction> optimizeLoop(ControlFlowGraph cfg, DominatorTree dominatorTree, NaturalLoop loop){
+        List<Instruction> hoisted = new ArrayList<>();
+        List<Integer> nodes = loop.getNodes();
+        Map<String, Integer> definitionCounts = new HashMap<>();
+        Set<String> writtenFields = new HashSet<>();
+        boolean writesAnyField = false;
+        for(int node : nodes){
+            Instruction instruction = cfg.getInstruction(node);
+            if(instruction == null){
+                continue;
+            }
+            Operand defined = OllirUtils.getDefinedVariable(instruction);
+            if(defined != null){
+                definitionCounts.merge(defined.getName(), 1, Integer::sum);
+            }
+            if(instruction.getInstType() == InstructionType.PUTFIELD){
+                writtenFields.add(((Operand) ((PutFieldInstruction) instruction).getSecondOperand()).getName());
+            }
+            CallInstruction call = FieldWriteAnalyser.getCall(instruction);
+            if(call != null){
+                Set<String> fields = fieldWrites.getWrittenFields(call);
+                if(fields == null){
+                    writesAnyField = true;
+                } else {
+                    writtenFields.addAll(fields);
+                }
+            }
+        }
+
+        List<Integer> exitingNodes = loop.getExitingNodes();
+        List<Integer> exitTargets = loop.getExitTargets();
+        boolean[] isHoisted = new boolean[cfg.size()];
+        boolean found = true;
+        while(found){
+            found = false;
+            for(int node : nodes){
+                if(isHoisted[node]){
+                    continue;
+                }
+                Instruction instruction = cfg.getInstruction(node);
+                Operand defined = OllirUtils.getDefinedVariable(instruction);
+                if(defined == null || definitionCounts.get(defined.getName()) != 1
+                        || liveness.isLiveIn(loop.getHeader(), defined.getName())){
+                    continue;
+                }
+                Instruction rhs = ((AssignInstruction) instruction).getRhs();
+                if(!isInvariant(rhs, writtenFields, writesAnyField) || !this.hasInvariantOperands(instruction,
+                        definitionCounts)){
+                    continue;
+                }
+                if(canThrow(rhs)){
+                    if(!this.runsFirst(cfg, loop, node, isHoisted)){
+                        continue;
+                    }
+                } else if(!exitingNodes.stream().allMatch(exiting -> dominatorTree.dominates(node, exiting))
+                        && liveness.isLiveIn(exitTargets, defined.getName())){
+                    continue;
+                }
+
+                isHoisted[node] = true;
+                hoisted.add(instruction);
+                definitionCounts.put(defined.getName(), 0);
+                found = true;
+            }
+        }
+        return hoisted;
+    }
+
+    // Whether the value only depends on its operands (and on fields nothing in the loop writes)
+    private static boolean isInvariant(Instruction rhs, Set<String> writtenFields, boolean writesAnyField){
+        switch(rhs.getInstType()){
+            case BINARYOPER:
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+                return !(binaryOp.getLeftOperand() instanceof ArrayOperand)
+                        && !(binaryOp.getRightOperand() instanceof ArrayOperand);
+            case UNARYOPER:
+                return !(((UnaryOpInstruction) rhs).getOperand() instanceof ArrayOperand);
+            case NOPER:
+                return !(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand);
+            case GETFIELD:
+                GetFieldInstruction getField = (GetFieldInstruction) rhs;
+                String field = ((Operand) getField.getSecondOperand()).getName();
+                return getField.getFirstOperand().getType().getTypeOfElement() == ElementType.THIS
+                        && !writesAnyField && !writtenFields.contains(field);
+            case CALL:
+                CallType invocationType = ((CallInstruction) rhs).getInvocationType();
+                return invocationType == CallType.arraylength || invocationType == CallType.ldc;
+            default:
+                return false;
+        }
+    }
+
+    private boolean hasInvariantOperands(Instruction instruction, Map<String, Integer> definitionCounts){
+        for(Operand operand : OllirUtils.getUsedOperands(instruction)){
+            if(definitionCounts.getOrDefault(operand.getName(), 0) > 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean canThrow(Instruction rhs){
+        if(rhs.getInstType() == InstructionType.CALL){
+            return ((CallInstruction) rhs).getInvocationType() == CallType.arraylength;
+        }
+        if(rhs.getInstType() == InstructionType.BINARYOPER){
+            BinaryOpInstruction binaryOp = (BinaryOpInstruction) rhs;
+            Element right = binaryOp.getRightOperand();
+            return binaryOp.getOperation().getOpType() == OperationType.DIV
+                    && (!right.isLiteral() || ((LiteralElement) right).getLiteral().equals("0"));
+        }
+        return false;
+    }
+
+    // Whether the loop always starts by going straight to the node, only through assignments that can't throw or
+    // that are being moved
+    private boolean runsFirst(ControlFlowGraph cfg, NaturalLoop loop, int node, boolean[] isHoisted){
+        int current = loop.getHeader();
+        while(current != node){
+            Instruction instruction = cfg.getInstruction(current);
+            if(!isHoisted[current] && (OllirUtils.getDefinedVariable(instruction) == null
+                    || OllirUtils.hasSideEffects(((AssignInstruction) instruction).getRhs()))){
+                return false;
+            }
+            int[] successors = cfg.getSuccessors(current);
+            if(successors.length != 1 || successors[0] != current + 1 || !loop.contains(current + 1)){
+                return false;
+            }
+            current++;
+        }
+        return true;
+    }
+
+    // The moved instructions go before the header of their loop, their labels stay where they were
+    @Override
+    protected void rewrite(Map<Instruction, List<Instruction>> preheaders){
+        Set<Instruction> moved = new HashSet<>();
+        for(List<Instruction> hoisted : preheaders.values()){
+            moved.addAll(hoisted);
+        }
+
+        List<Instruction> instructions = method.getInstructions();
+        List<Instruction> code = new ArrayList<>();
+        for(int i = 0; i < instructions.size(); ++i){
+            Instruction instruction = instructions.get(i);
+            List<Instruction> preheader = preheaders.get(instruction);
+            if(preheader != null){
+                code.addAll(preheader);
+            }
+            if(!moved.contains(instruction)){
+                code.add(instruction);
+                continue;
+            }
+            // An assignment goes on to the next instruction, which is still in the loop
+            int next = i + 1;
+            while(moved.contains(instructions.get(next))){
+                next++;
+            }
+            for(var entry : method.getLabels().entrySet()){
+                if(entry.getValue() == instruction){
+                    entry.setValue(instructions.get(next));
+                }
+            }
+        }
+        instructions.clear();
+        instructions.addAll(code);
+    }
+}
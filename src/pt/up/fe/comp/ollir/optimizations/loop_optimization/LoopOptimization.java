@@ -0,0 +1,65 @@
+package pt.up.fe.comp.ollir.optimizations.loop_optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import pt.up.fe.comp.ollir.optimizations.ssa.ControlFlowGraph;
+import pt.up.fe.comp.ollir.optimizations.ssa.DominatorTree;
+
+/*
+ * Optimizes the loops of a method in rounds, until a round changes nothing. Each round finds the loops in the CFG of
+ * the code at its start, optimizes each loop that has a preheader, getting the code that goes before its header, and
+ * rewrites the method once all of them are done. Loops are done before the ones that contain them.
+ */
+abstract class LoopOptimization {
+    protected final Method method;
+
+    protected LoopOptimization(Method method){
+        this.method = method;
+    }
+
+    // Returns true if the code changed
+    public boolean optimize(){
+        boolean changed = false;
+        boolean updated = true;
+        while(updated){
+            ControlFlowGraph cfg = new ControlFlowGraph(method);
+            DominatorTree dominatorTree = new DominatorTree(cfg);
+            this.startRound(cfg);
+
+            // Loops nested with one that changed wait for the next round, as its CFG is out of date
+            List<NaturalLoop> changedLoops = new ArrayList<>();
+            Map<Instruction, List<Instruction>> preheaders = new HashMap<>();
+            for(NaturalLoop loop : NaturalLoop.find(cfg, dominatorTree)){
+                if(!loop.hasPreheader() || changedLoops.stream().anyMatch(loop::isNestedWith)){
+                    continue;
+                }
+                List<Instruction> preheader = this.optimizeLoop(cfg, dominatorTree, loop);
+                if(!preheader.isEmpty()){
+                    changedLoops.add(loop);
+                    preheaders.put(cfg.getInstruction(loop.getHeader()), preheader);
+                }
+            }
+            updated = !preheaders.isEmpty();
+            if(updated){
+                this.rewrite(preheaders);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Called before the loops of a round are optimized, with the CFG they are found in
+    protected abstract void startRound(ControlFlowGraph cfg);
+
+    // Returns the code that goes before the header of the loop, empty if the loop doesn't change
+    protected abstract List<Instruction> optimizeLoop(ControlFlowGraph cfg, DominatorTree dominatorTree, NaturalLoop loop);
+
+    // Changes the code of the method, the preheaders are keyed by the header instruction they go before
+    protected abstract void rewrite(Map<Instruction, List<Instruction>> preheaders);
+}
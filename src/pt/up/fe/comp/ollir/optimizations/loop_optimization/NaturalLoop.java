@@ -0,0 +1,136 @@
+package pt.up.fe.comp.ollir.optimizations.loop_optimization;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+
+import pt.up.fe.comp.ollir.optimizations.ssa.ControlFlowGraph;
+import pt.up.fe.comp.ollir.optimizations.ssa.DominatorTree;
+
+/*
+ * The natural loop of a header: the nodes that reach a back edge to the header (an edge to a node that dominates its
+ * source) without going through the header. Back edges to the same header make a single loop.
+ */
+public class NaturalLoop {
+    private final ControlFlowGraph cfg;
+    private final int header;
+    private final BitSet body;
+
+    private NaturalLoop(ControlFlowGraph cfg, int header){
+        this.cfg = cfg;
+        this.header = header;
+        this.body = new BitSet(cfg.size());
+        body.set(header);
+    }
+
+    // The loops of the CFG, each one before the loops that contain it
+    public static List<NaturalLoop> find(ControlFlowGraph cfg, DominatorTree dominatorTree){
+        Map<Integer, NaturalLoop> loops = new LinkedHashMap<>();
+        for(int node : cfg.getReversePostorder()){
+            for(int successor : cfg.getSuccessors(node)){
+                if(dominatorTree.dominates(successor, node)){
+                    loops.computeIfAbsent(successor, header -> new NaturalLoop(cfg, header)).addBackEdge(node);
+                }
+            }
+        }
+        List<NaturalLoop> sorted = new ArrayList<>(loops.values());
+        sorted.sort(Comparator.comparingInt(loop -> loop.body.cardinality()));
+        return sorted;
+    }
+
+    private void addBackEdge(int source){
+        List<Integer> worklist = new ArrayList<>();
+        if(!body.get(source)){
+            body.set(source);
+            worklist.add(source);
+        }
+        while(!worklist.isEmpty()){
+            int node = worklist.remove(worklist.size() - 1);
+            for(int predecessor : cfg.getPredecessors(node)){
+                if(!body.get(predecessor) && cfg.getOrder(predecessor) != -1){
+                    body.set(predecessor);
+                    worklist.add(predecessor);
+                }
+            }
+        }
+    }
+
+    public int getHeader(){
+        return header;
+    }
+
+    public boolean contains(int node){
+        return body.get(node);
+    }
+
+    // Whether one of the loops is inside the other
+    public boolean isNestedWith(NaturalLoop other){
+        return this.contains(other.header) || other.contains(header);
+    }
+
+    // The nodes of the loop in reverse postorder, starting at the header
+    public List<Integer> getNodes(){
+        List<Integer> nodes = new ArrayList<>();
+        for(int node : cfg.getReversePostorder()){
+            if(body.get(node)){
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    // Nodes of the loop that can leave it
+    public List<Integer> getExitingNodes(){
+        List<Integer> nodes = new ArrayList<>();
+        for(int node = body.nextSetBit(0); node >= 0; node = body.nextSetBit(node + 1)){
+            for(int successor : cfg.getSuccessors(node)){
+                if(!body.get(successor)){
+                    nodes.add(node);
+                    break;
+                }
+            }
+        }
+        return nodes;
+    }
+
+    // Nodes outside the loop that it can go to
+    public List<Integer> getExitTargets(){
+        List<Integer> nodes = new ArrayList<>();
+        for(int node = body.nextSetBit(0); node >= 0; node = body.nextSetBit(node + 1)){
+            for(int successor : cfg.getSuccessors(node)){
+                if(!body.get(successor) && !nodes.contains(successor)){
+                    nodes.add(successor);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    // Whether instructions placed right before the header run once each time the loop is entered: the loop is only
+    // entered by falling through from the instruction before the header
+    public boolean hasPreheader(){
+        int entry = header - 1;
+        if(body.get(entry) || cfg.getPredecessorIndex(header, entry) == -1){
+            return false;
+        }
+        for(int predecessor : cfg.getPredecessors(header)){
+            if(!body.get(predecessor) && predecessor != entry){
+                return false;
+            }
+        }
+        Instruction before = cfg.getInstruction(entry);
+        if(before == null){
+            return true;    // The beginning of the method
+        }
+        if(before.getInstType() == InstructionType.GOTO){
+            return false;
+        }
+        return before.getInstType() != InstructionType.BRANCH || cfg.getTarget(entry) != header;
+    }
+}
@@ -0,0 +1,258 @@
+package pt.up.fe.comp.ollir.optimizations.loop_optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.Type;
+
+import pt.up.fe.comp.ollir.OllirUtils;
+import pt.up.fe.comp.ollir.optimizations.ssa.ControlFlowGraph;
+import pt.up.fe.comp.ollir.optimizations.ssa.DominatorTree;
+
+/*
+ * Strength reduction of the multiplications by induction variables.
+ * A basic induction variable is only assigned in the loop by adding (or subtracting) a literal to itself. A product
+ * of one by a value the loop doesn't assign (j = i * k) then gets a variable of its own, set to i * k before the loop
+ * and increased by the step times k right after each step of i, so the product becomes a copy and the multiplication
+ * an addition (an iinc, when k is a literal). Products of the same variable and factor share the new variable.
+ * The basic variables left only increasing themselves are then removed as dead code.
+ */
+public class StrengthReduction extends LoopOptimization {
+    private final Set<String> names;
+    private int counter;
+    // The code of the current round that goes after a step of an induction variable, and the products replaced
+    private final Map<Instruction, List<Instruction>> after;
+    private final Map<Instruction, Instruction> replacements;
+
+    public StrengthReduction(Method method){
+        super(method);
+        this.names = new HashSet<>();
+        this.counter = 0;
+        this.after = new HashMap<>();
+        this.replacements = new HashMap<>();
+    }
+
+    @Override
+    public boolean optimize(){
+        this.collectNames();
+        boolean changed = super.optimize();
+        if(changed){
+            // buildVarTable numbers the variables from the start, skipping those it knows, so it can't just add new ones
+            method.getVarTable().clear();
+            method.buildVarTable();
+        }
+        return changed;
+    }
+
+    @Override
+    protected void startRound(ControlFlowGraph cfg){
+        after.clear();
+        replacements.clear();
+    }
+
+    // Finds the products of a loop and plans their new variables, returns the code for the preheader
+    @Override
+    protected List<Instruction> optimizeLoop(ControlFlowGraph cfg, DominatorTree dominatorTree, NaturalLoop loop){
+        List<Integer> nodes = loop.getNodes();
+        Map<String, List<Integer>> definitions = new HashMap<>();
+        for(int node : nodes){
+            Operand defined = OllirUtils.getDefinedVariable(cfg.getInstruction(node));
+            if(defined != null){
+                definitions.computeIfAbsent(defined.getName(), name -> new ArrayList<>()).add(node);
+            }
+        }
+
+        // Basic induction variables and the nodes that step them
+        Map<String, List<Integer>> inductionVariables = new HashMap<>();
+        for(var entry : definitions.entrySet()){
+            boolean basic = true;
+            for(int node : entry.getValue()){
+                basic &= getStep(cfg.getInstruction(node)) != null;
+            }
+            if(basic){
+                inductionVariables.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        // Products grouped by variable and factor
+        Map<String, List<Integer>> products = new LinkedHashMap<>();
+        Map<String, Operand> productVariables = new HashMap<>();
+        Map<String, Element> productFactors = new HashMap<>();
+        for(int node : nodes){
+            Instruction instruction = cfg.getInstruction(node);
+            if(OllirUtils.getDefinedVariable(instruction) == null){
+                continue;
+            }
+            Instruction rhs = ((AssignInstruction) instruction).getRhs();
+            if(rhs.getInstType() != InstructionType.BINARYOPER
+                    || ((BinaryOpInstruction) rhs).getOperation().getOpType() != OperationType.MUL){
+                continue;
+            }
+            Element left = ((BinaryOpInstruction) rhs).getLeftOperand();
+            Element right = ((BinaryOpInstruction) rhs).getRightOperand();
+            Operand variable = null;
+            Element factor = null;
+            if(this.isInductionVariable(left, inductionVariables) && isInvariant(right, definitions)){
+                variable = (Operand) left;
+                factor = right;
+            } else if(this.isInductionVariable(right, inductionVariables) && isInvariant(left, definitions)){
+                variable = (Operand) right;
+                factor = left;
+            } else {
+                continue;
+            }
+            String key = variable.getName() + "*" + (factor.isLiteral() ? ((LiteralElement) factor).getLiteral()
+                    : ((Operand) factor).getName());
+            products.computeIfAbsent(key, name -> new ArrayList<>()).add(node);
+            productVariables.put(key, variable);
+            productFactors.put(key, factor);
+        }
+
+        List<Instruction> preheader = new ArrayList<>();
+        for(var entry : products.entrySet()){
+            Operand variable = productVariables.get(entry.getKey());
+            Element factor = productFactors.get(entry.getKey());
+            Operand reduced = new Operand(this.freshName("iv"), new Type(ElementType.INT32));
+            preheader.add(assign(reduced, new BinaryOpInstruction(copy(variable), operation(OperationType.MUL),
+                    copy(factor))));
+
+            for(int node : entry.getValue()){
+                AssignInstruction product = (AssignInstruction) cfg.getInstruction(node);
+                replacements.put(product, new AssignInstruction(product.getDest(), product.getTypeOfAssign(),
+                        new SingleOpInstruction(copy(reduced))));
+            }
+
+            // The increase for each step of the variable, computed before the loop if the factor isn't a literal
+            Map<Integer, Element> increases = new HashMap<>();
+            for(int node : inductionVariables.get(variable.getName())){
+                int step = getStep(cfg.getInstruction(node));
+                Element increase = increases.get(step);
+                if(increase == null){
+                    if(factor.isLiteral()){
+                        int value = step * Integer.parseInt(((LiteralElement) factor).getLiteral());
+                        increase = new LiteralElement(String.valueOf(value), new Type(ElementType.INT32));
+                    } else if(step == 1){
+                        increase = factor;
+                    } else {
+                        Operand product = new Operand(this.freshName("iv"), new Type(ElementType.INT32));
+                        LiteralElement literal = new LiteralElement(String.valueOf(step), new Type(ElementType.INT32));
+                        preheader.add(assign(product, new BinaryOpInstruction(copy(factor),
+                                operation(OperationType.MUL), literal)));
+                        increase = product;
+                    }
+                    increases.put(step, increase);
+                }
+                after.computeIfAbsent(cfg.getInstruction(node), key -> new ArrayList<>()).add(assign(reduced,
+                        new BinaryOpInstruction(copy(reduced), operation(OperationType.ADD), copy(increase))));
+            }
+        }
+        return preheader;
+    }
+
+    private boolean isInductionVariable(Element element, Map<String, List<Integer>> inductionVariables){
+        return element instanceof Operand && !(element instanceof ArrayOperand) && !element.isLiteral()
+                && element.getType().getTypeOfElement() == ElementType.INT32
+                && inductionVariables.containsKey(((Operand) element).getName());
+    }
+
+    // A literal or a variable the loop doesn't assign
+    private static boolean isInvariant(Element element, Map<String, List<Integer>> definitions){
+        if(element.isLiteral()){
+            return true;
+        }
+        return !(element instanceof ArrayOperand) && element.getType().getTypeOfElement() == ElementType.INT32
+                && !definitions.containsKey(((Operand) element).getName());
+    }
+
+    // The literal added by an assignment like i = i + 1 (or i = i - 1), null for other instructions
+    private static Integer getStep(Instruction instruction){
+        Operand dest = OllirUtils.getDefinedVariable(instruction);
+        if(dest == null || dest.getType().getTypeOfElement() != ElementType.INT32){
+            return null;
+        }
+        return OllirUtils.getIncrement((AssignInstruction) instruction);
+    }
+
+    @Override
+    protected void rewrite(Map<Instruction, List<Instruction>> preheaders){
+        List<Instruction> instructions = method.getInstructions();
+        List<Instruction> code = new ArrayList<>();
+        for(Instruction instruction : instructions){
+            List<Instruction> preheader = preheaders.get(instruction);
+            if(preheader != null){
+                code.addAll(preheader);
+            }
+            Instruction replacement = replacements.getOrDefault(instruction, instruction);
+            if(replacement != instruction){
+                for(var entry : method.getLabels().entrySet()){
+                    if(entry.getValue() == instruction){
+                        entry.setValue(replacement);
+                    }
+                }
+            }
+            code.add(replacement);
+            code.addAll(after.getOrDefault(instruction, List.of()));
+        }
+        instructions.clear();
+        instructions.addAll(code);
+    }
+
+    private static AssignInstruction assign(Operand dest, Instruction rhs){
+        return new AssignInstruction(copy(dest), new Type(ElementType.INT32), rhs);
+    }
+
+    private static Operation operation(OperationType operationType){
+        return new Operation(operationType, new Type(ElementType.INT32));
+    }
+
+    // Operands are renamed in place by the register allocator, so each instruction gets its own
+    private static Element copy(Element element){
+        if(element.isLiteral()){
+            return new LiteralElement(((LiteralElement) element).getLiteral(), new Type(ElementType.INT32));
+        }
+        return new Operand(((Operand) element).getName(), element.getType());
+    }
+
+    private void collectNames(){
+        names.clear();
+        for(Element param : method.getParams()){
+            names.add(((Operand) param).getName());
+        }
+        for(Instruction instruction : method.getInstructions()){
+            for(Operand operand : OllirUtils.getUsedOperands(instruction)){
+                names.add(operand.getName());
+            }
+            Operand defined = OllirUtils.getDefinedVariable(instruction);
+            if(defined != null){
+                names.add(defined.getName());
+            }
+        }
+    }
+
+    private String freshName(String base){
+        String name;
+        do {
+            name = base + counter++;
+        } while(names.contains(name) || method.getOllirClass().isImportedClass(name));
+        names.add(name);
+        return name;
+    }
+}
@@ -1,15 +1,17 @@
 package pt.up.fe.comp.ollir.optimizations.register_allocation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
-import org.specs.comp.ollir.Node;
-
 /*
- * 
+ *
  * Coloring a graph with N colors
 • If degree < N (degree of a node = # of edges)
 – Node can always be colored
@@ -28,59 +30,294 @@ left to color the current node
 – pop a node from stack back
 – Assign it a color that is different from its connected nodes (since
 degree < N, a color should exist)
+
+• Optimistic coloring (Briggs)
+– The node chosen to spill (lowest spill cost / degree) is pushed like the others
+– It's only spilled if no color is left for it when it's popped
+• Coalescing
+– Before simplifying, the two sides of a copy are merged into one node if they don't interfere
+and the merged node has less than N neighbours of degree ≥ N (it stays colorable)
+• Precolored nodes (parameters) keep their color for the whole method,
+the colors below reservedColors are only used by them
+• Webs of different types never share a color (register classes, see InterferenceGraph)
  */
 
 
-public class GraphColoringSolver {
-    Set<Pair<Node, String>> nodes;
-    Map<Node, Integer> colors;
+public class GraphColoringSolver implements RegisterSolver {
+    InterferenceGraph graph;
     int numberOfColors;
+    int reservedColors;
+
+    Map<String, Integer> precolored;
+    Map<String, Double> spillCosts;
+    List<Pair<String, String>> moves;
+    Map<String, Integer> colors;
+    Set<String> spilled;
 
-    public GraphColoringSolver(Set<Pair<Node, String>> nodes, int numberOfColors) {
-        this.nodes = nodes;
+    int[] alias;
+    int[] fixedColor;
+    boolean[] excluded;       // Precolored nodes, they don't compete for colors with the others
+    int[] activeInClass;      // Nodes that still need a color, per register class
+    int active;
+    int[] stamp;
+    int currentStamp;
+
+    public GraphColoringSolver(InterferenceGraph graph, int numberOfColors) {
+        this.graph = graph;
         this.numberOfColors = numberOfColors;
+        this.reservedColors = 0;
+        this.precolored = new HashMap<>();
+        this.spillCosts = new HashMap<>();
+        this.moves = new ArrayList<>();
         this.colors = new HashMap<>();
+        this.spilled = new LinkedHashSet<>();
     }
 
+    @Override
+    public void setPrecolored(String variable, int color) {
+        this.precolored.put(variable, color);
+    }
+
+    @Override
+    public void setReservedColors(int reservedColors) {
+        this.reservedColors = reservedColors;
+    }
+
+    @Override
+    public void setSpillCost(String variable, double cost) {
+        this.spillCosts.put(variable, cost);
+    }
+
+    public void addMove(String dest, String source) {
+        this.moves.add(new Pair<>(dest, source));
+    }
+
+    @Override
     public boolean solve() {
-        Stack<Pair<Node, String>> stack = new Stack<>();
-        for(var node : this.nodes){
-            if(node.first.getSuccessors().size() >= this.numberOfColors){
-                return false;
+        this.init();
+        this.coalesce();
+
+        int n = graph.size();
+        int availableColors = numberOfColors - reservedColors;
+        int[][] adjacent = this.buildAdjacency();
+        int[] color = new int[n];
+        boolean[] removed = new boolean[n];
+        int[] degree = new int[n];
+        double[] cost = new double[n];
+        int[] remainingInClass = activeInClass.clone();
+        int remaining = active;
+        for(int i = 0; i < n; ++i){
+            color[i] = -1;
+            removed[i] = excluded[i] || find(i) != i;
+            degree[i] = adjacent[i].length;
+            if(!excluded[i]){
+                cost[find(i)] += spillCosts.getOrDefault(graph.getName(i), 1.0);
             }
-            stack.push(node);
         }
 
+        // Simplify: nodes with degree < N first, then the cheapest node to spill.
+        // The degree counts the stored neighbours and every remaining node of the other classes
+        Stack<Integer> stack = new Stack<>();
+        while(true){
+            int chosen = -1;
+            double chosenPriority = Double.POSITIVE_INFINITY;
+            for(int i = 0; i < n; ++i){
+                if(removed[i]){
+                    continue;
+                }
+                int nodeDegree = degree[i] + remaining - remainingInClass[graph.getRegisterClass(i)];
+                if(nodeDegree < availableColors){
+                    chosen = i;
+                    break;
+                }
+                double priority = cost[i] / nodeDegree;
+                if(chosen == -1 || priority < chosenPriority){
+                    chosen = i;
+                    chosenPriority = priority;
+                }
+            }
+            if(chosen == -1){
+                break;
+            }
+            removed[chosen] = true;
+            remaining--;
+            remainingInClass[graph.getRegisterClass(chosen)]--;
+            stack.push(chosen);
+            for(int succ : adjacent[chosen]){
+                degree[succ]--;
+            }
+        }
+
+        // Select: the lowest color not used by a neighbour, nor by a node of another class
+        int[] colorClass = new int[Math.max(numberOfColors, 0)];
+        Arrays.fill(colorClass, -1);
         while(!stack.isEmpty()){
-            Pair<Node, String> pair = stack.pop();
-            Node node = pair.first;            
+            int node = stack.pop();
+            int registerClass = graph.getRegisterClass(node);
 
             Set<Integer> usedColors = new HashSet<>();
-            for (var succ : node.getSuccessors()){
-                if(this.colors.containsKey(succ)){
-                    usedColors.add(this.colors.get(succ));
+            for (int succ : adjacent[node]){
+                if(color[succ] != -1){
+                    usedColors.add(color[succ]);
                 }
             }
 
-            int color = 0;
-            while(true){
-                if(!usedColors.contains(color)){
-                    break;
+            int nodeColor = reservedColors;
+            while(nodeColor < numberOfColors && (usedColors.contains(nodeColor)
+                    || (colorClass[nodeColor] != -1 && colorClass[nodeColor] != registerClass))){
+                nodeColor++;
+            }
+            if(nodeColor < numberOfColors){
+                color[node] = nodeColor;
+                colorClass[nodeColor] = registerClass;
+            }
+        }
+
+        for(int i = 0; i < n; ++i){
+            int node = find(i);
+            int nodeColor = excluded[node] ? fixedColor[node] : color[node];
+            if(nodeColor == -1 || nodeColor >= numberOfColors){
+                spilled.add(graph.getName(i));
+            } else {
+                this.colors.put(graph.getName(i), nodeColor);
+            }
+        }
+
+        return spilled.isEmpty();
+    }
+
+    private void init(){
+        int n = graph.size();
+        this.alias = new int[n];
+        this.fixedColor = new int[n];
+        this.excluded = new boolean[n];
+        this.activeInClass = new int[graph.getNumberOfClasses()];
+        this.active = 0;
+        this.stamp = new int[n];
+        this.currentStamp = 0;
+        for(int i = 0; i < n; ++i){
+            alias[i] = i;
+            fixedColor[i] = precolored.getOrDefault(graph.getName(i), -1);
+            excluded[i] = fixedColor[i] != -1;
+            if(!excluded[i]){
+                activeInClass[graph.getRegisterClass(i)]++;
+                active++;
+            }
+        }
+    }
+
+    // Neighbours of every node left after coalescing, without repetitions nor precolored nodes
+    private int[][] buildAdjacency(){
+        int n = graph.size();
+        int[][] adjacent = new int[n][];
+        for(int i = 0; i < n; ++i){
+            adjacent[i] = find(i) == i && !excluded[i] ? this.representatives(i) : new int[0];
+        }
+        return adjacent;
+    }
+
+    private int[] representatives(int node){
+        currentStamp++;
+        int[] neighbours = graph.getNeighbours(node);
+        int[] result = new int[graph.getNeighbourCount(node)];
+        int count = 0;
+        for(int k = 0; k < graph.getNeighbourCount(node); ++k){
+            int neighbour = find(neighbours[k]);
+            if(neighbour != node && !excluded[neighbour] && stamp[neighbour] != currentStamp){
+                stamp[neighbour] = currentStamp;
+                result[count++] = neighbour;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Conservative coalescing (Briggs), repeated while some copy can still be merged
+    private void coalesce(){
+        boolean updated;
+        do {
+            updated = false;
+            for(var move : this.moves){
+                int destIndex = graph.getIndex(move.first);
+                int sourceIndex = graph.getIndex(move.second);
+                if(destIndex == -1 || sourceIndex == -1){
+                    continue;
+                }
+                int dest = find(destIndex);
+                int source = find(sourceIndex);
+                if(dest == source || excluded[dest] || excluded[source] || graph.interfere(dest, source)){
+                    continue;
+                }
+
+                if(this.canCoalesce(dest, source)){
+                    this.merge(dest, source);
+                    updated = true;
                 }
-                color++;
             }
-            
-            this.colors.put(node, color);
+        } while(updated);
+    }
+
+    // Less than N neighbours of degree >= N, the nodes of the other classes included
+    private boolean canCoalesce(int first, int second){
+        int availableColors = numberOfColors - reservedColors;
+        int registerClass = graph.getRegisterClass(first);
+        Set<Integer> neighbours = new HashSet<>();
+        for(int neighbour : this.representatives(first)){
+            neighbours.add(neighbour);
         }
-        
-        return true;
+        for(int neighbour : this.representatives(second)){
+            neighbours.add(neighbour);
+        }
+        int significant = 0;
+        for(int neighbour : neighbours){
+            if(this.degree(neighbour) >= availableColors){
+                significant++;
+            }
+        }
+        for(int i = 0; i < graph.size() && significant < availableColors; ++i){
+            if(find(i) == i && !excluded[i] && graph.getRegisterClass(i) != registerClass && this.degree(i) >= availableColors){
+                significant++;
+            }
+        }
+        return significant < availableColors;
     }
 
-    public Map<String, Integer> getVariableColorMap(){
-        Map<String, Integer> variableColorMap = new HashMap<>();
-        for(var pair : this.nodes){
-            variableColorMap.put(pair.second, this.colors.get(pair.first));
+    // Only exact below the number of available colors
+    private int degree(int node){
+        int otherClasses = active - activeInClass[graph.getRegisterClass(node)];
+        if(otherClasses >= numberOfColors - reservedColors){
+            return otherClasses;
+        }
+        return this.representatives(node).length + otherClasses;
+    }
+
+    // The kept node gets every neighbour of the merged one
+    private void merge(int kept, int merged){
+        alias[merged] = kept;
+        int[] neighbours = graph.getNeighbours(merged);
+        for(int k = 0; k < graph.getNeighbourCount(merged); ++k){
+            int neighbour = find(neighbours[k]);
+            if(neighbour != kept){
+                graph.addEdge(kept, neighbour);
+            }
         }
-        return variableColorMap;
+        active--;
+        activeInClass[graph.getRegisterClass(kept)]--;
+    }
+
+    private int find(int node){
+        while(alias[node] != node){
+            node = alias[node];
+        }
+        return node;
+    }
+
+    @Override
+    public Set<String> getSpilledVariables(){
+        return spilled;
+    }
+
+    @Override
+    public Map<String, Integer> getVariableColorMap(){
+        return colors;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package pt.up.fe.comp.ollir.optimizations.register_allocation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Interference graph of the webs of a method, nodes are numbered from 0.
+ * Edges are kept twice: in a triangular bit matrix, to test an edge in O(1),
+ * and in an int array per node, to go through the neighbours.
+ * Webs of different types always interfere, so those edges aren't stored:
+ * every node has a register class (its type) and interferes with every node of the other classes.
+ */
+public class InterferenceGraph {
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final int[] registerClasses;
+    private final int[] classSizes;
+    private final long[] matrix;
+    private final int[][] neighbours;
+    private final int[] neighbourCounts;
+
+    public InterferenceGraph(List<String> names, List<String> types){
+        int n = names.size();
+        this.names = names.toArray(new String[0]);
+        this.indexes = new HashMap<>();
+        this.registerClasses = new int[n];
+        Map<String, Integer> classes = new HashMap<>();
+        for(int i = 0; i < n; ++i){
+            indexes.put(this.names[i], i);
+            registerClasses[i] = classes.computeIfAbsent(types.get(i), type -> classes.size());
+        }
+        this.classSizes = new int[classes.size()];
+        for(int registerClass : registerClasses){
+            classSizes[registerClass]++;
+        }
+        this.matrix = new long[(int) (((long) n * (n - 1) / 2 + 63) / 64)];
+        this.neighbours = new int[n][];
+        this.neighbourCounts = new int[n];
+        for(int i = 0; i < n; ++i){
+            neighbours[i] = new int[4];
+        }
+    }
+
+    public int size(){
+        return names.length;
+    }
+
+    public String getName(int node){
+        return names[node];
+    }
+
+    // -1 if there's no such web
+    public int getIndex(String name){
+        return indexes.getOrDefault(name, -1);
+    }
+
+    public int getRegisterClass(int node){
+        return registerClasses[node];
+    }
+
+    public int getNumberOfClasses(){
+        return classSizes.length;
+    }
+
+    // Only edges between nodes of the same class are stored, the others are implicit
+    public void addEdge(int first, int second){
+        if(first == second || registerClasses[first] != registerClasses[second]){
+            return;
+        }
+        long bit = bitIndex(first, second);
+        if((matrix[(int) (bit >>> 6)] & (1L << bit)) != 0){
+            return;
+        }
+        matrix[(int) (bit >>> 6)] |= 1L << bit;
+        this.addNeighbour(first, second);
+        this.addNeighbour(second, first);
+    }
+
+    public boolean interfere(int first, int second){
+        if(first == second){
+            return false;
+        }
+        if(registerClasses[first] != registerClasses[second]){
+            return true;
+        }
+        long bit = bitIndex(first, second);
+        return (matrix[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    // Neighbours of the same class, only the first getNeighbourCount(node) entries are valid
+    public int[] getNeighbours(int node){
+        return neighbours[node];
+    }
+
+    public int getNeighbourCount(int node){
+        return neighbourCounts[node];
+    }
+
+    private void addNeighbour(int node, int neighbour){
+        if(neighbourCounts[node] == neighbours[node].length){
+            neighbours[node] = Arrays.copyOf(neighbours[node], neighbours[node].length * 2);
+        }
+        neighbours[node][neighbourCounts[node]++] = neighbour;
+    }
+
+    // Position of the edge (i, j), i > j, in the lower triangle of the matrix
+    private static long bitIndex(int first, int second){
+        long i = Math.max(first, second);
+        long j = Math.min(first, second);
+        return i * (i - 1) / 2 + j;
+    }
+}
@@ -1,47 +1,64 @@
 package pt.up.fe.comp.ollir.optimizations.register_allocation;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.specs.comp.ollir.Node;
-
 public class InterferenceGraphCreator {
-    Set<Web> webs;
-    Map<String, Node> nodes;
+    List<Web> webs;
+    Map<Integer, String> copies;
 
     public InterferenceGraphCreator(Set<Web> webs){
-        this.webs = webs;
-        this.nodes = new HashMap<>();
+        this(webs, Map.of());
+    }
 
-        int id = 0;
-        for(var web : webs){
-            Node node = new Node();
-            node.setId(id++);
-            nodes.put(web.toString(), node);
-        }
+    // copies: instructions that only copy a variable into another, by id, and the web that is copied
+    public InterferenceGraphCreator(Set<Web> webs, Map<Integer, String> copies){
+        this.webs = new ArrayList<>(webs);
+        this.webs.sort(Comparator.comparing(Web::toString));
+        this.copies = copies;
     }
 
-    public Set<Pair<Node, String>> createGraph(){
-        for(var firstWeb : webs){
-            for(var secondWeb : webs){
-                Node firstNode = nodes.get(firstWeb.toString());
-                Node secondNode = nodes.get(secondWeb.toString());
-                if(secondNode.getId() <= firstNode.getId()){
+    // A web interferes with the webs that are live where it's defined,
+    // except for the web it's copied from, both can share a register.
+    // Each definition is only checked against the webs live after it, instead of every pair of webs
+    public InterferenceGraph createGraph(){
+        List<String> names = new ArrayList<>();
+        List<String> types = new ArrayList<>();
+        for(Web web : webs){
+            names.add(web.toString());
+            types.add(web.getType());
+        }
+        InterferenceGraph graph = new InterferenceGraph(names, types);
+
+        // Webs live after each instruction
+        Map<Integer, BitSet> liveWebs = new HashMap<>();
+        for(int node = 0; node < webs.size(); ++node){
+            BitSet liveOut = webs.get(node).getLiveOut();
+            for(int id = liveOut.nextSetBit(0); id >= 0; id = liveOut.nextSetBit(id + 1)){
+                liveWebs.computeIfAbsent(id, key -> new BitSet()).set(node);
+            }
+        }
+
+        for(int node = 0; node < webs.size(); ++node){
+            BitSet definitions = webs.get(node).getDefinitions();
+            for(int id = definitions.nextSetBit(0); id >= 0; id = definitions.nextSetBit(id + 1)){
+                BitSet live = liveWebs.get(id);
+                if(live == null){
                     continue;
                 }
-                if(!firstWeb.disjoint(secondWeb) || (!firstWeb.getType().equals(secondWeb.getType()))){
-                    firstNode.addSucc(secondNode);
-                    secondNode.addSucc(firstNode);
+                int copied = copies.containsKey(id) ? graph.getIndex(copies.get(id)) : -1;
+                for(int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)){
+                    if(other != copied){
+                        graph.addEdge(node, other);
+                    }
                 }
             }
         }
-        
-        Set<Pair<Node, String>> graph = new HashSet<>();
-        for(var entry : this.nodes.entrySet()){
-            graph.add(new Pair<>(entry.getValue(), entry.getKey()));
-        }
-        
+
         return graph;
     }
 }
@@ -0,0 +1,216 @@
+package pt.up.fe.comp.ollir.optimizations.register_allocation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/*
+ * Linear scan (Poletto & Sarkar), a faster alternative to graph coloring that may use more registers
+ * • Every web becomes one live interval, from its first to its last point in instruction order
+ * – Point 2*id is the start of instruction id (reads), 2*id+1 its end (writes and live out)
+ * – A loop is covered because the variable is live at the jump back and at the loop header
+ * • Intervals are visited by start point
+ * – Intervals that ended before it free their register
+ * – A copy takes the register of the copied variable when it's free, so the copy can be removed
+ * – Otherwise the lowest free register that held the same type (or none)
+ * • No register left
+ * – The spillable interval that ends last is spilled, the current one takes its register if it ends sooner
+ */
+public class LinearScanSolver implements RegisterSolver {
+    private final Set<Web> webs;
+    private final Map<Integer, String> copies;
+    private final int numberOfColors;
+    private int reservedColors;
+
+    private final Map<String, Integer> precolored;
+    private final Map<String, Double> spillCosts;
+    private final Map<String, Integer> colors;
+    private final Set<String> spilled;
+
+    private static class Interval {
+        final String name;
+        final String type;
+        final int start;
+        final int end;
+        String hint;
+        int color = -1;
+
+        Interval(String name, String type, int start, int end){
+            this.name = name;
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    public LinearScanSolver(Set<Web> webs, Map<Integer, String> copies, int numberOfColors) {
+        this.webs = webs;
+        this.copies = copies;
+        this.numberOfColors = numberOfColors;
+        this.reservedColors = 0;
+        this.precolored = new HashMap<>();
+        this.spillCosts = new HashMap<>();
+        this.colors = new HashMap<>();
+        this.spilled = new LinkedHashSet<>();
+    }
+
+    @Override
+    public void setPrecolored(String variable, int color) {
+        this.precolored.put(variable, color);
+    }
+
+    @Override
+    public void setReservedColors(int reservedColors) {
+        this.reservedColors = reservedColors;
+    }
+
+    @Override
+    public void setSpillCost(String variable, double cost) {
+        this.spillCosts.put(variable, cost);
+    }
+
+    @Override
+    public boolean solve() {
+        for(var entry : precolored.entrySet()){
+            if(entry.getValue() < numberOfColors){
+                colors.put(entry.getKey(), entry.getValue());
+            } else {
+                spilled.add(entry.getKey());
+            }
+        }
+
+        List<Interval> intervals = this.buildIntervals();
+        intervals.sort(Comparator.comparingInt((Interval interval) -> interval.start).thenComparing(interval -> interval.name));
+
+        String[] registerTypes = new String[Math.max(numberOfColors, 0)];
+        boolean[] free = new boolean[registerTypes.length];
+        for(int color = reservedColors; color < free.length; ++color){
+            free[color] = true;
+        }
+        PriorityQueue<Interval> active = new PriorityQueue<>(Comparator.comparingInt((Interval interval) -> interval.end));
+
+        for(Interval current : intervals){
+            // Expire the intervals that ended before this one starts
+            while(!active.isEmpty() && active.peek().end < current.start){
+                free[active.poll().color] = true;
+            }
+
+            int color = this.chooseRegister(current, free, registerTypes);
+            if(color != -1){
+                this.assign(current, color, free, registerTypes, active);
+                continue;
+            }
+
+            // Spill the interval of the same type that ends last
+            Interval victim = null;
+            for(Interval interval : active){
+                if(this.canSpill(interval) && interval.type.equals(current.type) && (victim == null || interval.end > victim.end)){
+                    victim = interval;
+                }
+            }
+            if(victim != null && (victim.end > current.end || !this.canSpill(current))){
+                active.remove(victim);
+                spilled.add(victim.name);
+                colors.remove(victim.name);
+                this.assign(current, victim.color, free, registerTypes, active);
+            } else {
+                spilled.add(current.name);
+            }
+        }
+
+        return spilled.isEmpty();
+    }
+
+    private List<Interval> buildIntervals(){
+        Map<String, Interval> byDefinition = new HashMap<>();
+        Map<Integer, String> definedAt = new HashMap<>();
+        List<Interval> intervals = new ArrayList<>();
+        for(Web web : webs){
+            String name = web.toString();
+            if(precolored.containsKey(name)){
+                continue;
+            }
+            // Only the first and last instructions of each set matter
+            BitSet reads = (BitSet) web.getInstructions().clone();
+            reads.andNot(web.getDefinitions());
+            reads.or(web.getUses());
+            BitSet writes = (BitSet) web.getDefinitions().clone();
+            writes.or(web.getLiveOut());
+            if(reads.isEmpty() && writes.isEmpty()){
+                continue;
+            }
+            int start = Math.min(point(reads.nextSetBit(0), 0, Integer.MAX_VALUE), point(writes.nextSetBit(0), 1, Integer.MAX_VALUE));
+            int end = Math.max(point(reads.length() - 1, 0, Integer.MIN_VALUE), point(writes.length() - 1, 1, Integer.MIN_VALUE));
+            Interval interval = new Interval(name, web.getType(), start, end);
+            intervals.add(interval);
+            BitSet definitions = web.getDefinitions();
+            for(int id = definitions.nextSetBit(0); id >= 0; id = definitions.nextSetBit(id + 1)){
+                definedAt.put(id, name);
+            }
+            byDefinition.put(name, interval);
+        }
+
+        for(var entry : copies.entrySet()){
+            String dest = definedAt.get(entry.getKey());
+            if(dest != null){
+                byDefinition.get(dest).hint = entry.getValue();
+            }
+        }
+        return intervals;
+    }
+
+    // Point of an instruction id (-1 if there's none), plus 1 for its end
+    private static int point(int id, int end, int none){
+        return id < 0 ? none : 2 * id + end;
+    }
+
+    private int chooseRegister(Interval current, boolean[] free, String[] registerTypes){
+        if(current.hint != null && colors.containsKey(current.hint)){
+            int color = colors.get(current.hint);
+            if(color < free.length && free[color] && current.type.equals(registerTypes[color])){
+                return color;
+            }
+        }
+        int unused = -1;
+        for(int color = reservedColors; color < free.length; ++color){
+            if(!free[color]){
+                continue;
+            }
+            if(current.type.equals(registerTypes[color])){
+                return color;
+            }
+            if(unused == -1 && registerTypes[color] == null){
+                unused = color;
+            }
+        }
+        return unused;
+    }
+
+    private void assign(Interval interval, int color, boolean[] free, String[] registerTypes, PriorityQueue<Interval> active){
+        interval.color = color;
+        free[color] = false;
+        registerTypes[color] = interval.type;
+        colors.put(interval.name, color);
+        active.add(interval);
+    }
+
+    private boolean canSpill(Interval interval){
+        return spillCosts.getOrDefault(interval.name, 1.0) != Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public Set<String> getSpilledVariables(){
+        return spilled;
+    }
+
+    @Override
+    public Map<String, Integer> getVariableColorMap(){
+        return colors;
+    }
+}
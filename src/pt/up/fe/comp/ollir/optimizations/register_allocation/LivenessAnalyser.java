@@ -1,13 +1,17 @@
 package pt.up.fe.comp.ollir.optimizations.register_allocation;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.specs.comp.ollir.ArrayOperand;
 import org.specs.comp.ollir.AssignInstruction;
 import org.specs.comp.ollir.BinaryOpInstruction;
 import org.specs.comp.ollir.CallInstruction;
@@ -16,7 +20,6 @@ import org.specs.comp.ollir.CondBranchInstruction;
 import org.specs.comp.ollir.Element;
 import org.specs.comp.ollir.ElementType;
 import org.specs.comp.ollir.Instruction;
-import org.specs.comp.ollir.InstructionType;
 import org.specs.comp.ollir.Node;
 import org.specs.comp.ollir.NodeType;
 import org.specs.comp.ollir.Operand;
@@ -27,71 +30,160 @@ import org.specs.comp.ollir.ReturnInstruction;
 import org.specs.comp.ollir.SingleOpInstruction;
 import org.specs.comp.ollir.Type;
 
+/*
+ * Liveness analysis over the instructions of a method, used to build the webs of every variable.
+ * Each web keeps where it's defined, read and live, the interference graph is built from that.
+ * Variables are numbered densely and the use/def/in/out sets are bit vectors (one long per 64 variables),
+ * solved with a worklist that visits the instructions in reverse postorder of the reversed CFG.
+ */
 public class LivenessAnalyser {
     private final List<Node> nodesList;
-    private final List<Set<String>> useList;
-    private final List<Set<String>> defList;
-    private final List<Set<String>> inList;
-    private final List<Set<String>> outList;
+    private final Map<Node, Integer> nodeIndexes;
+    private final int[][] successors;
+    private final int[][] predecessors;
+
+    private final Map<String, Integer> variableIndexes;
+    private final Map<String, String> parameterTypes;
+    private int[] defVariable;
+    private int words;
+    private long[][] useList;
+    private long[][] defList;
+    private long[][] inList;
+    private long[][] outList;
     private final HashMap<String, Set<Web>> webs;
     
     public LivenessAnalyser(Node beginNode, List<Element> parameters){
         this.nodesList = new ArrayList<>();
-        this.useList = new ArrayList<>();
-        this.defList = new ArrayList<>();
-        this.inList = new ArrayList<>();
-        this.outList = new ArrayList<>();
+        this.nodeIndexes = new HashMap<>();
+        this.variableIndexes = new HashMap<>();
+        this.parameterTypes = new HashMap<>();
         this.webs = new HashMap<>();
 
-        this.addNode(beginNode);
-        this.initNodes();
+        this.addNodes(beginNode);
+        this.successors = new int[nodesList.size()][];
+        this.predecessors = new int[nodesList.size()][];
+        this.initEdges();
 
         for(var param : parameters){
-            Operand operand = (Operand) param;
-            if(nodesList.size() > 0){
-                defList.get(0).add(operand.getName());
-            }
-            this.webs.put(operand.getName(), new HashSet<>());
+            String name = ((Operand) param).getName();
+            parameterTypes.put(name, param.getType().toString());
+            this.variableIndex(name);
+            this.webs.put(name, new HashSet<>());
         }
+        this.initNodes();
 
         this.livenessAnalyse();
         this.createWebs();
     }
 
-    private void addNode(Node node){
-        if (!nodesList.contains(node)){
-            if (node.getNodeType() == NodeType.INSTRUCTION){
-                nodesList.add(node);
+    // Instruction nodes in depth-first preorder from the begin node
+    private void addNodes(Node beginNode){
+        Set<Node> visited = new HashSet<>();
+        Deque<Iterator<Node>> stack = new ArrayDeque<>();
+        visit(beginNode, visited, stack);
+        while(!stack.isEmpty()){
+            Iterator<Node> successors = stack.peek();
+            if(successors.hasNext()){
+                Node succ = successors.next();
+                if(!visited.contains(succ)){
+                    visit(succ, visited, stack);
+                }
+            } else {
+                stack.pop();
             }
-            for(Node succ : node.getSuccessors()){
-                addNode(succ);
+        }
+    }
+
+    private void visit(Node node, Set<Node> visited, Deque<Iterator<Node>> stack){
+        visited.add(node);
+        if(node.getNodeType() == NodeType.INSTRUCTION){
+            nodeIndexes.put(node, nodesList.size());
+            nodesList.add(node);
+        }
+        stack.push(node.getSuccessors().iterator());
+    }
+
+    // Successors and predecessors as indexes into nodesList, edges to the end node are left out
+    private void initEdges(){
+        List<List<Integer>> preds = new ArrayList<>();
+        for(int i = 0; i < nodesList.size(); ++i){
+            preds.add(new ArrayList<>());
+        }
+        for(int i = 0; i < nodesList.size(); ++i){
+            List<Integer> succs = new ArrayList<>();
+            for(Node succ : nodesList.get(i).getSuccessors()){
+                Integer succIndex = nodeIndexes.get(succ);
+                if(succIndex != null){
+                    succs.add(succIndex);
+                    preds.get(succIndex).add(i);
+                }
             }
+            successors[i] = toArray(succs);
+        }
+        for(int i = 0; i < nodesList.size(); ++i){
+            predecessors[i] = toArray(preds.get(i));
         }
     }
 
     private void initNodes() {
+        List<Set<String>> uses = new ArrayList<>();
+        List<String> defs = new ArrayList<>();
         for(Node node : nodesList){
-            if(node.getNodeType() == NodeType.INSTRUCTION){
-                Instruction instruction = (Instruction) node;
-
-                // If assign add to def
-                Set<String> def = new HashSet<>();
-                if (instruction instanceof AssignInstruction) {
-                    AssignInstruction assignInstruction = (AssignInstruction) instruction;
-                    String variableName = ((Operand) assignInstruction.getDest()).getName();
-                    def.add(variableName);
-                    this.webs.put(variableName, new HashSet<>());   // Everytime a variable is defined a new entry in webs is created
+            Instruction instruction = (Instruction) node;
+
+            // If assign add to def, an array element assignment only uses the array
+            String def = null;
+            Set<String> use = new HashSet<>();
+            if (instruction instanceof AssignInstruction) {
+                Operand dest = (Operand) ((AssignInstruction) instruction).getDest();
+                if(dest instanceof ArrayOperand){
+                    this.addUse(dest, use);
+                } else {
+                    def = dest.getName();
+                    variableIndex(def);
+                    this.webs.put(def, new HashSet<>());   // Everytime a variable is defined a new entry in webs is created
                 }
-                defList.add(def);
+            }
+            defs.add(def);
 
-                // For any instruction collectUses
-                Set<String> use = new HashSet<>();
-                this.collectUses(instruction, use);
-                useList.add(use);
+            // For any instruction collectUses
+            this.collectUses(instruction, use);
+            for(String name : use){
+                variableIndex(name);
+            }
+            uses.add(use);
+        }
 
-                // Initialize in and out to empty set
-                inList.add(new HashSet<>());
-                outList.add(new HashSet<>());
+        // Every variable is numbered, the vectors can be sized
+        this.words = (variableIndexes.size() + 63) / 64;
+        int n = nodesList.size();
+        this.useList = new long[n][words];
+        this.defList = new long[n][words];
+        this.inList = new long[n][words];
+        this.outList = new long[n][words];
+        this.defVariable = new int[n];
+        for(int i = 0; i < n; ++i){
+            for(String name : uses.get(i)){
+                set(useList[i], variableIndexes.get(name));
+            }
+            defVariable[i] = -1;
+            if(defs.get(i) != null){
+                defVariable[i] = variableIndexes.get(defs.get(i));
+                set(defList[i], defVariable[i]);
+            }
+        }
+    }
+
+    // Variables read by an element: the operand itself and, for array accesses, the indexes
+    private void addUse(Element element, Set<String> use){
+        if(element.isLiteral() || element.getType().getTypeOfElement() == ElementType.THIS){
+            return;
+        }
+        Operand operand = (Operand) element;
+        use.add(operand.getName());
+        if(operand instanceof ArrayOperand){
+            for(Element index : ((ArrayOperand) operand).getIndexOperands()){
+                this.addUse(index, use);
             }
         }
     }
@@ -105,13 +197,9 @@ public class LivenessAnalyser {
             case BINARYOPER:
                 BinaryOpInstruction binOp = (BinaryOpInstruction) instruction;
                 Element lhsOperand = binOp.getLeftOperand();
-                if(!lhsOperand.isLiteral()){
-                    use.add(((Operand) lhsOperand).getName());
-                }
+                this.addUse(lhsOperand, use);
                 Element rhsOperand = binOp.getRightOperand();
-                if(!rhsOperand.isLiteral()){
-                    use.add(((Operand) rhsOperand).getName());
-                }
+                this.addUse(rhsOperand, use);
                 break;
             case BRANCH:
                 CondBranchInstruction condInstruction = (CondBranchInstruction) instruction;
@@ -120,57 +208,40 @@ public class LivenessAnalyser {
             case CALL:
                 CallInstruction callInstruction = (CallInstruction) instruction;
                 Operand firstOperand = (Operand) callInstruction.getFirstArg();
-                if(firstOperand.getType().getTypeOfElement() != ElementType.THIS && callInstruction.getInvocationType() != CallType.invokestatic){
-                    use.add(firstOperand.getName());
+                if(callInstruction.getInvocationType() != CallType.invokestatic && callInstruction.getInvocationType() != CallType.NEW){
+                    this.addUse(firstOperand, use);
                 }
                 if(callInstruction.getListOfOperands() != null){
                     for(var operand : callInstruction.getListOfOperands()){
-                        if(!operand.isLiteral()) {
-                            use.add(((Operand) operand).getName());
-                        }
+                        this.addUse(operand, use);
                     }
                 }
                 break;
             case GETFIELD:
                 GetFieldInstruction getFieldInstruction = (GetFieldInstruction) instruction;
                 Element getFieldClass = getFieldInstruction.getFirstOperand();
-                if(getFieldClass.getType().getTypeOfElement() != ElementType.THIS){
-                    use.add(((Operand) getFieldClass).getName());
-                }
+                this.addUse(getFieldClass, use);
                 break;
             case NOPER:
                 SingleOpInstruction singleOpInstruction = (SingleOpInstruction) instruction;
                 Element singleOperand = singleOpInstruction.getSingleOperand();
-                if (!singleOperand.isLiteral()) {
-                    use.add(((Operand) singleOperand).getName());
-                }
+                this.addUse(singleOperand, use);
                 break;
             case PUTFIELD:
                 PutFieldInstruction putFieldInstruction = (PutFieldInstruction) instruction;
                 Element putFieldOperand = putFieldInstruction.getFirstOperand();
-                if(putFieldOperand.getType().getTypeOfElement() != ElementType.THIS){
-                    use.add(((Operand) putFieldOperand).getName());
-                }
-                Element putFieldInstructionThirdOperand = putFieldInstruction.getThirdOperand();
-                if(!putFieldInstructionThirdOperand.isLiteral()){
-                    use.add(((Operand) putFieldInstructionThirdOperand).getName());
-                }
+                this.addUse(putFieldOperand, use);
+                this.addUse(putFieldInstruction.getThirdOperand(), use);
                 break;
             case RETURN:
                 ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
                 if (returnInstruction.hasReturnValue()) {
-                    Element returnOperand = returnInstruction.getOperand();
-                    if(!returnOperand.isLiteral()) {
-                        use.add(((Operand) returnOperand).getName());
-                    }
+                    this.addUse(returnInstruction.getOperand(), use);
                 }
                 break;
             case UNARYOPER:
                 UnaryOpInstruction unaryOpInstruction = (UnaryOpInstruction) instruction;
-                Element unaryOpOperand = unaryOpInstruction.getOperand();
-                if(!unaryOpOperand.isLiteral()){
-                    use.add(((Operand) unaryOpInstruction.getOperand()).getName());    
-                }
+                this.addUse(unaryOpInstruction.getOperand(), use);
                 break;
             default:
                 break;
@@ -178,92 +249,161 @@ public class LivenessAnalyser {
     }
 
     private void livenessAnalyse() {
+        int n = nodesList.size();
+        int[] order = reversePostorderOfReverseCFG();
+        boolean[] pending = new boolean[n];
+        Arrays.fill(pending, true);
+        long[] newIn = new long[words];
+
         boolean updated;
-        do{
+        do {
             updated = false;
-            for(int i = 0; i < nodesList.size(); ++i){
-                Node node = nodesList.get(i);
-                Set<String> in = this.inList.get(i);
-                Set<String> out = this.outList.get(i);
-                Set<String> newOut = new HashSet<>();
-
-                for(Node succ : node.getSuccessors()){
-                    int listIndex = this.nodesList.indexOf(succ);
-                    if(listIndex != -1){
-                        newOut.addAll(this.inList.get(listIndex));
-                    }
+            for(int i : order){
+                if(!pending[i]){
+                    continue;
                 }
+                pending[i] = false;
 
-                Set<String> newIn = new HashSet<>(this.useList.get(i));
-
-                // out[i] - def[i]
-                Set<String> outWithoutDef = new HashSet<>(newOut);
-                outWithoutDef.removeAll(this.defList.get(i));
+                // out[i] = union of in[succ]
+                long[] out = outList[i];
+                Arrays.fill(out, 0);
+                for(int succ : successors[i]){
+                    long[] succIn = inList[succ];
+                    for(int w = 0; w < words; ++w){
+                        out[w] |= succIn[w];
+                    }
+                }
 
-                newIn.addAll(outWithoutDef);
+                // in[i] = use[i] + (out[i] - def[i])
+                long[] use = useList[i];
+                long[] def = defList[i];
+                for(int w = 0; w < words; ++w){
+                    newIn[w] = use[w] | (out[w] & ~def[w]);
+                }
 
-                if(!(in.equals(newIn) && out.equals(newOut))){
+                if(!Arrays.equals(inList[i], newIn)){
+                    System.arraycopy(newIn, 0, inList[i], 0, words);
+                    for(int pred : predecessors[i]){
+                        pending[pred] = true;
+                    }
                     updated = true;
                 }
-                
-                this.inList.set(i, newIn);
-                this.outList.set(i, newOut);
             }
         } while(updated);
     }
 
-    private void createWebs(){
-        for (var entry : this.webs.entrySet()) {
-            int webId = 0;
-            for(int i = 0; i < this.nodesList.size(); ++i){
-                Node node = nodesList.get(i);
-                Set<String> def = this.defList.get(i);
-                if (def.contains(entry.getKey())){
-                    Instruction instruction = (Instruction) node;
-                    if(instruction.getInstType() == InstructionType.ASSIGN){
-                        AssignInstruction assignInstruction = (AssignInstruction) instruction;
-                        Type type = assignInstruction.getTypeOfAssign();
-                        Web web = new Web(entry.getKey(), type.toString(), webId++);
-                        this.propagateWeb(node, web);
-                        entry.getValue().add(web);
+    // Liveness flows backwards, so successors are visited before their predecessors whenever possible:
+    // that's the postorder of a depth-first search over the successors
+    private int[] reversePostorderOfReverseCFG(){
+        int n = nodesList.size();
+        int[] order = new int[n];
+        int count = 0;
+        boolean[] visited = new boolean[n];
+        int[] stack = new int[n];
+        int[] nextSuccessor = new int[n];
+
+        // Roots are taken in order so that every instruction gets a position
+        for(int root = 0; root < n; ++root){
+            if(visited[root]){
+                continue;
+            }
+            int top = 0;
+            stack[top] = root;
+            visited[root] = true;
+            while(top >= 0){
+                int node = stack[top];
+                if(nextSuccessor[node] < successors[node].length){
+                    int succ = successors[node][nextSuccessor[node]++];
+                    if(!visited[succ]){
+                        visited[succ] = true;
+                        stack[++top] = succ;
                     }
+                } else {
+                    order[count++] = node;
+                    top--;
                 }
             }
-            
-            boolean updated;
-            List<Web> webList = new ArrayList<>(entry.getValue());
-            do {
-                updated = false;
-                Set<Web> killSet = new HashSet<>();
-                
-                for(int i = 0; i < webList.size(); ++i){
-                    Web firstWeb = webList.get(i);
-                    for(int j = i + 1; j < webList.size(); ++j){
-                        Web secondWeb = webList.get(j);
-                        if(!firstWeb.disjoint(secondWeb)){
-                            secondWeb.merge(firstWeb);
-                            killSet.add(firstWeb);
-                            updated = true;
-                        }
-                    }
+        }
+        return order;
+    }
+
+    // Every definition starts a web, parameters read before being redefined get one from the method entry,
+    // webs of the same variable sharing an instruction are merged
+    private void createWebs(){
+        int n = nodesList.size();
+        int[] owner = new int[n];
+        Arrays.fill(owner, -1);
+        int[] visitMark = new int[n];
+        int mark = 0;
+
+        for (var entry : this.webs.entrySet()) {
+            String name = entry.getKey();
+            int variable = variableIndexes.get(name);
+            List<Web> webList = new ArrayList<>();
+            List<Integer> parents = new ArrayList<>();
+            List<Integer> owned = new ArrayList<>();
+
+            if(parameterTypes.containsKey(name) && n > 0 && get(this.inList[0], variable)){
+                Web web = new Web(name, parameterTypes.get(name), webList.size());
+                web.getDefinitions().set(0);
+                web.getLiveOut().set(0);
+                this.addWeb(web, 0, false, variable, webList, parents, owner, owned, visitMark, ++mark);
+            }
+
+            for(int i = 0; i < n; ++i){
+                if (defVariable[i] == variable){
+                    Type type = ((AssignInstruction) nodesList.get(i)).getTypeOfAssign();
+                    Web web = new Web(name, type.toString(), webList.size());
+                    web.getDefinitions().set(nodesList.get(i).getId());
+                    this.addWeb(web, i, true, variable, webList, parents, owner, owned, visitMark, ++mark);
                 }
-                for(var w : killSet){
-                    webList.remove(w);
+            }
+
+            Set<Web> merged = new HashSet<>();
+            for(int i = 0; i < webList.size(); ++i){
+                int root = find(parents, i);
+                if(root != i){
+                    webList.get(root).merge(webList.get(i));
+                } else {
+                    merged.add(webList.get(i));
                 }
-            } while(updated);
-            this.webs.put(entry.getKey(), new HashSet<>(webList));
+            }
+            for(int node : owned){
+                owner[node] = -1;
+            }
+            this.webs.put(name, merged);
         }
-        
-        for(var entry : this.webs.entrySet()){
-            System.out.print(entry.getKey() + " - ");
-            for(var w : entry.getValue()){
-                System.out.print("{");
-                for(var k : w.getInstructions()){
-                    System.out.print(k + ", ");
-                }
-                System.out.print("}");
+    }
+
+    private void addWeb(Web web, int start, boolean definition, int variable, List<Web> webList, List<Integer> parents,
+                        int[] owner, List<Integer> owned, int[] visitMark, int mark){
+        int webIndex = webList.size();
+        webList.add(web);
+        parents.add(webIndex);
+
+        for(int reached : this.propagateWeb(web, start, definition, variable, visitMark, mark)){
+            if(owner[reached] == -1){
+                owner[reached] = webIndex;
+                owned.add(reached);
+            } else {
+                union(parents, owner[reached], webIndex);
             }
-            System.out.println();
+        }
+    }
+
+    private static int find(List<Integer> parents, int web){
+        while(parents.get(web) != web){
+            parents.set(web, parents.get(parents.get(web)));
+            web = parents.get(web);
+        }
+        return web;
+    }
+
+    private static void union(List<Integer> parents, int first, int second){
+        int firstRoot = find(parents, first);
+        int secondRoot = find(parents, second);
+        if(firstRoot != secondRoot){
+            parents.set(Math.max(firstRoot, secondRoot), Math.min(firstRoot, secondRoot));
         }
     }
     
@@ -279,19 +419,56 @@ public class LivenessAnalyser {
         return webs;
     }
 
-    private void propagateWeb(Node node, Web web){
-        int nodeIndex = this.nodesList.indexOf(node);
-        if(node.getNodeType() == NodeType.INSTRUCTION && !web.contains(node.getId())){
-            boolean inOut = this.outList.get(nodeIndex).contains(web.getVariableName());
-            boolean used = this.useList.get(nodeIndex).contains(web.getVariableName());
-            if(used || inOut){
-                web.add(node.getId());
-                if(inOut){
-                    for(Node succ : node.getSuccessors()){
-                        this.propagateWeb(succ, web);
-                    }
+    // Instructions reached by a value: it spreads while the variable is live and isn't redefined.
+    // A definition always belongs to its web, even if the value is never read
+    private List<Integer> propagateWeb(Web web, int start, boolean definition, int variable, int[] visitMark, int mark){
+        List<Integer> reached = new ArrayList<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(start);
+        while(!stack.isEmpty()){
+            int nodeIndex = stack.pop();
+            if(visitMark[nodeIndex] == mark){
+                continue;
+            }
+            boolean isStart = definition && nodeIndex == start;
+            if(!isStart && !get(this.inList[nodeIndex], variable)){
+                continue;
+            }
+            visitMark[nodeIndex] = mark;
+            reached.add(nodeIndex);
+
+            int id = nodesList.get(nodeIndex).getId();
+            web.add(id);
+            if(get(this.useList[nodeIndex], variable)){
+                web.getUses().set(id);
+            }
+            if(get(this.outList[nodeIndex], variable) && (isStart || defVariable[nodeIndex] != variable)){
+                web.getLiveOut().set(id);
+                for(int succ : successors[nodeIndex]){
+                    stack.push(succ);
                 }
             }
         }
+        return reached;
+    }
+
+    private int variableIndex(String name){
+        return variableIndexes.computeIfAbsent(name, key -> variableIndexes.size());
+    }
+
+    private static void set(long[] bits, int index){
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean get(long[] bits, int index){
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static int[] toArray(List<Integer> list){
+        int[] array = new int[list.size()];
+        for(int i = 0; i < array.length; ++i){
+            array[i] = list.get(i);
+        }
+        return array;
     }
 }
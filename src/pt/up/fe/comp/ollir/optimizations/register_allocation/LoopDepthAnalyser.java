@@ -0,0 +1,61 @@
+package pt.up.fe.comp.ollir.optimizations.register_allocation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+import org.specs.comp.ollir.NodeType;
+
+/*
+ * Number of loops around every instruction of a method, the CFG must be built.
+ * The code is structured, so a jump to an earlier instruction is a back edge and its loop
+ * is the header plus every instruction that reaches the jump without going through the header.
+ */
+public class LoopDepthAnalyser {
+    private final Map<Integer, Integer> depths;
+
+    public LoopDepthAnalyser(Method method){
+        this.depths = new HashMap<>();
+
+        Map<Integer, Set<Integer>> loops = new HashMap<>();
+        for(Instruction instruction : method.getInstructions()){
+            for(Node succ : instruction.getSuccessors()){
+                if(succ.getNodeType() == NodeType.INSTRUCTION && succ.getId() <= instruction.getId()){
+                    Set<Integer> body = loops.computeIfAbsent(succ.getId(), header -> new HashSet<>());
+                    this.addLoopBody(succ, instruction, body);
+                }
+            }
+        }
+
+        for(Set<Integer> body : loops.values()){
+            for(int id : body){
+                depths.merge(id, 1, Integer::sum);
+            }
+        }
+    }
+
+    private void addLoopBody(Node header, Node latch, Set<Integer> body){
+        body.add(header.getId());
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(latch);
+        while(!stack.isEmpty()){
+            Node node = stack.pop();
+            if(node.getNodeType() != NodeType.INSTRUCTION || !body.add(node.getId())){
+                continue;
+            }
+            for(Node pred : node.getPredecessors()){
+                stack.push(pred);
+            }
+        }
+    }
+
+    public int getDepth(int instructionId){
+        return depths.getOrDefault(instructionId, 0);
+    }
+}
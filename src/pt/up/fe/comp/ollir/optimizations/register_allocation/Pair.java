@@ -1,5 +1,7 @@
 package pt.up.fe.comp.ollir.optimizations.register_allocation;
 
+import java.util.Objects;
+
 public class Pair<X, Y> { 
   public final X first; 
   public final Y second; 
@@ -16,4 +18,9 @@ public class Pair<X, Y> {
     Pair pair = (Pair) obj;
     return this.first.equals(pair.first) && this.second.equals(pair.second);
   }
-} 
+
+  @Override
+  public int hashCode(){
+    return Objects.hash(first, second);
+  }
+}
@@ -0,0 +1,358 @@
+package pt.up.fe.comp.ollir.optimizations.register_allocation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.Type;
+import org.specs.comp.ollir.VarScope;
+
+import pt.up.fe.comp.ollir.OllirUtils;
+
+/*
+ * Chaitin-Briggs register allocation of a method:
+ * liveness -> webs -> interference graph -> coalescing, simplify and select.
+ * With linearScan the webs are given registers by LinearScanSolver instead, without building the graph.
+ * Parameters stay in the registers they're passed in, the other variables use the registers after them.
+ * Webs that get no color are spilled to an int array local to the method (references can't be spilled),
+ * every use reads the value into a short lived temporary and every definition writes it back,
+ * then the allocation starts over until every web has a register.
+ */
+public class RegisterAllocator {
+    private final Method method;
+    private final int numberOfRegisters;
+    private final boolean linearScan;
+    private final int offset;
+
+    private final Set<String> names;
+    private final Set<String> parameters;
+    private final Set<String> temporaries;        // Spill temporaries, can't be spilled again
+    private final Map<String, Integer> spillSlots;  // Slots of the variables spilled in this round
+    private int numberOfSlots;
+    private String spillArray;
+    private int temporaryCounter;
+
+    public RegisterAllocator(Method method, int numberOfRegisters){
+        this(method, numberOfRegisters, false);
+    }
+
+    public RegisterAllocator(Method method, int numberOfRegisters, boolean linearScan){
+        this.method = method;
+        this.numberOfRegisters = numberOfRegisters;
+        this.linearScan = linearScan;
+        this.offset = method.isStaticMethod() ? 0 : 1;
+        this.names = new HashSet<>();
+        this.parameters = new HashSet<>();
+        this.temporaries = new HashSet<>();
+        this.spillSlots = new LinkedHashMap<>();
+        this.numberOfSlots = 0;
+        this.temporaryCounter = 0;
+    }
+
+    // false if the method can't use only numberOfRegisters registers, even with spilling
+    public boolean allocate(){
+        boolean cfgBuilt = false;
+        while(true){
+            if(cfgBuilt){
+                OllirUtils.clearCFG(method);
+            }
+            method.buildCFG();
+            cfgBuilt = true;
+
+            LivenessAnalyser livenessAnalyser = new LivenessAnalyser(method.getBeginNode(), method.getParams());
+            Set<Web> webs = livenessAnalyser.getWebs();
+
+            VariableSplitter variableSplitter = new VariableSplitter(webs);
+            variableSplitter.split(method);
+            this.renameTemporaries(webs);
+
+            Map<Integer, String> copies = this.findCopies();
+            RegisterSolver solver = linearScan ? new LinearScanSolver(webs, copies, numberOfRegisters)
+                    : this.createGraphColoringSolver(webs, copies);
+
+            parameters.clear();
+            for(Element param : method.getParams()){
+                Operand operand = (Operand) param;
+                parameters.add(operand.getName());
+                solver.setPrecolored(operand.getName(), operand.getParamId() - offset);
+            }
+            solver.setReservedColors(method.getParams().size());
+            // Linear scan only needs to know what can't be spilled
+            LoopDepthAnalyser loopDepthAnalyser = linearScan ? null : new LoopDepthAnalyser(method);
+            for(Web web : webs){
+                solver.setSpillCost(web.toString(), this.spillCost(web, loopDepthAnalyser));
+            }
+
+            if(solver.solve()){
+                this.assignRegisters(solver.getVariableColorMap());
+                return true;
+            }
+
+            Set<String> spilled = solver.getSpilledVariables();
+            for(Web web : webs){
+                if(spilled.contains(web.toString()) && !this.canSpill(web)){
+                    return false;
+                }
+            }
+            this.spill(spilled);
+        }
+    }
+
+    private GraphColoringSolver createGraphColoringSolver(Set<Web> webs, Map<Integer, String> copies){
+        InterferenceGraphCreator interferenceGraphCreator = new InterferenceGraphCreator(webs, copies);
+        GraphColoringSolver graphColoringSolver = new GraphColoringSolver(interferenceGraphCreator.createGraph(), numberOfRegisters);
+        for(Instruction instruction : method.getInstructions()){
+            if(copies.containsKey(instruction.getId())){
+                String dest = ((Operand) ((AssignInstruction) instruction).getDest()).getName();
+                graphColoringSolver.addMove(dest, copies.get(instruction.getId()));
+            }
+        }
+        return graphColoringSolver;
+    }
+
+    // The splitter gives new names to every variable, the temporaries and the spill array must be found again
+    private void renameTemporaries(Set<Web> webs){
+        Set<String> renamed = new HashSet<>();
+        String renamedSpillArray = null;
+        for(Web web : webs){
+            if(temporaries.contains(web.getVariableName())){
+                renamed.add(web.toString());
+            }
+            if(web.getVariableName().equals(spillArray)){
+                renamedSpillArray = web.toString();
+            }
+        }
+        if(spillArray != null){
+            spillArray = renamedSpillArray;
+        }
+        temporaries.clear();
+        temporaries.addAll(renamed);
+    }
+
+    // Instructions that only copy a variable into another, by id, with the name of the copied variable
+    private Map<Integer, String> findCopies(){
+        Map<Integer, String> copies = new HashMap<>();
+        for(Instruction instruction : method.getInstructions()){
+            if(instruction.getInstType() != InstructionType.ASSIGN){
+                continue;
+            }
+            AssignInstruction assignInstruction = (AssignInstruction) instruction;
+            if(assignInstruction.getDest() instanceof ArrayOperand || assignInstruction.getRhs().getInstType() != InstructionType.NOPER){
+                continue;
+            }
+            Element source = ((SingleOpInstruction) assignInstruction.getRhs()).getSingleOperand();
+            if(source.isLiteral() || source instanceof ArrayOperand || source.getType().getTypeOfElement() == ElementType.THIS){
+                continue;
+            }
+            copies.put(instruction.getId(), ((Operand) source).getName());
+        }
+        return copies;
+    }
+
+    private boolean canSpill(Web web){
+        ElementType type = ElementType.valueOf(web.getType());
+        return (type == ElementType.INT32 || type == ElementType.BOOLEAN) && !temporaries.contains(web.toString())
+            && !parameters.contains(web.toString());
+    }
+
+    // Every read and write of the web, weighted by 10 for each loop around it (if loop depths are known)
+    private double spillCost(Web web, LoopDepthAnalyser loopDepthAnalyser){
+        if(!this.canSpill(web)){
+            return Double.POSITIVE_INFINITY;
+        }
+        if(loopDepthAnalyser == null){
+            return 1;
+        }
+        BitSet accesses = (BitSet) web.getDefinitions().clone();
+        accesses.or(web.getUses());
+        double cost = 0;
+        for(int instruction = accesses.nextSetBit(0); instruction >= 0; instruction = accesses.nextSetBit(instruction + 1)){
+            cost += Math.pow(10, loopDepthAnalyser.getDepth(instruction));
+        }
+        return cost;
+    }
+
+    private void spill(Set<String> spilled){
+        this.collectNames();
+        if(spillArray == null){
+            spillArray = this.freshName("spill");
+        }
+        // Names change every round, only this round's spilled variables are looked up
+        spillSlots.clear();
+        for(String variable : spilled){
+            spillSlots.put(variable, numberOfSlots++);
+        }
+
+        List<Instruction> code = new ArrayList<>();
+        for(Instruction instruction : method.getInstructions()){
+            // Reads go to temporaries before the instruction
+            Map<String, Operand> loaded = new HashMap<>();
+            Instruction first = null;
+            for(Operand operand : OllirUtils.getUsedOperands(instruction)){
+                if(!spillSlots.containsKey(operand.getName())){
+                    continue;
+                }
+                Operand temporary = loaded.get(operand.getName());
+                if(temporary == null){
+                    temporary = this.newTemporary(operand.getType());
+                    loaded.put(operand.getName(), temporary);
+                    Instruction load = new AssignInstruction(copy(temporary), operand.getType(),
+                            new SingleOpInstruction(this.spillSlot(operand.getName())));
+                    if(first == null){
+                        first = load;
+                    }
+                    code.add(load);
+                }
+                operand.setName(temporary.getName());
+            }
+            if(first != null){
+                this.moveLabels(instruction, first);
+            }
+            code.add(instruction);
+
+            // Writes go to a temporary and then to the array
+            if(instruction.getInstType() == InstructionType.ASSIGN){
+                AssignInstruction assignInstruction = (AssignInstruction) instruction;
+                Operand dest = (Operand) assignInstruction.getDest();
+                if(!(dest instanceof ArrayOperand) && spillSlots.containsKey(dest.getName())){
+                    String variable = dest.getName();
+                    Operand temporary = loaded.containsKey(variable) ? loaded.get(variable) : this.newTemporary(dest.getType());
+                    dest.setName(temporary.getName());
+                    code.add(new AssignInstruction(this.spillSlot(variable), new Type(ElementType.INT32),
+                            new SingleOpInstruction(copy(temporary))));
+                }
+            }
+        }
+
+        // The array is created once, before the first instruction (and its labels)
+        if(code.isEmpty() || !this.isSpillArrayCreation(code.get(0))){
+            ArrayList<Element> size = new ArrayList<>();
+            size.add(new LiteralElement(String.valueOf(numberOfSlots), new Type(ElementType.INT32)));
+            Type arrayType = OllirUtils.toOllirType("array.i32");
+            code.add(0, new AssignInstruction(new Operand(spillArray, arrayType), arrayType,
+                    new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()), size, arrayType)));
+        } else {
+            CallInstruction creation = (CallInstruction) ((AssignInstruction) code.get(0)).getRhs();
+            ((LiteralElement) creation.getListOfOperands().get(0)).setLiteral(String.valueOf(numberOfSlots));
+        }
+
+        method.getInstructions().clear();
+        method.getInstructions().addAll(code);
+    }
+
+    private boolean isSpillArrayCreation(Instruction instruction){
+        if(instruction.getInstType() != InstructionType.ASSIGN){
+            return false;
+        }
+        Element dest = ((AssignInstruction) instruction).getDest();
+        return !(dest instanceof ArrayOperand) && ((Operand) dest).getName().equals(spillArray);
+    }
+
+    private ArrayOperand spillSlot(String variable){
+        ArrayList<Element> index = new ArrayList<>();
+        index.add(new LiteralElement(String.valueOf(spillSlots.get(variable)), new Type(ElementType.INT32)));
+        return new ArrayOperand(spillArray, new Type(ElementType.INT32), index);
+    }
+
+    private Operand newTemporary(Type type){
+        Operand temporary = new Operand(this.freshName("spill" + temporaryCounter++), type);
+        temporaries.add(temporary.getName());
+        return temporary;
+    }
+
+    private static Operand copy(Operand operand){
+        return new Operand(operand.getName(), operand.getType());
+    }
+
+    private void moveLabels(Instruction from, Instruction to){
+        for(var entry : method.getLabels().entrySet()){
+            if(entry.getValue() == from){
+                entry.setValue(to);
+            }
+        }
+    }
+
+    private void collectNames(){
+        names.clear();
+        for(Element param : method.getParams()){
+            names.add(((Operand) param).getName());
+        }
+        for(Instruction instruction : method.getInstructions()){
+            for(Operand operand : OllirUtils.getUsedOperands(instruction)){
+                names.add(operand.getName());
+            }
+            if(instruction.getInstType() == InstructionType.ASSIGN){
+                names.add(((Operand) ((AssignInstruction) instruction).getDest()).getName());
+            }
+        }
+    }
+
+    private String freshName(String base){
+        String name = base;
+        for(int i = 0; names.contains(name) || method.getOllirClass().isImportedClass(name); ++i){
+            name = base + "_" + i;
+        }
+        names.add(name);
+        return name;
+    }
+
+    // Gives every variable the register it was colored with, after dropping the copies between variables that share one
+    private void assignRegisters(Map<String, Integer> registerMap){
+        // Copies between variables that share a register do nothing
+        List<Instruction> redundant = new ArrayList<>();
+        for(var entry : this.findCopies().entrySet()){
+            Instruction instruction = method.getInstructions().get(entry.getKey() - 1);
+            String dest = ((Operand) ((AssignInstruction) instruction).getDest()).getName();
+            Integer destRegister = registerMap.get(dest);
+            if(destRegister != null && destRegister.equals(registerMap.get(entry.getValue())) && !method.getLabels().containsValue(instruction)){
+                redundant.add(instruction);
+            }
+        }
+        method.getInstructions().removeAll(redundant);
+
+        method.getVarTable().clear();
+        method.buildVarTable();
+
+        // buildVarTable doesn't look at every instruction (returns, for instance)
+        for(Instruction instruction : method.getInstructions()){
+            List<Operand> operands = OllirUtils.getUsedOperands(instruction);
+            if(instruction.getInstType() == InstructionType.ASSIGN){
+                operands.add((Operand) ((AssignInstruction) instruction).getDest());
+            }
+            for(Operand operand : operands){
+                if(registerMap.containsKey(operand.getName()) && !method.getVarTable().containsKey(operand.getName())){
+                    method.getVarTable().put(operand.getName(), new Descriptor(VarScope.LOCAL, offset, operand.getType()));
+                }
+            }
+        }
+
+        for(var entry : method.getVarTable().entrySet()){
+            String varName = entry.getKey();
+            Descriptor descriptor = entry.getValue();
+            if(registerMap.containsKey(varName)){
+                descriptor.setVirtualReg(registerMap.get(varName) + offset);
+            } else if(descriptor.getScope() != VarScope.PARAMETER && !varName.equals("this")){
+                descriptor.setVirtualReg(offset);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package pt.up.fe.comp.ollir.optimizations.register_allocation;
+
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Assigns a register (color) to every web of a method, or tells which webs must be spilled.
+ * Colors start at 0, the caller adds the offset of "this".
+ */
+public interface RegisterSolver {
+    void setPrecolored(String variable, int color);
+
+    // Colors below reservedColors are only used by precolored variables
+    void setReservedColors(int reservedColors);
+
+    // Double.POSITIVE_INFINITY for variables that can't be spilled
+    void setSpillCost(String variable, double cost);
+
+    boolean solve();
+
+    Set<String> getSpilledVariables();
+
+    Map<String, Integer> getVariableColorMap();
+}
@@ -1,5 +1,6 @@
 package pt.up.fe.comp.ollir.optimizations.register_allocation;
 
+import org.specs.comp.ollir.ArrayOperand;
 import org.specs.comp.ollir.AssignInstruction;
 import org.specs.comp.ollir.BinaryOpInstruction;
 import org.specs.comp.ollir.CallInstruction;
@@ -16,16 +17,24 @@ import org.specs.comp.ollir.ReturnInstruction;
 import org.specs.comp.ollir.SingleOpInstruction;
 import org.specs.comp.ollir.UnaryOpInstruction;
 
-import com.javacc.output.Translator.SymbolTable;
-
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class VariableSplitter {
-    private final Set<Web> webs;
+    private final Map<Integer, List<Web>> websByInstruction;
 
     public VariableSplitter(Set<Web> webs){
-        this.webs = webs;
+        // Webs are looked up by instruction, instead of searching every web for each instruction
+        this.websByInstruction = new HashMap<>();
+        for(Web web : webs){
+            var instructions = web.getInstructions();
+            for(int id = instructions.nextSetBit(0); id >= 0; id = instructions.nextSetBit(id + 1)){
+                websByInstruction.computeIfAbsent(id, key -> new ArrayList<>()).add(web);
+            }
+        }
     }
 
     public void split(Method method){
@@ -42,29 +51,18 @@ public class VariableSplitter {
         // websWithThisInstruction
         // when we use operand lookup websWithInstruction
     
-        Set<Web> websWithInstruction = new HashSet<>();
-        for (Web web : webs){
-            if(web.getInstructions().contains(instructionId)){
-                websWithInstruction.add(web);
-            }
-        }
+        List<Web> websWithInstruction = websByInstruction.getOrDefault(instructionId, List.of());
 
         switch (instruction.getInstType()) {
             case ASSIGN:
                 AssignInstruction assignInstruction = (AssignInstruction) instruction;
-                this.lookupVarAndReplace((Operand) assignInstruction.getDest(), websWithInstruction);
+                this.lookupVarAndReplace(assignInstruction.getDest(), websWithInstruction);
                 this.rename(assignInstruction.getRhs(), assignInstruction.getId());
                 break;
             case BINARYOPER:
                 BinaryOpInstruction binOp = (BinaryOpInstruction) instruction;
-                Element lhsOperand = binOp.getLeftOperand();
-                if(!lhsOperand.isLiteral()){
-                    this.lookupVarAndReplace((Operand) lhsOperand, websWithInstruction);
-                }
-                Element rhsOperand = binOp.getRightOperand();
-                if(!rhsOperand.isLiteral()){
-                    this.lookupVarAndReplace((Operand) rhsOperand, websWithInstruction);
-                }
+                this.lookupVarAndReplace(binOp.getLeftOperand(), websWithInstruction);
+                this.lookupVarAndReplace(binOp.getRightOperand(), websWithInstruction);
                 break;
             case BRANCH:
                 CondBranchInstruction condInstruction = (CondBranchInstruction) instruction;
@@ -72,69 +70,58 @@ public class VariableSplitter {
                 break;
             case CALL:
                 CallInstruction callInstruction = (CallInstruction) instruction;
-                Operand firstOperand = (Operand) callInstruction.getFirstArg();
-                if(firstOperand.getType().getTypeOfElement() != ElementType.THIS && callInstruction.getInvocationType() != CallType.invokestatic){
-                    this.lookupVarAndReplace(firstOperand, websWithInstruction);
+                if(callInstruction.getInvocationType() != CallType.invokestatic && callInstruction.getInvocationType() != CallType.NEW){
+                    this.lookupVarAndReplace(callInstruction.getFirstArg(), websWithInstruction);
                 }
                 if(callInstruction.getListOfOperands() != null){
                     for(var operand : callInstruction.getListOfOperands()){
-                        if(!operand.isLiteral()) {
-                            this.lookupVarAndReplace((Operand) operand, websWithInstruction);
-                        }
+                        this.lookupVarAndReplace(operand, websWithInstruction);
                     }
                 }
                 break;
             case GETFIELD:
                 GetFieldInstruction getFieldInstruction = (GetFieldInstruction) instruction;
-                Element getFieldClass = getFieldInstruction.getFirstOperand();
-                if(getFieldClass.getType().getTypeOfElement() != ElementType.THIS){
-                    this.lookupVarAndReplace((Operand) getFieldClass, websWithInstruction);
-                }
+                this.lookupVarAndReplace(getFieldInstruction.getFirstOperand(), websWithInstruction);
                 break;
             case NOPER:
                 SingleOpInstruction singleOpInstruction = (SingleOpInstruction) instruction;
-                Element singleOperand = singleOpInstruction.getSingleOperand();
-                if (!singleOperand.isLiteral()) {
-                    this.lookupVarAndReplace(((Operand) singleOperand), websWithInstruction);
-                }
+                this.lookupVarAndReplace(singleOpInstruction.getSingleOperand(), websWithInstruction);
                 break;
             case PUTFIELD:
                 PutFieldInstruction putFieldInstruction = (PutFieldInstruction) instruction;
-                Element putFieldOperand = putFieldInstruction.getFirstOperand();
-                if(putFieldOperand.getType().getTypeOfElement() != ElementType.THIS){
-                    this.lookupVarAndReplace((Operand) putFieldOperand, websWithInstruction);
-                }
-                Element putFieldInstructionThirdOperand = putFieldInstruction.getThirdOperand();
-                if(!putFieldInstructionThirdOperand.isLiteral()){
-                    this.lookupVarAndReplace((Operand) putFieldInstructionThirdOperand, websWithInstruction);
-                }
+                this.lookupVarAndReplace(putFieldInstruction.getFirstOperand(), websWithInstruction);
+                this.lookupVarAndReplace(putFieldInstruction.getThirdOperand(), websWithInstruction);
                 break;
             case RETURN:
                 ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
                 if (returnInstruction.hasReturnValue()) {
-                    Element returnOperand = returnInstruction.getOperand();
-                    if(!returnOperand.isLiteral()) {
-                        this.lookupVarAndReplace((Operand) returnOperand, websWithInstruction);
-                    }
+                    this.lookupVarAndReplace(returnInstruction.getOperand(), websWithInstruction);
                 }
                 break;
             case UNARYOPER:
                 UnaryOpInstruction unaryOpInstruction = (UnaryOpInstruction) instruction;
-                Element unaryOpOperand = unaryOpInstruction.getOperand();
-                if(!unaryOpOperand.isLiteral()){
-                    this.lookupVarAndReplace((Operand) unaryOpInstruction.getOperand(), websWithInstruction);    
-                }
+                this.lookupVarAndReplace(unaryOpInstruction.getOperand(), websWithInstruction);
                 break;
             default:
                 break;
         }
     }
 
-    private void lookupVarAndReplace(Operand operand, Set<Web> webs){
+    private void lookupVarAndReplace(Element element, List<Web> webs){
+        if(element.isLiteral() || element.getType().getTypeOfElement() == ElementType.THIS){
+            return;
+        }
+        Operand operand = (Operand) element;
+        if(operand instanceof ArrayOperand){
+            for(Element index : ((ArrayOperand) operand).getIndexOperands()){
+                this.lookupVarAndReplace(index, webs);
+            }
+        }
         for (Web web : webs) {
             String varName = operand.getName();
             if (web.getVariableName().equals(varName)){
                 operand.setName(varName + "_" + web.getId());
+                break;
             }
         }
     }
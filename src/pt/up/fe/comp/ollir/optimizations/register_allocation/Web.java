@@ -1,32 +1,48 @@
 package pt.up.fe.comp.ollir.optimizations.register_allocation;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.BitSet;
 
+// Instructions are kept as bitsets indexed by instruction id
 public class Web {
-    Set<Integer> instructions;
+    BitSet instructions;
+    BitSet definitions;   // Instruction 0 is the method entry, where parameters are defined
+    BitSet uses;
+    BitSet liveOut;       // Instructions after which the variable is still live
     String variableName;
     String type;
     int id;
 
-    public Web(Set<Integer> instructions, String variableName, String type, int id){
+    public Web(BitSet instructions, String variableName, String type, int id){
+        this(variableName, type, id);
         this.instructions = instructions;
-        this.variableName = variableName;
-        this.id = id;
     }
 
     public Web(String variableName, String type, int id){
-        this.instructions = new HashSet<>();
+        this.instructions = new BitSet();
+        this.definitions = new BitSet();
+        this.uses = new BitSet();
+        this.liveOut = new BitSet();
         this.variableName = variableName;
         this.type = type;
         this.id = id;
     }
 
-    public Set<Integer> getInstructions() {
+    public BitSet getInstructions() {
         return instructions;
     }
 
+    public BitSet getDefinitions() {
+        return definitions;
+    }
+
+    public BitSet getUses() {
+        return uses;
+    }
+
+    public BitSet getLiveOut() {
+        return liveOut;
+    }
+
     public String getVariableName() {
         return variableName;
     }
@@ -40,20 +56,23 @@ public class Web {
     }
 
     public void merge(Web web){
-        this.instructions.addAll(web.getInstructions());
+        this.instructions.or(web.getInstructions());
+        this.definitions.or(web.getDefinitions());
+        this.uses.or(web.getUses());
+        this.liveOut.or(web.getLiveOut());
         this.id = Math.min(this.id, web.getId());
     }
 
-    public boolean contains(Integer instruction){
-        return this.instructions.contains(instruction);
+    public boolean contains(int instruction){
+        return this.instructions.get(instruction);
     }
 
-    public void add(Integer instruction){
-        this.instructions.add(instruction);
+    public void add(int instruction){
+        this.instructions.set(instruction);
     }
 
     public boolean disjoint(Web web){
-        return Collections.disjoint(this.instructions, web.getInstructions());
+        return !this.instructions.intersects(web.getInstructions());
     }
 
     @Override
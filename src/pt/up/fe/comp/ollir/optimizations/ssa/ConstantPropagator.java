@@ -0,0 +1,405 @@
+package pt.up.fe.comp.ollir.optimizations.ssa;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OpInstruction;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.Type;
+
+import pt.up.fe.comp.ollir.OllirUtils;
+
+/*
+ * Sparse conditional constant propagation (Wegman and Zadeck) over the SSA form of a method.
+ * A value is unknown yet (TOP), a constant, or can't be known (BOTTOM), and only goes down. Values start as TOP and
+ * the instructions are only evaluated once they're reachable, going over the CFG edges found to be executable and
+ * over the uses of the values that change, so each value and edge is only looked at a few times.
+ * A constant in a loop stays one as long as every value reaching its phi is the same constant, and the branches that
+ * are never taken make no values reach the phis after them. A branch whose condition is still TOP at the fixpoint only
+ * reads variables never assigned before it, so both of its edges are taken and the propagation goes on from there.
+ *
+ * The code is then changed: the uses of constants become literals, assignments of a constant get only the literal,
+ * branches with a constant condition become gotos (or are removed) and the instructions never reached are removed.
+ */
+public class ConstantPropagator {
+    private static final int TOP = 0;
+    private static final int CONSTANT = 1;
+    private static final int BOTTOM = 2;
+
+    private final SsaForm ssa;
+    private final ControlFlowGraph cfg;
+
+    private final int[] states;
+    private final int[] constants;
+    private final boolean[][] executableEdges;  // Per node, by position of the predecessor
+    private final boolean[] reached;
+    private final boolean[] undecidedBranches;  // Branches whose condition is taken as BOTTOM while it's still TOP
+
+    private final List<Integer> flowWorklist;   // Pairs of nodes
+    private final List<Integer> ssaWorklist;
+
+    public ConstantPropagator(Method method){
+        this.ssa = new SsaForm(new ControlFlowGraph(method));
+        this.cfg = ssa.getCfg();
+        this.states = new int[ssa.getValueCount()];
+        this.constants = new int[ssa.getValueCount()];
+        this.executableEdges = new boolean[cfg.size()][];
+        for(int node = 0; node < cfg.size(); ++node){
+            executableEdges[node] = new boolean[cfg.getPredecessors(node).length];
+        }
+        this.reached = new boolean[cfg.size()];
+        this.undecidedBranches = new boolean[cfg.size()];
+        this.flowWorklist = new ArrayList<>();
+        this.ssaWorklist = new ArrayList<>();
+    }
+
+    // Returns true if the code changed
+    public boolean optimize(){
+        this.propagate();
+        return this.rewrite();
+    }
+
+    private void propagate(){
+        for(int value = 0; value < states.length; ++value){
+            // Arguments can be anything, variables used before being assigned are left as they are
+            states[value] = ssa.isArgument(value) ? BOTTOM : TOP;
+        }
+
+        reached[ControlFlowGraph.BEGIN] = true;
+        for(int successor : cfg.getSuccessors(ControlFlowGraph.BEGIN)){
+            this.addEdge(ControlFlowGraph.BEGIN, successor);
+        }
+
+        do {
+            this.propagateWorklists();
+        } while(this.lowerUndecidedBranches());
+    }
+
+    private void propagateWorklists(){
+        while(!flowWorklist.isEmpty() || !ssaWorklist.isEmpty()){
+            while(!flowWorklist.isEmpty()){
+                int node = flowWorklist.remove(flowWorklist.size() - 1);
+                int predecessor = flowWorklist.remove(flowWorklist.size() - 1);
+                int predecessorIndex = cfg.getPredecessorIndex(node, predecessor);
+                if(executableEdges[node][predecessorIndex]){
+                    continue;
+                }
+                executableEdges[node][predecessorIndex] = true;
+
+                for(SsaForm.Phi phi : ssa.getPhis(node)){
+                    this.visitPhi(phi);
+                }
+                if(!reached[node]){
+                    reached[node] = true;
+                    this.visitNode(node, true);
+                }
+            }
+
+            while(!ssaWorklist.isEmpty()){
+                int value = ssaWorklist.remove(ssaWorklist.size() - 1);
+                for(SsaForm.Phi phi : ssa.getPhiUsers(value)){
+                    if(reached[phi.getNode()]){
+                        this.visitPhi(phi);
+                    }
+                }
+                for(int node : ssa.getNodeUsers(value)){
+                    if(reached[node]){
+                        this.visitNode(node, false);
+                    }
+                }
+            }
+        }
+    }
+
+    // A condition still TOP at the fixpoint reads variables that are never assigned before it, it can be anything.
+    // Both edges of those branches become executable, and the code after them is propagated too
+    private boolean lowerUndecidedBranches(){
+        boolean lowered = false;
+        for(int node = 0; node < cfg.size(); ++node){
+            Instruction instruction = cfg.getInstruction(node);
+            if(!reached[node] || undecidedBranches[node] || instruction == null
+                    || instruction.getInstType() != InstructionType.BRANCH){
+                continue;
+            }
+            if(this.evaluateCondition(node, (CondBranchInstruction) instruction).state == TOP){
+                undecidedBranches[node] = true;
+                this.visitNode(node, false);
+                lowered = true;
+            }
+        }
+        return lowered;
+    }
+
+    private Lattice evaluateCondition(int node, CondBranchInstruction branch){
+        Lattice condition = this.evaluate(branch.getCondition(), InstructionUses.of(branch), ssa.getUses(node));
+        return condition.state == TOP && undecidedBranches[node] ? Lattice.BOTTOM : condition;
+    }
+
+    private void addEdge(int from, int to){
+        flowWorklist.add(from);
+        flowWorklist.add(to);
+    }
+
+    private void visitPhi(SsaForm.Phi phi){
+        int value = phi.getValue();
+        if(states[value] == BOTTOM){
+            return;
+        }
+        boolean[] executable = executableEdges[phi.getNode()];
+        for(int i = 0; i < executable.length; ++i){
+            int operand = phi.getOperand(i);
+            if(executable[i] && operand != -1){
+                this.lower(value, states[operand], constants[operand]);
+            }
+        }
+    }
+
+    // The first visit also follows the edges of instructions that don't branch
+    private void visitNode(int node, boolean first){
+        Instruction instruction = cfg.getInstruction(node);
+        if(instruction == null){
+            return;
+        }
+
+        switch(instruction.getInstType()){
+            case GOTO:
+                this.addEdge(node, cfg.getTarget(node));
+                return;
+            case BRANCH:
+                Lattice condition = this.evaluateCondition(node, (CondBranchInstruction) instruction);
+                if(condition.state == TOP){
+                    return;
+                }
+                boolean jumps = condition.state == CONSTANT && OllirUtils.jumps(condition.constant);
+                if(condition.state == BOTTOM || jumps){
+                    this.addEdge(node, cfg.getTarget(node));
+                }
+                if(condition.state == BOTTOM || !jumps){
+                    this.addEdge(node, cfg.getFallthrough(node));
+                }
+                return;
+            default:
+                break;
+        }
+
+        int definition = ssa.getDefinition(node);
+        if(definition != -1){
+            Lattice result = this.evaluate(((AssignInstruction) instruction).getRhs(), InstructionUses.of(instruction),
+                    ssa.getUses(node));
+            this.lower(definition, result.state, result.constant);
+        }
+        if(first){
+            for(int successor : cfg.getSuccessors(node)){
+                this.addEdge(node, successor);
+            }
+        }
+    }
+
+    // Meets the value with the given one, the value is queued if it changed
+    private void lower(int value, int state, int constant){
+        int oldState = states[value];
+        if(state == TOP || oldState == BOTTOM){
+            return;
+        }
+        if(oldState == TOP){
+            states[value] = state;
+            constants[value] = constant;
+        } else if(state == BOTTOM || constants[value] != constant){
+            states[value] = BOTTOM;
+        } else {
+            return;
+        }
+        ssaWorklist.add(value);
+    }
+
+    // Value of an element of InstructionUses.of(instruction)
+    private Lattice valueOf(Element element, int use){
+        if(use != -1){
+            return new Lattice(states[use], constants[use]);
+        }
+        if(element.isLiteral()){
+            ElementType type = element.getType().getTypeOfElement();
+            if(type == ElementType.INT32 || type == ElementType.BOOLEAN){
+                return Lattice.constant(Integer.parseInt(((LiteralElement) element).getLiteral()));
+            }
+        }
+        return Lattice.BOTTOM;
+    }
+
+    // Value of the right side of an assignment, or of the condition of a branch, whose elements are the given ones
+    private Lattice evaluate(Instruction instruction, List<Element> elements, int[] uses){
+        switch(instruction.getInstType()){
+            case NOPER:
+                return this.valueOf(elements.get(0), uses[0]);
+            case UNARYOPER: {
+                Lattice operand = this.valueOf(elements.get(0), uses[0]);
+                OperationType operation = ((OpInstruction) instruction).getOperation().getOpType();
+                if(operand.state != CONSTANT || (operation != OperationType.NOTB && operation != OperationType.NOT)){
+                    return operand.state == TOP ? Lattice.TOP : Lattice.BOTTOM;
+                }
+                return Lattice.constant(operand.constant == 0 ? 1 : 0);
+            }
+            case BINARYOPER: {
+                Lattice left = this.valueOf(elements.get(0), uses[0]);
+                Lattice right = this.valueOf(elements.get(1), uses[1]);
+                return evaluate(((OpInstruction) instruction).getOperation().getOpType(), left, right);
+            }
+            default:
+                // Calls, fields and arrays
+                return Lattice.BOTTOM;
+        }
+    }
+
+    private static Lattice evaluate(OperationType operation, Lattice left, Lattice right){
+        // A zero (or false) operand decides the result on its own
+        boolean absorbing = operation == OperationType.MUL || operation == OperationType.ANDB
+                || operation == OperationType.AND;
+        if(absorbing && ((left.state == CONSTANT && left.constant == 0) || (right.state == CONSTANT && right.constant == 0))){
+            return Lattice.constant(0);
+        }
+        if(left.state == BOTTOM || right.state == BOTTOM){
+            return Lattice.BOTTOM;
+        }
+        if(left.state == TOP || right.state == TOP){
+            return Lattice.TOP;
+        }
+
+        int a = left.constant;
+        int b = right.constant;
+        switch(operation){
+            case ADD: return Lattice.constant(a + b);
+            case SUB: return Lattice.constant(a - b);
+            case MUL: return Lattice.constant(a * b);
+            case DIV: return b == 0 ? Lattice.BOTTOM : Lattice.constant(a / b); // Division by zero must still throw
+            case LTH: return Lattice.constant(a < b ? 1 : 0);
+            case LTE: return Lattice.constant(a <= b ? 1 : 0);
+            case GTH: return Lattice.constant(a > b ? 1 : 0);
+            case GTE: return Lattice.constant(a >= b ? 1 : 0);
+            case EQ: return Lattice.constant(a == b ? 1 : 0);
+            case NEQ: return Lattice.constant(a != b ? 1 : 0);
+            case AND:
+            case ANDB: return Lattice.constant(a & b);
+            case OR:
+            case ORB: return Lattice.constant(a | b);
+            default: return Lattice.BOTTOM;
+        }
+    }
+
+    private boolean rewrite(){
+        Method method = cfg.getMethod();
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Instruction> labels = method.getLabels();
+        Set<Instruction> removed = new HashSet<>();
+        List<Instruction> rewritten = new ArrayList<>();
+        boolean changed = false;
+
+        for(int node = 1; node < cfg.getEnd(); ++node){
+            Instruction instruction = cfg.getInstruction(node);
+            if(!reached[node]){
+                removed.add(instruction);
+                changed = true;
+                continue;
+            }
+
+            int[] uses = ssa.getUses(node);
+            int[] position = {0};
+            boolean[] replaced = {false};
+            InstructionUses.replace(instruction, element -> {
+                int use = uses[position[0]++];
+                if(use == -1 || states[use] != CONSTANT){
+                    return element;
+                }
+                replaced[0] = true;
+                return literal(element.getType(), constants[use]);
+            });
+            changed |= replaced[0];
+
+            Instruction replacement = instruction;
+            int definition = ssa.getDefinition(node);
+            if(instruction.getInstType() == InstructionType.BRANCH){
+                boolean taken = false;     // Jumps
+                boolean notTaken = false;  // Goes to the next instruction
+                for(int successor : cfg.getSuccessors(node)){
+                    int predecessorIndex = cfg.getPredecessorIndex(successor, node);
+                    boolean executable = executableEdges[successor][predecessorIndex];
+                    taken |= executable && successor == cfg.getTarget(node);
+                    notTaken |= executable && successor == cfg.getFallthrough(node);
+                }
+                if(taken && !notTaken){
+                    replacement = new GotoInstruction(((CondBranchInstruction) instruction).getLabel());
+                } else if(!taken && notTaken && node + 1 < cfg.getEnd()){
+                    // Its labels go to the next instruction, which is reached
+                    replacement = null;
+                }
+            } else if(definition != -1 && states[definition] == CONSTANT && !isLiteralAssignment(instruction)){
+                AssignInstruction assign = (AssignInstruction) instruction;
+                Element value = literal(assign.getDest().getType(), constants[definition]);
+                replacement = new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                        new SingleOpInstruction(value));
+            }
+
+            if(replacement != instruction){
+                changed = true;
+                if(replacement == null){
+                    removed.add(instruction);
+                    replacement = cfg.getInstruction(node + 1);
+                }
+                for(var entry : labels.entrySet()){
+                    if(entry.getValue() == instruction){
+                        entry.setValue(replacement);
+                    }
+                }
+                if(!removed.contains(instruction)){
+                    rewritten.add(replacement);
+                }
+            } else {
+                rewritten.add(instruction);
+            }
+        }
+
+        // Only instructions that weren't reached can still have these labels
+        labels.values().removeIf(removed::contains);
+        instructions.clear();
+        instructions.addAll(rewritten);
+        return changed;
+    }
+
+    private static boolean isLiteralAssignment(Instruction instruction){
+        Instruction rhs = ((AssignInstruction) instruction).getRhs();
+        return rhs.getInstType() == InstructionType.NOPER && ((SingleOpInstruction) rhs).getSingleOperand().isLiteral();
+    }
+
+    private static LiteralElement literal(Type type, int constant){
+        return new LiteralElement(String.valueOf(constant), new Type(type.getTypeOfElement()));
+    }
+
+    private static class Lattice {
+        private static final Lattice TOP = new Lattice(ConstantPropagator.TOP, 0);
+        private static final Lattice BOTTOM = new Lattice(ConstantPropagator.BOTTOM, 0);
+
+        private final int state;
+        private final int constant;
+
+        private Lattice(int state, int constant){
+            this.state = state;
+            this.constant = constant;
+        }
+
+        private static Lattice constant(int constant){
+            return new Lattice(CONSTANT, constant);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package pt.up.fe.comp.ollir.optimizations.ssa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+import org.specs.comp.ollir.NodeType;
+
+import pt.up.fe.comp.ollir.OllirUtils;
+
+/*
+ * The CFG built by Method.buildCFG with the nodes numbered: 0 is the beginning of the method, the instruction at index
+ * i of the method is node i + 1 and the end of the method is the last node.
+ * buildCFG also links a return to the instruction after it, that edge is left out.
+ * The nodes of the method are cleared again, so the CFG can still be built by the next passes.
+ */
+public class ControlFlowGraph {
+    public static final int BEGIN = 0;
+
+    private final Method method;
+    private final List<Instruction> instructions;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private final int[] targets;
+    private final int[] reversePostorder;
+    private final int[] order;
+
+    public ControlFlowGraph(Method method){
+        this.method = method;
+        this.instructions = method.getInstructions();
+
+        int size = instructions.size() + 2;
+        List<List<Integer>> successorLists = new ArrayList<>();
+        List<List<Integer>> predecessorLists = new ArrayList<>();
+        for(int node = 0; node < size; ++node){
+            successorLists.add(new ArrayList<>());
+            predecessorLists.add(new ArrayList<>());
+        }
+
+        // Edges left from an earlier build are repeated, and skipped
+        method.buildCFG();
+        this.targets = new int[size];
+        this.addSuccessors(BEGIN, method.getBeginNode(), successorLists, predecessorLists);
+        for(int i = 0; i < instructions.size(); ++i){
+            this.addSuccessors(i + 1, instructions.get(i), successorLists, predecessorLists);
+            targets[i + 1] = this.findTarget(instructions.get(i));
+        }
+        OllirUtils.clearCFG(method);
+
+        this.successors = toArrays(successorLists);
+        this.predecessors = toArrays(predecessorLists);
+        this.order = new int[size];
+        this.reversePostorder = this.computeReversePostorder();
+    }
+
+    private void addSuccessors(int node, Node cfgNode, List<List<Integer>> successorLists,
+            List<List<Integer>> predecessorLists){
+        boolean isReturn = node != BEGIN && instructions.get(node - 1).getInstType() == InstructionType.RETURN;
+        for(Node successor : cfgNode.getSuccessors()){
+            int index = this.indexOf(successor);
+            // A branch to the next instruction also has the same successor twice
+            if((isReturn && index != this.getEnd()) || successorLists.get(node).contains(index)){
+                continue;
+            }
+            successorLists.get(node).add(index);
+            predecessorLists.get(index).add(node);
+        }
+    }
+
+    // The labels can move to other instructions as the code is rewritten, so the targets are found while the ids of
+    // the nodes are the ones buildCFG gave them
+    private int findTarget(Instruction instruction){
+        String label;
+        if(instruction.getInstType() == InstructionType.GOTO){
+            label = ((GotoInstruction) instruction).getLabel();
+        } else if(instruction.getInstType() == InstructionType.BRANCH){
+            label = ((CondBranchInstruction) instruction).getLabel();
+        } else {
+            return -1;
+        }
+        return method.getLabels().get(label).getId();
+    }
+
+    private int indexOf(Node node){
+        if(node.getNodeType() == NodeType.BEGIN){
+            return BEGIN;
+        }
+        if(node.getNodeType() == NodeType.END){
+            return this.getEnd();
+        }
+        // buildCFG numbers the instructions from 1
+        return node.getId();
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists){
+        int[][] arrays = new int[lists.size()][];
+        for(int i = 0; i < arrays.length; ++i){
+            arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return arrays;
+    }
+
+    // Depth-first, without recursion as methods can have thousands of instructions
+    private int[] computeReversePostorder(){
+        int size = this.size();
+        int[] postorder = new int[size];
+        int count = 0;
+        boolean[] visited = new boolean[size];
+        int[] stack = new int[size];
+        int[] nextSuccessor = new int[size];
+        int top = 0;
+        stack[top++] = BEGIN;
+        visited[BEGIN] = true;
+        while(top > 0){
+            int node = stack[top - 1];
+            if(nextSuccessor[node] < successors[node].length){
+                int successor = successors[node][nextSuccessor[node]++];
+                if(!visited[successor]){
+                    visited[successor] = true;
+                    stack[top++] = successor;
+                }
+            } else {
+                postorder[count++] = node;
+                top--;
+            }
+        }
+
+        Arrays.fill(order, -1);
+        int[] reverse = new int[count];
+        for(int i = 0; i < count; ++i){
+            reverse[i] = postorder[count - 1 - i];
+            order[reverse[i]] = i;
+        }
+        return reverse;
+    }
+
+    public Method getMethod(){
+        return method;
+    }
+
+    public int size(){
+        return successors.length;
+    }
+
+    public int getEnd(){
+        return instructions.size() + 1;
+    }
+
+    // null for the beginning and the end
+    public Instruction getInstruction(int node){
+        return node == BEGIN || node == this.getEnd() ? null : instructions.get(node - 1);
+    }
+
+    public int[] getSuccessors(int node){
+        return successors[node];
+    }
+
+    public int[] getPredecessors(int node){
+        return predecessors[node];
+    }
+
+    // Position of the predecessor in getPredecessors(node), -1 if it isn't one
+    public int getPredecessorIndex(int node, int predecessor){
+        int[] nodePredecessors = predecessors[node];
+        for(int i = 0; i < nodePredecessors.length; ++i){
+            if(nodePredecessors[i] == predecessor){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The nodes reachable from the beginning, each one before its successors (except along back edges)
+    public int[] getReversePostorder(){
+        return reversePostorder;
+    }
+
+    // Position of the node in getReversePostorder(), -1 if it's unreachable
+    public int getOrder(int node){
+        return order[node];
+    }
+
+    // Node a goto or a branch jumps to
+    public int getTarget(int node){
+        return targets[node];
+    }
+
+    // Node after the instruction, where a branch goes when it doesn't jump
+    public int getFallthrough(int node){
+        return node + 1;
+    }
+}
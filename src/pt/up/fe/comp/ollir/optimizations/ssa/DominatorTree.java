@@ -0,0 +1,135 @@
+package pt.up.fe.comp.ollir.optimizations.ssa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Immediate dominators of the reachable nodes of a CFG (Cooper, Harvey and Kennedy, iterating in reverse postorder
+ * until nothing changes), the children of each node in the tree and the dominance frontiers.
+ */
+public class DominatorTree {
+    private final ControlFlowGraph cfg;
+    private final int[] immediateDominators;
+    private final int[][] children;
+    private final int[][] frontiers;
+
+    public DominatorTree(ControlFlowGraph cfg){
+        this.cfg = cfg;
+        this.immediateDominators = this.computeImmediateDominators();
+        this.children = this.computeChildren();
+        this.frontiers = this.computeFrontiers();
+    }
+
+    private int[] computeImmediateDominators(){
+        int[] dominators = new int[cfg.size()];
+        Arrays.fill(dominators, -1);
+        dominators[ControlFlowGraph.BEGIN] = ControlFlowGraph.BEGIN;
+
+        int[] reversePostorder = cfg.getReversePostorder();
+        boolean changed = true;
+        while(changed){
+            changed = false;
+            for(int i = 1; i < reversePostorder.length; ++i){
+                int node = reversePostorder[i];
+                int dominator = -1;
+                for(int predecessor : cfg.getPredecessors(node)){
+                    if(dominators[predecessor] == -1){
+                        continue; // Unreachable, or not processed yet
+                    }
+                    dominator = dominator == -1 ? predecessor : this.intersect(dominators, predecessor, dominator);
+                }
+                if(dominators[node] != dominator){
+                    dominators[node] = dominator;
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    private int intersect(int[] dominators, int first, int second){
+        while(first != second){
+            while(cfg.getOrder(first) > cfg.getOrder(second)){
+                first = dominators[first];
+            }
+            while(cfg.getOrder(second) > cfg.getOrder(first)){
+                second = dominators[second];
+            }
+        }
+        return first;
+    }
+
+    private int[][] computeChildren(){
+        List<List<Integer>> lists = new ArrayList<>();
+        for(int node = 0; node < cfg.size(); ++node){
+            lists.add(new ArrayList<>());
+        }
+        for(int node : cfg.getReversePostorder()){
+            if(node != ControlFlowGraph.BEGIN){
+                lists.get(immediateDominators[node]).add(node);
+            }
+        }
+        return toArrays(lists);
+    }
+
+    // The frontier of a node has the joins it reaches without dominating them
+    private int[][] computeFrontiers(){
+        List<List<Integer>> lists = new ArrayList<>();
+        for(int node = 0; node < cfg.size(); ++node){
+            lists.add(new ArrayList<>());
+        }
+        for(int node : cfg.getReversePostorder()){
+            int[] predecessors = cfg.getPredecessors(node);
+            if(predecessors.length < 2){
+                continue;
+            }
+            for(int predecessor : predecessors){
+                if(cfg.getOrder(predecessor) == -1){
+                    continue;
+                }
+                for(int runner = predecessor; runner != immediateDominators[node]; runner = immediateDominators[runner]){
+                    List<Integer> frontier = lists.get(runner);
+                    // The node is only added from here, so a repeated one is the last one
+                    if(!frontier.isEmpty() && frontier.get(frontier.size() - 1) == node){
+                        break;
+                    }
+                    frontier.add(node);
+                }
+            }
+        }
+        return toArrays(lists);
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists){
+        int[][] arrays = new int[lists.size()][];
+        for(int i = 0; i < arrays.length; ++i){
+            arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return arrays;
+    }
+
+    // -1 for unreachable nodes, the beginning is its own immediate dominator
+    public int getImmediateDominator(int node){
+        return immediateDominators[node];
+    }
+
+    // Whether every path from the beginning to the second node goes through the first one
+    public boolean dominates(int dominator, int node){
+        if(immediateDominators[node] == -1){
+            return false;
+        }
+        while(node != dominator && node != ControlFlowGraph.BEGIN){
+            node = immediateDominators[node];
+        }
+        return node == dominator;
+    }
+
+    public int[] getChildren(int node){
+        return children[node];
+    }
+
+    public int[] getFrontier(int node){
+        return frontiers[node];
+    }
+}
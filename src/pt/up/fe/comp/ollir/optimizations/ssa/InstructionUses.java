@@ -0,0 +1,78 @@
+package pt.up.fe.comp.ollir.optimizations.ssa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.UnaryOpInstruction;
+
+/*
+ * The elements an instruction reads that could be replaced by a literal, always in the same order: the operands of
+ * the value of an assignment or of the condition of a branch (left before right), the arguments of a call, the value
+ * of a putfield and the returned value.
+ * The objects of calls, the fields, the destinations and the array indexes are left out, they can't be literals.
+ */
+public class InstructionUses {
+    public static List<Element> of(Instruction instruction){
+        List<Element> elements = new ArrayList<>();
+        replace(instruction, element -> {
+            elements.add(element);
+            return element;
+        });
+        return elements;
+    }
+
+    // Calls the function on every use, in order, and puts in its place the element it returns
+    public static void replace(Instruction instruction, UnaryOperator<Element> function){
+        switch(instruction.getInstType()){
+            case ASSIGN:
+                replace(((AssignInstruction) instruction).getRhs(), function);
+                break;
+            case BRANCH:
+                replace(((CondBranchInstruction) instruction).getCondition(), function);
+                break;
+            case BINARYOPER:
+                BinaryOpInstruction binaryOp = (BinaryOpInstruction) instruction;
+                binaryOp.setLeftOperand(function.apply(binaryOp.getLeftOperand()));
+                binaryOp.setRightOperand(function.apply(binaryOp.getRightOperand()));
+                break;
+            case UNARYOPER:
+                UnaryOpInstruction unaryOp = (UnaryOpInstruction) instruction;
+                unaryOp.setOperand(function.apply(unaryOp.getOperand()));
+                break;
+            case NOPER:
+                SingleOpInstruction singleOp = (SingleOpInstruction) instruction;
+                singleOp.setSingleOperand(function.apply(singleOp.getSingleOperand()));
+                break;
+            case CALL:
+                List<Element> arguments = ((CallInstruction) instruction).getListOfOperands();
+                if(arguments != null){
+                    for(int i = 0; i < arguments.size(); ++i){
+                        arguments.set(i, function.apply(arguments.get(i)));
+                    }
+                }
+                break;
+            case PUTFIELD:
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                putField.setThirdOperand(function.apply(putField.getThirdOperand()));
+                break;
+            case RETURN:
+                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
+                if(returnInstruction.hasReturnValue()){
+                    returnInstruction.setOperand(function.apply(returnInstruction.getOperand()));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package pt.up.fe.comp.ollir.optimizations.ssa;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Operand;
+
+import pt.up.fe.comp.ollir.OllirUtils;
+
+/*
+ * The variables live at the start of each reachable node of a CFG, by name.
+ * With faint variables, only the reads of live instructions count: instructions with side effects are live, and an
+ * assignment without them only becomes live when its variable is live after it. Assignments that only feed each other
+ * (like a counter nobody reads) then stay dead, which is what dead code elimination needs.
+ */
+public class Liveness {
+    private final Map<String, Integer> variables;
+    private final long[][] liveIn;
+    private final boolean[] live;
+
+    public Liveness(ControlFlowGraph cfg){
+        this(cfg, false);
+    }
+
+    public Liveness(ControlFlowGraph cfg, boolean faintVariables){
+        this.variables = new HashMap<>();
+        int size = cfg.size();
+        int[] definitions = new int[size];
+        int[][] uses = new int[size][0];
+        this.live = new boolean[size];
+        Arrays.fill(definitions, -1);
+        for(int node : cfg.getReversePostorder()){
+            Instruction instruction = cfg.getInstruction(node);
+            if(instruction == null){
+                continue;
+            }
+            List<Operand> operands = OllirUtils.getUsedOperands(instruction);
+            uses[node] = new int[operands.size()];
+            for(int i = 0; i < operands.size(); ++i){
+                uses[node][i] = this.variableOf(operands.get(i).getName());
+            }
+            Operand defined = OllirUtils.getDefinedVariable(instruction);
+            if(defined != null){
+                definitions[node] = this.variableOf(defined.getName());
+                live[node] = !faintVariables || OllirUtils.hasSideEffects(((AssignInstruction) instruction).getRhs());
+            } else {
+                live[node] = true;
+            }
+        }
+
+        int words = (variables.size() + 63) / 64;
+        this.liveIn = new long[size][words];
+        long[] out = new long[words];
+        boolean[] queued = new boolean[size];
+        Deque<Integer> worklist = new ArrayDeque<>();
+        // Successors first, so most nodes are only visited once outside loops
+        int[] reversePostorder = cfg.getReversePostorder();
+        for(int i = reversePostorder.length - 1; i >= 0; --i){
+            worklist.add(reversePostorder[i]);
+            queued[reversePostorder[i]] = true;
+        }
+
+        while(!worklist.isEmpty()){
+            int node = worklist.poll();
+            queued[node] = false;
+            if(cfg.getInstruction(node) == null){
+                continue;
+            }
+
+            Arrays.fill(out, 0);
+            for(int successor : cfg.getSuccessors(node)){
+                for(int w = 0; w < words; ++w){
+                    out[w] |= liveIn[successor][w];
+                }
+            }
+            int definition = definitions[node];
+            if(definition != -1){
+                live[node] |= get(out, definition);
+                clear(out, definition);
+            }
+            if(live[node]){
+                for(int use : uses[node]){
+                    set(out, use);
+                }
+            }
+
+            if(!Arrays.equals(liveIn[node], out)){
+                System.arraycopy(out, 0, liveIn[node], 0, words);
+                for(int predecessor : cfg.getPredecessors(node)){
+                    if(!queued[predecessor]){
+                        queued[predecessor] = true;
+                        worklist.add(predecessor);
+                    }
+                }
+            }
+        }
+    }
+
+    private int variableOf(String name){
+        return variables.computeIfAbsent(name, key -> variables.size());
+    }
+
+    // Whether the instruction of a reachable node is live, always true for them without faint variables
+    public boolean isLive(int node){
+        return live[node];
+    }
+
+    public boolean isLiveIn(int node, String name){
+        Integer variable = variables.get(name);
+        return variable != null && get(liveIn[node], variable);
+    }
+
+    // Whether the variable is live at the start of any of the nodes
+    public boolean isLiveIn(List<Integer> nodes, String name){
+        for(int node : nodes){
+            if(this.isLiveIn(node, name)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void set(long[] bits, int index){
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clear(long[] bits, int index){
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    private static boolean get(long[] bits, int index){
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+}
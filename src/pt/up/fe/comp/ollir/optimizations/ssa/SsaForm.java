@@ -0,0 +1,310 @@
+package pt.up.fe.comp.ollir.optimizations.ssa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.Operand;
+
+/*
+ * SSA form of the int and boolean variables of a method (Cytron et al.), kept next to the OLLIR code instead of
+ * rewriting it: every definition is a value, phis are placed on the dominance frontiers of the definitions and every
+ * use is linked to the one value that reaches it.
+ * The beginning of the method defines every variable, with the argument for parameters and an undefined value for the
+ * other variables. Arrays, objects and fields aren't in SSA form, reading them gives an unknown value.
+ */
+public class SsaForm {
+    private static final int ENTRY = 0;
+    private static final int DEFINITION = 1;
+    private static final int PHI = 2;
+
+    private final ControlFlowGraph cfg;
+    private final DominatorTree dominatorTree;
+
+    private final Map<String, Integer> variables;
+    private final List<Boolean> parameters;
+
+    // Per value
+    private final List<Integer> valueKinds;
+    private final List<Integer> valueVariables;
+    private final List<List<Integer>> nodeUsers;
+    private final List<List<Phi>> phiUsers;
+
+    // Per node
+    private final int[] definitions;
+    private final int[][] uses;
+    private final List<List<Phi>> phis;
+
+    public SsaForm(ControlFlowGraph cfg){
+        this.cfg = cfg;
+        this.dominatorTree = new DominatorTree(cfg);
+        this.variables = new HashMap<>();
+        this.parameters = new ArrayList<>();
+        this.valueKinds = new ArrayList<>();
+        this.valueVariables = new ArrayList<>();
+        this.nodeUsers = new ArrayList<>();
+        this.phiUsers = new ArrayList<>();
+        this.definitions = new int[cfg.size()];
+        this.uses = new int[cfg.size()][];
+        this.phis = new ArrayList<>();
+        for(int node = 0; node < cfg.size(); ++node){
+            phis.add(List.of());
+        }
+        Arrays.fill(definitions, -1);
+
+        this.collectVariables();
+        this.placePhis();
+        this.rename();
+    }
+
+    // An int or boolean variable, not an array access
+    public static boolean isVariable(Element element){
+        if(element.isLiteral() || !(element instanceof Operand) || element instanceof ArrayOperand){
+            return false;
+        }
+        ElementType type = element.getType().getTypeOfElement();
+        return type == ElementType.INT32 || type == ElementType.BOOLEAN;
+    }
+
+    // The variable an instruction assigns, or null
+    public static Operand getDefinedVariable(Instruction instruction){
+        if(instruction == null || instruction.getInstType() != InstructionType.ASSIGN){
+            return null;
+        }
+        Element dest = ((AssignInstruction) instruction).getDest();
+        return isVariable(dest) ? (Operand) dest : null;
+    }
+
+    private int variableOf(Element element){
+        String name = ((Operand) element).getName();
+        Integer variable = variables.get(name);
+        if(variable == null){
+            variable = variables.size();
+            variables.put(name, variable);
+            parameters.add(false);
+        }
+        return variable;
+    }
+
+    private void collectVariables(){
+        for(Element param : cfg.getMethod().getParams()){
+            if(isVariable(param)){
+                parameters.set(this.variableOf(param), true);
+            }
+        }
+        for(int node = 1; node < cfg.getEnd(); ++node){
+            Instruction instruction = cfg.getInstruction(node);
+            for(Element element : InstructionUses.of(instruction)){
+                if(isVariable(element)){
+                    this.variableOf(element);
+                }
+            }
+            Operand defined = getDefinedVariable(instruction);
+            if(defined != null){
+                this.variableOf(defined);
+            }
+        }
+    }
+
+    private void placePhis(){
+        List<List<Integer>> definitionSites = new ArrayList<>();
+        for(int variable = 0; variable < variables.size(); ++variable){
+            definitionSites.add(new ArrayList<>());
+        }
+        for(int node : cfg.getReversePostorder()){
+            Operand defined = getDefinedVariable(cfg.getInstruction(node));
+            if(defined != null){
+                definitionSites.get(variables.get(defined.getName())).add(node);
+            }
+        }
+
+        // The node where each variable last got a phi, or was added to the worklist
+        int[] hasPhi = new int[cfg.size()];
+        int[] inWorklist = new int[cfg.size()];
+        Arrays.fill(hasPhi, -1);
+        Arrays.fill(inWorklist, -1);
+        for(int variable = 0; variable < variables.size(); ++variable){
+            List<Integer> worklist = new ArrayList<>(definitionSites.get(variable));
+            for(int node : worklist){
+                inWorklist[node] = variable;
+            }
+            while(!worklist.isEmpty()){
+                int node = worklist.remove(worklist.size() - 1);
+                for(int join : dominatorTree.getFrontier(node)){
+                    if(hasPhi[join] == variable){
+                        continue;
+                    }
+                    hasPhi[join] = variable;
+                    if(phis.get(join).isEmpty()){
+                        phis.set(join, new ArrayList<>());
+                    }
+                    phis.get(join).add(new Phi(join, variable, this.newValue(PHI, variable),
+                            cfg.getPredecessors(join).length));
+                    if(inWorklist[join] != variable){
+                        inWorklist[join] = variable;
+                        worklist.add(join);
+                    }
+                }
+            }
+        }
+    }
+
+    private int newValue(int kind, int variable){
+        valueKinds.add(kind);
+        valueVariables.add(variable);
+        nodeUsers.add(new ArrayList<>());
+        phiUsers.add(new ArrayList<>());
+        return valueKinds.size() - 1;
+    }
+
+    // Walks the dominator tree with a stack of the current value of each variable, without recursion
+    private void rename(){
+        List<List<Integer>> stacks = new ArrayList<>();
+        for(int variable = 0; variable < variables.size(); ++variable){
+            stacks.add(new ArrayList<>());
+            stacks.get(variable).add(this.newValue(ENTRY, variable));
+        }
+
+        // A node is entered when its number is found, and left when found again as -(node + 1)
+        List<Integer> walk = new ArrayList<>();
+        List<List<Integer>> pushed = new ArrayList<>();
+        for(int node = 0; node < cfg.size(); ++node){
+            pushed.add(null);
+        }
+        walk.add(ControlFlowGraph.BEGIN);
+        while(!walk.isEmpty()){
+            int node = walk.remove(walk.size() - 1);
+            if(node < 0){
+                for(int variable : pushed.get(-node - 1)){
+                    List<Integer> stack = stacks.get(variable);
+                    stack.remove(stack.size() - 1);
+                }
+                pushed.set(-node - 1, null);
+                continue;
+            }
+
+            List<Integer> nodePushed = new ArrayList<>();
+            for(Phi phi : phis.get(node)){
+                stacks.get(phi.variable).add(phi.value);
+                nodePushed.add(phi.variable);
+            }
+
+            Instruction instruction = cfg.getInstruction(node);
+            if(instruction != null){
+                List<Element> elements = InstructionUses.of(instruction);
+                int[] nodeUses = new int[elements.size()];
+                for(int i = 0; i < nodeUses.length; ++i){
+                    nodeUses[i] = -1;
+                    if(isVariable(elements.get(i))){
+                        List<Integer> stack = stacks.get(variables.get(((Operand) elements.get(i)).getName()));
+                        nodeUses[i] = stack.get(stack.size() - 1);
+                        nodeUsers.get(nodeUses[i]).add(node);
+                    }
+                }
+                uses[node] = nodeUses;
+
+                Operand defined = getDefinedVariable(instruction);
+                if(defined != null){
+                    int variable = variables.get(defined.getName());
+                    definitions[node] = this.newValue(DEFINITION, variable);
+                    stacks.get(variable).add(definitions[node]);
+                    nodePushed.add(variable);
+                }
+            }
+
+            for(int successor : cfg.getSuccessors(node)){
+                int predecessorIndex = cfg.getPredecessorIndex(successor, node);
+                for(Phi phi : phis.get(successor)){
+                    List<Integer> stack = stacks.get(phi.variable);
+                    int value = stack.get(stack.size() - 1);
+                    phi.operands[predecessorIndex] = value;
+                    phiUsers.get(value).add(phi);
+                }
+            }
+
+            pushed.set(node, nodePushed);
+            walk.add(-node - 1);
+            int[] children = dominatorTree.getChildren(node);
+            for(int i = children.length - 1; i >= 0; --i){
+                walk.add(children[i]);
+            }
+        }
+    }
+
+    public ControlFlowGraph getCfg(){
+        return cfg;
+    }
+
+    public int getValueCount(){
+        return valueKinds.size();
+    }
+
+    // The value of a parameter when the method starts
+    public boolean isArgument(int value){
+        return valueKinds.get(value) == ENTRY && parameters.get(valueVariables.get(value));
+    }
+
+    // The value of a variable that isn't a parameter when the method starts
+    public boolean isUndefined(int value){
+        return valueKinds.get(value) == ENTRY && !parameters.get(valueVariables.get(value));
+    }
+
+    // The value the node defines, -1 if it doesn't define one
+    public int getDefinition(int node){
+        return definitions[node];
+    }
+
+    // The value of each element of InstructionUses.of(the instruction of the node), -1 if it isn't a variable
+    public int[] getUses(int node){
+        return uses[node];
+    }
+
+    public List<Phi> getPhis(int node){
+        return phis.get(node);
+    }
+
+    // Nodes with an instruction that uses the value
+    public List<Integer> getNodeUsers(int value){
+        return nodeUsers.get(value);
+    }
+
+    public List<Phi> getPhiUsers(int value){
+        return phiUsers.get(value);
+    }
+
+    public static class Phi {
+        private final int node;
+        private final int variable;
+        private final int value;
+        private final int[] operands;
+
+        private Phi(int node, int variable, int value, int numberOfPredecessors){
+            this.node = node;
+            this.variable = variable;
+            this.value = value;
+            this.operands = new int[numberOfPredecessors];
+            Arrays.fill(operands, -1);
+        }
+
+        public int getNode(){
+            return node;
+        }
+
+        public int getValue(){
+            return value;
+        }
+
+        // Value coming from the predecessor at the given position of the node's predecessors, -1 if it's unreachable
+        public int getOperand(int predecessorIndex){
+            return operands[predecessorIndex];
+        }
+    }
+}
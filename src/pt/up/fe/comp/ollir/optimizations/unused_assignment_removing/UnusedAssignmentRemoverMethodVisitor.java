@@ -6,11 +6,11 @@ import java.util.Map;
 import pt.up.fe.comp.ast.AstNode;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 
-public class UnusedAssignmentRemoverMethodVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class UnusedAssignmentRemoverMethodVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     String methodSignature;
     Map<String, Boolean> usageMap;
     Map<String, JmmNode> nameToAssignmentNode;
@@ -1,10 +1,10 @@
 package pt.up.fe.comp.ollir.optimizations.unused_assignment_removing;
 import pt.up.fe.comp.ast.AstNode;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.ast.ArrayJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class UnusedAssignmentRemoverVisitor extends AJmmVisitor<Boolean, Boolean> {
+public class UnusedAssignmentRemoverVisitor extends ArrayJmmVisitor<Boolean, Boolean> {
     SymbolTable symbolTable;
 
     public UnusedAssignmentRemoverVisitor(SymbolTable symbolTable){
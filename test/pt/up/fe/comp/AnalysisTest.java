@@ -1,7 +1,16 @@
 package pt.up.fe.comp;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.junit.Test;
 
+import pt.up.fe.comp.analysis.stages.ImportCheckVisitor;
+import pt.up.fe.comp.analysis.stages.TypeCheckVisitor;
+import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.specs.util.SpecsIo;
 
 public class AnalysisTest {
@@ -111,8 +120,57 @@ public class AnalysisTest {
         mustFail(SpecsIo.getResource("fixtures/public/fail/semantic/var_undef.jmm")); 
     }
 
+    // Locals hide parameters and fields, parameters hide fields, and main can't see the fields
+    @Test
+    public void scopes(){
+        noErrors("class A { boolean x; int y;\n"
+                + "public int f(int x) { boolean y; y = true; return x; }\n"
+                + "public boolean g() { return x; }\n"
+                + "public static void main(String[] args) { } }");
+        mustFail("class A { int x; public static void main(String[] args) { x = 1; } }");
+        mustFail("class A { public int f(int x) { int y; return y; } public static void main(String[] args) { } }");
+        mustFail("class A { public int f(int x) { int x; return 1; } public static void main(String[] args) { } }");
+    }
+
     @Test
     public void varNotInt(){
         mustFail(SpecsIo.getResource("fixtures/public/fail/semantic/varNotInit.jmm")); 
     }
-}
\ No newline at end of file
+
+    // Checking the methods in parallel gives the same reports, in the same order
+    @Test
+    public void parallelAnalysis(){
+        StringBuilder code = new StringBuilder("class A { int x;\n");
+        for (int i = 0; i < 50; ++i) {
+            code.append("public int f").append(i).append("(int a) { boolean b; B c; b = a; x = a + b; return b; }\n");
+        }
+        code.append("public static void main(String[] args) { C.g(); } }");
+
+        List<String> sequential = reports(code.toString(), "false");
+        assertEquals(50 * 4 + 1, sequential.size());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(sequential, reports(code.toString(), "true"));
+        }
+    }
+
+    // Used on their own instead of as passes of one walk, the checks still visit the whole tree
+    @Test
+    public void standaloneChecks(){
+        String code = "class A { int x;\n"
+                + "public int f(int a) { boolean b; B c; b = a; x = a + b; return b; }\n"
+                + "public static void main(String[] args) { C.g(); } }";
+        var result = TestUtils.analyse(code);
+        List<Report> reports = new ArrayList<>();
+        new TypeCheckVisitor(result.getSymbolTable()).visit(result.getRootNode(), reports);
+        new ImportCheckVisitor(result.getSymbolTable()).visit(result.getRootNode(), reports);
+
+        assertEquals(5, reports.size());
+        assertEquals(result.getReports().stream().map(Report::toString).collect(Collectors.toList()),
+                reports.stream().map(Report::toString).collect(Collectors.toList()));
+    }
+
+    private static List<String> reports(String code, String parallel){
+        var result = TestUtils.analyse(code, TestUtils.toConfig("parallelAnalysis", parallel));
+        return result.getReports().stream().map(Report::toString).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import pt.up.fe.specs.util.SpecsIo;
+
+public class BatchCompilerTest {
+
+    // The compiler flags, with or without a value, apply to every file and aren't taken as inputs
+    @Test
+    public void compilerFlags() throws IOException {
+        File dir = Files.createTempDirectory("jmm-batch").toFile();
+        try {
+            File inputs = new File(dir, "inputs");
+            File outputs = new File(dir, "outputs");
+            assertTrue(inputs.mkdir());
+            SpecsIo.write(new File(inputs, "HelloWorld.jmm"), SpecsIo.getResource("fixtures/public/HelloWorld.jmm"));
+            SpecsIo.write(new File(inputs, "FindMaximum.jmm"), SpecsIo.getResource("fixtures/public/FindMaximum.jmm"));
+
+            String[] args = { "-batch", inputs.getPath(), "-l", "-r", "0", "-stats", "-d", outputs.getPath(), "-j", "2" };
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int exitCode = BatchCompiler.fromArgs(args, 1).run(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+
+            String output = buffer.toString(StandardCharsets.UTF_8);
+            assertEquals(output, 0, exitCode);
+            assertTrue(output.contains("Compiled 2 of 2 files."));
+            assertTrue(new File(outputs, "HelloWorld.class").isFile());
+            assertTrue(new File(outputs, "FindMaximum.class").isFile());
+        } finally {
+            SpecsIo.deleteFolderContents(dir);
+            dir.delete();
+        }
+    }
+
+    // Two inputs declaring the same class would write the same files, both fail and none is written
+    @Test
+    public void duplicateClasses() throws IOException {
+        File dir = Files.createTempDirectory("jmm-batch").toFile();
+        try {
+            File outputs = new File(dir, "outputs");
+            for (String folder : new String[] { "a", "b" }) {
+                File inputs = new File(dir, folder);
+                assertTrue(inputs.mkdir());
+                SpecsIo.write(new File(inputs, "HelloWorld.jmm"), SpecsIo.getResource("fixtures/public/HelloWorld.jmm"));
+            }
+
+            String[] args = { "-batch", new File(dir, "a").getPath(), new File(dir, "b").getPath(), "-d", outputs.getPath() };
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            int exitCode = BatchCompiler.fromArgs(args, 1).run(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+
+            String output = buffer.toString(StandardCharsets.UTF_8);
+            assertEquals(output, 1, exitCode);
+            assertTrue(output.contains("Compiled 0 of 2 files."));
+            assertTrue(output.contains("Class 'HelloWorld' is declared by more than one input"));
+            assertFalse(new File(outputs, "HelloWorld.class").exists());
+        } finally {
+            SpecsIo.deleteFolderContents(dir);
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import pt.up.fe.comp.jmm.cache.CompilationCache;
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+public class CacheTest {
+
+    // A second compilation starts from the deepest stage that is cached and gives the same code
+    @Test
+    public void deepestCachedStage() throws IOException {
+        File dir = Files.createTempDirectory("jmm-cache").toFile();
+        try {
+            var code = SpecsIo.getResource("fixtures/public/FindMaximum.jmm");
+            var config = TestUtils.toConfig("registerAllocation", "0", CompilationCache.CACHE_DIR, dir.getPath());
+
+            var compiled = TestUtils.backend(code, config);
+            TestUtils.noErrors(compiled);
+
+            // Nothing runs again
+            var cached = TestUtils.backend(code, config);
+            assertEquals(compiled.getJasminCode(), cached.getJasminCode());
+            assertTrue(cached.getStats().getStages().isEmpty());
+
+            // Without the backend result, only the OLLIR optimizations run
+            for (File entry : dir.listFiles((folder, name) -> name.endsWith(".backend"))) {
+                assertTrue(entry.delete());
+            }
+            var ollirResult = TestUtils.optimize(code, config);
+            List<String> stages = ollirResult.getStats().getStages().stream().map(StageStats::getStage)
+                    .collect(Collectors.toList());
+            assertEquals(List.of(CompilationStats.OLLIR_OPTIMIZATION), stages);
+            assertEquals("FindMaximum", ollirResult.getSymbolTable().getClassName());
+            assertEquals(compiled.getJasminCode(), TestUtils.backend(ollirResult).getJasminCode());
+
+            // Flags that change the code are other entries, the others aren't
+            var cache = CompilationCache.of(config);
+            var key = cache.key(code, config);
+            assertNotEquals(key, cache.key(code, TestUtils.toConfig("registerAllocation", "1")));
+            assertEquals(key, cache.key(code, TestUtils.toConfig("registerAllocation", "0", "debug", "true")));
+
+            new CompilationCache(dir, 0).evict();
+            assertEquals(0, dir.listFiles().length);
+            assertNotNull(TestUtils.backend(code, config).getJasminCode());
+        } finally {
+            SpecsIo.deleteFolderContents(dir);
+            dir.delete();
+        }
+    }
+}
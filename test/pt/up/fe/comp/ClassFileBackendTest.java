@@ -0,0 +1,227 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import pt.up.fe.comp.jasmin.BytecodeWriter;
+import pt.up.fe.comp.jasmin.OllirToClassFile;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+public class ClassFileBackendTest {
+    private static final String CODE = "import io;\nLoop {\n.field private count.i32;\n"
+            + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+            + ".method public static f(n.i32).i32 {\n"
+            + "i.i32 :=.i32 0.i32;\n"
+            + "loop:\n"
+            + "if(i.i32 <.bool n.i32) goto end;\n"
+            + "i.i32 :=.i32 i.i32 +.i32 1.i32;\n"
+            + "goto loop;\n"
+            + "end:\n"
+            + "ret.i32 i.i32;\n"
+            + "}\n"
+            + ".method public g().V {\n"
+            + "putfield(this, count.i32, 100000.i32).V;\n"
+            + "t.i32 :=.i32 getfield(this, count.i32).i32;\n"
+            + "invokestatic(io, \"println\", t.i32).V;\n"
+            + "ret.V;\n"
+            + "}\n}";
+
+    // The loop branch jumps forward past the goto when i >= n, and the goto goes back to the condition
+    @Test
+    public void branchOffsets() throws IOException {
+        var classFile = new ClassFile(new OllirToClassFile().toJasmin(new OllirResult(CODE, Collections.emptyMap())).getClassBytes());
+
+        byte[] expected = {
+                0x03,                       // 0: iconst_0
+                0x3C,                       // 1: istore_1
+                0x1B,                       // 2: iload_1
+                0x1A,                       // 3: iload_0
+                (byte) 0xA2, 0x00, 0x09,    // 4: if_icmpge 13
+                (byte) 0x84, 0x01, 0x01,    // 7: iinc 1 1
+                (byte) 0xA7, (byte) 0xFF, (byte) 0xF8,  // 10: goto 2
+                0x1B,                       // 13: iload_1
+                (byte) 0xAC                 // 14: ireturn
+        };
+        assertArrayEquals(expected, classFile.code.get("f"));
+    }
+
+    // Every constant is written once, and the instructions point at the entries they need
+    @Test
+    public void constantPool() throws IOException {
+        var classFile = new ClassFile(new OllirToClassFile().toJasmin(new OllirResult(CODE, Collections.emptyMap())).getClassBytes());
+
+        assertEquals(classFile.constants.size(), new HashSet<>(classFile.constants).size());
+        assertEquals("Class Loop", classFile.constant(classFile.thisClass));
+        assertEquals("Class java/lang/Object", classFile.constant(classFile.superClass));
+
+        byte[] code = classFile.code.get("g");
+        assertEquals(0x12, code[1]);  // ldc
+        assertEquals("Integer 100000", classFile.constant(code[2] & 0xFF));
+        assertEquals(0xB5, code[3] & 0xFF);  // putfield
+        assertEquals("Fieldref Loop.count:I", classFile.constant(u2(code, 4)));
+        assertEquals(0xB4, code[7] & 0xFF);  // getfield
+        assertEquals(u2(code, 4), u2(code, 8));
+        assertEquals(0xB8, code[12] & 0xFF);  // invokestatic
+        assertEquals("Methodref io.println:(I)V", classFile.constant(u2(code, 13)));
+        assertTrue(classFile.constants.contains("Methodref java/lang/Object.<init>:()V"));
+    }
+
+    // A branch over more than 32767 bytes jumps over a goto_w when its condition doesn't hold
+    @Test
+    public void wideBranch() {
+        BytecodeWriter code = new BytecodeWriter();
+        BytecodeWriter.Label end = new BytecodeWriter.Label();
+        code.op(BytecodeWriter.ICONST_0);
+        code.branch(BytecodeWriter.IFEQ, end);
+        for (int i = 0; i < 13000; ++i) {
+            code.iinc(1, 1);
+        }
+        code.mark(end);
+        code.op(BytecodeWriter.RETURN);
+
+        byte[] bytes = code.toByteArray();
+        assertEquals(1 + 8 + 39000 + 1, bytes.length);
+        assertEquals(BytecodeWriter.IFEQ + 1, bytes[1] & 0xFF);   // ifne
+        assertEquals(8, ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF));
+        assertEquals(BytecodeWriter.GOTO_W, bytes[4] & 0xFF);
+        assertEquals(1 + 8 + 39000 - 4, ((bytes[5] & 0xFF) << 24) | ((bytes[6] & 0xFF) << 16) | ((bytes[7] & 0xFF) << 8) | (bytes[8] & 0xFF));
+        assertEquals(BytecodeWriter.RETURN, bytes[bytes.length - 1] & 0xFF);
+    }
+
+    // Both the branch out of the loop and the goto back to its start are wide, and the class still runs
+    @Test
+    public void wideLoop() {
+        StringBuilder code = new StringBuilder("import io;\nclass Big {\npublic static void main(String[] args) {"
+                + " int i; int a; i = 0; a = 0; while (i < 2) {");
+        for (int k = 0; k < 4000; ++k) {
+            code.append(" a = a + i + 1;");
+        }
+        code.append(" i = i + 1; } io.println(a); } }");
+
+        var ollirResult = TestUtils.optimize(code.toString(), Map.of());
+        TestUtils.noErrors(ollirResult);
+        var result = new OllirToClassFile().toJasmin(ollirResult);
+        TestUtils.noErrors(result);
+        assertEquals("12000", result.run().trim());
+    }
+
+    private static int u2(byte[] code, int position) {
+        return ((code[position] & 0xFF) << 8) | (code[position + 1] & 0xFF);
+    }
+
+    // The parts of a class file these tests look at, with the constant pool entries written out as text
+    private static class ClassFile {
+        final List<String> constants = new ArrayList<>();  // Index 0 is unused
+        final Map<String, byte[]> code = new HashMap<>();
+        final int thisClass;
+        final int superClass;
+
+        private final List<int[]> references = new ArrayList<>();
+
+        ClassFile(byte[] bytes) throws IOException {
+            var in = new DataInputStream(new ByteArrayInputStream(bytes));
+            assertEquals(0xCAFEBABE, in.readInt());
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+
+            int count = in.readUnsignedShort();
+            constants.add(null);
+            references.add(null);
+            for (int i = 1; i < count; ++i) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                    case 1:
+                        constants.add(in.readUTF());
+                        references.add(null);
+                        break;
+                    case 3:
+                        constants.add("Integer " + in.readInt());
+                        references.add(null);
+                        break;
+                    case 7:
+                    case 8:
+                        constants.add(null);
+                        references.add(new int[] { tag, in.readUnsignedShort() });
+                        break;
+                    default:    // References and NameAndType
+                        constants.add(null);
+                        references.add(new int[] { tag, in.readUnsignedShort(), in.readUnsignedShort() });
+                }
+            }
+            for (int i = 1; i < count; ++i) {
+                constants.set(i, constant(i));
+            }
+
+            in.readUnsignedShort();
+            thisClass = in.readUnsignedShort();
+            superClass = in.readUnsignedShort();
+            in.skipBytes(2 * in.readUnsignedShort());
+
+            int fields = in.readUnsignedShort();
+            for (int i = 0; i < fields; ++i) {
+                in.skipBytes(6);
+                skipAttributes(in);
+            }
+            int methods = in.readUnsignedShort();
+            for (int i = 0; i < methods; ++i) {
+                in.readUnsignedShort();
+                String name = constants.get(in.readUnsignedShort());
+                in.readUnsignedShort();
+                int attributes = in.readUnsignedShort();
+                for (int k = 0; k < attributes; ++k) {
+                    String attribute = constants.get(in.readUnsignedShort());
+                    int length = in.readInt();
+                    if (!attribute.equals("Code")) {
+                        in.skipBytes(length);
+                        continue;
+                    }
+                    in.skipBytes(4);    // max_stack and max_locals
+                    byte[] methodCode = new byte[in.readInt()];
+                    in.readFully(methodCode);
+                    in.skipBytes(2 * 4 * in.readUnsignedShort());
+                    skipAttributes(in);
+                    code.put(name, methodCode);
+                }
+            }
+        }
+
+        String constant(int index) {
+            int[] reference = references.get(index);
+            if (reference == null) {
+                return constants.get(index);
+            }
+            switch (reference[0]) {
+                case 7:
+                    return "Class " + constants.get(reference[1]);
+                case 8:
+                    return "String " + constants.get(reference[1]);
+                case 12:
+                    return constants.get(reference[1]) + ":" + constants.get(reference[2]);
+                default:
+                    String kind = reference[0] == 9 ? "Fieldref" : reference[0] == 10 ? "Methodref" : "InterfaceMethodref";
+                    return kind + " " + constant(reference[1]).substring("Class ".length()) + "." + constant(reference[2]);
+            }
+        }
+
+        private static void skipAttributes(DataInputStream in) throws IOException {
+            int attributes = in.readUnsignedShort();
+            for (int i = 0; i < attributes; ++i) {
+                in.readUnsignedShort();
+                in.skipBytes(in.readInt());
+            }
+        }
+    }
+}
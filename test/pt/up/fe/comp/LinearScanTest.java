@@ -0,0 +1,57 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+public class LinearScanTest {
+    // a to e are all live until the return, along with the temporaries of the sum
+    private static final String CODE = "import io;\nclass A {\npublic int f(int n) { int a; int b; int c; int d; int e;"
+            + " a = n + 1; b = n + 2; c = n + 3; d = n + 4; e = n + 5;"
+            + " return a * b + c * d + e * a + b * c + d * e; }\n"
+            + "public static void main(String[] args) { A x; x = new A(); io.println(x.f(1)); } }";
+
+    private static OllirResult allocate(String registers) {
+        var ollirResult = TestUtils.optimize(CODE, TestUtils.toConfig("registerAllocation", registers, "registerAllocator", "linear"));
+        TestUtils.noErrors(ollirResult);
+        return ollirResult;
+    }
+
+    private static Method method(OllirResult ollirResult, String name) {
+        return ollirResult.getOllirClass().getMethods().stream()
+                .filter(m -> m.getMethodName().equals(name)).findFirst().orElseThrow();
+    }
+
+    // Six registers aren't enough: some values go to the spill array, and no variable gets a register past them
+    @Test
+    public void spillsUnderPressure() {
+        var ollirResult = allocate("6");
+        Method method = method(ollirResult, "f");
+
+        assertTrue(method.getVarTable().keySet().stream().anyMatch(name -> name.startsWith("spill")));
+        assertTrue(ollirResult.getOllirCode().contains(".array.i32 :=.array.i32 new(array"));
+        assertTrue(method.getVarTable().values().stream().allMatch(descriptor -> descriptor.getVirtualReg() <= 6));
+        assertEquals("80", TestUtils.backend(ollirResult).run().trim());
+    }
+
+    // Without a limit every value gets a register
+    @Test
+    public void noSpillsWithoutPressure() {
+        var ollirResult = allocate("0");
+        Method method = method(ollirResult, "f");
+
+        assertTrue(method.getVarTable().keySet().stream().noneMatch(name -> name.startsWith("spill")));
+        assertEquals("80", TestUtils.backend(ollirResult).run().trim());
+    }
+
+    // Spilling needs registers of its own, the method doesn't fit in three even with it
+    @Test
+    public void insufficientRegisters() {
+        var ollirResult = TestUtils.optimize(CODE, TestUtils.toConfig("registerAllocation", "3", "registerAllocator", "linear"));
+        assertTrue(ollirResult.getReports().stream().anyMatch(report -> report.getMessage().equals("Insufficient registers")));
+    }
+}
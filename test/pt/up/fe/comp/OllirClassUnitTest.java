@@ -0,0 +1,133 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AccessModifiers;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.PutFieldInstruction;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.ollir.JmmOptimizer;
+import pt.up.fe.comp.ollir.OllirPrinter;
+import pt.up.fe.comp.ollir.OllirUtils;
+
+public class OllirClassUnitTest {
+    private static final String CODE = "import io;\nclass Shapes {\n"
+            + "int size; boolean flag; int[] values; Shapes other;\n"
+            + "public int fill(int n) { int i; values = new int[n]; i = 0;"
+            + " while (i < values.length) { values[i] = this.twice(i); i = i + 1; }"
+            + " size = values[n - 1]; other = new Shapes(); flag = size < this.twice(values[0]);"
+            + " return other.twice(size); }\n"
+            + "public int twice(int i) { return i * 2; }\n"
+            + "public static void main(String[] args) { Shapes s; s = new Shapes(); io.println(s.fill(5)); } }";
+
+    private static JmmSemanticsResult analyse() {
+        var semanticsResult = TestUtils.analyse(CODE);
+        TestUtils.noErrors(semanticsResult);
+        return semanticsResult;
+    }
+
+    private static Method method(ClassUnit classUnit, String name) {
+        return classUnit.getMethods().stream()
+                .filter(m -> m.getMethodName().equals(name)).findFirst().orElseThrow();
+    }
+
+    // One line per instruction, with the kind of each assignment's destination and right side and each call's target
+    private static String describe(Instruction instruction) {
+        switch (instruction.getInstType()) {
+        case ASSIGN: {
+            var assign = (AssignInstruction) instruction;
+            String dest = ((Operand) assign.getDest()).getName() + (assign.getDest() instanceof ArrayOperand ? "[]" : "");
+            return "ASSIGN " + dest + " " + describe(assign.getRhs());
+        }
+        case CALL: {
+            var call = (CallInstruction) instruction;
+            Element method = call.getSecondArg();
+            return "CALL " + call.getInvocationType() + (method == null ? "" : " " + ((LiteralElement) method).getLiteral());
+        }
+        default:
+            return instruction.getInstType().toString();
+        }
+    }
+
+    private static List<String> describe(Method method) {
+        return method.getInstructions().stream().map(OllirClassUnitTest::describe).collect(Collectors.toList());
+    }
+
+    @Test
+    public void fields() {
+        var classUnit = new JmmOptimizer().toOllir(analyse()).getOllirClass();
+
+        assertEquals("size flag values other", classUnit.getFields().stream()
+                .map(field -> field.getFieldName()).collect(Collectors.joining(" ")));
+        assertEquals("i32 bool array.i32 Shapes", classUnit.getFields().stream()
+                .map(field -> OllirUtils.getCode(field.getFieldType())).collect(Collectors.joining(" ")));
+        assertTrue(classUnit.getFields().stream().allMatch(field -> field.getFieldAccessModifier() == AccessModifiers.PRIVATE));
+    }
+
+    @Test
+    public void arrays() {
+        var fillMethod = method(new JmmOptimizer().toOllir(analyse()).getOllirClass(), "fill");
+        var fill = describe(fillMethod);
+
+        assertTrue(fill.contains("ASSIGN t0 CALL NEW"));
+        assertTrue(fill.stream().anyMatch(line -> line.endsWith("CALL arraylength")));
+        assertTrue(fill.stream().anyMatch(line -> line.matches("ASSIGN t\\d+\\[\\] CALL invokevirtual \"twice\"")));
+        assertTrue(fill.stream().anyMatch(line -> line.matches("ASSIGN t\\d+ NOPER")));
+
+        // The OLLIR parser doesn't accept array reads as call arguments or putfield values, they go through a temporary
+        for (Instruction instruction : fillMethod.getInstructions()) {
+            Instruction rhs = instruction instanceof AssignInstruction ? ((AssignInstruction) instruction).getRhs() : instruction;
+            if (rhs instanceof CallInstruction && ((CallInstruction) rhs).getListOfOperands() != null) {
+                assertTrue(((CallInstruction) rhs).getListOfOperands().stream().noneMatch(arg -> arg instanceof ArrayOperand));
+            }
+            if (rhs instanceof PutFieldInstruction) {
+                assertFalse(((PutFieldInstruction) rhs).getThirdOperand() instanceof ArrayOperand);
+            }
+        }
+    }
+
+    @Test
+    public void invokes() {
+        var classUnit = new JmmOptimizer().toOllir(analyse()).getOllirClass();
+        var fill = describe(method(classUnit, "fill"));
+        var main = describe(method(classUnit, "main"));
+
+        assertEquals(3, fill.stream().filter(line -> line.endsWith("CALL invokevirtual \"twice\"")).count());
+        assertTrue(fill.contains("CALL invokespecial \"<init>\""));
+        assertTrue(main.contains("ASSIGN t0 CALL NEW"));
+        assertTrue(main.contains("ASSIGN t1 CALL invokevirtual \"fill\""));
+        assertTrue(main.contains("CALL invokestatic \"println\""));
+    }
+
+    // The printed class parses back into the same instructions, and printing that gives the same code
+    @Test
+    public void roundTrip() {
+        var semanticsResult = analyse();
+        var direct = new JmmOptimizer().toOllir(semanticsResult);
+        String printed = direct.getOllirCode();
+        var reparsed = new OllirResult(semanticsResult, printed, Collections.emptyList());
+
+        for (Method method : direct.getOllirClass().getMethods()) {
+            assertEquals(describe(method), describe(method(reparsed.getOllirClass(), method.getMethodName())));
+        }
+        assertEquals(printed, OllirPrinter.print(reparsed.getOllirClass()));
+        assertEquals("16", TestUtils.backend(direct).run().trim());
+    }
+}
@@ -1,7 +1,34 @@
 package pt.up.fe.comp;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
 import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.InstructionType;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
 
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.ollir.JmmOptimizer;
+import pt.up.fe.comp.ollir.OllirUtils;
+import pt.up.fe.comp.ollir.optimizations.AstWorklistOptimizer;
+import pt.up.fe.comp.ollir.optimizations.dead_code_elimination.DeadCodeEliminator;
+import pt.up.fe.comp.ollir.optimizations.loop_optimization.FieldWriteAnalyser;
+import pt.up.fe.comp.ollir.optimizations.loop_optimization.LoopInvariantCodeMotion;
+import pt.up.fe.comp.ollir.optimizations.loop_optimization.StrengthReduction;
+import pt.up.fe.comp.ollir.optimizations.ssa.ConstantPropagator;
 import pt.up.fe.specs.util.SpecsIo;
 
 public class OptimizationTest {
@@ -10,4 +37,334 @@ public class OptimizationTest {
        var ollirResult = TestUtils.optimize(SpecsIo.getResource("fixtures/public/HelloWorld.jmm"));
        TestUtils.noErrors(ollirResult);
    } 
+
+   // A chain of constants takes a single round instead of one per link, and the rounds can be limited
+   @Test
+   public void worklist(){
+       StringBuilder code = new StringBuilder("class A {\npublic int f() { int a0;");
+       for(int i = 1; i < 20; ++i){
+           code.append(" int a").append(i).append(";");
+       }
+       code.append(" a0 = 1;");
+       for(int i = 1; i < 20; ++i){
+           code.append(" a").append(i).append(" = a").append(i - 1).append(" + 1;");
+       }
+       code.append(" return a19; }\npublic static void main(String[] args) { } }");
+
+       var semanticsResult = TestUtils.analyse(code.toString());
+       var optimizer = new AstWorklistOptimizer(semanticsResult.getSymbolTable(), AstWorklistOptimizer.DEFAULT_ROUNDS);
+       assertEquals(2, optimizer.optimize(semanticsResult.getRootNode()));
+       assertTrue(semanticsResult.getRootNode().toJson().contains("\"value\": \"20\""));
+
+       semanticsResult = TestUtils.analyse(code.toString());
+       assertEquals(1, new AstWorklistOptimizer(semanticsResult.getSymbolTable(), 1).optimize(semanticsResult.getRootNode()));
+   }
+
+   // a - 0 is a, not 0
+   @Test
+   public void constantFoldingSubtractZero(){
+       String code = "import io;\nclass A {\npublic int f(int a) { return a - 0; }\n"
+               + "public static void main(String[] args) { A x; x = new A(); io.println(x.f(7)); } }";
+
+       var ollirResult = TestUtils.optimize(code, Map.of("optimizeAll", "true"));
+       TestUtils.noErrors(ollirResult);
+       assertTrue(ollirResult.getOllirCode().contains("ret.i32 $1.a.i32;"));
+       assertEquals("7", TestUtils.backend(code, Map.of("optimizeAll", "true")).run().trim());
+   }
+
+   // The inner parentheses replace themselves while the outer ones are visited, no node must be left detached or
+   // the rounds never stop changing the tree
+   @Test
+   public void constantFoldingNestedParentheses(){
+       String code = "import io;\nclass A {\npublic int g(int a) { int b; b = ((a + 1)) * 2; return b; }\n"
+               + "public static void main(String[] args) { A x; x = new A(); io.println(x.g(7)); } }";
+
+       var semanticsResult = TestUtils.analyse(code);
+       var optimizer = new AstWorklistOptimizer(semanticsResult.getSymbolTable(), AstWorklistOptimizer.DEFAULT_ROUNDS);
+       assertEquals(2, optimizer.optimize(semanticsResult.getRootNode()));
+
+       var ollirResult = TestUtils.optimize(code, Map.of("optimizeAll", "true"));
+       TestUtils.noErrors(ollirResult);
+       assertTrue(ollirResult.getOllirCode().contains("t0.i32 :=.i32 $1.a.i32 +.i32 1.i32;\nb.i32 :=.i32 t0.i32 *.i32 2.i32;"));
+       assertEquals("16", TestUtils.backend(code, Map.of("optimizeAll", "true")).run().trim());
+   }
+
+   // x is only 1 after the if when the branch that has the loop isn't taken
+   @Test
+   public void constantPropagationAfterLoopInBranch(){
+       String code = "class A {\npublic int f(int n) { int x; int i; x = 1;"
+               + " if (n < 2) { i = 0; while (i < n) { i = i + 1; } x = 2; } else { i = 1; }"
+               + " return x; }\npublic static void main(String[] args) { } }";
+
+       var ollirResult = TestUtils.optimize(code, Map.of("optimize", "true"));
+       TestUtils.noErrors(ollirResult);
+       assertTrue(ollirResult.getOllirCode().contains("ret.i32 x.i32"));
+   }
+
+   // -d and -cache print the OLLIR code before the OLLIR optimizations, the code asked for after them still has their
+   // changes
+   @Test
+   public void ollirCodeAfterOptimizations(){
+       String code = "class A {\npublic int f(int n) { int x; int i; x = 5; i = 0; while (i < n) { i = i + 1; }"
+               + " return x; }\npublic static void main(String[] args) { } }";
+
+       var optimizer = new JmmOptimizer();
+       var ollirResult = optimizer.toOllir(optimizer.optimize(TestUtils.analyse(code, Map.of("optimize", "true"))));
+       assertTrue(ollirResult.getOllirCode().contains("x.i32 :=.i32 5.i32;"));
+       ollirResult = optimizer.optimize(ollirResult);
+       TestUtils.noErrors(ollirResult);
+       assertFalse(ollirResult.getOllirCode().contains("x.i32 :=.i32 5.i32;"));
+   }
+
+   // -o turns the while into a do-while, whose branch jumps back while 0 < i holds and not while it doesn't
+   @Test
+   public void doWhileComparedToZero(){
+       String code = "import io;\nclass A {\npublic static void main(String[] args) { int i; int s; i = 24; s = 0;"
+               + " while (0 < i) { s = s + 25; i = i - 2; } io.println(s); } }";
+
+       var jasminResult = TestUtils.backend(code, Map.of("optimize", "true"));
+       TestUtils.noErrors(jasminResult);
+       assertEquals("300", jasminResult.run().trim());
+   }
+
+   // x is still 5 after the loop, so the branch after it always jumps and the call is never reached
+   @Test
+   public void constantPropagation(){
+       String code = "import io;\nLoop {\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public f(n.i32).i32 {\n"
+               + "x.i32 :=.i32 5.i32;\n"
+               + "i.i32 :=.i32 0.i32;\n"
+               + "loop:\n"
+               + "if(i.i32 <.bool n.i32) goto end;\n"
+               + "x.i32 :=.i32 x.i32 *.i32 1.i32;\n"
+               + "i.i32 :=.i32 i.i32 +.i32 1.i32;\n"
+               + "goto loop;\n"
+               + "end:\n"
+               + "if(x.i32 <.bool 3.i32) goto skip;\n"
+               + "invokestatic(io, \"println\", x.i32).V;\n"
+               + "skip:\n"
+               + "ret.i32 x.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       assertTrue(new ConstantPropagator(method).optimize());
+
+       assertTrue(method.getInstructions().stream().noneMatch(i -> i.getInstType() == InstructionType.CALL));
+       var ret = (ReturnInstruction) method.getInstructions().get(method.getInstructions().size() - 1);
+       assertEquals("5", ((LiteralElement) ret.getOperand()).getLiteral());
+   }
+
+   // The branch at the top of the loop becomes a goto and takes its label, the branch back to it must stay
+   @Test
+   public void constantPropagationMovedLabel(){
+       String code = "Loop {\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public f(n.i32).i32 {\n"
+               + "i.i32 :=.i32 0.i32;\n"
+               + "b.i32 :=.i32 2.i32;\n"
+               + "loop:\n"
+               + "if(b.i32 <.bool 1.i32) goto body;\n"
+               + "i.i32 :=.i32 i.i32 +.i32 5.i32;\n"
+               + "body:\n"
+               + "i.i32 :=.i32 i.i32 +.i32 1.i32;\n"
+               + "if(n.i32 <.bool i.i32) goto loop;\n"
+               + "ret.i32 i.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       assertTrue(new ConstantPropagator(method).optimize());
+
+       assertEquals(InstructionType.GOTO, method.getLabels().get("loop").getInstType());
+       assertTrue(method.getInstructions().stream().anyMatch(i -> i.getInstType() == InstructionType.BRANCH));
+   }
+
+   // a is never assigned, so the condition stays TOP: both ways are kept and x can be 1 or 2 at the return
+   @Test
+   public void constantPropagationUndecidedBranch(){
+       String code = "Loop {\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public f().i32 {\n"
+               + "x.i32 :=.i32 1.i32;\n"
+               + "if(a.i32 <.bool 1.i32) goto other;\n"
+               + "x.i32 :=.i32 2.i32;\n"
+               + "other:\n"
+               + "ret.i32 x.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       new ConstantPropagator(method).optimize();
+
+       assertEquals(4, method.getInstructions().size());
+       assertEquals(InstructionType.BRANCH, method.getInstructions().get(1).getInstType());
+       var ret = (ReturnInstruction) method.getInstructions().get(3);
+       assertEquals("x", ((Operand) ret.getOperand()).getName());
+   }
+
+   // The counter k is only read by itself and the code after the return can't run, the call is kept
+   @Test
+   public void deadCodeElimination(){
+       String code = "import io;\nLoop {\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public f(n.i32).i32 {\n"
+               + "k.i32 :=.i32 0.i32;\n"
+               + "i.i32 :=.i32 0.i32;\n"
+               + "loop:\n"
+               + "if(i.i32 <.bool n.i32) goto end;\n"
+               + "k.i32 :=.i32 k.i32 +.i32 1.i32;\n"
+               + "t.i32 :=.i32 invokestatic(io, \"read\").i32;\n"
+               + "i.i32 :=.i32 i.i32 +.i32 1.i32;\n"
+               + "goto loop;\n"
+               + "end:\n"
+               + "goto exit;\n"
+               + "exit:\n"
+               + "ret.i32 i.i32;\n"
+               + "unreachable:\n"
+               + "ret.i32 k.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       assertTrue(new DeadCodeEliminator(method).optimize());
+
+       assertEquals(6, method.getInstructions().size());
+       assertTrue(method.getInstructions().stream().anyMatch(i -> i.getInstType() == InstructionType.ASSIGN
+               && ((AssignInstruction) i).getRhs().getInstType() == InstructionType.CALL));
+       assertTrue(method.getLabels().containsKey("end") && !method.getLabels().containsKey("unreachable"));
+   }
+
+   // The length of a, the field size and k * size are moved before the loop, count is written by the call to tick
+   @Test
+   public void loopInvariantCodeMotion(){
+       String code = "Loop {\n"
+               + ".field private size.i32;\n"
+               + ".field private count.i32;\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public tick().V {\n"
+               + "putfield(this, count.i32, 1.i32).V;\n"
+               + "ret.V;\n"
+               + "}\n"
+               + ".method public f(a.array.i32, k.i32).i32 {\n"
+               + "i.i32 :=.i32 0.i32;\n"
+               + "loop:\n"
+               + "t0.i32 :=.i32 arraylength(a.array.i32).i32;\n"
+               + "if(i.i32 <.bool t0.i32) goto end;\n"
+               + "t1.i32 :=.i32 getfield(this, size.i32).i32;\n"
+               + "t2.i32 :=.i32 k.i32 *.i32 t1.i32;\n"
+               + "t3.i32 :=.i32 getfield(this, count.i32).i32;\n"
+               + "invokevirtual(this, \"tick\").V;\n"
+               + "a[i.i32].i32 :=.i32 t2.i32;\n"
+               + "i.i32 :=.i32 i.i32 +.i32 t3.i32;\n"
+               + "goto loop;\n"
+               + "end:\n"
+               + "ret.i32 i.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       var fieldWrites = new FieldWriteAnalyser(ollirResult.getOllirClass());
+       assertTrue(new LoopInvariantCodeMotion(method, fieldWrites).optimize());
+
+       var instructions = method.getInstructions();
+       var header = method.getLabels().get("loop");
+       assertEquals(InstructionType.BRANCH, header.getInstType());
+       assertEquals(4, instructions.indexOf(header));
+       assertEquals(InstructionType.GETFIELD, ((AssignInstruction) instructions.get(5)).getRhs().getInstType());
+   }
+
+   // b can be this, so the call on it can run tick and g lets this escape to Lib: size isn't moved out of the loop
+   @Test
+   public void loopInvariantCodeMotionSuperclassObject(){
+       String code = "Loop extends Base {\n"
+               + ".field private size.i32;\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public tick().V {\n"
+               + "putfield(this, size.i32, 1.i32).V;\n"
+               + "ret.V;\n"
+               + "}\n"
+               + ".method public g(b.Base).V {\n"
+               + "invokestatic(Lib, \"keep\", b.Base).V;\n"
+               + "ret.V;\n"
+               + "}\n"
+               + ".method public f(b.Base, n.i32).i32 {\n"
+               + "i.i32 :=.i32 0.i32;\n"
+               + "s.i32 :=.i32 0.i32;\n"
+               + "loop:\n"
+               + "if(i.i32 <.bool n.i32) goto end;\n"
+               + "t0.i32 :=.i32 getfield(this, size.i32).i32;\n"
+               + "invokevirtual(b.Base, \"tick\").V;\n"
+               + "invokestatic(io, \"println\", t0.i32).V;\n"
+               + "s.i32 :=.i32 s.i32 +.i32 t0.i32;\n"
+               + "i.i32 :=.i32 i.i32 +.i32 1.i32;\n"
+               + "goto loop;\n"
+               + "end:\n"
+               + "ret.i32 s.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       var fieldWrites = new FieldWriteAnalyser(ollirResult.getOllirClass());
+       var instructions = method.getInstructions();
+       int header = instructions.indexOf(method.getLabels().get("loop"));
+       assertNull(fieldWrites.getWrittenFields((CallInstruction) instructions.get(header + 2)));
+       assertNull(fieldWrites.getWrittenFields((CallInstruction) instructions.get(header + 3)));
+
+       new LoopInvariantCodeMotion(method, fieldWrites).optimize();
+       header = instructions.indexOf(method.getLabels().get("loop"));
+       assertEquals(InstructionType.GETFIELD, ((AssignInstruction) instructions.get(header + 1)).getRhs().getInstType());
+   }
+
+   // i * 4 (twice) and k * i become variables increased along with i, so the loop has no multiplication left
+   @Test
+   public void strengthReduction(){
+       String code = "Loop {\n"
+               + ".construct Loop().V {\ninvokespecial(this, \"<init>\").V;\n}\n"
+               + ".method public f(a.array.i32, n.i32, k.i32).i32 {\n"
+               + "i.i32 :=.i32 0.i32;\n"
+               + "s.i32 :=.i32 0.i32;\n"
+               + "loop:\n"
+               + "if(i.i32 <.bool n.i32) goto end;\n"
+               + "t0.i32 :=.i32 i.i32 *.i32 4.i32;\n"
+               + "t1.i32 :=.i32 k.i32 *.i32 i.i32;\n"
+               + "a[t0.i32].i32 :=.i32 t1.i32;\n"
+               + "t2.i32 :=.i32 i.i32 *.i32 4.i32;\n"
+               + "s.i32 :=.i32 s.i32 +.i32 t2.i32;\n"
+               + "i.i32 :=.i32 i.i32 +.i32 2.i32;\n"
+               + "goto loop;\n"
+               + "end:\n"
+               + "ret.i32 s.i32;\n"
+               + "}\n}";
+
+       var ollirResult = new OllirResult(code, Collections.emptyMap());
+       Method method = method(ollirResult, "f");
+       assertTrue(new StrengthReduction(method).optimize());
+
+       var instructions = method.getInstructions();
+       int header = instructions.indexOf(method.getLabels().get("loop"));
+       int end = instructions.indexOf(method.getLabels().get("end"));
+       for(int i = 0; i < instructions.size(); ++i){
+           boolean multiplies = instructions.get(i).getInstType() == InstructionType.ASSIGN
+                   && ((AssignInstruction) instructions.get(i)).getRhs() instanceof BinaryOpInstruction
+                   && ((BinaryOpInstruction) ((AssignInstruction) instructions.get(i)).getRhs()).getOperation()
+                           .getOpType() == OperationType.MUL;
+           assertTrue(!multiplies || i < header || i > end);
+       }
+
+       // The two i * 4 share their variable, which goes up by 8 with each step of i
+       var first = (SingleOpInstruction) ((AssignInstruction) instructions.get(header + 1)).getRhs();
+       var second = (SingleOpInstruction) ((AssignInstruction) instructions.get(header + 4)).getRhs();
+       String reduced = ((Operand) first.getSingleOperand()).getName();
+       assertEquals(reduced, ((Operand) second.getSingleOperand()).getName());
+       assertTrue(instructions.stream().anyMatch(i -> i.getInstType() == InstructionType.ASSIGN
+               && ((Operand) ((AssignInstruction) i).getDest()).getName().equals(reduced)
+               && Integer.valueOf(8).equals(OllirUtils.getIncrement((AssignInstruction) i))));
+   }
+
+   private static Method method(OllirResult ollirResult, String name){
+       return ollirResult.getOllirClass().getMethods().stream()
+               .filter(m -> m.getMethodName().equals(name)).findFirst().orElseThrow();
+   }
 }
@@ -13,8 +13,25 @@
 
 package pt.up.fe.comp;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+
 import org.junit.Test;
 
+import pt.up.fe.comp.ast.AstNode;
+import pt.up.fe.comp.ast.BinaryAstReader;
+import pt.up.fe.comp.ast.BinaryAstWriter;
+import pt.up.fe.comp.ast.CompactJmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 import pt.up.fe.specs.util.SpecsIo;
 
 public class ParserTest {
@@ -33,6 +50,125 @@ public class ParserTest {
      * Code that must be successfully parsed 
      */
 
+    // Every error is reported, and the tree keeps the methods and statements that were parsed
+    @Test
+    public void errorRecovery() {
+        var code = "class Foo {\n"
+                + "    public int a(int x) { x = x + ; while (x < ) { x = 1; } x = 2; return x; }\n"
+                + "    public int b( { return 1; }\n"
+                + "    public int c() { return 3; }\n"
+                + "}";
+        var result = TestUtils.parse(code);
+        assertEquals(3, TestUtils.getNumErrors(result.getReports()));
+
+        var methods = result.getRootNode().getJmmChild(0).getChildren();
+        assertEquals(2, methods.size());
+        assertEquals("a", methods.get(0).get("name"));
+        assertEquals("c", methods.get(1).get("name"));
+        // The parameter, x = 2; and the return
+        assertEquals(3, methods.get(0).getNumChildren());
+    }
+
+    // Files and readers must give the same tree as the code read into a String
+    @Test
+    public void pathAndReader() {
+        var code = SpecsIo.getResource("fixtures/public/Life.jmm");
+        var expected = new SimpleParser().parse(code, Collections.emptyMap()).getRootNode().toJson();
+
+        var fromPath = new SimpleParser().parse(Paths.get("test/fixtures/public/Life.jmm"), Collections.emptyMap());
+        TestUtils.noErrors(fromPath);
+        assertEquals(expected, fromPath.getRootNode().toJson());
+
+        var fromReader = new SimpleParser().parse(new StringReader(code), Collections.emptyMap());
+        TestUtils.noErrors(fromReader);
+        assertEquals(expected, fromReader.getRootNode().toJson());
+    }
+
+    // An edit inside a method only replaces that method, the tree is the same as the one of a full parse
+    @Test
+    public void incrementalReparse() {
+        var code = "class Foo {\n"
+                + "    int f;\n"
+                + "    public int a(int x) { return x; }\n"
+                + "    public int b(int x) { return x; }\n"
+                + "    public int c(int x) { return x; }\n"
+                + "}";
+        var parser = new IncrementalParser(Collections.emptyMap());
+        var result = parser.parse(code);
+        var root = result.getRootNode();
+        var methods = root.getJmmChild(0).getChildren();
+
+        int offset = code.indexOf("return x; }\n    public int c");
+        result = parser.reparse(result, TextEdit.insert(offset, "x = x + 1;\n        "));
+        TestUtils.noErrors(result);
+        assertTrue(parser.wasIncremental());
+        assertSame(root, result.getRootNode());
+        var newMethods = root.getJmmChild(0).getChildren();
+        assertSame(methods.get(1), newMethods.get(1));
+        assertNotSame(methods.get(2), newMethods.get(2));
+        assertSame(methods.get(3), newMethods.get(3));
+
+        var expected = new SimpleParser().parse(parser.getCode(), Collections.emptyMap()).getRootNode().toJson();
+        assertEquals(expected, result.getRootNode().toJson());
+
+        // Outside of the methods, and a method that no longer parses on its own, need a full parse
+        result = parser.reparse(result, TextEdit.insert(code.indexOf("int f;"), "int g;\n    "));
+        assertFalse(parser.wasIncremental());
+        assertEquals(5, result.getRootNode().getJmmChild(0).getNumChildren());
+
+        result = parser.reparse(result, TextEdit.insert(parser.getCode().indexOf("return x; }\n}"), "return x; }\n    public int d() { "));
+        TestUtils.noErrors(result);
+        assertFalse(parser.wasIncremental());
+        assertEquals(6, result.getRootNode().getJmmChild(0).getNumChildren());
+    }
+
+    // The parser returns compact nodes, they must behave like JmmNodeImpl
+    @Test
+    public void compactNodes() {
+        var result = TestUtils.parse("class Foo { public int a(int x) { return x + 1; } }");
+        var method = result.getRootNode().getJmmChild(0).getJmmChild(0);
+        assertTrue(method instanceof CompactJmmNode);
+        assertEquals("a", method.get("name"));
+        assertEquals("1", method.get("line"));
+        assertEquals(AstNode.INSTANCE_METHOD_DECLARATION.ordinal(), ((CompactJmmNode) method).getKindId());
+
+        method.put("line", "x");
+        method.put("extra", "1");
+        assertEquals("x", method.get("line"));
+        assertTrue(method.getAttributes().contains("extra"));
+        assertFalse(method.getOptional("missing").isPresent());
+
+        // A list of children that was returned doesn't see later changes
+        var children = method.getChildren();
+        method.add(new JmmNodeImpl("Extra"), 0);
+        method.getJmmChild(2).delete();
+        assertEquals(2, children.size());
+        assertEquals(2, method.getNumChildren());
+        assertEquals("Extra", method.getJmmChild(0).getKind());
+        assertSame(method, method.getJmmChild(0).getJmmParent());
+        assertEquals(1, children.get(0).getIndexOfSelf());
+    }
+
+    // A tree written in the binary format and mapped back is the same, and a method can be read on its own
+    @Test
+    public void binaryAst() throws IOException {
+        var root = TestUtils.parse(SpecsIo.getResource("fixtures/public/Life.jmm")).getRootNode();
+        var file = Files.createTempFile("Life", ".jmmb");
+        // A mapped file can't be deleted on every system while it's mapped
+        file.toFile().deleteOnExit();
+
+        BinaryAstWriter.write(root, file);
+        var reader = BinaryAstReader.map(file);
+        assertEquals(root.toJson(), reader.readTree().toJson());
+
+        int classDecl = reader.getChild(0, root.getNumChildren() - 1);
+        assertEquals(root.getJmmChild(root.getNumChildren() - 1).getKind(), reader.getKind(classDecl));
+        int lastMethod = reader.getChild(classDecl, reader.getNumChildren(classDecl) - 1);
+        var expected = root.getJmmChild(root.getNumChildren() - 1).getJmmChild(reader.getNumChildren(classDecl) - 1);
+        assertEquals(expected.get("name"), reader.getAttribute(lastMethod, "name"));
+        assertEquals(expected.toJson(), reader.readTree(lastMethod).toJson());
+    }
+
     @Test
     public void helloWorld() {
         noErrors(SpecsIo.getResource("fixtures/public/HelloWorld.jmm"));
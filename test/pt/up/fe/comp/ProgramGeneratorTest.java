@@ -0,0 +1,69 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import pt.up.fe.comp.generator.ProgramGenerator;
+
+public class ProgramGeneratorTest {
+    private static long count(String code, String text) {
+        return code.lines().filter(line -> line.contains(text)).count();
+    }
+
+    // The sequence of java.util.Random is fixed for a seed, so is the program
+    @Test
+    public void testFixedSeed() {
+        var code = new ProgramGenerator(7).setMethods(1).setStatements(3).setLoopDepth(1).setVariables(2).setImports(1)
+                .generate();
+        assertTrue(code.contains("\t\tv0 = 36;\n\t\tv1 = 64;\n\t\tflag = true;\n\t\tarray = new int[16];\n\t\ti0 = 0;\n"
+                + "\t\tv0 = (0);\n\t\tLibrary0.use(7 * array.length);\n\t\tv1 = ((v0 - array.length)) / 8;\n"
+                + "\t\treturn v1 + v0;\n"));
+    }
+
+    @Test
+    public void testSameSeedSameProgram() {
+        var generator = new ProgramGenerator(7).setMethods(3).setStatements(40);
+        var first = generator.generate();
+        assertEquals(first, new ProgramGenerator(7).setMethods(3).setStatements(40).generate());
+        // Generating again starts over from the seed
+        assertEquals(first, generator.generate());
+    }
+
+    @Test
+    public void testDifferentSeeds() {
+        assertNotEquals(new ProgramGenerator(1).generate(), new ProgramGenerator(2).generate());
+    }
+
+    @Test
+    public void testSizes() {
+        var code = new ProgramGenerator(5).setMethods(6).setStatements(30).setLoopDepth(3).setVariables(12).setImports(4)
+                .generate();
+        assertEquals(6, count(code, "public int method"));
+        assertEquals(4, count(code, "import synthetic.Library"));
+        assertEquals(6 * 12, code.lines().filter(line -> line.matches("\t\tint v\\d+;")).count());
+        assertEquals(6 * 3, code.lines().filter(line -> line.matches("\t\tint i\\d+;")).count());
+        assertEquals(0, count(new ProgramGenerator(5).setStatements(30).setLoopDepth(0).generate(), "while"));
+    }
+
+    @Test
+    public void testImports() {
+        var code = new ProgramGenerator(1).setMethods(4).setImports(5).generate();
+        TestUtils.noErrors(TestUtils.backend(code));
+    }
+
+    // Large methods, they used to be out of reach of the fixtures
+    @Test(timeout = 60000)
+    public void testLargeMethod() {
+        var code = new ProgramGenerator(3).setMethods(2).setStatements(500).setLoopDepth(4).setVariables(40).setImports(0)
+                .generate();
+        var expected = TestUtils.backend(code);
+        TestUtils.noErrors(expected);
+
+        var result = TestUtils.backend(code, TestUtils.toConfig("optimizeAll", "true", "registerAllocation", "0"));
+        TestUtils.noErrors(result);
+        assertEquals(expected.run(), result.run());
+    }
+}
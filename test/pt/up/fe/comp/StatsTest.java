@@ -0,0 +1,39 @@
+package pt.up.fe.comp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import pt.up.fe.comp.jmm.stats.CompilationStats;
+import pt.up.fe.comp.jmm.stats.StageStats;
+import pt.up.fe.specs.util.SpecsIo;
+
+public class StatsTest {
+    @Test
+    public void testEveryStageIsMeasured() {
+        var result = TestUtils.backend(SpecsIo.getResource("fixtures/public/FindMaximum.jmm"),
+                TestUtils.toConfig("registerAllocation", "0"));
+        TestUtils.noErrors(result);
+
+        var stats = result.getStats();
+        List<String> stages = stats.getStages().stream().map(StageStats::getStage).collect(Collectors.toList());
+        assertEquals(List.of(CompilationStats.PARSE, CompilationStats.ANALYSIS, CompilationStats.AST_OPTIMIZATION,
+                CompilationStats.OLLIR_GENERATION, CompilationStats.OLLIR_OPTIMIZATION, CompilationStats.BACKEND),
+                stages);
+
+        for (StageStats stage : stats.getStages()) {
+            assertTrue(stage.getWallNanos() >= 0);
+        }
+
+        // Methods are measured inside the stages that go through them one by one
+        StageStats backend = stats.getStage(CompilationStats.BACKEND);
+        assertNotNull(backend);
+        assertTrue(backend.getMethods().stream().anyMatch(method -> method.getMethod().equals("find_maximum")));
+        assertTrue(stats.toJson().contains("\"ollirOptimization\""));
+    }
+}